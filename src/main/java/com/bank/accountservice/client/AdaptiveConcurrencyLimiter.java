@@ -0,0 +1,118 @@
+package com.bank.accountservice.client;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Latency based concurrency limit for one downstream client, in the style of TCP Vegas: while the
+ * estimated queue at the dependency (limit * (1 - noLoadRtt / rtt)) stays below alpha the limit grows by
+ * one, above beta it shrinks by one, and a timeout or I/O failure cuts it multiplicatively.
+ * Calls over the limit fail fast with {@link ConcurrencyLimitExceededException}.
+ */
+public class AdaptiveConcurrencyLimiter {
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final int alpha;
+    private final int beta;
+    private final int probeInterval;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int limit;
+    private long noLoadRttNanos = Long.MAX_VALUE;
+    private long samples;
+
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit,
+                                      double backoffRatio, int alpha, int beta, int probeInterval) {
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.probeInterval = probeInterval;
+        this.limit = clamp(initialLimit);
+    }
+
+    public <T> Mono<T> limit(Mono<T> call) {
+        return Mono.defer(() -> {
+            int inFlightAtStart = tryAcquire();
+            if (inFlightAtStart < 0) {
+                return Mono.error(new ConcurrencyLimitExceededException(name, limit));
+            }
+            long start = System.nanoTime();
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            return call
+                    .doOnError(failure::set)
+                    .doFinally(signal -> release(signal, failure.get(), System.nanoTime() - start, inFlightAtStart));
+        });
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private int tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                return -1;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return current + 1;
+            }
+        }
+    }
+
+    private void release(SignalType signal, Throwable failure, long rttNanos, int inFlightAtStart) {
+        inFlight.decrementAndGet();
+        if (signal == SignalType.ON_COMPLETE) {
+            onSample(rttNanos, inFlightAtStart);
+        } else if (signal == SignalType.ON_ERROR && isOverload(failure)) {
+            onDropped();
+        }
+    }
+
+    synchronized void onSample(long rttNanos, int inFlightAtStart) {
+        long rtt = Math.max(rttNanos, 1);
+        samples++;
+        noLoadRttNanos = samples % probeInterval == 0 ? rtt : Math.min(noLoadRttNanos, rtt);
+        double queue = limit * (1 - (double) noLoadRttNanos / rtt);
+        if (queue < alpha && inFlightAtStart * 2 >= limit) {
+            limit = clamp(limit + 1);
+        } else if (queue > beta) {
+            limit = clamp(limit - 1);
+        }
+    }
+
+    synchronized void onDropped() {
+        limit = clamp((int) (limit * backoffRatio));
+    }
+
+    private int clamp(int value) {
+        return Math.max(minLimit, Math.min(maxLimit, value));
+    }
+
+    private static boolean isOverload(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException || cause instanceof IOException
+                    || cause instanceof io.netty.handler.timeout.TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
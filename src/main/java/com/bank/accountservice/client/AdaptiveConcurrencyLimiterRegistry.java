@@ -0,0 +1,58 @@
+package com.bank.accountservice.client;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+@Component
+public class AdaptiveConcurrencyLimiterRegistry {
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final int alpha;
+    private final int beta;
+    private final int probeInterval;
+
+    public AdaptiveConcurrencyLimiterRegistry(MeterRegistry meterRegistry,
+                                              @Value("${adaptive-limit.initial-limit:20}") int initialLimit,
+                                              @Value("${adaptive-limit.min-limit:4}") int minLimit,
+                                              @Value("${adaptive-limit.max-limit:200}") int maxLimit,
+                                              @Value("${adaptive-limit.backoff-ratio:0.9}") double backoffRatio,
+                                              @Value("${adaptive-limit.alpha:3}") int alpha,
+                                              @Value("${adaptive-limit.beta:6}") int beta,
+                                              @Value("${adaptive-limit.probe-interval:1000}") int probeInterval) {
+        this.meterRegistry = meterRegistry;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.alpha = alpha;
+        this.beta = beta;
+        this.probeInterval = probeInterval;
+    }
+
+    public AdaptiveConcurrencyLimiter limiter(String name) {
+        return limiters.computeIfAbsent(name, this::create);
+    }
+
+    private AdaptiveConcurrencyLimiter create(String name) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(name, initialLimit, minLimit, maxLimit,
+                backoffRatio, alpha, beta, probeInterval);
+        Gauge.builder("downstream.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .tag("client", name)
+                .description("Current adaptive concurrency limit")
+                .register(meterRegistry);
+        Gauge.builder("downstream.concurrency.in.flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .tag("client", name)
+                .description("Calls currently in flight")
+                .register(meterRegistry);
+        return limiter;
+    }
+}
@@ -0,0 +1,88 @@
+package com.bank.accountservice.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Sends a set of keys to a downstream batch endpoint, or one call per key when there is only one key or
+ * the server does not have the endpoint (404, 405 or 501). After such an answer the batch endpoint is
+ * skipped until the retry interval has passed, then probed again. Per-key calls run at most half the
+ * bulkhead's limit at a time, and keys whose call fails are reported in a PartialBatchException alongside
+ * the values of the keys that resolved.
+ */
+@Slf4j
+public class BatchEndpoint {
+    private final String name;
+    private final long retryAfterNanos;
+    private final int perKeyConcurrency;
+    private volatile long unavailableUntil;
+    private volatile boolean unavailable;
+
+    public BatchEndpoint(String name, Duration retryAfter, int perKeyConcurrency, int bulkheadLimit) {
+        this.name = name;
+        this.retryAfterNanos = retryAfter.toNanos();
+        this.perKeyConcurrency = Math.max(1, Math.min(perKeyConcurrency, bulkheadLimit / 2));
+    }
+
+    public int getPerKeyConcurrency() {
+        return perKeyConcurrency;
+    }
+
+    public <K, V> Mono<Map<K, V>> call(Set<K> keys, Function<Set<K>, Mono<Map<K, V>>> batchCall,
+                                       Function<K, Mono<V>> singleCall) {
+        if (keys.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        if (keys.size() == 1 || !isAvailable()) {
+            return perKey(keys, singleCall);
+        }
+        return batchCall.apply(keys)
+                .onErrorResume(BatchEndpoint::isUnsupported, e -> {
+                    log.warn("Batch endpoint {} is not available ({}), falling back to one call per key",
+                            name, e.getMessage());
+                    unavailableUntil = System.nanoTime() + retryAfterNanos;
+                    unavailable = true;
+                    return perKey(keys, singleCall);
+                });
+    }
+
+    public boolean isAvailable() {
+        return !unavailable || System.nanoTime() - unavailableUntil >= 0;
+    }
+
+    static boolean isUnsupported(Throwable error) {
+        HttpStatus status = null;
+        if (error instanceof DownstreamException) {
+            status = ((DownstreamException) error).getStatus();
+        } else if (error instanceof WebClientResponseException) {
+            status = ((WebClientResponseException) error).getStatusCode();
+        }
+        return status == HttpStatus.NOT_FOUND || status == HttpStatus.METHOD_NOT_ALLOWED
+                || status == HttpStatus.NOT_IMPLEMENTED;
+    }
+
+    private <K, V> Mono<Map<K, V>> perKey(Set<K> keys, Function<K, Mono<V>> singleCall) {
+        return Mono.defer(() -> {
+            Map<K, Throwable> errors = new ConcurrentHashMap<>();
+            return Flux.fromIterable(keys)
+                    .flatMap(key -> singleCall.apply(key)
+                            .map(value -> Map.entry(key, value))
+                            .onErrorResume(error -> {
+                                errors.put(key, error);
+                                return Mono.empty();
+                            }), perKeyConcurrency)
+                    .collectMap(Map.Entry::getKey, Map.Entry::getValue)
+                    .flatMap(values -> errors.isEmpty() ? Mono.just(values)
+                            : Mono.error(new PartialBatchException(values, errors)));
+        });
+    }
+}
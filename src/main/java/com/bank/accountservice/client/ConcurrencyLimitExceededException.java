@@ -0,0 +1,7 @@
+package com.bank.accountservice.client;
+
+public class ConcurrencyLimitExceededException extends RuntimeException {
+    public ConcurrencyLimitExceededException(String name, int limit) {
+        super("Concurrency limit of " + limit + " reached for " + name);
+    }
+}
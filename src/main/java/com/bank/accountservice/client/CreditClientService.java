@@ -2,32 +2,109 @@ package com.bank.accountservice.client;
 
 import com.bank.accountservice.dto.BaseResponse;
 import com.bank.accountservice.model.creditcard.CreditCard;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
 import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
 
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 @Slf4j
 public class CreditClientService {
     private final WebClient webClient;
     private final io.github.resilience4j.circuitbreaker.CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final DownstreamRetry downstreamRetry;
+    private final MeterRegistry meterRegistry;
+    private final BatchEndpoint batchEndpoint;
+    private final MicroBatcher<String, List<CreditCard>> creditCardsBatcher;
     public CreditClientService(WebClient.Builder builder,
+                               @Qualifier("creditServiceHttpClient") HttpClient httpClient,
                                @Value("${credit-service.base-url}") String baseUrl,
-                               CircuitBreakerRegistry circuitBreakerRegistry) {
-        this.webClient = builder.baseUrl(baseUrl).build();
+                               CircuitBreakerRegistry circuitBreakerRegistry,
+                               BulkheadRegistry bulkheadRegistry,
+                               AdaptiveConcurrencyLimiterRegistry limiterRegistry,
+                               DownstreamRetry downstreamRetry,
+                               MeterRegistry meterRegistry,
+                               @Value("${credit-service.batch.window-ms:0}") long batchWindowMs,
+                               @Value("${credit-service.batch.max-size:100}") int batchMaxSize,
+                               @Value("${credit-service.batch.per-key-concurrency:8}") int perKeyConcurrency,
+                               @Value("${credit-service.batch.reprobe-ms:300000}") long reprobeMs) {
+        this.webClient = builder.clientConnector(new ReactorClientHttpConnector(httpClient))
+                .baseUrl(baseUrl)
+                .build();
         this.circuitBreaker = circuitBreakerRegistry.circuitBreaker("creditService");
+        this.bulkhead = bulkheadRegistry.bulkhead("creditService");
+        this.concurrencyLimiter = limiterRegistry.limiter("creditService");
+        this.downstreamRetry = downstreamRetry;
+        this.meterRegistry = meterRegistry;
+        this.batchEndpoint = new BatchEndpoint("creditService", Duration.ofMillis(reprobeMs),
+                perKeyConcurrency, bulkhead.getBulkheadConfig().getMaxConcurrentCalls());
+        this.creditCardsBatcher = batchWindowMs > 0
+                ? new MicroBatcher<>(this::getCreditCardsByCustomers, Duration.ofMillis(batchWindowMs), batchMaxSize)
+                : null;
         log.info("Circuit breaker '{}' initialized with state: {}",
                 circuitBreaker.getName(), circuitBreaker.getState());
     }
     public Mono<List<CreditCard>> getCreditCardsByCustomer(String customerId) {
+        Mono<List<CreditCard>> result = creditCardsBatcher == null ? fetchCreditCards(customerId)
+                : creditCardsBatcher.load(customerId);
+        return result.transform(RequestDeadline::bound)
+                .transform(StageTimer.downstream(meterRegistry, circuitBreaker, "getCreditCardsByCustomer"));
+    }
+    public Mono<Map<String, List<CreditCard>>> getCreditCardsByCustomers(Set<String> customerIds) {
+        return batchEndpoint.call(customerIds, this::fetchCreditCardsBatch, this::fetchCreditCards)
+                .onErrorResume(throwable -> !(throwable instanceof PartialBatchException), throwable -> {
+                    log.error("FALLBACK TRIGGERED: Unable to get credit cards for {} customers. Reason: {}",
+                            customerIds.size(), throwable.getMessage());
+                    return Mono.error(new RuntimeException(
+                            "Credit service is unavailable for retrieving credit card information. " +
+                                    "Cannot continue with the operation."));
+                })
+                .transform(RequestDeadline::bound)
+                .transform(StageTimer.downstream(meterRegistry, circuitBreaker, "getCreditCardsByCustomers"));
+    }
+    private Mono<Map<String, List<CreditCard>>> fetchCreditCardsBatch(Set<String> customerIds) {
+        return webClient.post()
+                .uri("/credit-cards/customers/batch")
+                .bodyValue(customerIds)
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, response -> {
+                    log.error("Client error: {}", response.statusCode());
+                    return Mono.error(new DownstreamClientException(response.statusCode()));
+                })
+                .onStatus(HttpStatus::is5xxServerError, response -> {
+                    log.error("Server error: {}", response.statusCode());
+                    return Mono.error(new DownstreamServerException(response.statusCode()));
+                })
+                .bodyToMono(new ParameterizedTypeReference<BaseResponse<Map<String, List<CreditCard>>>>() { })
+                .map(response -> response.getData() == null ? Map.<String, List<CreditCard>>of() : response.getData())
+                .doOnError(error -> log.error("Error fetching credit cards for {} customers: {}",
+                        customerIds.size(), error.getMessage()))
+                .transform(downstreamRetry::attempt)
+                .transform(CircuitBreakerOperator.of(circuitBreaker))
+                .transform(BulkheadOperator.of(bulkhead))
+                .transform(concurrencyLimiter::limit)
+                .transform(downstreamRetry.retry("creditService"));
+    }
+    private Mono<List<CreditCard>> fetchCreditCards(String customerId) {
         return webClient.get()
                 .uri("/credit-cards/customer/{customerId}", customerId)
                 .retrieve()
@@ -43,7 +120,7 @@ public class CreditClientService {
                 })
                 .onStatus(HttpStatus::is5xxServerError, response -> {
                     log.error("Server error: {}", response.statusCode());
-                    return Mono.error(new RuntimeException("Server error: " + response.statusCode()));
+                    return Mono.error(new DownstreamServerException(response.statusCode()));
                 })
                 .bodyToMono(new ParameterizedTypeReference<BaseResponse<List<CreditCard>>>() { })
                 .flatMap(baseResponse -> {
@@ -57,7 +134,11 @@ public class CreditClientService {
                 .doOnNext(result -> log.info("Credit API response: {}", result))
                 .doOnError(error -> log.error("Error fetching credit cards for customer {}: {}",
                         customerId, error.getMessage()))
+                .transform(downstreamRetry::attempt)
                 .transform(CircuitBreakerOperator.of(circuitBreaker))
+                .transform(BulkheadOperator.of(bulkhead))
+                .transform(concurrencyLimiter::limit)
+                .transform(downstreamRetry.retry("creditService"))
                 .onErrorResume(throwable -> {
                     log.error("FALLBACK TRIGGERED: Unable to get credit cards for customer {}. Reason: {}",
                             customerId, throwable.getMessage());
@@ -1,58 +1,97 @@
 package com.bank.accountservice.client;
 import com.bank.accountservice.dto.BaseResponse;
 import com.bank.accountservice.model.customer.Customer;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
 import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
 @Slf4j
 @Service
 public class CustomerClientService {
     private final WebClient webClient;
     private final String customerServiceUrl;
     private final io.github.resilience4j.circuitbreaker.CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final DownstreamRetry downstreamRetry;
+    private final MeterRegistry meterRegistry;
+    private final RequestHedger customerLookupHedger;
     public CustomerClientService(WebClient.Builder webClientBuilder,
+                                 @Qualifier("customerServiceHttpClient") HttpClient httpClient,
                                  @Value("${customer-service.base-url}") String customerServiceUrl,
-                                 CircuitBreakerRegistry circuitBreakerRegistry) {
+                                 CircuitBreakerRegistry circuitBreakerRegistry,
+                                 BulkheadRegistry bulkheadRegistry,
+                                 AdaptiveConcurrencyLimiterRegistry limiterRegistry,
+                                 DownstreamRetry downstreamRetry,
+                                 MeterRegistry meterRegistry,
+                                 RequestHedger customerLookupHedger) {
         this.customerServiceUrl = customerServiceUrl;
-        this.webClient = webClientBuilder.baseUrl(customerServiceUrl).build();
+        this.webClient = webClientBuilder.clientConnector(new ReactorClientHttpConnector(httpClient))
+                .baseUrl(customerServiceUrl)
+                .build();
         this.circuitBreaker = circuitBreakerRegistry.circuitBreaker("customerService");
+        this.bulkhead = bulkheadRegistry.bulkhead("customerService");
+        this.concurrencyLimiter = limiterRegistry.limiter("customerService");
+        this.downstreamRetry = downstreamRetry;
+        this.meterRegistry = meterRegistry;
+        this.customerLookupHedger = customerLookupHedger;
         log.info("Circuit breaker '{}' initialized with state: {}",
                 circuitBreaker.getName(), circuitBreaker.getState());
     }
+    public boolean isAvailable() {
+        io.github.resilience4j.circuitbreaker.CircuitBreaker.State state = circuitBreaker.getState();
+        return state != io.github.resilience4j.circuitbreaker.CircuitBreaker.State.OPEN
+                && state != io.github.resilience4j.circuitbreaker.CircuitBreaker.State.FORCED_OPEN;
+    }
     public Mono<Customer> getCustomerById(String customerId) {
         String fullUrl = customerServiceUrl + "/" + customerId;
         log.info("Sending request to Customer Service API: {}", fullUrl);
-        return webClient.get()
-                .uri("/{id}", customerId)
-                .retrieve()
-                .onStatus(HttpStatus::is4xxClientError, response -> {
-                    log.error("Client error: {}", response.statusCode());
-                    return Mono.error(new RuntimeException("Client error: " + response.statusCode()));
-                })
-                .onStatus(HttpStatus::is5xxServerError, response -> {
-                    log.error("Server error: {}", response.statusCode());
-                    return Mono.error(new RuntimeException("Server error: " + response.statusCode()));
-                })
-                .bodyToMono(new ParameterizedTypeReference<BaseResponse<Customer>>() { })
-                .flatMap(response -> Mono.justOrEmpty(response.getData()))
+        return customerLookupHedger.hedge(() -> fetchCustomerById(customerId))
                 .doOnNext(result -> log.info("Customer API response: {}", result))
                 .doOnError(e -> log.error("Error while fetching customer: {}", e.getMessage()))
                 .doOnTerminate(() -> log.info("Request to Customer API completed"))
+                .transform(downstreamRetry::attempt)
                 .transform(CircuitBreakerOperator.of(circuitBreaker))
+                .transform(BulkheadOperator.of(bulkhead))
+                .transform(concurrencyLimiter::limit)
+                .transform(downstreamRetry.retry("customerService"))
                 .onErrorResume(throwable -> {
                     log.error("FALLBACK TRIGGERED: Unable to get customer {}. Reason: {}",
                             customerId, throwable.getMessage());
                     log.error("Exception type: {}", throwable.getClass().getName());
-                    return Mono.error(new RuntimeException(
+                    return Mono.error(fallbackError(throwable,
                             "Customer service is unavailable for retrieving customer information. " +
                                     "Cannot continue with the operation."));
-                });
+                })
+                .transform(RequestDeadline::bound)
+                .transform(StageTimer.downstream(meterRegistry, circuitBreaker, "getCustomerById"));
+    }
+    private Mono<Customer> fetchCustomerById(String customerId) {
+        return webClient.get()
+                .uri("/{id}", customerId)
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, response -> {
+                    log.error("Client error: {}", response.statusCode());
+                    return Mono.error(new DownstreamClientException(response.statusCode()));
+                })
+                .onStatus(HttpStatus::is5xxServerError, response -> {
+                    log.error("Server error: {}", response.statusCode());
+                    return Mono.error(new DownstreamServerException(response.statusCode()));
+                })
+                .bodyToMono(new ParameterizedTypeReference<BaseResponse<Customer>>() { })
+                .flatMap(response -> Mono.justOrEmpty(response.getData()));
     }
     public Mono<Customer> getCustomerByDocumentNumber(String documentNumber) {
         String fullUrl = customerServiceUrl + "/" + documentNumber;
@@ -62,26 +101,32 @@ public class CustomerClientService {
                 .retrieve()
                 .onStatus(HttpStatus::is4xxClientError, response -> {
                     log.error("Client error: {}", response.statusCode());
-                    return Mono.error(new RuntimeException("Client error: " + response.statusCode()));
+                    return Mono.error(new DownstreamClientException(response.statusCode()));
                 })
                 .onStatus(HttpStatus::is5xxServerError, response -> {
                     log.error("Server error: {}", response.statusCode());
-                    return Mono.error(new RuntimeException("Server error: " + response.statusCode()));
+                    return Mono.error(new DownstreamServerException(response.statusCode()));
                 })
                 .bodyToMono(new ParameterizedTypeReference<BaseResponse<Customer>>() { })
                 .flatMap(response -> Mono.justOrEmpty(response.getData()))
                 .doOnNext(result -> log.info("Customer API response: {}", result))
                 .doOnError(e -> log.error("Error while fetching customer: {}", e.getMessage()))
                 .doOnTerminate(() -> log.info("Request to Customer API completed"))
+                .transform(downstreamRetry::attempt)
                 .transform(CircuitBreakerOperator.of(circuitBreaker))
+                .transform(BulkheadOperator.of(bulkhead))
+                .transform(concurrencyLimiter::limit)
+                .transform(downstreamRetry.retry("customerService"))
                 .onErrorResume(throwable -> {
                     log.error("FALLBACK TRIGGERED: Unable to get customer {}. Reason: {}",
                             documentNumber, throwable.getMessage());
                     log.error("Exception type: {}", throwable.getClass().getName());
-                    return Mono.error(new RuntimeException(
+                    return Mono.error(fallbackError(throwable,
                             "Customer service is unavailable for retrieving customer information. " +
                                     "Cannot continue with the operation."));
-                });
+                })
+                .transform(RequestDeadline::bound)
+                .transform(StageTimer.downstream(meterRegistry, circuitBreaker, "getCustomerByDocumentNumber"));
     }
     public Mono<Customer> updateVipPymStatus(String customerId, boolean isVipPym) {
         String fullUrl = customerServiceUrl + "/" + customerId + "/vip-pym/status?isVipPym=" + isVipPym;
@@ -94,11 +139,11 @@ public class CustomerClientService {
                 .retrieve()
                 .onStatus(HttpStatus::is4xxClientError, response -> {
                     log.error("Client error: {}", response.statusCode());
-                    return Mono.error(new RuntimeException("Client error: " + response.statusCode()));
+                    return Mono.error(new DownstreamClientException(response.statusCode()));
                 })
                 .onStatus(HttpStatus::is5xxServerError, response -> {
                     log.error("Server error: {}", response.statusCode());
-                    return Mono.error(new RuntimeException("Server error: " + response.statusCode()));
+                    return Mono.error(new DownstreamServerException(response.statusCode()));
                 })
                 .bodyToMono(new ParameterizedTypeReference<BaseResponse<Customer>>() { })
                 .flatMap(response -> Mono.justOrEmpty(response.getData()))
@@ -106,13 +151,21 @@ public class CustomerClientService {
                 .doOnError(e -> log.error("Error while updating customer: {}", e.getMessage()))
                 .doOnTerminate(() -> log.info("PUT request to Customer API completed"))
                 .transform(CircuitBreakerOperator.of(circuitBreaker))
+                .transform(BulkheadOperator.of(bulkhead))
+                .transform(concurrencyLimiter::limit)
                 .onErrorResume(throwable -> {
                     log.error("FALLBACK TRIGGERED: Unable to update VIP/PYM status for customer {}. Reason: {}",
                             customerId, throwable.getMessage());
                     log.error("Exception type: {}", throwable.getClass().getName());
-                    return Mono.error(new RuntimeException(
+                    return Mono.error(fallbackError(throwable,
                             "Customer service is not available to update VIP/PYM status. " +
                                     "Cannot continue with account creation."));
-                });
+                })
+                .transform(RequestDeadline::bound)
+                .transform(StageTimer.downstream(meterRegistry, circuitBreaker, "updateVipPymStatus"));
+    }
+    private static RuntimeException fallbackError(Throwable cause, String message) {
+        return cause instanceof DownstreamClientException ? new RuntimeException(message)
+                : new DownstreamUnavailableException(message, cause);
     }
-}
\ No newline at end of file
+}
@@ -1,40 +1,123 @@
 package com.bank.accountservice.client;
 
 import com.bank.accountservice.dto.BaseResponse;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
 import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
 @Slf4j
 @Service
 public class CustomerEligibilityClientService {
     private final WebClient webClient;
     private final io.github.resilience4j.circuitbreaker.CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final DownstreamRetry downstreamRetry;
+    private final MeterRegistry meterRegistry;
+    private final BatchEndpoint batchEndpoint;
+    private final MicroBatcher<String, Boolean> overdueDebtBatcher;
     public CustomerEligibilityClientService(WebClient.Builder builder,
+                                            @Qualifier("creditServiceHttpClient") HttpClient httpClient,
                                             @Value("${credit-service.base-url}") String baseUrl,
-                                            CircuitBreakerRegistry circuitBreakerRegistry) {
-        this.webClient = builder.baseUrl(baseUrl).build();
+                                            CircuitBreakerRegistry circuitBreakerRegistry,
+                                            BulkheadRegistry bulkheadRegistry,
+                                            AdaptiveConcurrencyLimiterRegistry limiterRegistry,
+                                            DownstreamRetry downstreamRetry,
+                                            MeterRegistry meterRegistry,
+                                            @Value("${credit-service.batch.window-ms:0}") long batchWindowMs,
+                                            @Value("${credit-service.batch.max-size:100}") int batchMaxSize,
+                                            @Value("${credit-service.batch.per-key-concurrency:8}")
+                                            int perKeyConcurrency,
+                                            @Value("${credit-service.batch.reprobe-ms:300000}") long reprobeMs) {
+        this.webClient = builder.clientConnector(new ReactorClientHttpConnector(httpClient))
+                .baseUrl(baseUrl)
+                .build();
         this.circuitBreaker = circuitBreakerRegistry.circuitBreaker("customerEligibilityService");
+        this.bulkhead = bulkheadRegistry.bulkhead("customerEligibilityService");
+        this.concurrencyLimiter = limiterRegistry.limiter("customerEligibilityService");
+        this.downstreamRetry = downstreamRetry;
+        this.meterRegistry = meterRegistry;
+        this.batchEndpoint = new BatchEndpoint("customerEligibilityService", Duration.ofMillis(reprobeMs),
+                perKeyConcurrency, bulkhead.getBulkheadConfig().getMaxConcurrentCalls());
+        this.overdueDebtBatcher = batchWindowMs > 0
+                ? new MicroBatcher<>(this::hasOverdueDebtByCustomer, Duration.ofMillis(batchWindowMs), batchMaxSize)
+                : null;
         log.info("Circuit breaker '{}' initialized with state: {}",
                 circuitBreaker.getName(), circuitBreaker.getState());
     }
     public Mono<Boolean> hasOverdueDebt(String customerId) {
+        Mono<Boolean> result = overdueDebtBatcher == null ? fetchHasOverdueDebt(customerId)
+                : overdueDebtBatcher.load(customerId).defaultIfEmpty(true);
+        return result.transform(RequestDeadline::bound)
+                .transform(StageTimer.downstream(meterRegistry, circuitBreaker, "hasOverdueDebt"));
+    }
+    public Mono<Map<String, Boolean>> hasOverdueDebtByCustomer(Set<String> customerIds) {
+        return batchEndpoint.call(customerIds, this::fetchOverdueDebtBatch, this::fetchHasOverdueDebt)
+                .onErrorResume(PartialBatchException.class, partial -> Mono.just(partial.getValues()))
+                .onErrorResume(throwable -> {
+                    log.error("FALLBACK TRIGGERED: Unable to check debt status for {} customers. Reason: {}",
+                            customerIds.size(), throwable.getMessage());
+                    log.warn("Assuming customers have overdue debt due to service unavailability");
+                    return Mono.just(Map.of());
+                })
+                .map(results -> customerIds.stream()
+                        .collect(Collectors.toMap(id -> id, id -> results.getOrDefault(id, true))))
+                .transform(RequestDeadline::bound)
+                .transform(StageTimer.downstream(meterRegistry, circuitBreaker, "hasOverdueDebtByCustomer"));
+    }
+    private Mono<Map<String, Boolean>> fetchOverdueDebtBatch(Set<String> customerIds) {
+        log.info("Calling customer eligibility service to check overdue debt of {} customers", customerIds.size());
+        return webClient.post()
+                .uri("/customer-eligibility/has-overdue-debt/batch")
+                .bodyValue(customerIds)
+                .retrieve()
+                .onStatus(HttpStatus::is4xxClientError, response -> {
+                    log.error("Client error: {}", response.statusCode());
+                    return Mono.error(new DownstreamClientException(response.statusCode()));
+                })
+                .onStatus(HttpStatus::is5xxServerError, response -> {
+                    log.error("Server error: {}", response.statusCode());
+                    return Mono.error(new DownstreamServerException(response.statusCode()));
+                })
+                .bodyToMono(new ParameterizedTypeReference<BaseResponse<Map<String, Boolean>>>() { })
+                .map(response -> response.getData() == null ? Map.<String, Boolean>of() : response.getData())
+                .doOnError(e -> log.error("Error checking debt status of customers: {}", e.getMessage()))
+                .transform(downstreamRetry::attempt)
+                .transform(CircuitBreakerOperator.of(circuitBreaker))
+                .transform(BulkheadOperator.of(bulkhead))
+                .transform(concurrencyLimiter::limit)
+                .transform(downstreamRetry.retry("customerEligibilityService"));
+    }
+    private Mono<Boolean> fetchHasOverdueDebt(String customerId) {
         log.info("Calling customer eligibility service to check if customer {} has overdue debt", customerId);
         return webClient.get()
                 .uri("/customer-eligibility/has-overdue-debt/{customerId}", customerId)
                 .retrieve()
                 .onStatus(HttpStatus::is4xxClientError, response -> {
                     log.error("Client error: {}", response.statusCode());
-                    return Mono.error(new RuntimeException("Client error: " + response.statusCode()));
+                    return Mono.error(new DownstreamClientException(response.statusCode()));
                 })
                 .onStatus(HttpStatus::is5xxServerError, response -> {
                     log.error("Server error: {}", response.statusCode());
-                    return Mono.error(new RuntimeException("Server error: " + response.statusCode()));
+                    return Mono.error(new DownstreamServerException(response.statusCode()));
                 })
                 .bodyToMono(new ParameterizedTypeReference<BaseResponse<Boolean>>() { })
                 .map(response -> {
@@ -42,7 +125,11 @@ public class CustomerEligibilityClientService {
                     return response.getData();
                 })
                 .doOnError(e -> log.error("Error checking customer debt status: {}", e.getMessage()))
+                .transform(downstreamRetry::attempt)
                 .transform(CircuitBreakerOperator.of(circuitBreaker))
+                .transform(BulkheadOperator.of(bulkhead))
+                .transform(concurrencyLimiter::limit)
+                .transform(downstreamRetry.retry("customerEligibilityService"))
                 .onErrorResume(throwable -> {
                     log.error("FALLBACK TRIGGERED: Unable to check debt status for customer {}. Reason: {}",
                             customerId, throwable.getMessage());
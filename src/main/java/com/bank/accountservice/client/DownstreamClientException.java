@@ -0,0 +1,9 @@
+package com.bank.accountservice.client;
+
+import org.springframework.http.HttpStatus;
+
+public class DownstreamClientException extends DownstreamException {
+    public DownstreamClientException(HttpStatus status) {
+        super("Client error", status);
+    }
+}
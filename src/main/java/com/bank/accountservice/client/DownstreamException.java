@@ -0,0 +1,16 @@
+package com.bank.accountservice.client;
+
+import org.springframework.http.HttpStatus;
+
+public abstract class DownstreamException extends RuntimeException {
+    private final HttpStatus status;
+
+    protected DownstreamException(String message, HttpStatus status) {
+        super(message + ": " + status);
+        this.status = status;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,145 @@
+package com.bank.accountservice.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Retries idempotent downstream reads on transient failures (5xx, I/O errors, timeouts) with exponential
+ * jittered backoff. Every attempt has its own timeout and the whole call, retries included, has a deadline.
+ * Retries are paid for from one budget shared by all clients that every call refills by budgetRatio, so
+ * when a dependency is down retries add at most that fraction of extra load instead of multiplying it.
+ */
+@Slf4j
+@Component
+public class DownstreamRetry {
+    private final MeterRegistry meterRegistry;
+    private final int maxRetries;
+    private final Duration minBackoff;
+    private final Duration maxBackoff;
+    private final double jitter;
+    private final Duration attemptTimeout;
+    private final Duration deadline;
+    private final double budgetRatio;
+    private final double budgetMax;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private double budget;
+
+    public DownstreamRetry(MeterRegistry meterRegistry,
+                           @Value("${downstream.retry.max-retries:2}") int maxRetries,
+                           @Value("${downstream.retry.min-backoff-ms:50}") long minBackoffMs,
+                           @Value("${downstream.retry.max-backoff-ms:1000}") long maxBackoffMs,
+                           @Value("${downstream.retry.jitter:0.5}") double jitter,
+                           @Value("${downstream.retry.attempt-timeout-ms:2000}") long attemptTimeoutMs,
+                           @Value("${downstream.retry.deadline-ms:5000}") long deadlineMs,
+                           @Value("${downstream.retry.budget.ratio:0.1}") double budgetRatio,
+                           @Value("${downstream.retry.budget.max:20}") double budgetMax) {
+        this.meterRegistry = meterRegistry;
+        this.maxRetries = maxRetries;
+        this.minBackoff = Duration.ofMillis(minBackoffMs);
+        this.maxBackoff = Duration.ofMillis(maxBackoffMs);
+        this.jitter = jitter;
+        this.attemptTimeout = Duration.ofMillis(attemptTimeoutMs);
+        this.deadline = Duration.ofMillis(deadlineMs);
+        this.budgetRatio = budgetRatio;
+        this.budgetMax = budgetMax;
+        this.budget = budgetMax;
+        Gauge.builder("downstream.retry.budget", this, DownstreamRetry::getBudget)
+                .description("Retry tokens currently available to all downstream clients")
+                .register(meterRegistry);
+    }
+
+    public <T> Mono<T> attempt(Mono<T> call) {
+        return call.timeout(attemptTimeout);
+    }
+
+    public <T> Function<Mono<T>, Mono<T>> retry(String client) {
+        return call -> Mono.defer(() -> {
+            deposit();
+            AtomicInteger retries = new AtomicInteger();
+            Retry spec = Retry.backoff(maxRetries, minBackoff)
+                    .maxBackoff(maxBackoff)
+                    .jitter(jitter)
+                    .filter(e -> shouldRetry(client, e, retries.get()))
+                    .doBeforeRetry(signal -> {
+                        retries.incrementAndGet();
+                        counter(client, "retried").increment();
+                        log.warn("Retrying call to {} (retry {}) after: {}", client, signal.totalRetries() + 1,
+                                signal.failure().getMessage());
+                    })
+                    .onRetryExhaustedThrow((retrySpec, signal) -> signal.failure());
+            return call.retryWhen(spec);
+        }).timeout(deadline);
+    }
+
+    public synchronized double getBudget() {
+        return budget;
+    }
+
+    static boolean isRetryable(Throwable error) {
+        if (error instanceof DownstreamException) {
+            return error instanceof DownstreamServerException
+                    && ((DownstreamException) error).getStatus() != HttpStatus.NOT_IMPLEMENTED;
+        }
+        if (error instanceof WebClientResponseException) {
+            return ((WebClientResponseException) error).getStatusCode().is5xxServerError();
+        }
+        if (error instanceof WebClientRequestException) {
+            return true;
+        }
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException || cause instanceof IOException
+                    || cause instanceof io.netty.handler.timeout.TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean shouldRetry(String client, Throwable error, int retries) {
+        if (retries >= maxRetries || !isRetryable(error)) {
+            return false;
+        }
+        if (!withdraw()) {
+            counter(client, "budget_exhausted").increment();
+            log.warn("Retry budget exhausted, not retrying call to {}", client);
+            return false;
+        }
+        return true;
+    }
+
+    private Counter counter(String client, String outcome) {
+        return counters.computeIfAbsent(client + ":" + outcome, key -> Counter.builder("downstream.retry.attempts")
+                .tag("client", client)
+                .tag("outcome", outcome)
+                .register(meterRegistry));
+    }
+
+    private synchronized void deposit() {
+        budget = Math.min(budgetMax, budget + budgetRatio);
+    }
+
+    private synchronized boolean withdraw() {
+        if (budget < 1) {
+            return false;
+        }
+        budget--;
+        return true;
+    }
+}
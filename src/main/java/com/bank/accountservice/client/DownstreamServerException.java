@@ -0,0 +1,9 @@
+package com.bank.accountservice.client;
+
+import org.springframework.http.HttpStatus;
+
+public class DownstreamServerException extends DownstreamException {
+    public DownstreamServerException(HttpStatus status) {
+        super("Server error", status);
+    }
+}
@@ -0,0 +1,11 @@
+package com.bank.accountservice.client;
+
+/**
+ * Raised by a client fallback when the dependency could not answer at all (breaker open, bulkhead full,
+ * timeouts, 5xx), as opposed to answering with a client error. Callers may degrade instead of failing.
+ */
+public class DownstreamUnavailableException extends RuntimeException {
+    public DownstreamUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
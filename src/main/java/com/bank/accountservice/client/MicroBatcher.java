@@ -0,0 +1,125 @@
+package com.bank.accountservice.client;
+
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Collects single-key lookups that arrive within a short window and resolves them with one batch call,
+ * DataLoader style. Concurrent lookups of the same key share one result, a batch is sent early once it
+ * reaches maxBatchSize, and a key missing from the batch result completes empty. A PartialBatchException
+ * fails only the lookups of the keys it names; any other error fails the whole batch. The batch call runs
+ * until the latest request deadline of the lookups it serves, so a caller with little time left cannot cut
+ * it short for the others; each lookup still gives up at its own deadline. Batching trades the window's latency for
+ * fewer calls, so the clients only enable it when a window is configured.
+ */
+public class MicroBatcher<K, V> {
+    private final Function<Set<K>, Mono<Map<K, V>>> batchLoader;
+    private final Duration window;
+    private final int maxBatchSize;
+    private final Scheduler scheduler;
+    private Map<K, Sinks.One<V>> pending = new LinkedHashMap<>();
+    private RequestDeadline pendingDeadline;
+
+    public MicroBatcher(Function<Set<K>, Mono<Map<K, V>>> batchLoader, Duration window, int maxBatchSize) {
+        this(batchLoader, window, maxBatchSize, Schedulers.parallel());
+    }
+
+    MicroBatcher(Function<Set<K>, Mono<Map<K, V>>> batchLoader, Duration window, int maxBatchSize,
+                 Scheduler scheduler) {
+        this.batchLoader = batchLoader;
+        this.window = window;
+        this.maxBatchSize = maxBatchSize;
+        this.scheduler = scheduler;
+    }
+
+    public Mono<V> load(K key) {
+        return Mono.deferContextual(context -> {
+            Sinks.One<V> sink;
+            Batch<K, V> full = null;
+            synchronized (this) {
+                RequestDeadline.from(context)
+                        .filter(deadline -> pendingDeadline == null || pendingDeadline.isBefore(deadline))
+                        .ifPresent(deadline -> pendingDeadline = deadline);
+                sink = pending.get(key);
+                if (sink == null) {
+                    sink = Sinks.one();
+                    pending.put(key, sink);
+                    if (pending.size() >= maxBatchSize) {
+                        full = drain();
+                    } else if (pending.size() == 1) {
+                        scheduler.schedule(this::flush, window.toNanos(), TimeUnit.NANOSECONDS);
+                    }
+                }
+            }
+            if (full != null) {
+                dispatch(full);
+            }
+            return RequestDeadline.bound(sink.asMono());
+        });
+    }
+
+    void flush() {
+        Batch<K, V> batch;
+        synchronized (this) {
+            batch = drain();
+        }
+        if (!batch.sinks.isEmpty()) {
+            dispatch(batch);
+        }
+    }
+
+    private Batch<K, V> drain() {
+        Batch<K, V> batch = new Batch<>(pending, pendingDeadline);
+        pending = new LinkedHashMap<>();
+        pendingDeadline = null;
+        return batch;
+    }
+
+    private void dispatch(Batch<K, V> batch) {
+        Mono.defer(() -> batchLoader.apply(batch.sinks.keySet()))
+                .defaultIfEmpty(Map.of())
+                .contextWrite(context -> batch.deadline == null ? context
+                        : RequestDeadline.with(context, batch.deadline))
+                .subscribe(results -> complete(batch.sinks, results, Map.of()), error -> {
+                    if (error instanceof PartialBatchException) {
+                        PartialBatchException partial = (PartialBatchException) error;
+                        complete(batch.sinks, partial.getValues(), partial.getErrors());
+                    } else {
+                        batch.sinks.values().forEach(sink -> sink.tryEmitError(error));
+                    }
+                });
+    }
+
+    private void complete(Map<K, Sinks.One<V>> batch, Map<K, V> results, Map<K, Throwable> errors) {
+        batch.forEach((key, sink) -> {
+            Throwable error = errors.get(key);
+            V value = results.get(key);
+            if (error != null) {
+                sink.tryEmitError(error);
+            } else if (value == null) {
+                sink.tryEmitEmpty();
+            } else {
+                sink.tryEmitValue(value);
+            }
+        });
+    }
+
+    private static final class Batch<K, V> {
+        private final Map<K, Sinks.One<V>> sinks;
+        private final RequestDeadline deadline;
+
+        private Batch(Map<K, Sinks.One<V>> sinks, RequestDeadline deadline) {
+            this.sinks = sinks;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.bank.accountservice.client;
+
+import java.util.Map;
+
+/**
+ * Some keys of a batch resolved one call per key failed. Carries the values of the keys that did resolve
+ * and the error of each key that did not, so callers can fail only the keys that failed.
+ */
+public class PartialBatchException extends RuntimeException {
+    private final transient Map<?, ?> values;
+    private final transient Map<?, Throwable> errors;
+
+    public <K, V> PartialBatchException(Map<K, V> values, Map<K, Throwable> errors) {
+        super(errors.size() + " batch keys failed: " + errors.values().iterator().next().getMessage());
+        this.values = values;
+        this.errors = errors;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <K, V> Map<K, V> getValues() {
+        return (Map<K, V>) values;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <K> Map<K, Throwable> getErrors() {
+        return (Map<K, Throwable>) errors;
+    }
+}
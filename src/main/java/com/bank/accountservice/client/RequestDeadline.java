@@ -0,0 +1,77 @@
+package com.bank.accountservice.client;
+
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Point in time after which nobody is waiting for the current request any more. It travels in the Reactor
+ * context, is sent to downstream services as the time left in {@link #TIMEOUT_HEADER}, and lets each step
+ * give up as soon as the caller has, instead of running out its own longer timeout.
+ */
+public final class RequestDeadline {
+    public static final String TIMEOUT_HEADER = "X-Request-Timeout-Ms";
+    private static final Object CONTEXT_KEY = RequestDeadline.class;
+    private final long deadlineNanos;
+
+    private RequestDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static RequestDeadline after(Duration timeout) {
+        return new RequestDeadline(System.nanoTime() + timeout.toNanos());
+    }
+
+    public static Context with(Context context, RequestDeadline deadline) {
+        return context.put(CONTEXT_KEY, deadline);
+    }
+
+    public static Optional<RequestDeadline> from(ContextView context) {
+        return context.getOrEmpty(CONTEXT_KEY);
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(Math.max(0, deadlineNanos - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    public boolean isBefore(RequestDeadline other) {
+        return deadlineNanos - other.deadlineNanos < 0;
+    }
+
+    //Fails with RequestDeadlineExceededException once the deadline in the context passes
+    public static <T> Mono<T> bound(Mono<T> call) {
+        return Mono.deferContextual(context -> from(context)
+                .map(deadline -> deadline.isExpired()
+                        ? Mono.<T>error(new RequestDeadlineExceededException())
+                        : call.timeout(deadline.remaining(), Mono.error(RequestDeadlineExceededException::new)))
+                .orElse(call));
+    }
+
+    //Plain timeout, shortened to the time the request has left
+    public static <T> Mono<T> timeout(Mono<T> call, Duration timeout) {
+        return Mono.deferContextual(context -> call.timeout(from(context)
+                .map(deadline -> min(timeout, deadline.remaining()))
+                .orElse(timeout)));
+    }
+
+    public static ExchangeFilterFunction propagation() {
+        return (request, next) -> Mono.deferContextual(context -> next.exchange(from(context)
+                .map(deadline -> ClientRequest.from(request)
+                        .header(TIMEOUT_HEADER, String.valueOf(deadline.remaining().toMillis()))
+                        .build())
+                .orElse(request)));
+    }
+
+    private static Duration min(Duration first, Duration second) {
+        return first.compareTo(second) <= 0 ? first : second;
+    }
+}
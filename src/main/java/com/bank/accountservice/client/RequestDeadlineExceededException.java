@@ -0,0 +1,7 @@
+package com.bank.accountservice.client;
+
+public class RequestDeadlineExceededException extends RuntimeException {
+    public RequestDeadlineExceededException() {
+        super("Request deadline exceeded, the caller is no longer waiting for a response");
+    }
+}
@@ -0,0 +1,107 @@
+package com.bank.accountservice.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Hedges idempotent reads: when the first attempt has not answered after the configured percentile of
+ * recent latencies, a second attempt is sent and the first signal from either one wins. Hedges are paid
+ * for from a token budget that every request refills by budgetRatio, so at most that fraction of extra
+ * load is added. A failed hedge is ignored and the first attempt decides the outcome.
+ */
+public class RequestHedger {
+    private static final int MIN_SAMPLES = 20;
+    private static final int RECOMPUTE_EVERY = 10;
+    private final boolean enabled;
+    private final double percentile;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final double budgetRatio;
+    private final double budgetMax;
+    private final long[] latencies;
+    private final Counter hedgesSent;
+    private final Counter hedgesSkipped;
+    private int samples;
+    private double budget;
+    private volatile long delayNanos;
+
+    public RequestHedger(String name, boolean enabled, double percentile, Duration minDelay, Duration maxDelay,
+                         double budgetRatio, double budgetMax, int windowSize, MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.percentile = percentile;
+        this.minDelayNanos = minDelay.toNanos();
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.budgetRatio = budgetRatio;
+        this.budgetMax = budgetMax;
+        this.latencies = new long[windowSize];
+        this.delayNanos = maxDelayNanos;
+        this.hedgesSent = Counter.builder("downstream.hedge.requests")
+                .tag("client", name)
+                .tag("outcome", "sent")
+                .register(meterRegistry);
+        this.hedgesSkipped = Counter.builder("downstream.hedge.requests")
+                .tag("client", name)
+                .tag("outcome", "no_budget")
+                .register(meterRegistry);
+    }
+
+    public <T> Mono<T> hedge(Supplier<Mono<T>> call) {
+        if (!enabled) {
+            return Mono.defer(call);
+        }
+        return Mono.defer(() -> {
+            deposit();
+            Mono<T> primary = timed(call);
+            Mono<T> hedged = Mono.delay(Duration.ofNanos(delayNanos))
+                    .flatMap(tick -> {
+                        if (!withdraw()) {
+                            hedgesSkipped.increment();
+                            return Mono.never();
+                        }
+                        hedgesSent.increment();
+                        return timed(call).onErrorResume(e -> Mono.never());
+                    });
+            return Mono.firstWithSignal(primary, hedged);
+        });
+    }
+
+    public Duration getDelay() {
+        return Duration.ofNanos(delayNanos);
+    }
+
+    private <T> Mono<T> timed(Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call.get().doOnSuccess(value -> record(System.nanoTime() - start));
+        });
+    }
+
+    synchronized void record(long latencyNanos) {
+        latencies[samples % latencies.length] = latencyNanos;
+        samples++;
+        if (samples >= MIN_SAMPLES && samples % RECOMPUTE_EVERY == 0) {
+            long[] window = Arrays.copyOf(latencies, Math.min(samples, latencies.length));
+            Arrays.sort(window);
+            int index = (int) Math.ceil(percentile / 100 * window.length) - 1;
+            long delay = window[Math.max(0, Math.min(index, window.length - 1))];
+            delayNanos = Math.max(minDelayNanos, Math.min(maxDelayNanos, delay));
+        }
+    }
+
+    private synchronized void deposit() {
+        budget = Math.min(budgetMax, budget + budgetRatio);
+    }
+
+    private synchronized boolean withdraw() {
+        if (budget < 1) {
+            return false;
+        }
+        budget--;
+        return true;
+    }
+}
@@ -0,0 +1,64 @@
+package com.bank.accountservice.client;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import reactor.core.publisher.Mono;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Times one stage of a request pipeline (a cache lookup, a downstream call, a consumer handler) with a
+ * percentile histogram. The timer is tagged with how the stage ended: a value, empty, an error (with the
+ * exception type) or cancelled. Tags are resolved when the stage ends, so state such as the circuit
+ * breaker's is the one the call finished in.
+ */
+public final class StageTimer {
+    public static final String DOWNSTREAM_TIMER = "downstream.client.requests";
+    public static final String CONSUMER_TIMER = "kafka.consumer.handler";
+
+    private StageTimer() {
+    }
+
+    public static <T> Function<Mono<T>, Mono<T>> timed(MeterRegistry registry, String name, Supplier<Tags> tags) {
+        return timed(registry, name, tags, "success", "empty");
+    }
+
+    public static <T> Function<Mono<T>, Mono<T>> timed(MeterRegistry registry, String name, Supplier<Tags> tags,
+                                                       String valueOutcome, String emptyOutcome) {
+        return stage -> Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(registry);
+            AtomicBoolean stopped = new AtomicBoolean();
+            Consumer<Tags> stop = outcome -> {
+                if (stopped.compareAndSet(false, true)) {
+                    sample.stop(Timer.builder(name)
+                            .tags(tags.get())
+                            .tags(outcome)
+                            .publishPercentileHistogram()
+                            .register(registry));
+                }
+            };
+            return stage
+                    .doOnSuccess(value -> stop.accept(outcome(value != null ? valueOutcome : emptyOutcome, "none")))
+                    .doOnError(e -> stop.accept(outcome("error", e.getClass().getSimpleName())))
+                    .doOnCancel(() -> stop.accept(outcome("cancelled", "none")));
+        });
+    }
+
+    public static <T> Function<Mono<T>, Mono<T>> downstream(MeterRegistry registry, CircuitBreaker circuitBreaker,
+                                                            String operation) {
+        return timed(registry, DOWNSTREAM_TIMER, () -> Tags.of(
+                "client", circuitBreaker.getName(),
+                "operation", operation,
+                "breaker_state", circuitBreaker.getState().name().toLowerCase(Locale.ROOT)));
+    }
+
+    private static Tags outcome(String outcome, String exception) {
+        return Tags.of("outcome", outcome, "exception", exception);
+    }
+}
@@ -0,0 +1,34 @@
+package com.bank.accountservice.config;
+
+import com.bank.accountservice.service.AccountCacheService;
+import com.bank.accountservice.service.CustomerCacheService;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Actuator endpoint (/actuator/cachestats) with the current statistics of the customer cache and the local
+ * account cache. The built-in caches endpoint only covers Spring cache managers, which these are not.
+ */
+@Component
+@Endpoint(id = "cachestats")
+public class CacheStatsEndpoint {
+    private final CustomerCacheService customerCacheService;
+    private final AccountCacheService accountCacheService;
+
+    public CacheStatsEndpoint(CustomerCacheService customerCacheService, AccountCacheService accountCacheService) {
+        this.customerCacheService = customerCacheService;
+        this.accountCacheService = accountCacheService;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> cacheStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        stats.put("customer", customerCacheService.statistics());
+        stats.put("account-local", accountCacheService.localStatistics());
+        return stats;
+    }
+}
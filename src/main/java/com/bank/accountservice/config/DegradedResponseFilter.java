@@ -0,0 +1,29 @@
+package com.bank.accountservice.config;
+
+import com.bank.accountservice.service.DegradedResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+/**
+ * Adds a Warning header to responses that were built in degraded mode, so callers can tell that part of
+ * the data came from a stale cache or that some side effects were queued for later.
+ */
+@Component
+public class DegradedResponseFilter implements WebFilter {
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        DegradedResponse degraded = new DegradedResponse();
+        exchange.getResponse().beforeCommit(() -> {
+            if (degraded.isDegraded()) {
+                exchange.getResponse().getHeaders().add(HttpHeaders.WARNING, degraded.warningHeader());
+            }
+            return Mono.empty();
+        });
+        return chain.filter(exchange)
+                .contextWrite(context -> DegradedResponse.with(context, degraded));
+    }
+}
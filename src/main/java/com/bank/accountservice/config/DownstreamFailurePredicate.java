@@ -0,0 +1,23 @@
+package com.bank.accountservice.config;
+
+import com.bank.accountservice.client.DownstreamClientException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.util.function.Predicate;
+
+/**
+ * Record-failure predicate for the downstream circuit breakers. A 4xx reply means the dependency answered,
+ * so it counts as a success; server errors, I/O errors and timeouts are failures.
+ */
+public class DownstreamFailurePredicate implements Predicate<Throwable> {
+    @Override
+    public boolean test(Throwable error) {
+        if (error instanceof DownstreamClientException) {
+            return false;
+        }
+        if (error instanceof WebClientResponseException) {
+            return !((WebClientResponseException) error).getStatusCode().is4xxClientError();
+        }
+        return true;
+    }
+}
@@ -0,0 +1,102 @@
+package com.bank.accountservice.config;
+
+import com.bank.accountservice.client.RequestDeadline;
+import com.bank.accountservice.client.RequestHedger;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.web.reactive.function.client.WebClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * One Reactor Netty connection pool per downstream host, tuned through http-client.&lt;host&gt;.* properties.
+ * Clients that call the same host share its HttpClient, and therefore its connections.
+ */
+@Configuration
+public class HttpClientConfig {
+    public static final String CUSTOMER_SERVICE = "customer-service";
+    public static final String CREDIT_SERVICE = "credit-service";
+    private final Environment environment;
+
+    public HttpClientConfig(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider customerServiceConnectionProvider() {
+        return connectionProvider(CUSTOMER_SERVICE);
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider creditServiceConnectionProvider() {
+        return connectionProvider(CREDIT_SERVICE);
+    }
+
+    @Bean
+    public HttpClient customerServiceHttpClient(
+            @Qualifier("customerServiceConnectionProvider") ConnectionProvider connectionProvider) {
+        return httpClient(CUSTOMER_SERVICE, connectionProvider);
+    }
+
+    @Bean
+    public HttpClient creditServiceHttpClient(
+            @Qualifier("creditServiceConnectionProvider") ConnectionProvider connectionProvider) {
+        return httpClient(CREDIT_SERVICE, connectionProvider);
+    }
+
+    //Every WebClient built from the shared builder forwards the time the current request has left
+    @Bean
+    public WebClientCustomizer requestDeadlineWebClientCustomizer() {
+        return builder -> builder.filter(RequestDeadline.propagation());
+    }
+
+    //Off unless http-client.customer-service.hedging.enabled is set
+    @Bean
+    public RequestHedger customerLookupHedger(MeterRegistry meterRegistry) {
+        String prefix = "hedging.";
+        return new RequestHedger("customerService",
+                property(CUSTOMER_SERVICE, prefix + "enabled", Boolean.class, false),
+                property(CUSTOMER_SERVICE, prefix + "percentile", Double.class, 95.0),
+                millis(CUSTOMER_SERVICE, prefix + "min-delay-ms", 20),
+                millis(CUSTOMER_SERVICE, prefix + "max-delay-ms", 500),
+                property(CUSTOMER_SERVICE, prefix + "budget-ratio", Double.class, 0.1),
+                property(CUSTOMER_SERVICE, prefix + "budget-max", Double.class, 10.0),
+                property(CUSTOMER_SERVICE, prefix + "window-size", Integer.class, 200),
+                meterRegistry);
+    }
+
+    ConnectionProvider connectionProvider(String host) {
+        return ConnectionProvider.builder(host)
+                .maxConnections(property(host, "max-connections", Integer.class, 100))
+                .pendingAcquireMaxCount(property(host, "pending-acquire-max-count", Integer.class, 500))
+                .pendingAcquireTimeout(millis(host, "pending-acquire-timeout-ms", 2000))
+                .maxIdleTime(millis(host, "max-idle-time-ms", 20000))
+                .maxLifeTime(millis(host, "max-life-time-ms", 300000))
+                .evictInBackground(millis(host, "evict-in-background-ms", 30000))
+                .metrics(property(host, "metrics-enabled", Boolean.class, true))
+                .build();
+    }
+
+    HttpClient httpClient(String host, ConnectionProvider connectionProvider) {
+        boolean keepAlive = property(host, "keep-alive", Boolean.class, true);
+        return HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, property(host, "connect-timeout-ms", Integer.class, 2000))
+                .option(ChannelOption.SO_KEEPALIVE, keepAlive)
+                .keepAlive(keepAlive)
+                .responseTimeout(millis(host, "response-timeout-ms", 5000));
+    }
+
+    private Duration millis(String host, String name, long defaultValue) {
+        return Duration.ofMillis(property(host, name, Long.class, defaultValue));
+    }
+
+    private <T> T property(String host, String name, Class<T> type, T defaultValue) {
+        return environment.getProperty("http-client." + host + "." + name, type, defaultValue);
+    }
+}
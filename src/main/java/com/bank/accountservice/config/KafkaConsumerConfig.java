@@ -0,0 +1,56 @@
+package com.bank.accountservice.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.KafkaException;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ErrorHandler;
+import org.springframework.kafka.listener.KafkaConsumerBackoffManager;
+import org.springframework.kafka.listener.ListenerContainerRegistry;
+import org.springframework.kafka.listener.PartitionPausingBackoffManager;
+import org.springframework.kafka.listener.SeekToCurrentErrorHandler;
+import org.springframework.kafka.listener.SeekUtils;
+import org.springframework.util.backoff.FixedBackOff;
+
+/**
+ * Listener container setup for delayed retries. A retry record that is not due yet pauses its partition
+ * and is seeked back instead of being acknowledged, so the wait survives restarts and rebalances; the
+ * partition is resumed from the idle partition events once the record is due.
+ */
+@Configuration
+@Slf4j
+public class KafkaConsumerConfig {
+    @Value("${kafka.listener.idle-partition-event-interval-ms:1000}")
+    private long idlePartitionEventIntervalMs;
+
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> kafkaListenerContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> kafkaConsumerFactory) {
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, kafkaConsumerFactory);
+        factory.getContainerProperties().setIdlePartitionEventInterval(idlePartitionEventIntervalMs);
+        return factory;
+    }
+
+    @Bean
+    public KafkaConsumerBackoffManager kafkaConsumerBackoffManager(ListenerContainerRegistry registry) {
+        return new PartitionPausingBackoffManager(registry);
+    }
+
+    @Bean
+    public ErrorHandler kafkaErrorHandler() {
+        return new SeekToCurrentErrorHandler((record, error) -> {
+            if (SeekUtils.isBackoffException(error)) {
+                throw new KafkaException("Partition is backing off", error);
+            }
+            log.error("Skipping record {}-{}@{} after repeated failures: {}",
+                    record.topic(), record.partition(), record.offset(), error.getMessage());
+        }, new FixedBackOff(0L, 9L));
+    }
+}
@@ -0,0 +1,14 @@
+package com.bank.accountservice.config;
+
+import com.bank.accountservice.model.money.MoneyConverters;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.mongodb.core.convert.MongoCustomConversions;
+
+@Configuration
+public class MongoConfig {
+    @Bean
+    public MongoCustomConversions mongoCustomConversions() {
+        return new MongoCustomConversions(MoneyConverters.converters());
+    }
+}
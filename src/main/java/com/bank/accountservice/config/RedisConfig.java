@@ -1,22 +1,31 @@
 package com.bank.accountservice.config;
 import io.lettuce.core.ClientOptions;
+import io.lettuce.core.ReadFrom;
 import io.lettuce.core.SocketOptions;
+import io.lettuce.core.cluster.ClusterClientOptions;
+import io.lettuce.core.cluster.ClusterTopologyRefreshOptions;
+import io.lettuce.core.resource.ClientResources;
+import io.lettuce.core.resource.DefaultClientResources;
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.actuate.health.AbstractHealthIndicator;
-import org.springframework.boot.actuate.health.Health;
-import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 import org.springframework.data.redis.connection.*;
 import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnection;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
 
 @Configuration
 public class RedisConfig {
@@ -30,37 +39,133 @@ public class RedisConfig {
     private boolean redisSsl;
     @Value("${spring.data.redis.timeout:10000}")
     private int timeout;
+    //standalone, sentinel or cluster
+    @Value("${spring.data.redis.mode:standalone}")
+    private String mode;
+    @Value("${spring.data.redis.cluster.nodes:}")
+    private String clusterNodes;
+    @Value("${spring.data.redis.cluster.max-redirects:3}")
+    private int clusterMaxRedirects;
+    @Value("${spring.data.redis.cluster.refresh-period-ms:60000}")
+    private long clusterRefreshPeriodMs;
+    @Value("${spring.data.redis.sentinel.master:}")
+    private String sentinelMaster;
+    @Value("${spring.data.redis.sentinel.nodes:}")
+    private String sentinelNodes;
+    //Lettuce ReadFrom name, e.g. replicaPreferred; only used with sentinel or cluster
+    @Value("${spring.data.redis.read-from:}")
+    private String readFrom;
+    @Value("${spring.data.redis.pool.enabled:false}")
+    private boolean poolEnabled;
+    @Value("${spring.data.redis.pool.max-active:8}")
+    private int poolMaxActive;
+    @Value("${spring.data.redis.pool.max-idle:8}")
+    private int poolMaxIdle;
+    @Value("${spring.data.redis.pool.min-idle:0}")
+    private int poolMinIdle;
+    @Value("${spring.data.redis.pool.max-wait-ms:-1}")
+    private long poolMaxWaitMs;
+    //Commands buffered before a flush in pipelined mode; 1 flushes every command
+    @Value("${spring.data.redis.pipelining.flush-after:1}")
+    private int pipeliningFlushAfter;
+    //0 keeps the Lettuce default (number of available processors)
+    @Value("${spring.data.redis.client-resources.io-threads:0}")
+    private int ioThreads;
+    @Value("${spring.data.redis.client-resources.computation-threads:0}")
+    private int computationThreads;
+    @Value("${redis.health.cache-ms:5000}")
+    private long healthCacheMs;
+    @Value("${redis.health.timeout-ms:1000}")
+    private long healthTimeoutMs;
     private RedisStandaloneConfiguration createRedisConfiguration() {
         RedisStandaloneConfiguration redisConfig = new RedisStandaloneConfiguration(redisHost, redisPort);
         redisConfig.setPassword(RedisPassword.of(redisPassword));
         return redisConfig;
     }
-    private LettuceClientConfiguration createLettuceConfiguration(boolean useSsl) {
-        LettuceClientConfiguration.LettuceClientConfigurationBuilder builder = LettuceClientConfiguration.builder()
+    private RedisClusterConfiguration createClusterConfiguration() {
+        RedisClusterConfiguration clusterConfig = new RedisClusterConfiguration(nodes(clusterNodes));
+        clusterConfig.setMaxRedirects(clusterMaxRedirects);
+        clusterConfig.setPassword(RedisPassword.of(redisPassword));
+        return clusterConfig;
+    }
+    private RedisSentinelConfiguration createSentinelConfiguration() {
+        RedisSentinelConfiguration sentinelConfig = new RedisSentinelConfiguration(sentinelMaster,
+                new HashSet<>(nodes(sentinelNodes)));
+        sentinelConfig.setPassword(RedisPassword.of(redisPassword));
+        return sentinelConfig;
+    }
+    private static List<String> nodes(String nodes) {
+        return Arrays.stream(nodes.split(","))
+                .map(String::trim)
+                .filter(node -> !node.isEmpty())
+                .collect(Collectors.toList());
+    }
+    private LettuceClientConfiguration createLettuceConfiguration(ClientResources clientResources) {
+        LettuceClientConfiguration.LettuceClientConfigurationBuilder builder = poolEnabled
+                ? LettucePoolingClientConfiguration.builder().poolConfig(createPoolConfig())
+                : LettuceClientConfiguration.builder();
+        SocketOptions socketOptions = SocketOptions.builder()
+                .connectTimeout(Duration.ofMillis(timeout))
+                .build();
+        ClientOptions clientOptions = "cluster".equalsIgnoreCase(mode)
+                ? ClusterClientOptions.builder()
+                        .socketOptions(socketOptions)
+                        .topologyRefreshOptions(ClusterTopologyRefreshOptions.builder()
+                                .enableAllAdaptiveRefreshTriggers()
+                                .enablePeriodicRefresh(Duration.ofMillis(clusterRefreshPeriodMs))
+                                .build())
+                        .build()
+                : ClientOptions.builder()
+                        .socketOptions(socketOptions)
+                        .build();
+        builder.clientResources(clientResources)
                 .commandTimeout(Duration.ofMillis(timeout))
                 .shutdownTimeout(Duration.ZERO)
-                .clientOptions(ClientOptions.builder()
-                        .socketOptions(SocketOptions.builder()
-                                .connectTimeout(Duration.ofMillis(timeout))
-                                .build())
-                        .build());
-        if (useSsl) {
+                .clientOptions(clientOptions);
+        if (!readFrom.isEmpty() && !"standalone".equalsIgnoreCase(mode)) {
+            builder.readFrom(ReadFrom.valueOf(readFrom));
+        }
+        if (redisSsl) {
             builder.useSsl();
         }
         return builder.build();
     }
-    @Bean
-    @Primary
-    public RedisConnectionFactory redisConnectionFactory() {
-        return new LettuceConnectionFactory(
-                createRedisConfiguration(),
-                createLettuceConfiguration(redisSsl));
+    private GenericObjectPoolConfig<?> createPoolConfig() {
+        GenericObjectPoolConfig<?> poolConfig = new GenericObjectPoolConfig<>();
+        poolConfig.setMaxTotal(poolMaxActive);
+        poolConfig.setMaxIdle(poolMaxIdle);
+        poolConfig.setMinIdle(poolMinIdle);
+        poolConfig.setMaxWaitMillis(poolMaxWaitMs);
+        return poolConfig;
     }
+    @Bean(destroyMethod = "shutdown")
+    public ClientResources redisClientResources() {
+        DefaultClientResources.Builder builder = DefaultClientResources.builder();
+        if (ioThreads > 0) {
+            builder.ioThreadPoolSize(ioThreads);
+        }
+        if (computationThreads > 0) {
+            builder.computationThreadPoolSize(computationThreads);
+        }
+        return builder.build();
+    }
+    //One factory serves both the blocking and the reactive templates over the same shared native connection
     @Bean
-    public ReactiveRedisConnectionFactory reactiveRedisConnectionFactory() {
-        return new LettuceConnectionFactory(
-                createRedisConfiguration(),
-                createLettuceConfiguration(redisSsl));
+    @Primary
+    public LettuceConnectionFactory redisConnectionFactory(ClientResources redisClientResources) {
+        LettuceClientConfiguration clientConfiguration = createLettuceConfiguration(redisClientResources);
+        LettuceConnectionFactory connectionFactory;
+        if ("cluster".equalsIgnoreCase(mode)) {
+            connectionFactory = new LettuceConnectionFactory(createClusterConfiguration(), clientConfiguration);
+        } else if ("sentinel".equalsIgnoreCase(mode)) {
+            connectionFactory = new LettuceConnectionFactory(createSentinelConfiguration(), clientConfiguration);
+        } else {
+            connectionFactory = new LettuceConnectionFactory(createRedisConfiguration(), clientConfiguration);
+        }
+        connectionFactory.setPipeliningFlushPolicy(pipeliningFlushAfter > 1
+                ? LettuceConnection.PipeliningFlushPolicy.buffered(pipeliningFlushAfter)
+                : LettuceConnection.PipeliningFlushPolicy.flushEachCommand());
+        return connectionFactory;
     }
     @Bean
     @Primary
@@ -84,20 +189,8 @@ public class RedisConfig {
         return template;
     }
     @Bean
-    public HealthIndicator redisHealthIndicator(ReactiveRedisConnectionFactory redisConnectionFactory) {
-        return new AbstractHealthIndicator() {
-            @Override
-            protected void doHealthCheck(Health.Builder builder) {
-                try {
-                    ReactiveRedisConnection connection = redisConnectionFactory.getReactiveConnection();
-                    connection.ping()
-                            .block(Duration.ofSeconds(1));
-                    builder.up();
-                    connection.close();
-                } catch (Exception e) {
-                    builder.down(e);
-                }
-            }
-        };
+    public RedisHealthIndicator redisHealthIndicator(ReactiveRedisConnectionFactory redisConnectionFactory) {
+        return new RedisHealthIndicator(redisConnectionFactory, Duration.ofMillis(healthCacheMs),
+                Duration.ofMillis(healthTimeoutMs));
     }
 }
\ No newline at end of file
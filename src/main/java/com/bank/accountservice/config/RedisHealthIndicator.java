@@ -0,0 +1,74 @@
+package com.bank.accountservice.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.ReactiveHealthIndicator;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Reactive Redis health check. Probes within the cache interval share the last result (or the ping in
+ * flight), and the ping goes over one long-lived connection that is only replaced after a failure.
+ */
+@Slf4j
+public class RedisHealthIndicator implements ReactiveHealthIndicator {
+    private final ReactiveRedisConnectionFactory connectionFactory;
+    private final Duration timeout;
+    private final Mono<Health> cachedHealth;
+    private final AtomicReference<ReactiveRedisConnection> connection = new AtomicReference<>();
+
+    public RedisHealthIndicator(ReactiveRedisConnectionFactory connectionFactory, Duration cacheInterval,
+                                Duration timeout) {
+        this.connectionFactory = connectionFactory;
+        this.timeout = timeout;
+        this.cachedHealth = Mono.defer(this::ping).cache(cacheInterval);
+    }
+
+    @Override
+    public Mono<Health> health() {
+        return cachedHealth;
+    }
+
+    public void close() {
+        release(connection.getAndSet(null));
+    }
+
+    private Mono<Health> ping() {
+        long start = System.nanoTime();
+        return Mono.defer(() -> sharedConnection().ping())
+                .timeout(timeout)
+                .map(pong -> Health.up()
+                        .withDetail("ping", pong)
+                        .withDetail("latencyMs", Duration.ofNanos(System.nanoTime() - start).toMillis())
+                        .build())
+                .onErrorResume(e -> {
+                    log.warn("Redis health check failed: {}", e.getMessage());
+                    release(connection.getAndSet(null));
+                    return Mono.just(Health.down().withException(e).build());
+                });
+    }
+
+    private ReactiveRedisConnection sharedConnection() {
+        ReactiveRedisConnection current = connection.get();
+        if (current != null) {
+            return current;
+        }
+        ReactiveRedisConnection created = connectionFactory.getReactiveConnection();
+        if (connection.compareAndSet(null, created)) {
+            return created;
+        }
+        release(created);
+        return connection.get();
+    }
+
+    private static void release(ReactiveRedisConnection stale) {
+        if (stale != null) {
+            stale.closeLater()
+                    .subscribe(null, e -> log.warn("Error closing Redis health connection: {}", e.getMessage()));
+        }
+    }
+}
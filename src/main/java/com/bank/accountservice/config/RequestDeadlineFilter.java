@@ -0,0 +1,49 @@
+package com.bank.accountservice.config;
+
+import com.bank.accountservice.client.RequestDeadline;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Starts the deadline of every incoming request: the caller's own X-Request-Timeout-Ms when it sends one,
+ * otherwise request-deadline.default-ms, never more than request-deadline.max-ms.
+ */
+@Slf4j
+@Component
+public class RequestDeadlineFilter implements WebFilter {
+    private final long defaultTimeoutMs;
+    private final long maxTimeoutMs;
+
+    public RequestDeadlineFilter(@Value("${request-deadline.default-ms:10000}") long defaultTimeoutMs,
+                                 @Value("${request-deadline.max-ms:30000}") long maxTimeoutMs) {
+        this.defaultTimeoutMs = defaultTimeoutMs;
+        this.maxTimeoutMs = maxTimeoutMs;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        long timeoutMs = timeoutMs(exchange.getRequest().getHeaders().getFirst(RequestDeadline.TIMEOUT_HEADER));
+        RequestDeadline deadline = RequestDeadline.after(Duration.ofMillis(timeoutMs));
+        return chain.filter(exchange)
+                .contextWrite(context -> RequestDeadline.with(context, deadline));
+    }
+
+    long timeoutMs(String header) {
+        if (header == null) {
+            return defaultTimeoutMs;
+        }
+        try {
+            return Math.max(0, Math.min(maxTimeoutMs, Long.parseLong(header.trim())));
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid {} header: {}", RequestDeadline.TIMEOUT_HEADER, header);
+            return defaultTimeoutMs;
+        }
+    }
+}
@@ -1,79 +1,40 @@
 package com.bank.accountservice.config;
 
-import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
-import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.github.resilience4j.circuitbreaker.event.CircuitBreakerOnStateTransitionEvent;
+import io.github.resilience4j.core.registry.EntryAddedEvent;
+import io.github.resilience4j.core.registry.EntryRemovedEvent;
+import io.github.resilience4j.core.registry.EntryReplacedEvent;
+import io.github.resilience4j.core.registry.RegistryEventConsumer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.reactive.function.client.WebClientResponseException;
-import java.io.IOException;
-import java.net.ConnectException;
-import java.time.Duration;
-import java.util.concurrent.TimeoutException;
+//Breakers and bulkheads come from resilience4j.circuitbreaker.* / resilience4j.bulkhead.* in application.yml
 @Configuration
 @Slf4j
 public class Resilience4jConfig {
     @Bean
-    public CircuitBreakerRegistry circuitBreakerRegistry() {
-
-        CircuitBreakerConfig circuitBreakerConfig = CircuitBreakerConfig.custom()
-                .slidingWindowSize(10)
-                .failureRateThreshold(50)
-                .waitDurationInOpenState(Duration.ofSeconds(10))
-                .permittedNumberOfCallsInHalfOpenState(3)
-                .slowCallDurationThreshold(Duration.ofSeconds(5))
-                .slowCallRateThreshold(50)
-                .recordExceptions(
-                        IOException.class,
-                        ConnectException.class,
-                        WebClientResponseException.class,
-                        TimeoutException.class,
-                        RuntimeException.class
-                )
-                .build();
-
-        CircuitBreakerRegistry registry = CircuitBreakerRegistry.of(circuitBreakerConfig);
-
-        io.github.resilience4j.circuitbreaker.CircuitBreaker customerCircuitBreaker =
-                registry.circuitBreaker("customerService");
-        log.info("Circuit breaker '{}' created with state: {}",
-                customerCircuitBreaker.getName(), customerCircuitBreaker.getState());
-
-        customerCircuitBreaker.getEventPublisher()
-                .onStateTransition(this::logStateTransition)
-                .onError(event -> log.error("Circuit breaker '{}' recorded an error: {}",
-                        event.getCircuitBreakerName(), event.getThrowable().getMessage()))
-                .onSuccess(event -> log.debug("Circuit breaker '{}' recorded a success",
-                        event.getCircuitBreakerName()));
-
-
-        io.github.resilience4j.circuitbreaker.CircuitBreaker creditCircuitBreaker =
-                registry.circuitBreaker("creditService");
-        log.info("Circuit breaker '{}' created with state: {}",
-                creditCircuitBreaker.getName(), creditCircuitBreaker.getState());
-
-        creditCircuitBreaker.getEventPublisher()
-                .onStateTransition(this::logStateTransition)
-                .onError(event -> log.error("Circuit breaker '{}' recorded an error: {}",
-                        event.getCircuitBreakerName(), event.getThrowable().getMessage()))
-                .onSuccess(event -> log.debug("Circuit breaker '{}' recorded a success",
-                        event.getCircuitBreakerName()));
-
-        io.github.resilience4j.circuitbreaker.CircuitBreaker customerEligibilityCircuitBreaker =
-                registry.circuitBreaker("customerEligibilityService");
-        log.info("Circuit breaker '{}' created with state: {}",
-                customerEligibilityCircuitBreaker.getName(), customerEligibilityCircuitBreaker.getState());
-
-        customerEligibilityCircuitBreaker.getEventPublisher()
-                .onStateTransition(this::logStateTransition)
-                .onError(event -> log.error("Circuit breaker '{}' recorded an error: {}",
-                        event.getCircuitBreakerName(), event.getThrowable().getMessage()))
-                .onSuccess(event -> log.debug("Circuit breaker '{}' recorded a success",
-                        event.getCircuitBreakerName()));
-
-
-        return registry;
+    public RegistryEventConsumer<CircuitBreaker> circuitBreakerLoggingConsumer() {
+        return new RegistryEventConsumer<>() {
+            @Override
+            public void onEntryAddedEvent(EntryAddedEvent<CircuitBreaker> entryAddedEvent) {
+                CircuitBreaker circuitBreaker = entryAddedEvent.getAddedEntry();
+                log.info("Circuit breaker '{}' created with state: {}",
+                        circuitBreaker.getName(), circuitBreaker.getState());
+                circuitBreaker.getEventPublisher()
+                        .onStateTransition(Resilience4jConfig.this::logStateTransition)
+                        .onError(event -> log.error("Circuit breaker '{}' recorded an error: {}",
+                                event.getCircuitBreakerName(), event.getThrowable().getMessage()))
+                        .onSuccess(event -> log.debug("Circuit breaker '{}' recorded a success",
+                                event.getCircuitBreakerName()));
+            }
+            @Override
+            public void onEntryRemovedEvent(EntryRemovedEvent<CircuitBreaker> entryRemoveEvent) {
+            }
+            @Override
+            public void onEntryReplacedEvent(EntryReplacedEvent<CircuitBreaker> entryReplacedEvent) {
+            }
+        };
     }
     private void logStateTransition(CircuitBreakerOnStateTransitionEvent event) {
         log.info("CircuitBreaker '{}' transitioned from {} to {}",
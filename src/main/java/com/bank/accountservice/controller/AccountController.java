@@ -1,5 +1,7 @@
 package com.bank.accountservice.controller;
+import com.bank.accountservice.client.RequestDeadlineExceededException;
 import com.bank.accountservice.dto.BaseResponse;
+import com.bank.accountservice.dto.BulkItemResult;
 import com.bank.accountservice.model.account.Account;
 import com.bank.accountservice.service.AccountService;
 import org.springframework.http.HttpStatus;
@@ -26,9 +28,36 @@ public class AccountController {
                                 .message("Account created successfully")
                                 .data(savedAccount)
                                 .build()))
+                .onErrorResume(e -> {
+                    HttpStatus status = e instanceof RequestDeadlineExceededException ? HttpStatus.GATEWAY_TIMEOUT
+                        : HttpStatus.BAD_REQUEST;
+                    return Mono.just(ResponseEntity
+                            .status(status)
+                            .body(BaseResponse.<Account>builder()
+                                    .status(status.value())
+                                    .message(e.getMessage())
+                                    .data(null)
+                                    .build()));
+                });
+    }
+    @PostMapping("/bulk")
+    public Mono<ResponseEntity<BaseResponse<List<BulkItemResult<Account>>>>> createAccounts(
+            @RequestBody List<Account> accounts) {
+        return accountService.createAccounts(accounts)
+                .map(results -> {
+                    long created = results.stream().filter(BulkItemResult::isSuccess).count();
+                    HttpStatus status = created == results.size() ? HttpStatus.CREATED
+                        : created == 0 ? HttpStatus.BAD_REQUEST : HttpStatus.MULTI_STATUS;
+                    return ResponseEntity.status(status)
+                            .body(BaseResponse.<List<BulkItemResult<Account>>>builder()
+                                    .status(status.value())
+                                    .message(created + " of " + results.size() + " accounts created")
+                                    .data(results)
+                                    .build());
+                })
                 .onErrorResume(e -> Mono.just(ResponseEntity
                         .status(HttpStatus.BAD_REQUEST)
-                        .body(BaseResponse.<Account>builder()
+                        .body(BaseResponse.<List<BulkItemResult<Account>>>builder()
                                 .status(HttpStatus.BAD_REQUEST.value())
                                 .message(e.getMessage())
                                 .data(null)
@@ -5,8 +5,10 @@ import com.bank.accountservice.model.debitcard.DebitCard;
 import com.bank.accountservice.service.DebitCardService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import java.util.Collections;
 import java.util.List;
@@ -34,6 +36,29 @@ public class DebitCardController {
                                 .data(null)
                                 .build())));
     }
+    @PostMapping("/bulk")
+    public Mono<ResponseEntity<BaseResponse<List<BulkItemResult<DebitCard>>>>> createDebitCards(
+            @RequestBody List<CreateCardRequest> requests) {
+        return debitCardService.createDebitCards(requests)
+                .map(results -> {
+                    long created = results.stream().filter(BulkItemResult::isSuccess).count();
+                    HttpStatus status = created == results.size() ? HttpStatus.OK
+                        : created == 0 ? HttpStatus.BAD_REQUEST : HttpStatus.MULTI_STATUS;
+                    return ResponseEntity.status(status)
+                            .body(BaseResponse.<List<BulkItemResult<DebitCard>>>builder()
+                                    .status(status.value())
+                                    .message(created + " of " + results.size() + " debit cards created")
+                                    .data(results)
+                                    .build());
+                })
+                .onErrorResume(e -> Mono.just(ResponseEntity
+                        .status(HttpStatus.BAD_REQUEST)
+                        .body(BaseResponse.<List<BulkItemResult<DebitCard>>>builder()
+                                .status(HttpStatus.BAD_REQUEST.value())
+                                .message(e.getMessage())
+                                .data(null)
+                                .build())));
+    }
     @GetMapping("/customer/{customerId}")
     public Mono<ResponseEntity<BaseResponse<List<DebitCard>>>> getDebitCardsByCustomer(
             @PathVariable String customerId) {
@@ -160,6 +185,27 @@ public class DebitCardController {
                                 null
                         ))));
     }
+    @PutMapping("/status/bulk")
+    public Mono<ResponseEntity<BaseResponse<BulkStatusUpdateResult>>> updateCardStatuses(
+            @RequestBody BulkStatusUpdateRequest request) {
+        return debitCardService.updateCardStatuses(request)
+                .map(result -> ResponseEntity.ok(
+                        new BaseResponse<>(
+                                HttpStatus.OK.value(),
+                                result.getModifiedCount() + " card statuses updated",
+                                result
+                        )))
+                .onErrorResume(e -> Mono.just(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                        .body(new BaseResponse<>(
+                                HttpStatus.BAD_REQUEST.value(),
+                                e.getMessage(),
+                                null
+                        ))));
+    }
+    @PutMapping(value = "/status/bulk/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<String> streamCardStatusUpdates(@RequestBody BulkStatusUpdateRequest request) {
+        return debitCardService.streamCardStatusUpdates(request);
+    }
     @GetMapping("/by-account/{accountId}")
     public Mono<ResponseEntity<BaseResponse<List<DebitCard>>>> getDebitCardsByAccount(@PathVariable String accountId) {
         return debitCardService.getDebitCardsByAccountId(accountId)
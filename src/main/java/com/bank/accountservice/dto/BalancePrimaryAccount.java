@@ -1,5 +1,6 @@
 package com.bank.accountservice.dto;
 
+import com.bank.accountservice.model.money.Money;
 import lombok.*;
 
 @Data
@@ -12,5 +13,5 @@ public class BalancePrimaryAccount {
     private String cardId;
     private String cardNumber;
     private String primaryAccountId;
-    private double balancePrimaryAccount;
+    private Money balancePrimaryAccount;
 }
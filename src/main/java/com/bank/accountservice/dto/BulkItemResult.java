@@ -0,0 +1,14 @@
+package com.bank.accountservice.dto;
+import lombok.*;
+@Data
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BulkItemResult<T> {
+    private int index;
+    private boolean success;
+    private String message;
+    private T data;
+}
@@ -0,0 +1,20 @@
+package com.bank.accountservice.dto;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BulkStatusUpdateRequest {
+    private String status;
+    private List<String> cardIds;
+    private String customerId;
+    private String currentStatus;
+    private LocalDateTime expiringBefore;
+}
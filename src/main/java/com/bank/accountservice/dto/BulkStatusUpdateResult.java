@@ -0,0 +1,15 @@
+package com.bank.accountservice.dto;
+
+import lombok.*;
+
+@Data
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BulkStatusUpdateResult {
+    private String status;
+    private long matchedCount;
+    private long modifiedCount;
+}
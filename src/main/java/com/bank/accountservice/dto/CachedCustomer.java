@@ -0,0 +1,15 @@
+package com.bank.accountservice.dto;
+import com.bank.accountservice.model.customer.Customer;
+import lombok.*;
+
+import java.time.Instant;
+@Data
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class CachedCustomer {
+    private Instant cachedAt;
+    private Customer customer;
+}
@@ -0,0 +1,23 @@
+package com.bank.accountservice.dto.accountevent;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountEventEnvelope {
+    public static final int SCHEMA_VERSION = 1;
+    private int schemaVersion;
+    private String eventType;
+    private String accountId;
+    private String customerId;
+    //Only the fields that changed; the full non-null document for ACCOUNT_CREATED
+    private Map<String, Object> changes;
+    private long occurredAt;
+}
@@ -1,11 +1,10 @@
 package com.bank.accountservice.dto.cardlink;
 
+import com.bank.accountservice.model.money.Money;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
-import java.math.BigDecimal;
-
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
@@ -13,5 +12,5 @@ public class CardLinkRequestedEvent {
     private String phoneNumber;
     private String cardNumber;
     private String documentNumber;
-    private BigDecimal currentBalance;
+    private Money currentBalance;
 }
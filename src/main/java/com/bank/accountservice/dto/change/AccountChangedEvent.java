@@ -0,0 +1,14 @@
+package com.bank.accountservice.dto.change;
+
+import com.bank.accountservice.model.account.Account;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class AccountChangedEvent {
+    private String accountId;
+    private String operationType;
+    //Null for deletes
+    private Account account;
+}
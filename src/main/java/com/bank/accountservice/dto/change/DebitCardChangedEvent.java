@@ -0,0 +1,14 @@
+package com.bank.accountservice.dto.change;
+
+import com.bank.accountservice.model.debitcard.DebitCard;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class DebitCardChangedEvent {
+    private String cardId;
+    private String operationType;
+    //Null for deletes
+    private DebitCard debitCard;
+}
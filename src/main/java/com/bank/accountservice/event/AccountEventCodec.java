@@ -0,0 +1,79 @@
+package com.bank.accountservice.event;
+
+import com.bank.accountservice.dto.accountevent.AccountEventEnvelope;
+import com.bank.accountservice.model.account.Account;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+public class AccountEventCodec {
+    public static final String JSON_CONTENT_TYPE = "application/json";
+    public static final String SMILE_CONTENT_TYPE = "application/x-jackson-smile";
+    private static final TypeReference<Map<String, Object>> FIELDS_TYPE = new TypeReference<>() { };
+    private final ObjectMapper jsonMapper;
+    private final ObjectMapper smileMapper;
+
+    public AccountEventCodec() {
+        this.jsonMapper = configure(new ObjectMapper());
+        this.smileMapper = configure(new SmileMapper());
+    }
+
+    private static ObjectMapper configure(ObjectMapper mapper) {
+        mapper.registerModule(new JavaTimeModule());
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        return mapper;
+    }
+
+    public Map<String, Object> fields(Account account) {
+        Map<String, Object> fields = jsonMapper.convertValue(account, FIELDS_TYPE);
+        fields.values().removeIf(Objects::isNull);
+        return fields;
+    }
+
+    public Map<String, Object> diff(Account previous, Account current) {
+        Map<String, Object> before = jsonMapper.convertValue(previous, FIELDS_TYPE);
+        Map<String, Object> after = jsonMapper.convertValue(current, FIELDS_TYPE);
+        Map<String, Object> changes = new LinkedHashMap<>();
+        after.forEach((field, value) -> {
+            if (!Objects.equals(before.get(field), value)) {
+                changes.put(field, value);
+            }
+        });
+        return changes;
+    }
+
+    public byte[] encode(AccountEventEnvelope envelope, AccountEventFormat format) {
+        try {
+            return mapperFor(format).writeValueAsBytes(envelope);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Error serializing account event", e);
+        }
+    }
+
+    public AccountEventEnvelope decode(byte[] payload, AccountEventFormat format) {
+        try {
+            return mapperFor(format).readValue(payload, AccountEventEnvelope.class);
+        } catch (IOException e) {
+            throw new IllegalStateException("Error deserializing account event", e);
+        }
+    }
+
+    public String contentType(AccountEventFormat format) {
+        return format == AccountEventFormat.BINARY ? SMILE_CONTENT_TYPE : JSON_CONTENT_TYPE;
+    }
+
+    private ObjectMapper mapperFor(AccountEventFormat format) {
+        if (format == AccountEventFormat.FULL) {
+            throw new IllegalArgumentException("The FULL format publishes the Account document, not an envelope");
+        }
+        return format == AccountEventFormat.BINARY ? smileMapper : jsonMapper;
+    }
+}
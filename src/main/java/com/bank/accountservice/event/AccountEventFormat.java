@@ -0,0 +1,5 @@
+package com.bank.accountservice.event;
+
+public enum AccountEventFormat {
+    FULL, COMPACT, BINARY
+}
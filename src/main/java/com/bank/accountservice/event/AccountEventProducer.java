@@ -1,28 +1,138 @@
 package com.bank.accountservice.event;
 
+import com.bank.accountservice.dto.accountevent.AccountEventEnvelope;
 import com.bank.accountservice.model.account.Account;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Service;
+import org.springframework.util.concurrent.ListenableFuture;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
 
 @Slf4j
 @Service
 public class AccountEventProducer {
+    public static final String SCHEMA_VERSION_HEADER = "schema-version";
+    public static final String CONTENT_TYPE_HEADER = "content-type";
+    private static final String ACCOUNT_CREATED_TOPIC = "account-created";
+    private static final String ACCOUNT_UPDATED_TOPIC = "account-updated";
     private final KafkaTemplate<String, Account> kafkaTemplate;
+    private final KafkaTemplate<String, byte[]> envelopeTemplate;
+    private final AccountEventFormat format;
+    private final AccountEventCodec codec = new AccountEventCodec();
 
     public AccountEventProducer(KafkaTemplate<String, Account> kafkaTemplate) {
+        this(kafkaTemplate, AccountEventFormat.FULL, null);
+    }
+
+    @Autowired
+    public AccountEventProducer(KafkaTemplate<String, Account> kafkaTemplate,
+                                @Value("${account-events.format:FULL}") AccountEventFormat format) {
+        this(kafkaTemplate, format, format == AccountEventFormat.FULL ? null : envelopeTemplate(kafkaTemplate));
+    }
+
+    AccountEventProducer(KafkaTemplate<String, Account> kafkaTemplate,
+                         AccountEventFormat format,
+                         KafkaTemplate<String, byte[]> envelopeTemplate) {
         this.kafkaTemplate = kafkaTemplate;
+        this.format = format;
+        this.envelopeTemplate = envelopeTemplate;
+        log.info("Account events will be published in {} format", format);
+    }
+
+    private static KafkaTemplate<String, byte[]> envelopeTemplate(KafkaTemplate<String, Account> kafkaTemplate) {
+        Map<String, Object> producerConfig = kafkaTemplate.getProducerFactory().getConfigurationProperties();
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(producerConfig,
+                new StringSerializer(), new ByteArraySerializer()));
     }
+
     public void publishAccountCreated(Account account) {
-        kafkaTemplate.send("account-created", account.getId(), account)
-                .addCallback(
-                    result -> log.info("Account sent successfully"),
-                    ex -> log.error("Failed to send message", ex));
+        sendAccountCreated(account);
     }
+
     public void publishAccountUpdate(Account account) {
-        kafkaTemplate.send("account-updated", account.getId(), account)
-                .addCallback(
-                    result -> log.info("Account update successfully"),
-                    ex -> log.error("Failed to send message", ex));
+        sendAccountUpdate(account);
+    }
+
+    //Completes once the broker has acknowledged the event
+    public Mono<Void> emitAccountCreated(Account account) {
+        return Mono.defer(() -> Mono.fromFuture(sendAccountCreated(account).completable())).then();
+    }
+
+    public Mono<Void> emitAccountUpdate(Account account) {
+        return Mono.defer(() -> Mono.fromFuture(sendAccountUpdate(account).completable())).then();
+    }
+
+    private ListenableFuture<? extends SendResult<String, ?>> sendAccountCreated(Account account) {
+        if (format == AccountEventFormat.FULL) {
+            ListenableFuture<SendResult<String, Account>> future =
+                    kafkaTemplate.send(ACCOUNT_CREATED_TOPIC, account.getId(), account);
+            future.addCallback(
+                result -> log.info("Account sent successfully"),
+                ex -> log.error("Failed to send message", ex));
+            return future;
+        }
+        return publishEnvelope(ACCOUNT_CREATED_TOPIC, "ACCOUNT_CREATED", account, codec.fields(account));
+    }
+
+    private ListenableFuture<? extends SendResult<String, ?>> sendAccountUpdate(Account account) {
+        if (format == AccountEventFormat.FULL) {
+            ListenableFuture<SendResult<String, Account>> future =
+                    kafkaTemplate.send(ACCOUNT_UPDATED_TOPIC, account.getId(), account);
+            future.addCallback(
+                result -> log.info("Account update successfully"),
+                ex -> log.error("Failed to send message", ex));
+            return future;
+        }
+        return publishEnvelope(ACCOUNT_UPDATED_TOPIC, "ACCOUNT_UPDATED", account, codec.fields(account));
+    }
+
+    public void publishAccountUpdate(Account previous, Account account) {
+        if (format == AccountEventFormat.FULL) {
+            publishAccountUpdate(account);
+            return;
+        }
+        publishEnvelope(ACCOUNT_UPDATED_TOPIC, "ACCOUNT_UPDATED", account, codec.diff(previous, account));
+    }
+
+    private ListenableFuture<SendResult<String, byte[]>> publishEnvelope(String topic, String eventType,
+                                                                         Account account,
+                                                                         Map<String, Object> changes) {
+        AccountEventEnvelope envelope = AccountEventEnvelope.builder()
+                .schemaVersion(AccountEventEnvelope.SCHEMA_VERSION)
+                .eventType(eventType)
+                .accountId(account.getId())
+                .customerId(account.getCustomerId())
+                .changes(changes)
+                .occurredAt(System.currentTimeMillis())
+                .build();
+        ProducerRecord<String, byte[]> record = new ProducerRecord<>(topic, account.getId(),
+                codec.encode(envelope, format));
+        record.headers().add(SCHEMA_VERSION_HEADER,
+                String.valueOf(AccountEventEnvelope.SCHEMA_VERSION).getBytes(StandardCharsets.UTF_8));
+        record.headers().add(CONTENT_TYPE_HEADER, codec.contentType(format).getBytes(StandardCharsets.UTF_8));
+        ListenableFuture<SendResult<String, byte[]>> future = envelopeTemplate.send(record);
+        future.addCallback(
+            result -> log.info("{} event sent for account {} with {} changed fields",
+                    eventType, account.getId(), changes.size()),
+            ex -> log.error("Failed to send message", ex));
+        return future;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (envelopeTemplate != null && envelopeTemplate.getProducerFactory() instanceof DefaultKafkaProducerFactory) {
+            ((DefaultKafkaProducerFactory<String, byte[]>) envelopeTemplate.getProducerFactory()).destroy();
+        }
     }
 }
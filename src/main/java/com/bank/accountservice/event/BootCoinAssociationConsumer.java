@@ -1,27 +1,70 @@
 package com.bank.accountservice.event;
 
 import com.bank.accountservice.client.CustomerClientService;
+import com.bank.accountservice.client.StageTimer;
 import com.bank.accountservice.dto.bootcoin.KafkaValidationRequest;
 import com.bank.accountservice.dto.bootcoin.KafkaValidationResponse;
 import com.bank.accountservice.model.account.AccountType;
 import com.bank.accountservice.repository.AccountRepository;
-import lombok.RequiredArgsConstructor;
+import com.bank.accountservice.service.AccountCacheService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class BootCoinAssociationConsumer {
+    private static final String KEY_SEPARATOR = "|";
+    private static final String ASSOCIATION_TOPIC = "bootcoin.bank.account.association";
     private final KafkaTemplate<String, Object> kafkaTemplate;
     private final AccountRepository accountRepository;
     private final CustomerClientService customerClientService;
-    @KafkaListener(topics = "bootcoin.bank.account.association", groupId = "account-service-group")
+    private final MeterRegistry meterRegistry;
+    private final Cache<String, Mono<Boolean>> validationCache;
+    //Cached validation keys by account, so a changed account is evicted without scanning the cache
+    private final Map<String, Set<String>> keysByAccount = new ConcurrentHashMap<>();
+
+    /**
+     * Cached validations of an account are dropped whenever the account cache sees it change: on writes
+     * made here, on evictions broadcast by other replicas and on changes from the database change stream.
+     */
+    public BootCoinAssociationConsumer(KafkaTemplate<String, Object> kafkaTemplate,
+                                       AccountRepository accountRepository,
+                                       CustomerClientService customerClientService,
+                                       AccountCacheService accountCacheService,
+                                       MeterRegistry meterRegistry,
+                                       @Value("${bootcoin.validation.cache-ttl-ms:30000}") long cacheTtlMs,
+                                       @Value("${bootcoin.validation.cache-max-size:10000}") long cacheMaxSize) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.accountRepository = accountRepository;
+        this.customerClientService = customerClientService;
+        this.meterRegistry = meterRegistry;
+        this.validationCache = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(cacheTtlMs))
+                .maximumSize(cacheMaxSize)
+                .executor(Runnable::run)
+                .removalListener(this::onValidationRemoved)
+                .build();
+        accountCacheService.addChangeListener(this::invalidateAccount);
+    }
+    @KafkaListener(topics = ASSOCIATION_TOPIC, groupId = "account-service-group")
     public void validateYankiAssociation(KafkaValidationRequest request) {
         validateAccount(request.getDocumentNumber(), request.getBankAccountId())
+                .transform(StageTimer.timed(meterRegistry, StageTimer.CONSUMER_TIMER,
+                    () -> Tags.of("topic", ASSOCIATION_TOPIC)))
                 .subscribe(isValid -> {
                     KafkaValidationResponse response = new KafkaValidationResponse(
                             request.getEventId(),
@@ -40,6 +83,32 @@ public class BootCoinAssociationConsumer {
                     });
     }
     public Mono<Boolean> validateAccount(String documentNumber, String accountId) {
+        String key = documentNumber + KEY_SEPARATOR + accountId;
+        Mono<Boolean> validation = validationCache.get(key, k -> {
+            keysByAccount.computeIfAbsent(accountId, id -> ConcurrentHashMap.newKeySet()).add(k);
+            return lookupAccount(documentNumber, accountId).cache();
+        });
+        return validation
+                .doOnError(error -> validationCache.asMap().remove(key, validation))
+                .onErrorResume(error -> {
+                    log.error("Error during customer validation: {}", error.getMessage());
+                    return Mono.just(false);
+                });
+    }
+    public void invalidateAccount(String accountId) {
+        Set<String> keys = keysByAccount.remove(accountId);
+        if (keys != null) {
+            validationCache.invalidateAll(keys);
+        }
+    }
+    private void onValidationRemoved(String key, Mono<Boolean> validation, RemovalCause cause) {
+        String accountId = key.substring(key.lastIndexOf(KEY_SEPARATOR) + 1);
+        keysByAccount.computeIfPresent(accountId, (id, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+    private Mono<Boolean> lookupAccount(String documentNumber, String accountId) {
         return customerClientService.getCustomerByDocumentNumber(documentNumber)
                 .flatMap(customer -> {
                     String customerId = customer.getId();
@@ -56,10 +125,6 @@ public class BootCoinAssociationConsumer {
                                 }
                             })
                             .defaultIfEmpty(false);
-                })
-                .onErrorResume(error -> {
-                    log.error("Error during customer validation: {}", error.getMessage());
-                    return Mono.just(false);
                 });
     }
 }
@@ -1,72 +1,276 @@
 package com.bank.accountservice.event;
 
 import com.bank.accountservice.client.CustomerClientService;
+import com.bank.accountservice.client.StageTimer;
 import com.bank.accountservice.dto.cardlink.CardLinkConfirmedEvent;
 import com.bank.accountservice.dto.cardlink.CardLinkRejectedEvent;
 import com.bank.accountservice.dto.cardlink.CardLinkRequestedEvent;
-import com.bank.accountservice.repository.AccountRepository;
-import com.bank.accountservice.repository.DebitCardRepository;
-import lombok.RequiredArgsConstructor;
+import com.bank.accountservice.model.account.Account;
+import com.bank.accountservice.model.cardlink.CardLinkApplication;
+import com.bank.accountservice.model.debitcard.DebitCard;
+import com.bank.accountservice.model.money.Money;
+import com.bank.accountservice.model.money.MoneyConverters;
+import com.bank.accountservice.service.AccountCacheService;
+import com.bank.accountservice.service.CardNumberIndex;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.KafkaConsumerBackoffManager;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 import reactor.core.publisher.Mono;
 
-import java.math.BigDecimal;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
 
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class CardLinkConsumer {
+    public static final String REQUESTED_TOPIC = "yanki.card.link.requested";
+    public static final String RETRY_TOPIC_PREFIX = REQUESTED_TOPIC + ".retry-";
+    public static final String DEAD_LETTER_TOPIC = REQUESTED_TOPIC + ".dlt";
+    public static final String NOT_BEFORE_HEADER = "card-link-not-before";
+    public static final String ATTEMPT_HEADER = "card-link-attempt";
+    public static final String ERROR_HEADER = "card-link-error";
+    public static final String EVENT_ID_HEADER = "card-link-event-id";
+    public static final String RETRY_LISTENER_ID = "card-link-retry";
     private final KafkaTemplate<String, Object> kafkaTemplate;
-    private final DebitCardRepository debitCardRepository;
+    private final CardNumberIndex cardNumberIndex;
     private final CustomerClientService customerClientService;
-    private final AccountRepository accountRepository;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final AccountCacheService accountCacheService;
+    private final MeterRegistry meterRegistry;
+    private final KafkaConsumerBackoffManager backoffManager;
+    private final KeyedEventScheduler cardScheduler;
+    private final KeyedEventScheduler accountScheduler;
+    private final Duration admissionTimeout;
+    private final int maxRetryAttempts;
+    private final long initialRetryDelayMs;
+    private final double retryMultiplier;
+    private final long maxRetryDelayMs;
+    private final Duration handleTimeout;
+    private final Duration applicationTtl;
 
-    @KafkaListener(topics = "yanki.card.link.requested", groupId = "account-service-group")
-    public void processCardLinkRequest(CardLinkRequestedEvent event) {
+    public CardLinkConsumer(KafkaTemplate<String, Object> kafkaTemplate,
+                            CardNumberIndex cardNumberIndex,
+                            CustomerClientService customerClientService,
+                            ReactiveMongoTemplate mongoTemplate,
+                            AccountCacheService accountCacheService,
+                            MeterRegistry meterRegistry,
+                            KafkaConsumerBackoffManager backoffManager,
+                            @Value("${card-link.processing.lanes:16}") int lanes,
+                            @Value("${card-link.processing.lane-capacity:256}") int laneCapacity,
+                            @Value("${card-link.processing.admission-timeout-ms:30000}") long admissionTimeoutMs,
+                            @Value("${card-link.retry.max-attempts:4}") int maxRetryAttempts,
+                            @Value("${card-link.retry.initial-delay-ms:1000}") long initialRetryDelayMs,
+                            @Value("${card-link.retry.multiplier:3.0}") double retryMultiplier,
+                            @Value("${card-link.retry.max-delay-ms:60000}") long maxRetryDelayMs,
+                            @Value("${card-link.processing.handle-timeout-ms:30000}") long handleTimeoutMs,
+                            @Value("${card-link.idempotency.ttl-ms:604800000}") long applicationTtlMs) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.cardNumberIndex = cardNumberIndex;
+        this.customerClientService = customerClientService;
+        this.mongoTemplate = mongoTemplate;
+        this.accountCacheService = accountCacheService;
+        this.meterRegistry = meterRegistry;
+        this.backoffManager = backoffManager;
+        this.cardScheduler = new KeyedEventScheduler("card-link-cards", lanes, laneCapacity);
+        this.accountScheduler = new KeyedEventScheduler("card-link-accounts", lanes, laneCapacity);
+        this.admissionTimeout = Duration.ofMillis(admissionTimeoutMs);
+        this.maxRetryAttempts = maxRetryAttempts;
+        this.initialRetryDelayMs = initialRetryDelayMs;
+        this.retryMultiplier = retryMultiplier;
+        this.maxRetryDelayMs = maxRetryDelayMs;
+        this.handleTimeout = Duration.ofMillis(handleTimeoutMs);
+        this.applicationTtl = Duration.ofMillis(applicationTtlMs);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndex() {
+        mongoTemplate.indexOps(CardLinkApplication.class)
+                .ensureIndex(new Index().on("createdAt", Sort.Direction.ASC).expire(applicationTtl)
+                        .named("createdAt_ttl"))
+                .subscribe(name -> log.info("Card link application index ready: {}", name),
+                    e -> log.error("Error creating card link application index: {}", e.getMessage()));
+    }
+
+    /**
+     * Blocks until the request has been handled on its card's lane, so the offset is only committed once the
+     * balance is credited, the request rejected or handed to a retry topic. A request handed to a retry topic
+     * gives up its place: later requests for the same card are handled meanwhile and can complete before it.
+     * Credits add up to the same balance in any order; only the order of the confirmations changes.
+     */
+    @KafkaListener(topics = REQUESTED_TOPIC, groupId = "account-service-group")
+    public void processCardLinkRequest(CardLinkRequestedEvent event,
+                                       @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
+                                       @Header(KafkaHeaders.RECEIVED_PARTITION_ID) int partition,
+                                       @Header(KafkaHeaders.OFFSET) long offset) {
         log.info("Processing card link request: {}", event);
-        customerClientService.getCustomerByDocumentNumber(event.getDocumentNumber())
-                .switchIfEmpty(Mono.error(new RuntimeException("Customer not found")))
-                .flatMap(customer -> debitCardRepository.findByCardNumber(event.getCardNumber())
-                                .switchIfEmpty(Mono.error(new RuntimeException("Debit card not found")))
-                                .flatMap(debitCard -> accountRepository
-                                    .findById(debitCard.getPrimaryAccountId())
-                                                .switchIfEmpty(Mono.error(new RuntimeException("Primary account" +
-                                                    " not found")))
-                                                .flatMap(account -> {
-                                                    if (!debitCard.getCardNumber().equals(event.getCardNumber())) {
-                                                        CardLinkRejectedEvent rejectedEvent = new CardLinkRejectedEvent(
-                                                                event.getPhoneNumber(), "Card does not " +
-                                                                    "belong to the user"
-                                                        );
-                                                        return sendEvent("yanki.card.link.rejected", rejectedEvent);
-                                                    }
-                                                    BigDecimal updatedBalance = BigDecimal.valueOf(
-                                                        account.getBalance()).add(event.getCurrentBalance());
-                                                    double updatedBalanceAsDouble = updatedBalance.doubleValue();
-                                                    account.setBalance(updatedBalanceAsDouble);
-                                                    return accountRepository.save(account)
-                                                            .flatMap(savedAccount -> {
-                                                                CardLinkConfirmedEvent confirmedEvent =
-                                                                    new CardLinkConfirmedEvent(
-                                                                        event.getPhoneNumber(), event.getCardNumber(),
-                                                                        event.getDocumentNumber(), updatedBalance
-                                                                );
-                                                                return sendEvent("yanki.card.link.confirmed",
-                                                                        confirmedEvent)
-                                                                        .doOnSuccess(unused -> log.info("Association" +
-                                                                            " confirmed: {}", confirmedEvent));
-                                                            });
-                                                })
-                                )
-                )
-                .doOnError(error -> log.error("Error processing card link request: {}", error.getMessage()))
-                .subscribe();
+        process(event, eventId(topic, partition, offset), 0).block(handleTimeout);
+    }
+
+    /**
+     * A retry that is not due yet pauses its partition and throws, so the container seeks back to it
+     * instead of committing; once due, it is handled before the listener returns.
+     */
+    @KafkaListener(id = RETRY_LISTENER_ID, topicPattern = "yanki\\.card\\.link\\.requested\\.retry-\\d+",
+            groupId = "account-service-group")
+    public void processCardLinkRetry(CardLinkRequestedEvent event,
+                                     @Header(KafkaHeaders.RECEIVED_TOPIC) String topic,
+                                     @Header(KafkaHeaders.RECEIVED_PARTITION_ID) int partition,
+                                     @Header(KafkaHeaders.OFFSET) long offset,
+                                     @Header(name = NOT_BEFORE_HEADER, required = false) byte[] notBefore,
+                                     @Header(name = EVENT_ID_HEADER, required = false) byte[] eventId,
+                                     Consumer<?, ?> consumer) {
+        int attempt = Integer.parseInt(topic.substring(RETRY_TOPIC_PREFIX.length()));
+        long dueTimestamp = notBefore == null ? 0 : Long.parseLong(new String(notBefore, StandardCharsets.UTF_8));
+        backoffManager.backOffIfNecessary(backoffManager.createContext(dueTimestamp, RETRY_LISTENER_ID,
+                new TopicPartition(topic, partition), consumer));
+        log.info("Retrying card link request (attempt {}): {}", attempt, event);
+        process(event, eventId == null ? eventId(topic, partition, offset)
+                : new String(eventId, StandardCharsets.UTF_8), attempt).block(handleTimeout);
+    }
+
+    private static String eventId(String topic, int partition, long offset) {
+        return topic + "-" + partition + "@" + offset;
+    }
+
+    /**
+     * Queues the request on its card's lane, blocking the listener while the lane is full. If it stays full
+     * the exception reaches the container, which seeks back and redelivers the record.
+     */
+    private Mono<Void> process(CardLinkRequestedEvent event, String eventId, int attempt) {
+        String topic = attempt == 0 ? REQUESTED_TOPIC : RETRY_TOPIC_PREFIX + attempt;
+        return cardScheduler.submit(event.getCardNumber(), handleCardLinkRequest(event, eventId)
+                .transform(StageTimer.timed(meterRegistry, StageTimer.CONSUMER_TIMER, () -> Tags.of("topic", topic)))
+                .onErrorResume(error -> handleFailure(event, eventId, attempt, error)), admissionTimeout);
+    }
+
+    private Mono<Void> handleFailure(CardLinkRequestedEvent event, String eventId, int attempt, Throwable error) {
+        if (error instanceof CardLinkRejectedException) {
+            log.warn("Card link request rejected: {}", error.getMessage());
+            return sendEvent("yanki.card.link.rejected",
+                    new CardLinkRejectedEvent(event.getPhoneNumber(), error.getMessage()));
+        }
+        if (attempt < maxRetryAttempts) {
+            int nextAttempt = attempt + 1;
+            long notBefore = System.currentTimeMillis() + retryDelayMs(nextAttempt);
+            log.warn("Card link request failed (attempt {}), scheduling retry {}: {}",
+                    attempt, nextAttempt, error.getMessage());
+            return sendRecord(RETRY_TOPIC_PREFIX + nextAttempt, event, eventId, nextAttempt, notBefore, error);
+        }
+        log.error("Card link request failed after {} retries, sending to dead letter topic: {}",
+                attempt, error.getMessage());
+        return sendRecord(DEAD_LETTER_TOPIC, event, eventId, attempt, System.currentTimeMillis(), error)
+                .then(sendEvent("yanki.card.link.rejected", new CardLinkRejectedEvent(event.getPhoneNumber(),
+                        "Card link could not be processed: " + error.getMessage())));
+    }
+
+    long retryDelayMs(int attempt) {
+        double delay = initialRetryDelayMs * Math.pow(retryMultiplier, attempt - 1);
+        return (long) Math.min(delay, maxRetryDelayMs);
+    }
+
+    private Mono<Void> sendRecord(String topic, CardLinkRequestedEvent event, String eventId, int attempt,
+                                  long notBefore, Throwable error) {
+        return Mono.defer(() -> {
+            ProducerRecord<String, Object> record = new ProducerRecord<>(topic, event.getCardNumber(), event);
+            record.headers().add(EVENT_ID_HEADER, eventId.getBytes(StandardCharsets.UTF_8));
+            record.headers().add(ATTEMPT_HEADER, String.valueOf(attempt).getBytes(StandardCharsets.UTF_8));
+            record.headers().add(NOT_BEFORE_HEADER, String.valueOf(notBefore).getBytes(StandardCharsets.UTF_8));
+            record.headers().add(ERROR_HEADER, String.valueOf(error.getMessage()).getBytes(StandardCharsets.UTF_8));
+            return Mono.fromFuture(kafkaTemplate.send(record).completable());
+        }).then();
+    }
+
+    private Mono<Void> handleCardLinkRequest(CardLinkRequestedEvent event, String eventId) {
+        return Mono.defer(() -> customerClientService.getCustomerByDocumentNumber(event.getDocumentNumber()))
+                .switchIfEmpty(Mono.error(new CardLinkRejectedException("Customer not found")))
+                .flatMap(customer -> cardNumberIndex.findByCardNumber(event.getCardNumber())
+                        .switchIfEmpty(Mono.error(new CardLinkRejectedException("Debit card not found")))
+                        .flatMap(debitCard -> accountScheduler.schedule(debitCard.getPrimaryAccountId(),
+                                applyBalance(event, eventId, debitCard))));
+    }
+
+    private Mono<Void> applyBalance(CardLinkRequestedEvent event, String eventId, DebitCard debitCard) {
+        if (!debitCard.getCardNumber().equals(event.getCardNumber())) {
+            CardLinkRejectedEvent rejectedEvent = new CardLinkRejectedEvent(
+                    event.getPhoneNumber(), "Card does not belong to the user");
+            return sendEvent("yanki.card.link.rejected", rejectedEvent);
+        }
+        Money amount = event.getCurrentBalance() == null ? Money.ZERO : event.getCurrentBalance();
+        String accountId = debitCard.getPrimaryAccountId();
+        CardLinkApplication application = new CardLinkApplication(eventId, accountId, LocalDateTime.now());
+        return claim(application)
+                .flatMap(claimed -> claimed ? credit(application, amount) : alreadyApplied(accountId, eventId))
+                .flatMap(savedAccount -> {
+                    CardLinkConfirmedEvent confirmedEvent = new CardLinkConfirmedEvent(
+                            event.getPhoneNumber(), event.getCardNumber(),
+                            event.getDocumentNumber(), savedAccount.getBalance());
+                    return sendEvent("yanki.card.link.confirmed", confirmedEvent)
+                            .doOnSuccess(unused -> log.info("Association confirmed: {}", confirmedEvent));
+                });
+    }
+
+    /**
+     * Records the request before crediting it, so each request is credited once however often it is
+     * delivered. The record is dropped again when the credit fails, letting a retry apply it.
+     */
+    private Mono<Boolean> claim(CardLinkApplication application) {
+        return mongoTemplate.insert(application)
+                .thenReturn(true)
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.just(false));
+    }
+
+    private Mono<Account> credit(CardLinkApplication application, Money amount) {
+        Query query = new Query(Criteria.where("id").is(application.getAccountId()));
+        Update update = new Update().inc("balance", MoneyConverters.toDecimal128(amount));
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true),
+                        Account.class)
+                .switchIfEmpty(Mono.error(new CardLinkRejectedException("Primary account not found")))
+                .onErrorResume(error -> mongoTemplate.remove(application)
+                        .onErrorResume(e -> Mono.empty())
+                        .then(Mono.error(error)))
+                .flatMap(accountCacheService::put);
+    }
+
+    /**
+     * A redelivered request whose balance was already credited only repeats the confirmation, which may
+     * not have been sent the first time.
+     */
+    private Mono<Account> alreadyApplied(String accountId, String eventId) {
+        return mongoTemplate.findById(accountId, Account.class)
+                .switchIfEmpty(Mono.error(new CardLinkRejectedException("Primary account not found")))
+                .doOnNext(account -> log.info("Card link request {} already applied to account {}",
+                        eventId, accountId));
     }
 
     private <T> Mono<Void> sendEvent(String topic, T event) {
-        return Mono.fromRunnable(() -> kafkaTemplate.send(topic, event));
+        return Mono.defer(() -> Mono.fromFuture(kafkaTemplate.send(topic, event).completable())).then();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        cardScheduler.dispose();
+        accountScheduler.dispose();
     }
 }
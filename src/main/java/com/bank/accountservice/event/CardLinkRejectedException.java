@@ -0,0 +1,7 @@
+package com.bank.accountservice.event;
+
+public class CardLinkRejectedException extends RuntimeException {
+    public CardLinkRejectedException(String message) {
+        super(message);
+    }
+}
@@ -1,7 +1,10 @@
 package com.bank.accountservice.event;
 
+import com.bank.accountservice.client.StageTimer;
 import com.bank.accountservice.model.customer.Customer;
 import com.bank.accountservice.service.CustomerCacheService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
@@ -9,15 +12,20 @@ import org.springframework.stereotype.Service;
 @Service
 @Slf4j
 public class CustomerEventConsumer {
+    private static final String CUSTOMER_CREATED_TOPIC = "customer-created";
     private final CustomerCacheService cacheService;
-    public CustomerEventConsumer(CustomerCacheService cacheService) {
+    private final MeterRegistry meterRegistry;
+    public CustomerEventConsumer(CustomerCacheService cacheService, MeterRegistry meterRegistry) {
         this.cacheService = cacheService;
+        this.meterRegistry = meterRegistry;
     }
-    @KafkaListener(topics = "customer-created", groupId = "account-service-group")
+    @KafkaListener(topics = CUSTOMER_CREATED_TOPIC, groupId = "account-service-group")
     public void consume(Customer customer) {
         try {
             log.info("Reactive customer event: {}", customer);
             cacheService.saveCustomer(customer.getId(), customer)
+                    .transform(StageTimer.timed(meterRegistry, StageTimer.CONSUMER_TIMER,
+                        () -> Tags.of("topic", CUSTOMER_CREATED_TOPIC)))
                     .subscribe(
                         null,
                         throwable -> log.error("Error caching customer: {}", throwable.getMessage()),
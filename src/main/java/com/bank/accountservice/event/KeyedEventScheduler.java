@@ -0,0 +1,138 @@
+package com.bank.accountservice.event;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.concurrent.Queues;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs work concurrently across keys while keeping submissions for the same key strictly ordered.
+ * Keys are hashed onto a fixed number of lanes; each lane executes its work one item at a time and holds
+ * at most laneCapacity queued or running items. {@link #schedule} fails at once when the lane is full,
+ * {@link #submit} blocks the calling thread until there is room, so a listener thread stops polling.
+ */
+@Slf4j
+public class KeyedEventScheduler {
+    public static final int DEFAULT_LANE_CAPACITY = 256;
+    private final String name;
+    private final List<Lane> lanes;
+    private final List<Disposable> subscriptions;
+
+    public KeyedEventScheduler(String name, int laneCount) {
+        this(name, laneCount, DEFAULT_LANE_CAPACITY);
+    }
+
+    public KeyedEventScheduler(String name, int laneCount, int laneCapacity) {
+        if (laneCount < 1) {
+            throw new IllegalArgumentException("Lane count must be greater than 0");
+        }
+        if (laneCapacity < 1) {
+            throw new IllegalArgumentException("Lane capacity must be greater than 0");
+        }
+        this.name = name;
+        this.lanes = new ArrayList<>(laneCount);
+        this.subscriptions = new ArrayList<>(laneCount);
+        for (int i = 0; i < laneCount; i++) {
+            Lane lane = new Lane(laneCapacity);
+            lanes.add(lane);
+            subscriptions.add(lane.sink.asFlux()
+                    .concatMap(work -> work, 1)
+                    .subscribe());
+        }
+    }
+
+    public <T> Mono<T> schedule(String key, Mono<T> work) {
+        return Mono.defer(() -> {
+            Lane lane = lane(key);
+            if (!lane.permits.tryAcquire()) {
+                log.warn("Scheduler '{}' lane for key {} is full", name, key);
+                return Mono.error(full(key));
+            }
+            return enqueue(lane, key, work);
+        });
+    }
+
+    /**
+     * Queues the work right away, waiting up to admissionTimeout for room in the key's lane, and returns
+     * its outcome. Throws RejectedExecutionException if the lane stays full; only call it from a thread
+     * that may block.
+     */
+    public <T> Mono<T> submit(String key, Mono<T> work, Duration admissionTimeout) {
+        Lane lane = lane(key);
+        try {
+            if (!lane.permits.tryAcquire(admissionTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                throw full(key);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw full(key);
+        }
+        return enqueue(lane, key, work);
+    }
+
+    private <T> Mono<T> enqueue(Lane lane, String key, Mono<T> work) {
+        Sinks.One<T> result = Sinks.one();
+        Mono<Void> task = Mono.defer(() -> work)
+                .doOnSuccess(value -> {
+                    if (value == null) {
+                        result.tryEmitEmpty();
+                    } else {
+                        result.tryEmitValue(value);
+                    }
+                })
+                .doOnError(result::tryEmitError)
+                .onErrorResume(error -> Mono.empty())
+                .then()
+                .doFinally(signal -> lane.permits.release());
+        Sinks.EmitResult emitted;
+        synchronized (lane) {
+            emitted = lane.sink.tryEmitNext(task);
+        }
+        if (emitted.isFailure()) {
+            lane.permits.release();
+            log.error("Scheduler '{}' rejected work for key {}: {}", name, key, emitted);
+            return Mono.error(new IllegalStateException("Scheduler " + name + " is not accepting work"));
+        }
+        return result.asMono();
+    }
+
+    private Lane lane(String key) {
+        return lanes.get(Math.floorMod(Objects.hashCode(key), lanes.size()));
+    }
+
+    private RejectedExecutionException full(String key) {
+        return new RejectedExecutionException("Scheduler " + name + " lane for key " + key + " is full");
+    }
+
+    public int getLaneCount() {
+        return lanes.size();
+    }
+
+    public void dispose() {
+        lanes.forEach(lane -> {
+            synchronized (lane) {
+                lane.sink.tryEmitComplete();
+            }
+        });
+        subscriptions.forEach(Disposable::dispose);
+    }
+
+    private static final class Lane {
+        private final Sinks.Many<Mono<Void>> sink;
+        private final Semaphore permits;
+
+        private Lane(int capacity) {
+            this.sink = Sinks.many().unicast().onBackpressureBuffer(Queues.<Mono<Void>>get(capacity).get());
+            this.permits = new Semaphore(capacity);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package com.bank.accountservice.event;
+
+import com.bank.accountservice.dto.change.AccountChangedEvent;
+import com.bank.accountservice.dto.change.DebitCardChangedEvent;
+import com.bank.accountservice.model.account.Account;
+import com.bank.accountservice.model.debitcard.DebitCard;
+import com.bank.accountservice.service.LeaseService;
+import com.mongodb.MongoException;
+import com.mongodb.client.model.changestream.OperationType;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Follows the accounts and debit_cards change streams on every replica and republishes each change as a
+ * local application event. These streams only keep their resume point in memory: a replica resumes from it
+ * after a transient failure, and starts from now after a restart, when its caches are empty anyway. With
+ * emit-account-events on, account changes are also published to Kafka, but only by the replica holding the
+ * account events lease, from a stream with a checkpoint saved in Mongo once Kafka has acknowledged the
+ * event, so a new holder picks up where the previous one stopped.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "mongo.change-stream", name = "enabled", havingValue = "true")
+public class MongoChangeStreamListener {
+    public static final String CHECKPOINT_COLLECTION = "change_stream_checkpoints";
+    static final String ACCOUNTS_COLLECTION = "accounts";
+    static final String DEBIT_CARDS_COLLECTION = "debit_cards";
+    static final String ACCOUNT_EVENTS_CHECKPOINT = "account-events";
+    static final String ACCOUNT_EVENTS_LEASE = "change-stream-account-events";
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+    private static final int CHANGE_STREAM_FATAL_ERROR = 280;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AccountEventProducer accountEventProducer;
+    private final LeaseService leaseService;
+    private final boolean emitAccountEvents;
+    private final Duration maxBackoff;
+    private final Duration leaseDuration;
+    private final List<Disposable> subscriptions = new ArrayList<>();
+    private Disposable accountEventEmitter;
+
+    public MongoChangeStreamListener(ReactiveMongoTemplate mongoTemplate,
+                                     ApplicationEventPublisher eventPublisher,
+                                     AccountEventProducer accountEventProducer,
+                                     LeaseService leaseService,
+                                     @Value("${mongo.change-stream.emit-account-events:false}")
+                                     boolean emitAccountEvents,
+                                     @Value("${mongo.change-stream.max-backoff-ms:30000}") long maxBackoffMs,
+                                     @Value("${mongo.change-stream.emit-lease-ms:30000}") long emitLeaseMs) {
+        this.mongoTemplate = mongoTemplate;
+        this.eventPublisher = eventPublisher;
+        this.accountEventProducer = accountEventProducer;
+        this.leaseService = leaseService;
+        this.emitAccountEvents = emitAccountEvents;
+        this.maxBackoff = Duration.ofMillis(maxBackoffMs);
+        this.leaseDuration = Duration.ofMillis(emitLeaseMs);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        subscriptions.add(watch(null, ACCOUNTS_COLLECTION, Account.class, this::onAccountChange));
+        subscriptions.add(watch(null, DEBIT_CARDS_COLLECTION, DebitCard.class, this::onDebitCardChange));
+        if (emitAccountEvents) {
+            subscriptions.add(Flux.interval(Duration.ZERO, leaseDuration.dividedBy(3))
+                    .onBackpressureDrop()
+                    .concatMap(tick -> leaseService.tryAcquire(ACCOUNT_EVENTS_LEASE, leaseDuration))
+                    .subscribe(this::onAccountEventsLease));
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        subscriptions.forEach(Disposable::dispose);
+        subscriptions.clear();
+        if (accountEventEmitter != null) {
+            accountEventEmitter.dispose();
+            accountEventEmitter = null;
+            leaseService.release(ACCOUNT_EVENTS_LEASE).subscribe();
+        }
+    }
+
+    private synchronized void onAccountEventsLease(boolean held) {
+        if (held && accountEventEmitter == null) {
+            log.info("Holding the account events lease, publishing account changes");
+            accountEventEmitter = watch(ACCOUNT_EVENTS_CHECKPOINT, ACCOUNTS_COLLECTION, Account.class,
+                    this::emitAccountEvent);
+        } else if (!held && accountEventEmitter != null) {
+            log.warn("Lost the account events lease, no longer publishing account changes");
+            accountEventEmitter.dispose();
+            accountEventEmitter = null;
+        }
+    }
+
+    //Without a checkpoint name the resume point is only kept in memory
+    private <T> Disposable watch(String checkpoint, String collection, Class<T> type, ChangeHandler<T> handler) {
+        String name = checkpoint == null ? collection : checkpoint;
+        AtomicReference<BsonDocument> lastToken = new AtomicReference<>();
+        log.info("Starting change stream on collection {} ({})", collection, name);
+        return Flux.defer(() -> Mono.justOrEmpty(lastToken.get())
+                        .switchIfEmpty(Mono.defer(() -> loadResumeToken(checkpoint)))
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty())
+                        .flatMapMany(token -> {
+                            ChangeStreamOptions.ChangeStreamOptionsBuilder options = ChangeStreamOptions.builder()
+                                    .returnFullDocumentOnUpdate();
+                            token.ifPresent(options::resumeAfter);
+                            return mongoTemplate.changeStream(collection, options.build(), type);
+                        }))
+                .concatMap(event -> handler.handle(event)
+                        .then(Mono.defer(() -> {
+                            BsonValue token = event.getResumeToken();
+                            if (token == null || !token.isDocument()) {
+                                return Mono.empty();
+                            }
+                            lastToken.set(token.asDocument());
+                            return saveResumeToken(checkpoint, token.asDocument());
+                        })))
+                .onErrorResume(MongoChangeStreamListener::isHistoryLost, e -> {
+                    log.warn("Change stream history for {} is no longer available, restarting from now", name);
+                    lastToken.set(null);
+                    return clearResumeToken(checkpoint).then(Mono.error(e));
+                })
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(maxBackoff)
+                        .doBeforeRetry(signal -> log.error("Change stream on {} failed, resuming: {}",
+                                name, signal.failure().getMessage())))
+                .subscribe();
+    }
+
+    private Mono<Void> onAccountChange(ChangeStreamEvent<Account> event) {
+        return Mono.fromRunnable(() -> {
+            String accountId = documentId(event);
+            String operation = operationName(event);
+            log.info("Account {} changed in database ({})", accountId, operation);
+            eventPublisher.publishEvent(new AccountChangedEvent(accountId, operation, event.getBody()));
+        });
+    }
+
+    private Mono<Void> emitAccountEvent(ChangeStreamEvent<Account> event) {
+        Account account = event.getBody();
+        if (account == null) {
+            return Mono.empty();
+        }
+        return event.getOperationType() == OperationType.INSERT
+                ? accountEventProducer.emitAccountCreated(account)
+                : accountEventProducer.emitAccountUpdate(account);
+    }
+
+    private Mono<Void> onDebitCardChange(ChangeStreamEvent<DebitCard> event) {
+        return Mono.fromRunnable(() -> {
+            String cardId = documentId(event);
+            log.info("Debit card {} changed in database ({})", cardId, operationName(event));
+            eventPublisher.publishEvent(new DebitCardChangedEvent(cardId, operationName(event), event.getBody()));
+        });
+    }
+
+    private Mono<BsonDocument> loadResumeToken(String checkpoint) {
+        if (checkpoint == null) {
+            return Mono.empty();
+        }
+        return mongoTemplate.findById(checkpoint, Document.class, CHECKPOINT_COLLECTION)
+                .filter(document -> document.getString("resumeToken") != null)
+                .map(document -> BsonDocument.parse(document.getString("resumeToken")))
+                .doOnNext(token -> log.info("Resuming change stream {} from checkpoint", checkpoint));
+    }
+
+    private Mono<Void> clearResumeToken(String checkpoint) {
+        if (checkpoint == null) {
+            return Mono.empty();
+        }
+        return mongoTemplate.remove(Query.query(Criteria.where("_id").is(checkpoint)), CHECKPOINT_COLLECTION)
+                .then();
+    }
+
+    private Mono<Void> saveResumeToken(String checkpoint, BsonDocument resumeToken) {
+        if (checkpoint == null) {
+            return Mono.empty();
+        }
+        Update update = Update.update("resumeToken", resumeToken.toJson())
+                .set("updatedAt", LocalDateTime.now());
+        return mongoTemplate.upsert(Query.query(Criteria.where("_id").is(checkpoint)), update, CHECKPOINT_COLLECTION)
+                .then();
+    }
+
+    //Older servers report a resume point that fell off the oplog as a fatal change stream error
+    private static boolean isHistoryLost(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoException) {
+                int code = ((MongoException) cause).getCode();
+                if (code == CHANGE_STREAM_HISTORY_LOST || code == CHANGE_STREAM_FATAL_ERROR) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String documentId(ChangeStreamEvent<?> event) {
+        if (event.getRaw() == null || event.getRaw().getDocumentKey() == null) {
+            return null;
+        }
+        BsonValue id = event.getRaw().getDocumentKey().get("_id");
+        if (id == null) {
+            return null;
+        }
+        if (id.isObjectId()) {
+            return id.asObjectId().getValue().toHexString();
+        }
+        return id.isString() ? id.asString().getValue() : id.toString();
+    }
+
+    private static String operationName(ChangeStreamEvent<?> event) {
+        return event.getOperationType() == null ? "unknown" : event.getOperationType().getValue();
+    }
+
+    private interface ChangeHandler<T> {
+        Mono<Void> handle(ChangeStreamEvent<T> event);
+    }
+}
@@ -1,5 +1,6 @@
 package com.bank.accountservice.model.account;
 
+import com.bank.accountservice.model.money.Money;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -11,7 +12,7 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.math.BigDecimal;
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @Document(collection = "accounts")
@@ -20,7 +21,8 @@ public class Account {
     private String id;
     private String customerId;
     private AccountType accountType;
-    private double balance;
+    @Builder.Default
+    private Money balance = Money.ZERO;
     private boolean isVipAccount; //Only for SAVINGS accounts
     private BigDecimal minBalanceRequirement; //Only if the account is VIP
     private boolean isPymAccount; //Only for CHECKING accounts
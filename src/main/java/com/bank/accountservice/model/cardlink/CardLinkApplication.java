@@ -0,0 +1,20 @@
+package com.bank.accountservice.model.cardlink;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "card_link_applications")
+public class CardLinkApplication {
+    @Id
+    private String id; //Kafka coordinates of the original card link request
+    private String accountId;
+    private LocalDateTime createdAt; //Expired by a TTL index
+}
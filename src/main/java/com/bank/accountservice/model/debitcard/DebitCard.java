@@ -2,6 +2,7 @@ package com.bank.accountservice.model.debitcard;
 
 import lombok.*;
 import nonapi.io.github.classgraph.json.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -12,11 +13,12 @@ import java.util.List;
 @Setter
 @AllArgsConstructor
 @NoArgsConstructor
-@Builder
+@Builder(toBuilder = true)
 @Document(collection = "debit_cards")
 public class DebitCard {
     @Id
     private String id;
+    @Indexed(unique = true)
     private String cardNumber;
     private String customerId;
     private String status;
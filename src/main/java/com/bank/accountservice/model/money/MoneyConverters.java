@@ -0,0 +1,74 @@
+package com.bank.accountservice.model.money;
+
+import org.bson.types.Decimal128;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.data.convert.ReadingConverter;
+import org.springframework.data.convert.WritingConverter;
+
+import java.util.List;
+
+/**
+ * Mongo mapping for {@link Money}: amounts are stored as Decimal128 with two fraction digits, encoded and
+ * decoded straight from the minor units. Documents written before the switch still hold a double balance
+ * and are read through {@link DoubleToMoneyConverter}.
+ */
+public final class MoneyConverters {
+    private static final long SIGN_MASK = Long.MIN_VALUE;
+    private static final long SPECIAL_MASK = 0x6000000000000000L;
+    private static final long HIGH_COEFFICIENT_MASK = 0x1FFFFFFFFFFFFL;
+    private static final int EXPONENT_SHIFT = 49;
+    private static final long EXPONENT_MASK = 0x3FFF;
+    private static final long EXPONENT_BIAS = 6176;
+    private static final long MONEY_EXPONENT = EXPONENT_BIAS - Money.SCALE;
+
+    private MoneyConverters() {
+    }
+
+    public static List<Converter<?, ?>> converters() {
+        return List.of(new MoneyToDecimal128Converter(), new Decimal128ToMoneyConverter(),
+                new DoubleToMoneyConverter());
+    }
+
+    public static Decimal128 toDecimal128(Money money) {
+        long minorUnits = money.getMinorUnits();
+        long sign = minorUnits < 0 ? SIGN_MASK : 0;
+        return Decimal128.fromIEEE754BIDEncoding(sign | MONEY_EXPONENT << EXPONENT_SHIFT, Math.abs(minorUnits));
+    }
+
+    public static Money fromDecimal128(Decimal128 value) {
+        long high = value.getHigh();
+        long low = value.getLow();
+        boolean plainCents = (high & SPECIAL_MASK) != SPECIAL_MASK
+                && (high & HIGH_COEFFICIENT_MASK) == 0
+                && low >= 0
+                && (high >>> EXPONENT_SHIFT & EXPONENT_MASK) == MONEY_EXPONENT;
+        if (plainCents) {
+            return Money.ofMinor((high & SIGN_MASK) != 0 ? -low : low);
+        }
+        return Money.of(value.bigDecimalValue());
+    }
+
+    @WritingConverter
+    public static class MoneyToDecimal128Converter implements Converter<Money, Decimal128> {
+        @Override
+        public Decimal128 convert(Money source) {
+            return toDecimal128(source);
+        }
+    }
+
+    @ReadingConverter
+    public static class Decimal128ToMoneyConverter implements Converter<Decimal128, Money> {
+        @Override
+        public Money convert(Decimal128 source) {
+            return fromDecimal128(source);
+        }
+    }
+
+    @ReadingConverter
+    public static class DoubleToMoneyConverter implements Converter<Double, Money> {
+        @Override
+        public Money convert(Double source) {
+            return Money.of(source);
+        }
+    }
+}
@@ -6,10 +6,13 @@ import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.Collection;
+
 @Repository
 public interface DebitCardRepository extends ReactiveMongoRepository<DebitCard, String> {
     Flux<DebitCard> findByCustomerId(String customerId);
     Mono<DebitCard> findByCardNumber(String cardNumber);
+    Flux<DebitCard> findByCardNumberIn(Collection<String> cardNumbers);
     Flux<DebitCard> findByAssociatedAccountIdsContaining(String accountId);
     Flux<DebitCard> findByPrimaryAccountId(String accountId);
 }
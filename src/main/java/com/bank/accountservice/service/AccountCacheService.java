@@ -0,0 +1,237 @@
+package com.bank.accountservice.service;
+
+import com.bank.accountservice.dto.change.AccountChangedEvent;
+import com.bank.accountservice.model.account.Account;
+import com.bank.accountservice.repository.AccountRepository;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * Two level account cache: a short lived in-memory copy in front of an optional Redis entry. Writes and
+ * evictions made on one replica are broadcast so the other replicas drop their in-memory copy. A read that
+ * misses only fills the cache if no write or eviction of its account happened while it was loading, so a
+ * slow reader cannot put back a value older than the one just written.
+ */
+@Slf4j
+@Service
+public class AccountCacheService implements MeterBinder {
+    public static final String CACHE_NAME = "accounts";
+    private static final String ACCOUNT_KEY_PREFIX = "Account:";
+    private static final String LOCAL_CACHE_NAME = "account-local";
+    private static final int WRITE_STRIPES = 1024;
+    private final AccountRepository accountRepository;
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, Account> localCache;
+    private final boolean redisEnabled;
+    private final Duration redisTtl;
+    private final Duration redisTimeout;
+    private final CacheInvalidationBus invalidationBus;
+    //Bumped on every write or eviction of the accounts hashed onto a stripe
+    private final AtomicLongArray writeVersions = new AtomicLongArray(WRITE_STRIPES);
+    private final List<Consumer<String>> changeListeners = new CopyOnWriteArrayList<>();
+
+    public AccountCacheService(AccountRepository accountRepository,
+                               ReactiveRedisTemplate<String, String> redisTemplate,
+                               long localMaxSize, long localTtlMs,
+                               boolean redisEnabled, long redisTtlMs, long redisTimeoutMs) {
+        this(accountRepository, redisTemplate, null, localMaxSize, localTtlMs, redisEnabled, redisTtlMs,
+                redisTimeoutMs);
+    }
+
+    @Autowired
+    public AccountCacheService(AccountRepository accountRepository,
+                               ReactiveRedisTemplate<String, String> redisTemplate,
+                               CacheInvalidationBus invalidationBus,
+                               @Value("${account-cache.local.max-size:10000}") long localMaxSize,
+                               @Value("${account-cache.local.ttl-ms:30000}") long localTtlMs,
+                               @Value("${account-cache.redis.enabled:false}") boolean redisEnabled,
+                               @Value("${account-cache.redis.ttl-ms:300000}") long redisTtlMs,
+                               @Value("${account-cache.redis.timeout-ms:200}") long redisTimeoutMs) {
+        this.accountRepository = accountRepository;
+        this.redisTemplate = redisTemplate;
+        this.invalidationBus = invalidationBus;
+        this.redisEnabled = redisEnabled;
+        this.redisTtl = Duration.ofMillis(redisTtlMs);
+        this.redisTimeout = Duration.ofMillis(redisTimeoutMs);
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(Duration.ofMillis(localTtlMs))
+                .recordStats()
+                .build();
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+        this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        this.objectMapper.disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        if (invalidationBus != null) {
+            invalidationBus.register(CACHE_NAME, this::evictLocal);
+        }
+    }
+
+    public Mono<Account> getAccount(String accountId) {
+        if (accountId == null) {
+            return Mono.empty();
+        }
+        Account cached = localCache.getIfPresent(accountId);
+        if (cached != null) {
+            return Mono.just(copy(cached));
+        }
+        long version = writeVersion(accountId);
+        return readRedis(accountId)
+                .switchIfEmpty(Mono.defer(() -> accountRepository.findById(accountId)
+                        .flatMap(account -> fillRedis(account, version).thenReturn(account))))
+                .doOnNext(account -> fillLocal(account, version));
+    }
+
+    private void fillLocal(Account account, long version) {
+        Account value = copy(account);
+        localCache.asMap().compute(account.getId(), (accountId, current) ->
+                writeVersion(accountId) == version ? value : current);
+    }
+
+    /**
+     * Registers a callback run with the account id whenever an account is written or evicted here, on
+     * another replica or in the database, for caches derived from accounts.
+     */
+    public void addChangeListener(Consumer<String> listener) {
+        changeListeners.add(listener);
+    }
+
+    public Mono<Account> put(Account account) {
+        if (account == null || account.getId() == null) {
+            return Mono.justOrEmpty(account);
+        }
+        markWritten(account.getId());
+        localCache.put(account.getId(), copy(account));
+        return writeRedis(account)
+                .then(broadcast(account.getId()))
+                .thenReturn(account);
+    }
+
+    public Mono<Void> evict(String accountId) {
+        return evictEverywhere(accountId).then(broadcast(accountId));
+    }
+
+    private Mono<Void> broadcast(String accountId) {
+        return invalidationBus == null ? Mono.empty() : invalidationBus.publish(CACHE_NAME, accountId);
+    }
+
+    private Mono<Void> evictEverywhere(String accountId) {
+        if (accountId == null) {
+            return Mono.empty();
+        }
+        Mono<Void> invalidateLocal = Mono.fromRunnable(() -> evictLocal(accountId));
+        if (!redisEnabled) {
+            return invalidateLocal;
+        }
+        return invalidateLocal.then(redisTemplate.opsForValue().delete(ACCOUNT_KEY_PREFIX + accountId)
+                .timeout(redisTimeout)
+                .doOnError(e -> log.error("Error evicting account {} from cache: {}", accountId, e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .then());
+    }
+
+    private void evictLocal(String accountId) {
+        markWritten(accountId);
+        localCache.invalidate(accountId);
+    }
+
+    private long writeVersion(String accountId) {
+        return writeVersions.get(Math.floorMod(accountId.hashCode(), WRITE_STRIPES));
+    }
+
+    private void markWritten(String accountId) {
+        writeVersions.incrementAndGet(Math.floorMod(accountId.hashCode(), WRITE_STRIPES));
+        changeListeners.forEach(listener -> listener.accept(accountId));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, localCache, LOCAL_CACHE_NAME);
+    }
+
+    public Map<String, Object> localStatistics() {
+        CacheStats stats = localCache.stats();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("size", localCache.estimatedSize());
+        snapshot.put("hits", stats.hitCount());
+        snapshot.put("misses", stats.missCount());
+        snapshot.put("hitRatio", stats.hitRate());
+        snapshot.put("evictions", stats.evictionCount());
+        return snapshot;
+    }
+
+    //Every replica follows the change stream, so these evictions are not broadcast
+    @EventListener
+    public void onAccountChanged(AccountChangedEvent event) {
+        evictEverywhere(event.getAccountId()).subscribe();
+    }
+
+    private Mono<Account> readRedis(String accountId) {
+        if (!redisEnabled) {
+            return Mono.empty();
+        }
+        return redisTemplate.opsForValue().get(ACCOUNT_KEY_PREFIX + accountId)
+                .timeout(redisTimeout)
+                .flatMap(json -> Mono.fromCallable(() -> objectMapper.readValue(json, Account.class)))
+                .doOnError(e -> log.error("Error reading account {} from cache: {}", accountId, e.getMessage()))
+                .onErrorResume(e -> Mono.empty());
+    }
+
+    //Never overwrites an entry a write stored meanwhile
+    private Mono<Void> fillRedis(Account account, long version) {
+        if (!redisEnabled || writeVersion(account.getId()) != version) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> objectMapper.writeValueAsString(account))
+                .flatMap(json -> redisTemplate.opsForValue()
+                        .setIfAbsent(ACCOUNT_KEY_PREFIX + account.getId(), json, redisTtl))
+                .timeout(redisTimeout)
+                .doOnError(e -> log.error("Error caching account {}: {}", account.getId(), e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    private Mono<Void> writeRedis(Account account) {
+        if (!redisEnabled) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> objectMapper.writeValueAsString(account))
+                .flatMap(json -> redisTemplate.opsForValue().set(ACCOUNT_KEY_PREFIX + account.getId(), json, redisTtl))
+                .timeout(redisTimeout)
+                .doOnError(e -> log.error("Error caching account {}: {}", account.getId(), e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    private static Account copy(Account account) {
+        return account.toBuilder()
+                .holders(account.getHolders() == null ? null : new ArrayList<>(account.getHolders()))
+                .signers(account.getSigners() == null ? null : new ArrayList<>(account.getSigners()))
+                .build();
+    }
+}
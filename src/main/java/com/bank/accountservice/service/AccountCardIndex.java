@@ -0,0 +1,219 @@
+package com.bank.accountservice.service;
+
+import com.bank.accountservice.dto.change.DebitCardChangedEvent;
+import com.bank.accountservice.model.debitcard.DebitCard;
+import com.bank.accountservice.repository.DebitCardRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Reverse index from account id to the ids of the debit cards linked to it, kept separately for
+ * associated and primary links. Reads resolve the ids by primary key instead of running the multikey
+ * query; entries are dropped whenever a card touching the account is saved or changes in the database,
+ * and evictions made on one replica are broadcast so the others drop their in-memory entry too.
+ */
+@Slf4j
+@Service
+public class AccountCardIndex {
+    public static final String CACHE_NAME = "account-cards";
+    private static final String ASSOCIATED_KEY_PREFIX = "AccountCards:";
+    private static final String PRIMARY_KEY_PREFIX = "AccountPrimaryCards:";
+    private static final TypeReference<List<String>> ID_LIST = new TypeReference<List<String>>() { };
+    private final DebitCardRepository debitCardRepository;
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Cache<String, List<String>> associatedCards;
+    private final Cache<String, List<String>> primaryCards;
+    private final boolean redisEnabled;
+    private final Duration redisTtl;
+    private final Duration redisTimeout;
+    private final CacheInvalidationBus invalidationBus;
+
+    public AccountCardIndex(DebitCardRepository debitCardRepository,
+                            ReactiveRedisTemplate<String, String> redisTemplate,
+                            long localMaxSize, long localTtlMs,
+                            boolean redisEnabled, long redisTtlMs, long redisTimeoutMs) {
+        this(debitCardRepository, redisTemplate, null, localMaxSize, localTtlMs, redisEnabled, redisTtlMs,
+                redisTimeoutMs);
+    }
+
+    @Autowired
+    public AccountCardIndex(DebitCardRepository debitCardRepository,
+                            ReactiveRedisTemplate<String, String> redisTemplate,
+                            CacheInvalidationBus invalidationBus,
+                            @Value("${account-card-index.local.max-size:20000}") long localMaxSize,
+                            @Value("${account-card-index.local.ttl-ms:300000}") long localTtlMs,
+                            @Value("${account-card-index.redis.enabled:false}") boolean redisEnabled,
+                            @Value("${account-card-index.redis.ttl-ms:3600000}") long redisTtlMs,
+                            @Value("${account-card-index.redis.timeout-ms:200}") long redisTimeoutMs) {
+        this.debitCardRepository = debitCardRepository;
+        this.invalidationBus = invalidationBus;
+        this.redisTemplate = redisTemplate;
+        this.redisEnabled = redisEnabled;
+        this.redisTtl = Duration.ofMillis(redisTtlMs);
+        this.redisTimeout = Duration.ofMillis(redisTimeoutMs);
+        this.associatedCards = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(Duration.ofMillis(localTtlMs))
+                .build();
+        this.primaryCards = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(Duration.ofMillis(localTtlMs))
+                .build();
+        if (invalidationBus != null) {
+            invalidationBus.register(CACHE_NAME, this::evictLocal);
+        }
+    }
+
+    public Flux<DebitCard> getCardsByAccountId(String accountId) {
+        Predicate<DebitCard> stillLinked = card -> card.getAssociatedAccountIds() != null
+                && card.getAssociatedAccountIds().contains(accountId);
+        return lookup(accountId, associatedCards, ASSOCIATED_KEY_PREFIX,
+                debitCardRepository::findByAssociatedAccountIdsContaining, stillLinked);
+    }
+
+    public Flux<DebitCard> getCardsByPrimaryAccountId(String accountId) {
+        Predicate<DebitCard> stillLinked = card -> accountId.equals(card.getPrimaryAccountId());
+        return lookup(accountId, primaryCards, PRIMARY_KEY_PREFIX,
+                debitCardRepository::findByPrimaryAccountId, stillLinked);
+    }
+
+    public DebitCard cardSaved(DebitCard card) {
+        linkedAccounts(card).forEach(accountId -> invalidate(accountId).subscribe());
+        return card;
+    }
+
+    public Mono<Void> invalidate(String accountId) {
+        Mono<Void> broadcast = invalidationBus == null ? Mono.empty() : invalidationBus.publish(CACHE_NAME, accountId);
+        return evict(accountId).then(broadcast);
+    }
+
+    private Mono<Void> evict(String accountId) {
+        return Mono.defer(() -> {
+            evictLocal(accountId);
+            if (!redisEnabled) {
+                return Mono.empty();
+            }
+            return redisTemplate.opsForValue().delete(ASSOCIATED_KEY_PREFIX + accountId)
+                    .then(redisTemplate.opsForValue().delete(PRIMARY_KEY_PREFIX + accountId))
+                    .timeout(redisTimeout)
+                    .doOnError(e -> log.error("Error invalidating cards of account {}: {}", accountId, e.getMessage()))
+                    .onErrorResume(e -> Mono.empty())
+                    .then();
+        });
+    }
+
+    private void evictLocal(String accountId) {
+        associatedCards.invalidate(accountId);
+        primaryCards.invalidate(accountId);
+    }
+
+    private static Set<String> linkedAccounts(DebitCard card) {
+        Set<String> accountIds = new LinkedHashSet<>();
+        if (card != null && card.getAssociatedAccountIds() != null) {
+            accountIds.addAll(card.getAssociatedAccountIds());
+        }
+        if (card != null && card.getPrimaryAccountId() != null) {
+            accountIds.add(card.getPrimaryAccountId());
+        }
+        return accountIds;
+    }
+
+    //Every replica follows the change stream, so these evictions are not broadcast
+    @EventListener
+    public void onDebitCardChanged(DebitCardChangedEvent event) {
+        if (event.getDebitCard() != null) {
+            linkedAccounts(event.getDebitCard()).forEach(accountId -> evict(accountId).subscribe());
+        } else if (event.getCardId() != null) {
+            associatedCards.asMap().values().removeIf(ids -> ids.contains(event.getCardId()));
+            primaryCards.asMap().values().removeIf(ids -> ids.contains(event.getCardId()));
+        }
+    }
+
+    private Flux<DebitCard> lookup(String accountId, Cache<String, List<String>> cache, String keyPrefix,
+                                   Function<String, Flux<DebitCard>> query, Predicate<DebitCard> stillLinked) {
+        if (accountId == null) {
+            return query.apply(null);
+        }
+        List<String> cached = cache.getIfPresent(accountId);
+        Mono<List<String>> cardIds = cached != null ? Mono.just(cached) : readRedis(keyPrefix + accountId);
+        Flux<DebitCard> reload = Flux.defer(() -> query.apply(accountId)
+                .collectList()
+                .flatMapMany(cards -> {
+                    List<String> ids = cards.stream().map(DebitCard::getId).collect(Collectors.toList());
+                    cache.put(accountId, ids);
+                    return writeRedis(keyPrefix + accountId, ids).thenMany(Flux.fromIterable(cards));
+                }));
+        return cardIds
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .flatMapMany(ids -> {
+                    if (ids.isEmpty()) {
+                        return reload;
+                    }
+                    cache.put(accountId, ids.get());
+                    return resolve(ids.get(), stillLinked)
+                            .flatMapMany(cards -> {
+                                if (cards.size() == ids.get().size()) {
+                                    return Flux.fromIterable(cards);
+                                }
+                                log.info("Card index for account {} is stale, reloading", accountId);
+                                return reload;
+                            });
+                });
+    }
+
+    private Mono<List<DebitCard>> resolve(List<String> cardIds, Predicate<DebitCard> stillLinked) {
+        if (cardIds.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        return debitCardRepository.findAllById(cardIds)
+                .collectMap(DebitCard::getId)
+                .map(cards -> cardIds.stream()
+                        .map(cards::get)
+                        .filter(card -> card != null && stillLinked.test(card))
+                        .collect(Collectors.toList()));
+    }
+
+    private Mono<List<String>> readRedis(String key) {
+        if (!redisEnabled) {
+            return Mono.empty();
+        }
+        return redisTemplate.opsForValue().get(key)
+                .timeout(redisTimeout)
+                .flatMap(json -> Mono.fromCallable(() -> objectMapper.readValue(json, ID_LIST)))
+                .doOnError(e -> log.error("Error reading card index {}: {}", key, e.getMessage()))
+                .onErrorResume(e -> Mono.empty());
+    }
+
+    private Mono<Void> writeRedis(String key, List<String> cardIds) {
+        if (!redisEnabled) {
+            return Mono.empty();
+        }
+        return Mono.fromCallable(() -> objectMapper.writeValueAsString(cardIds))
+                .flatMap(json -> redisTemplate.opsForValue().set(key, json, redisTtl))
+                .timeout(redisTimeout)
+                .doOnError(e -> log.error("Error writing card index {}: {}", key, e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+}
@@ -3,14 +3,20 @@ package com.bank.accountservice.service;
 import com.bank.accountservice.client.CreditClientService;
 import com.bank.accountservice.client.CustomerClientService;
 import com.bank.accountservice.client.CustomerEligibilityClientService;
+import com.bank.accountservice.client.DownstreamUnavailableException;
+import com.bank.accountservice.client.RequestDeadline;
+import com.bank.accountservice.dto.BulkItemResult;
 import com.bank.accountservice.event.AccountEventProducer;
 import com.bank.accountservice.model.account.Account;
 import com.bank.accountservice.model.account.AccountType;
+import com.bank.accountservice.model.creditcard.CreditCard;
 import com.bank.accountservice.model.customer.Customer;
 import com.bank.accountservice.model.customer.CustomerType;
 import com.bank.accountservice.repository.AccountRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteError;
 import lombok.extern.slf4j.Slf4j;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
@@ -21,8 +27,14 @@ import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -43,6 +55,15 @@ public class AccountService {
     private BigDecimal costTransactionChecking;
     @Value("${transaction-cost.fixed-terms}")
     private BigDecimal costTransactionFixedTerms;
+    @Value("${accounts.bulk.max-size:500}")
+    private int bulkMaxSize = 500;
+    @Value("${accounts.bulk.customer-concurrency:8}")
+    private int bulkCustomerConcurrency = 8;
+    @Value("${degraded-mode.enabled:true}")
+    private boolean degradedModeEnabled = true;
+    //The change stream listener publishes account events instead when it is set to emit them
+    @Value("#{${mongo.change-stream.enabled:false} and ${mongo.change-stream.emit-account-events:false}}")
+    private boolean changeStreamEmitsAccountEvents = false;
     private final AccountRepository accountRepository;
     private final CustomerCacheService customerCacheService;
     private final CustomerClientService customerClientService;
@@ -50,13 +71,17 @@ public class AccountService {
     private final AccountEventProducer accountEventProducer;
     private final CreditClientService creditClientService;
     private CustomerEligibilityClientService customerEligibilityClientService;
+    private final AccountCacheService accountCacheService;
+    private final VipPymUpdateQueue vipPymUpdateQueue;
     public AccountService(AccountRepository accountRepository,
                           CustomerCacheService customerCacheService,
                           CustomerClientService customerClientService,
                           ReactiveMongoTemplate mongoTemplate,
                           AccountEventProducer accountEventProducer,
                           CreditClientService creditClientService,
-                          CustomerEligibilityClientService customerEligibilityClientService) {
+                          CustomerEligibilityClientService customerEligibilityClientService,
+                          AccountCacheService accountCacheService,
+                          VipPymUpdateQueue vipPymUpdateQueue) {
         this.accountRepository = accountRepository;
         this.customerCacheService = customerCacheService;
         this.customerClientService = customerClientService;
@@ -64,6 +89,8 @@ public class AccountService {
         this.accountEventProducer = accountEventProducer;
         this.creditClientService = creditClientService;
         this.customerEligibilityClientService = customerEligibilityClientService;
+        this.accountCacheService = accountCacheService;
+        this.vipPymUpdateQueue = vipPymUpdateQueue;
     }
     private Mono<Customer> validateCustomer(String customerId) {
         log.info("Validating customer with ID: {}", customerId);
@@ -90,9 +117,23 @@ public class AccountService {
                         return Mono.error(new RuntimeException("Error serializing customer", e));
                     }
                 })
+                .onErrorResume(DownstreamUnavailableException.class, e -> fetchStaleCustomer(customerId))
                 .onErrorResume(e -> Mono.empty());
     }
 
+    private Mono<Customer> fetchStaleCustomer(String customerId) {
+        if (!degradedModeEnabled) {
+            return Mono.empty();
+        }
+        return customerCacheService.getStaleCustomer(customerId)
+                .flatMap(entry -> {
+                    log.warn("Customer service unavailable, using cached customer {} from {} ago",
+                            customerId, customerCacheService.age(entry));
+                    return DegradedResponse.mark("customer data served from cache")
+                            .thenReturn(entry.getCustomer());
+                });
+    }
+
 
     private Mono<Account> validateAccountRules(Account account, Customer customer) {
         Query query = new Query(Criteria.where("customerId").is(account.getCustomerId()));
@@ -109,6 +150,29 @@ public class AccountService {
     private Mono<Account> validatePersonalCustomerRules(Account account,
                                                         List<Account> existingAccounts,
                                                         Customer customer) {
+        try {
+            applyPersonalCustomerRules(account, existingAccounts, customer);
+        } catch (RuntimeException e) {
+            return Mono.error(e);
+        }
+        if (account.getAccountType() == AccountType.SAVINGS) {
+            return creditClientService.getCreditCardsByCustomer(account.getCustomerId())
+                    .defaultIfEmpty(Collections.emptyList())
+                    .flatMap(creditCards -> {
+                        if (creditCards != null && !creditCards.isEmpty()) {
+                            return vipPymUpdateQueue.update(account.getCustomerId(), true)
+                                    .thenReturn(creditCards);
+                        } else {
+                            return Mono.just(creditCards);
+                        }
+                    })
+                    .map(creditCards -> applyPersonalCreditCardRules(account, creditCards, customer));
+        }
+        account.setHolders(Collections.singletonList(customer.getFullName()));
+        return Mono.just(account);
+    }
+
+    private void applyPersonalCustomerRules(Account account, List<Account> existingAccounts, Customer customer) {
         boolean hasSavings = existingAccounts.stream().anyMatch(a -> a.getAccountType() == AccountType.SAVINGS);
         boolean hasChecking = existingAccounts.stream().anyMatch(a -> a.getAccountType() == AccountType.CHECKING);
         boolean hasFixed = existingAccounts.stream().anyMatch(a -> a.getAccountType() == AccountType.FIXED_TERM);
@@ -116,16 +180,16 @@ public class AccountService {
         if ((account.getAccountType() == AccountType.SAVINGS && hasSavings) ||
                 (account.getAccountType() == AccountType.CHECKING && hasChecking) ||
                 (account.getAccountType() == AccountType.FIXED_TERM && hasFixed)) {
-            return Mono.error(new RuntimeException("Personal customers can have only one savings, one checking, " +
-                "or fixed-term account."));
+            throw new RuntimeException("Personal customers can have only one savings, one checking, " +
+                "or fixed-term account.");
         }
 
         String customerNameNormalized = customer.getFullName().trim().toLowerCase();
         if (account.getHolders() != null && !account.getHolders().isEmpty()) {
             for (String holder : account.getHolders()) {
                 if (!holder.trim().toLowerCase().equals(customerNameNormalized)) {
-                    return Mono.error(new RuntimeException("Personal customers can only have themselves " +
-                        "as account holders."));
+                    throw new RuntimeException("Personal customers can only have themselves " +
+                        "as account holders.");
                 }
             }
         }
@@ -141,12 +205,32 @@ public class AccountService {
             account.setMaxFreeTransaction(maxFreeTransactionFixedTerms);
             account.setTransactionCost(costTransactionFixedTerms);
         }
-        if (account.getAccountType() == AccountType.SAVINGS) {
+    }
+
+    private Account applyPersonalCreditCardRules(Account account, List<CreditCard> creditCards, Customer customer) {
+        if (creditCards != null && !creditCards.isEmpty()) {
+            account.setMinBalanceRequirement(minBalanceRequirement);
+            account.setVipAccount(true);
+        } else {
+            account.setMinBalanceRequirement(null);
+            account.setVipAccount(false);
+        }
+        account.setHolders(Collections.singletonList(customer.getFullName()));
+        return account;
+    }
+
+    private Mono<Account> validateBusinessCustomerRules(Account account, Customer customer) {
+        try {
+            applyBusinessCustomerRules(account, customer);
+        } catch (RuntimeException e) {
+            return Mono.error(e);
+        }
+        if (account.getAccountType() == AccountType.CHECKING) {
             return creditClientService.getCreditCardsByCustomer(account.getCustomerId())
                     .defaultIfEmpty(Collections.emptyList())
                     .flatMap(creditCards -> {
                         if (creditCards != null && !creditCards.isEmpty()) {
-                            return customerClientService.updateVipPymStatus(account.getCustomerId(), true)
+                            return vipPymUpdateQueue.update(account.getCustomerId(), true)
                                     .thenReturn(creditCards);
                         } else {
                             return Mono.just(creditCards);
@@ -154,23 +238,17 @@ public class AccountService {
                     })
                     .map(creditCards -> {
                         if (creditCards != null && !creditCards.isEmpty()) {
-                            account.setMinBalanceRequirement(minBalanceRequirement);
-                            account.setVipAccount(true);
-                        } else {
-                            account.setMinBalanceRequirement(null);
-                            account.setVipAccount(false);
+                            vipPymUpdateQueue.update(account.getCustomerId(), true).subscribe();
                         }
-                        account.setHolders(Collections.singletonList(customer.getFullName()));
-                        return account;
+                        return applyBusinessCreditCardRules(account, creditCards);
                     });
         }
-        account.setHolders(Collections.singletonList(customer.getFullName()));
         return Mono.just(account);
     }
 
-    private Mono<Account> validateBusinessCustomerRules(Account account, Customer customer) {
+    private void applyBusinessCustomerRules(Account account, Customer customer) {
         if (account.getAccountType() == AccountType.SAVINGS || account.getAccountType() == AccountType.FIXED_TERM) {
-            return Mono.error(new RuntimeException("Business customers can only have checking accounts"));
+            throw new RuntimeException("Business customers can only have checking accounts");
         }
 
         String customerNameNormalized = customer.getFullName().trim().toLowerCase();
@@ -184,30 +262,17 @@ public class AccountService {
             account.setMaxFreeTransaction(maxFreeTransactionChecking);
             account.setTransactionCost(costTransactionChecking);
         }
-        if (account.getAccountType() == AccountType.CHECKING) {
-            return creditClientService.getCreditCardsByCustomer(account.getCustomerId())
-                    .defaultIfEmpty(Collections.emptyList())
-                    .flatMap(creditCards -> {
-                        if (creditCards != null && !creditCards.isEmpty()) {
-                            return customerClientService.updateVipPymStatus(account.getCustomerId(), true)
-                                    .thenReturn(creditCards);
-                        } else {
-                            return Mono.just(creditCards);
-                        }
-                    })
-                    .map(creditCards -> {
-                        if (creditCards != null && !creditCards.isEmpty()) {
-                            customerClientService.updateVipPymStatus(account.getCustomerId(), true).subscribe();
-                            account.setMaintenanFee(BigDecimal.valueOf(0));
-                            account.setPymAccount(true);
-                        } else {
-                            account.setMaintenanFee(maintenanFee);
-                            account.setPymAccount(false);
-                        }
-                        return account;
-                    });
+    }
+
+    private Account applyBusinessCreditCardRules(Account account, List<CreditCard> creditCards) {
+        if (creditCards != null && !creditCards.isEmpty()) {
+            account.setMaintenanFee(BigDecimal.valueOf(0));
+            account.setPymAccount(true);
+        } else {
+            account.setMaintenanFee(maintenanFee);
+            account.setPymAccount(false);
         }
-        return Mono.just(account);
+        return account;
     }
 
     private Customer fromJson(String customerJson) {
@@ -226,7 +291,7 @@ public class AccountService {
                         return Mono.error(new RuntimeException("Customer has overdue " +
                             "debt and cannot create a new credit"));
                     }
-                    if (account.getBalance() < 0) {
+                    if (hasNegativeBalance(account)) {
                         return Mono.error(new IllegalArgumentException("Account balance must be " +
                             "greater than or equal to 0"));
                     }
@@ -237,20 +302,223 @@ public class AccountService {
                                 account.setModifiedAt(null);
                                 return accountRepository.save(account);
                             })
-                            .doOnSuccess(accountEventProducer::publishAccountCreated);
+                            .doOnSuccess(this::publishAccountCreated);
+                })
+                .transform(RequestDeadline::bound);
+    }
+
+    private static boolean hasNegativeBalance(Account account) {
+        return account.getBalance() != null && account.getBalance().isNegative();
+    }
+
+    public Mono<List<BulkItemResult<Account>>> createAccounts(List<Account> accounts) {
+        if (accounts == null || accounts.isEmpty()) {
+            return Mono.error(new IllegalArgumentException("At least one account is required"));
+        }
+        if (accounts.size() > bulkMaxSize) {
+            return Mono.error(new IllegalArgumentException("A bulk request can contain at most "
+                + bulkMaxSize + " accounts"));
+        }
+        List<BulkItemResult<Account>> rejected = new ArrayList<>();
+        Map<String, List<BulkItemResult<Account>>> itemsByCustomer = new LinkedHashMap<>();
+        for (int i = 0; i < accounts.size(); i++) {
+            Account account = accounts.get(i);
+            if (account == null || account.getCustomerId() == null || account.getAccountType() == null) {
+                rejected.add(rejectedItem(i, account, "Customer ID and account type are required"));
+            } else if (hasNegativeBalance(account)) {
+                rejected.add(rejectedItem(i, account, "Account balance must be greater than or equal to 0"));
+            } else {
+                itemsByCustomer.computeIfAbsent(account.getCustomerId(), id -> new ArrayList<>())
+                        .add(BulkItemResult.<Account>builder().index(i).success(true).data(account).build());
+            }
+        }
+        return Flux.fromIterable(itemsByCustomer.entrySet())
+                .flatMap(entry -> validateCustomerBatch(entry.getKey(), entry.getValue()), bulkCustomerConcurrency)
+                .concatWith(Flux.fromIterable(rejected))
+                .collectList()
+                .flatMap(this::insertValidatedAccounts)
+                .map(results -> {
+                    results.sort(Comparator.comparingInt(BulkItemResult::getIndex));
+                    return results;
                 });
     }
 
+    private Flux<BulkItemResult<Account>> validateCustomerBatch(String customerId,
+                                                                List<BulkItemResult<Account>> items) {
+        return customerEligibilityClientService.hasOverdueDebt(customerId)
+                .flatMap(hasOverDueDebt -> {
+                    if (hasOverDueDebt) {
+                        return Mono.just(rejectAll(items, "Customer has overdue debt and cannot create a new credit"));
+                    }
+                    return validateCustomer(customerId)
+                            .flatMap(customer -> mongoTemplate.find(
+                                            new Query(Criteria.where("customerId").is(customerId)), Account.class)
+                                    .collectList()
+                                    .flatMap(existingAccounts -> creditCardsForBatch(customerId, customer, items)
+                                            .flatMap(creditCards -> applyBatchRules(customerId, customer,
+                                                    existingAccounts, creditCards, items))))
+                            .switchIfEmpty(Mono.fromSupplier(() -> rejectAll(items, "Customer not found")));
+                })
+                .onErrorResume(e -> {
+                    log.error("Error validating bulk accounts for customer {}: {}", customerId, e.getMessage());
+                    return Mono.just(rejectAll(items, e.getMessage()));
+                })
+                .flatMapMany(Flux::fromIterable);
+    }
+
+    private Mono<List<CreditCard>> creditCardsForBatch(String customerId, Customer customer,
+                                                       List<BulkItemResult<Account>> items) {
+        AccountType creditCardDependentType = customer.getCustomerType() == CustomerType.PERSONAL
+                ? AccountType.SAVINGS : AccountType.CHECKING;
+        boolean needsCreditCards = items.stream()
+                .anyMatch(item -> item.getData().getAccountType() == creditCardDependentType);
+        if (!needsCreditCards) {
+            return Mono.just(Collections.emptyList());
+        }
+        return creditClientService.getCreditCardsByCustomer(customerId)
+                .defaultIfEmpty(Collections.emptyList());
+    }
+
+    private Mono<List<BulkItemResult<Account>>> applyBatchRules(String customerId,
+                                                                Customer customer,
+                                                                List<Account> existingAccounts,
+                                                                List<CreditCard> creditCards,
+                                                                List<BulkItemResult<Account>> items) {
+        List<Account> knownAccounts = new ArrayList<>(existingAccounts);
+        boolean updateStatus = false;
+        for (BulkItemResult<Account> item : items) {
+            Account account = item.getData();
+            try {
+                if (customer.getCustomerType() == CustomerType.PERSONAL) {
+                    applyPersonalCustomerRules(account, knownAccounts, customer);
+                    if (account.getAccountType() == AccountType.SAVINGS) {
+                        applyPersonalCreditCardRules(account, creditCards, customer);
+                        updateStatus |= !creditCards.isEmpty();
+                    } else {
+                        account.setHolders(Collections.singletonList(customer.getFullName()));
+                    }
+                } else {
+                    applyBusinessCustomerRules(account, customer);
+                    if (account.getAccountType() == AccountType.CHECKING) {
+                        applyBusinessCreditCardRules(account, creditCards);
+                        updateStatus |= !creditCards.isEmpty();
+                    }
+                }
+                knownAccounts.add(account);
+            } catch (RuntimeException e) {
+                item.setSuccess(false);
+                item.setMessage(e.getMessage());
+            }
+        }
+        if (updateStatus) {
+            return vipPymUpdateQueue.update(customerId, true)
+                    .thenReturn(items);
+        }
+        return Mono.just(items);
+    }
+
+    private Mono<List<BulkItemResult<Account>>> insertValidatedAccounts(List<BulkItemResult<Account>> results) {
+        List<BulkItemResult<Account>> accepted = results.stream()
+                .filter(BulkItemResult::isSuccess)
+                .collect(Collectors.toList());
+        if (accepted.isEmpty()) {
+            return Mono.just(results);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<Account> accounts = accepted.stream()
+                .map(BulkItemResult::getData)
+                .collect(Collectors.toList());
+        accounts.forEach(account -> {
+            //Assigned up front so accounts written before a failing one can still be published
+            if (account.getId() == null) {
+                account.setId(new ObjectId().toHexString());
+            }
+            account.setCreatedAt(now);
+            account.setModifiedAt(null);
+        });
+        return insertAccounts(accepted).thenReturn(results);
+    }
+
+    /**
+     * Ordered insert of the accepted items. When one of them fails, the ones before it were written and are
+     * reported as created, the failing one is marked with its own error and the rest are inserted again.
+     */
+    private Mono<Void> insertAccounts(List<BulkItemResult<Account>> items) {
+        if (items.isEmpty()) {
+            return Mono.empty();
+        }
+        List<Account> accounts = items.stream()
+                .map(BulkItemResult::getData)
+                .collect(Collectors.toList());
+        return accountRepository.insert(accounts)
+                .doOnNext(this::publishAccountCreated)
+                .then(Mono.fromRunnable(() -> items.forEach(item -> item.setMessage("Account created successfully"))))
+                .onErrorResume(e -> {
+                    Optional<BulkWriteError> writeError = BulkWriteFailures.firstError(e);
+                    if (writeError.isEmpty()) {
+                        log.error("Error inserting {} bulk accounts: {}", accounts.size(), e.getMessage());
+                        items.forEach(item -> failItem(item, e.getMessage()));
+                        return Mono.empty();
+                    }
+                    int failed = writeError.get().getIndex();
+                    log.error("Error inserting bulk account {}: {}", items.get(failed).getIndex(),
+                            writeError.get().getMessage());
+                    items.subList(0, failed).forEach(item -> {
+                        publishAccountCreated(item.getData());
+                        item.setMessage("Account created successfully");
+                    });
+                    failItem(items.get(failed), writeError.get().getMessage());
+                    return insertAccounts(items.subList(failed + 1, items.size()));
+                })
+                .then();
+    }
+
+    private void publishAccountCreated(Account account) {
+        if (!changeStreamEmitsAccountEvents && account != null) {
+            accountEventProducer.publishAccountCreated(account);
+        }
+    }
+
+    private void publishAccountUpdate(Account previous, Account account) {
+        if (!changeStreamEmitsAccountEvents && account != null) {
+            accountEventProducer.publishAccountUpdate(previous, account);
+        }
+    }
+
+    private static void failItem(BulkItemResult<Account> item, String message) {
+        item.setSuccess(false);
+        item.setMessage("Error saving account: " + message);
+    }
+
+    private static List<BulkItemResult<Account>> rejectAll(List<BulkItemResult<Account>> items, String message) {
+        items.forEach(item -> {
+            item.setSuccess(false);
+            item.setMessage(message);
+        });
+        return items;
+    }
+
+    private static BulkItemResult<Account> rejectedItem(int index, Account account, String message) {
+        return BulkItemResult.<Account>builder()
+                .index(index)
+                .success(false)
+                .message(message)
+                .data(account)
+                .build();
+    }
+
     public Mono<Account> updateAccount(String accountId, Account updatedAccount) {
         return accountRepository.findById(accountId)
                 .flatMap(existingAccount -> {
+                    Account previousAccount = existingAccount.toBuilder().build();
                     existingAccount.setModifiedAt(LocalDateTime.now());
                     existingAccount.setBalance(updatedAccount.getBalance());
                     existingAccount.setHolders(updatedAccount.getHolders());
                     existingAccount.setSigners(updatedAccount.getSigners());
-                    return accountRepository.save(existingAccount);
-                })
-                .doOnSuccess(accountEventProducer::publishAccountUpdate);
+                    return accountRepository.save(existingAccount)
+                            .flatMap(accountCacheService::put)
+                            .doOnSuccess(savedAccount -> publishAccountUpdate(previousAccount, savedAccount));
+                });
     }
     public Mono<Void> deleteAccount(String accountId) {
         return accountRepository.findById(accountId)
@@ -260,38 +528,39 @@ public class AccountService {
                             .collectList()
                             .flatMap(accounts -> {
                                 if (accounts.isEmpty()) {
-                                    return customerClientService.updateVipPymStatus(account.getCustomerId(), false)
+                                    return vipPymUpdateQueue.update(account.getCustomerId(), false)
                                             .then(accountRepository.deleteById(accountId));
                                 }
                                 return customerClientService.getCustomerById(account.getCustomerId())
                                         .flatMap(customer -> {
-                                            Mono<Customer> updateStatus = Mono.empty();
+                                            Mono<Void> updateStatus = Mono.empty();
                                             if (customer.isPym()) {
                                                 boolean hasCheckingAccount = accounts.stream()
                                                         .anyMatch(acc -> acc.getAccountType() == AccountType.CHECKING);
                                                 if (!hasCheckingAccount) {
-                                                    updateStatus = customerClientService.
-                                                        updateVipPymStatus(account.getCustomerId(), false);
+                                                    updateStatus = vipPymUpdateQueue
+                                                        .update(account.getCustomerId(), false);
                                                 }
                                             }
                                             if (customer.isVip()) {
                                                 boolean hasSavingsAccount = accounts.stream()
                                                         .anyMatch(acc -> acc.getAccountType() == AccountType.SAVINGS);
                                                 if (!hasSavingsAccount) {
-                                                    updateStatus = customerClientService.
-                                                        updateVipPymStatus(account.getCustomerId(), false);
+                                                    updateStatus = vipPymUpdateQueue
+                                                        .update(account.getCustomerId(), false);
                                                 }
                                             }
                                             return updateStatus.then(accountRepository.deleteById(accountId));
                                         });
                             });
-                });
+                })
+                .then(accountCacheService.evict(accountId));
     }
     public Flux<Account> findAllAccounts() {
         return accountRepository.findAll();
     }
     public Mono<Account> getAccountById(String accountId) {
-        return accountRepository.findById(accountId);
+        return accountCacheService.getAccount(accountId);
     }
     public Flux<Account> getAccountsByCustomer(String customerId) {
         return accountRepository.findByCustomerId(customerId);
@@ -306,7 +575,8 @@ public class AccountService {
                         existingAccount.setVipAccount(isVipPym);
                         existingAccount.setMinBalanceRequirement(isVipPym ? minBalanceRequirement : null);
                     }
-                    return accountRepository.save(existingAccount);
+                    return accountRepository.save(existingAccount)
+                            .flatMap(accountCacheService::put);
                 });
     }
 
@@ -0,0 +1,26 @@
+package com.bank.accountservice.service;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+
+import java.util.Optional;
+
+/**
+ * Reads the failing item out of an ordered insertMany error. Spring translates the driver's
+ * MongoBulkWriteException (to DuplicateKeyException or BulkOperationException) but keeps it as the cause;
+ * its write error gives the index of the document that failed. The documents before it were written
+ * and the ones after it were not attempted.
+ */
+final class BulkWriteFailures {
+    private BulkWriteFailures() {
+    }
+
+    static Optional<BulkWriteError> firstError(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof MongoBulkWriteException) {
+                return ((MongoBulkWriteException) cause).getWriteErrors().stream().findFirst();
+            }
+        }
+        return Optional.empty();
+    }
+}
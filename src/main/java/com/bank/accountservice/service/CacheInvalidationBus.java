@@ -0,0 +1,110 @@
+package com.bank.accountservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Broadcasts evictions of in-memory cache entries to the other replicas over a Redis channel, so an entry
+ * one replica changed is dropped everywhere. Each cache registers the handler that evicts its local entry;
+ * a replica ignores its own messages. Messages sent while a replica is disconnected are not replayed, so
+ * the local entry TTLs still bound how long such an entry can be stale; state that has no TTL registers a
+ * resync callback, run each time the channel is (re)subscribed.
+ */
+@Slf4j
+@Service
+public class CacheInvalidationBus {
+    public static final String CHANNEL = "cache-invalidations";
+    private static final char SEPARATOR = '|';
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final boolean enabled;
+    private final Duration publishTimeout;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Map<String, Consumer<String>> handlers = new ConcurrentHashMap<>();
+    private final List<Runnable> resyncHandlers = new CopyOnWriteArrayList<>();
+    private Disposable subscription;
+
+    public CacheInvalidationBus(ReactiveRedisTemplate<String, String> redisTemplate,
+                                @Value("${cache.invalidation.enabled:true}") boolean enabled,
+                                @Value("${cache.invalidation.timeout-ms:200}") long publishTimeoutMs) {
+        this.redisTemplate = redisTemplate;
+        this.enabled = enabled;
+        this.publishTimeout = Duration.ofMillis(publishTimeoutMs);
+    }
+
+    public void register(String cache, Consumer<String> evict) {
+        handlers.put(cache, evict);
+    }
+
+    public void onResync(Runnable resync) {
+        resyncHandlers.add(resync);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Mono<Void> publish(String cache, String key) {
+        if (!enabled || key == null) {
+            return Mono.empty();
+        }
+        return redisTemplate.convertAndSend(CHANNEL, instanceId + SEPARATOR + cache + SEPARATOR + key)
+                .timeout(publishTimeout)
+                .doOnError(e -> log.error("Error broadcasting eviction of {} {}: {}", cache, key, e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (!enabled || subscription != null) {
+            return;
+        }
+        subscription = Flux.defer(() -> redisTemplate.listenToChannel(CHANNEL))
+                .doOnSubscribe(s -> resyncHandlers.forEach(Runnable::run))
+                .map(ReactiveSubscription.Message::getMessage)
+                .doOnNext(this::dispatch)
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(signal -> log.error("Cache invalidation channel failed, resubscribing: {}",
+                                signal.failure().getMessage())))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (subscription != null) {
+            subscription.dispose();
+            subscription = null;
+        }
+    }
+
+    void dispatch(String message) {
+        int cacheStart = message.indexOf(SEPARATOR);
+        int keyStart = message.indexOf(SEPARATOR, cacheStart + 1);
+        if (cacheStart < 0 || keyStart < 0 || instanceId.equals(message.substring(0, cacheStart))) {
+            return;
+        }
+        Consumer<String> evict = handlers.get(message.substring(cacheStart + 1, keyStart));
+        if (evict != null) {
+            evict.accept(message.substring(keyStart + 1));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.bank.accountservice.service;
+
+import com.bank.accountservice.client.RequestDeadlineExceededException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Lookup, error and payload statistics for one Redis backed cache. Counts are published as the standard
+ * cache.gets meter (result hit, miss or stale), cache.errors (reason deserialization, timeout or redis)
+ * and a cache.payload.size summary in bytes per read and write, and are also available as a snapshot
+ * for the cachestats actuator endpoint.
+ */
+public class CacheStatistics {
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter stale;
+    private final Counter deserializationFailures;
+    private final Counter timeouts;
+    private final Counter redisErrors;
+    private final DistributionSummary bytesRead;
+    private final DistributionSummary bytesWritten;
+
+    public CacheStatistics(String cache, MeterRegistry registry) {
+        this.hits = gets(cache, "hit", registry);
+        this.misses = gets(cache, "miss", registry);
+        this.stale = gets(cache, "stale", registry);
+        this.deserializationFailures = errors(cache, "deserialization", registry);
+        this.timeouts = errors(cache, "timeout", registry);
+        this.redisErrors = errors(cache, "redis", registry);
+        this.bytesRead = payload(cache, "read", registry);
+        this.bytesWritten = payload(cache, "write", registry);
+    }
+
+    public void hit() {
+        hits.increment();
+    }
+
+    public void miss() {
+        misses.increment();
+    }
+
+    public void stale() {
+        stale.increment();
+    }
+
+    public void read(int bytes) {
+        bytesRead.record(bytes);
+    }
+
+    public void written(int bytes) {
+        bytesWritten.record(bytes);
+    }
+
+    public void error(Throwable error) {
+        if (error instanceof TimeoutException || error instanceof RequestDeadlineExceededException) {
+            timeouts.increment();
+        } else if (error instanceof IOException) {
+            deserializationFailures.increment();
+        } else {
+            redisErrors.increment();
+        }
+    }
+
+    public Map<String, Object> snapshot() {
+        double lookups = hits.count() + misses.count() + stale.count();
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("hits", (long) hits.count());
+        snapshot.put("misses", (long) misses.count());
+        snapshot.put("staleHits", (long) stale.count());
+        snapshot.put("hitRatio", lookups == 0 ? 0.0 : hits.count() / lookups);
+        snapshot.put("deserializationFailures", (long) deserializationFailures.count());
+        snapshot.put("timeouts", (long) timeouts.count());
+        snapshot.put("redisErrors", (long) redisErrors.count());
+        snapshot.put("reads", bytesRead.count());
+        snapshot.put("bytesRead", (long) bytesRead.totalAmount());
+        snapshot.put("writes", bytesWritten.count());
+        snapshot.put("bytesWritten", (long) bytesWritten.totalAmount());
+        return snapshot;
+    }
+
+    private static Counter gets(String cache, String result, MeterRegistry registry) {
+        return Counter.builder("cache.gets")
+                .tag("cache", cache)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static Counter errors(String cache, String reason, MeterRegistry registry) {
+        return Counter.builder("cache.errors")
+                .tag("cache", cache)
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    private static DistributionSummary payload(String cache, String operation, MeterRegistry registry) {
+        return DistributionSummary.builder("cache.payload.size")
+                .baseUnit("bytes")
+                .tag("cache", cache)
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+}
@@ -0,0 +1,249 @@
+package com.bank.accountservice.service;
+
+import com.bank.accountservice.dto.change.DebitCardChangedEvent;
+import com.bank.accountservice.model.debitcard.DebitCard;
+import com.bank.accountservice.repository.DebitCardRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * In-memory index of issued card numbers: a bounded, short-lived cache of recently resolved card documents
+ * by card number, and a Bloom filter of every issued number. The filter is loaded once from the collection
+ * and then kept current from saves on this replica, saves broadcast by the other replicas and the change
+ * stream, and reloaded whenever the invalidation channel is resubscribed, since messages may have been
+ * missed. While it is current, a number it has never seen is answered as not issued without a query; when
+ * broadcasting is off it is only a hint for allocation. The unique cardNumber index is what finally rules
+ * out duplicates.
+ */
+@Slf4j
+@Service
+public class CardNumberIndex {
+    public static final String CACHE_NAME = "card-numbers";
+    public static final String CARD_IDS_CACHE_NAME = "card-ids";
+    private static final String ALL_CARDS = "*";
+    private final DebitCardRepository debitCardRepository;
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final CacheInvalidationBus invalidationBus;
+    private final Cache<String, DebitCard> cardsByNumber;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+    private volatile CardNumberBloomFilter filter;
+    private volatile CardNumberBloomFilter rebuilding;
+    private Disposable rebuildSubscription;
+
+    public CardNumberIndex(DebitCardRepository debitCardRepository,
+                           ReactiveMongoTemplate mongoTemplate,
+                           long expectedInsertions, double falsePositiveRate, long cacheMaxSize, long cacheTtlMs) {
+        this(debitCardRepository, mongoTemplate, null, expectedInsertions, falsePositiveRate, cacheMaxSize,
+                cacheTtlMs);
+    }
+
+    @Autowired
+    public CardNumberIndex(DebitCardRepository debitCardRepository,
+                           ReactiveMongoTemplate mongoTemplate,
+                           CacheInvalidationBus invalidationBus,
+                           @Value("${card-number-index.expected-insertions:1000000}") long expectedInsertions,
+                           @Value("${card-number-index.false-positive-rate:0.01}") double falsePositiveRate,
+                           @Value("${card-number-index.cache-max-size:50000}") long cacheMaxSize,
+                           @Value("${card-number-index.cache-ttl-ms:30000}") long cacheTtlMs) {
+        this.debitCardRepository = debitCardRepository;
+        this.mongoTemplate = mongoTemplate;
+        this.invalidationBus = invalidationBus;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.cardsByNumber = Caffeine.newBuilder()
+                .maximumSize(cacheMaxSize)
+                .expireAfterWrite(Duration.ofMillis(cacheTtlMs))
+                .build();
+        if (isBroadcasting()) {
+            invalidationBus.register(CACHE_NAME, this::cardChanged);
+            invalidationBus.register(CARD_IDS_CACHE_NAME, this::evictCardIds);
+            invalidationBus.onResync(this::reload);
+        }
+    }
+
+    //With broadcasting on, the first subscription to the invalidation channel loads the filter instead
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!isBroadcasting()) {
+            reload();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndex() {
+        mongoTemplate.indexOps(DebitCard.class)
+                .ensureIndex(new Index().on("cardNumber", Sort.Direction.ASC).unique().named("cardNumber_1"))
+                .subscribe(name -> log.info("Debit card number index ready: {}", name),
+                    e -> log.error("Error creating debit card number index: {}", e.getMessage()));
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (rebuildSubscription != null) {
+            rebuildSubscription.dispose();
+        }
+    }
+
+    private synchronized void reload() {
+        if (rebuildSubscription != null) {
+            rebuildSubscription.dispose();
+        }
+        filter = null;
+        rebuildSubscription = rebuild()
+                .subscribe(null, e -> log.error("Error loading card number index: {}", e.getMessage()));
+    }
+
+    public Mono<Void> rebuild() {
+        return Mono.defer(() -> {
+            CardNumberBloomFilter next = new CardNumberBloomFilter(expectedInsertions, falsePositiveRate);
+            rebuilding = next;
+            Query query = new Query();
+            query.fields().include("cardNumber");
+            return mongoTemplate.find(query, Document.class, "debit_cards")
+                    .map(document -> document.getString("cardNumber"))
+                    .doOnNext(next::add)
+                    .count()
+                    .doOnSuccess(count -> {
+                        filter = next;
+                        log.info("Card number index loaded with {} card numbers", count);
+                    })
+                    .doFinally(signal -> rebuilding = null)
+                    .then();
+        });
+    }
+
+    //False before the filter is loaded; without broadcasting also for numbers issued elsewhere since
+    public boolean likelyIssued(String cardNumber) {
+        CardNumberBloomFilter current = filter;
+        return cardNumber != null && current != null && current.mightContain(cardNumber);
+    }
+
+    public Mono<DebitCard> findByCardNumber(String cardNumber) {
+        if (cardNumber == null) {
+            return Mono.empty();
+        }
+        DebitCard cached = cardsByNumber.getIfPresent(cardNumber);
+        if (cached != null) {
+            return Mono.just(copy(cached));
+        }
+        CardNumberBloomFilter current = filter;
+        if (isBroadcasting() && current != null && !current.mightContain(cardNumber)) {
+            return Mono.empty();
+        }
+        return debitCardRepository.findByCardNumber(cardNumber)
+                .doOnNext(card -> {
+                    addNumber(cardNumber);
+                    cardsByNumber.put(cardNumber, copy(card));
+                });
+    }
+
+    public Mono<Boolean> isIssued(String cardNumber) {
+        if (cardNumber != null && cardsByNumber.getIfPresent(cardNumber) != null) {
+            return Mono.just(true);
+        }
+        return findByCardNumber(cardNumber).hasElement();
+    }
+
+    public DebitCard register(DebitCard card) {
+        if (card != null && card.getCardNumber() != null) {
+            addNumber(card.getCardNumber());
+            cardsByNumber.put(card.getCardNumber(), copy(card));
+            if (isBroadcasting()) {
+                invalidationBus.publish(CACHE_NAME, card.getCardNumber()).subscribe();
+            }
+        }
+        return card;
+    }
+
+    //Card ids are sent as one comma separated message per call rather than one message per card
+    public Mono<Void> invalidateCards(Collection<String> cardIds) {
+        return Mono.defer(() -> {
+            if (cardIds.isEmpty()) {
+                return Mono.empty();
+            }
+            evictLocal(new HashSet<>(cardIds));
+            return broadcast(String.join(",", cardIds));
+        });
+    }
+
+    public Mono<Void> invalidateAll() {
+        return Mono.defer(() -> {
+            cardsByNumber.invalidateAll();
+            return broadcast(ALL_CARDS);
+        });
+    }
+
+    @EventListener
+    public void onDebitCardChanged(DebitCardChangedEvent event) {
+        DebitCard card = event.getDebitCard();
+        if (card != null && card.getCardNumber() != null) {
+            cardChanged(card.getCardNumber());
+        } else if (event.getCardId() != null) {
+            cardsByNumber.asMap().values().removeIf(cached -> event.getCardId().equals(cached.getId()));
+        }
+    }
+
+    private void cardChanged(String cardNumber) {
+        addNumber(cardNumber);
+        cardsByNumber.invalidate(cardNumber);
+    }
+
+    private void evictCardIds(String message) {
+        if (ALL_CARDS.equals(message)) {
+            cardsByNumber.invalidateAll();
+        } else {
+            evictLocal(Set.of(message.split(",")));
+        }
+    }
+
+    private void evictLocal(Set<String> cardIds) {
+        cardsByNumber.asMap().values().removeIf(cached -> cardIds.contains(cached.getId()));
+    }
+
+    private Mono<Void> broadcast(String cardIds) {
+        return isBroadcasting() ? invalidationBus.publish(CARD_IDS_CACHE_NAME, cardIds) : Mono.empty();
+    }
+
+    private boolean isBroadcasting() {
+        return invalidationBus != null && invalidationBus.isEnabled();
+    }
+
+    private void addNumber(String cardNumber) {
+        CardNumberBloomFilter current = filter;
+        if (current != null) {
+            current.add(cardNumber);
+        }
+        CardNumberBloomFilter next = rebuilding;
+        if (next != null) {
+            next.add(cardNumber);
+        }
+    }
+
+    private static DebitCard copy(DebitCard card) {
+        return card.toBuilder()
+                .associatedAccountIds(card.getAssociatedAccountIds() == null ? null
+                    : new ArrayList<>(card.getAssociatedAccountIds()))
+                .build();
+    }
+}
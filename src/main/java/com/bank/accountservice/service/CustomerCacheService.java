@@ -1,16 +1,27 @@
 package com.bank.accountservice.service;
 
+import com.bank.accountservice.client.RequestDeadline;
+import com.bank.accountservice.client.StageTimer;
+import com.bank.accountservice.dto.CachedCustomer;
 import com.bank.accountservice.model.customer.Customer;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
 import java.util.concurrent.TimeoutException;
 
 @Slf4j
@@ -19,8 +30,21 @@ public class CustomerCacheService {
     private final ReactiveRedisTemplate<String, String> redisTemplate;
     private final ObjectMapper objectMapper;
     private static final String CUSTOMER_KEY_PREFIX = "Customer:";
-    public CustomerCacheService(ReactiveRedisTemplate<String, String> redisTemplate) {
+    private static final Duration LOOKUP_TIMEOUT = Duration.ofSeconds(5);
+    private static final String CACHE_TIMER = "customer.cache.requests";
+    private final MeterRegistry meterRegistry;
+    private final CacheStatistics statistics;
+    private final Duration freshFor;
+    private final Duration maxStale;
+    public CustomerCacheService(ReactiveRedisTemplate<String, String> redisTemplate,
+                                MeterRegistry meterRegistry,
+                                @Value("${customer-cache.fresh-ms:0}") long freshMs,
+                                @Value("${degraded-mode.customer.max-stale-ms:86400000}") long maxStaleMs) {
         this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.statistics = new CacheStatistics("customer", meterRegistry);
+        this.freshFor = Duration.ofMillis(freshMs);
+        this.maxStale = Duration.ofMillis(maxStaleMs);
         this.objectMapper = new ObjectMapper();
         this.objectMapper.registerModule(new JavaTimeModule());
         this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
@@ -29,18 +53,58 @@ public class CustomerCacheService {
         if (id == null) {
             return Mono.error(new IllegalArgumentException("Customer ID cannot be null"));
         }
-        return Mono.fromCallable(() -> objectMapper.writeValueAsString(customer))
+        return Mono.fromCallable(() -> objectMapper.writeValueAsString(new CachedCustomer(Instant.now(), customer)))
                 .flatMap(customerJson -> {
                     String key = CUSTOMER_KEY_PREFIX + id;
                     log.info("Saving customer to cache with key: {}", key);
+                    statistics.written(customerJson.getBytes(StandardCharsets.UTF_8).length);
                     return redisTemplate.opsForValue().set(key, customerJson);
                 })
                 .doOnSuccess(result -> log.info("Successfully cached customer with ID: {}", id))
                 .doOnError(error -> log.error("Error caching customer: {}", error.getMessage()))
-                .then();
+                .then()
+                .transform(StageTimer.timed(meterRegistry, CACHE_TIMER, () -> Tags.of("operation", "save"),
+                        "success", "success"));
     }
 
+    //Entries never expire here unless customer-cache.fresh-ms is set; entries written before cachedAt was
+    //recorded have no age and are treated as fresh
     public Mono<Customer> getCustomer(String id) {
+        return getCachedCustomer(id)
+                .doOnSuccess(this::recordLookup)
+                .filter(this::isFresh)
+                .map(CachedCustomer::getCustomer);
+    }
+
+    //Used in degraded mode only: accepts entries past their freshness as long as they are within maxStale
+    public Mono<CachedCustomer> getStaleCustomer(String id) {
+        return getCachedCustomer(id)
+                .filter(entry -> entry.getCachedAt() != null && age(entry).compareTo(maxStale) <= 0);
+    }
+
+    public Duration age(CachedCustomer entry) {
+        return Duration.between(entry.getCachedAt(), Instant.now());
+    }
+
+    public Map<String, Object> statistics() {
+        return statistics.snapshot();
+    }
+
+    private boolean isFresh(CachedCustomer entry) {
+        return freshFor.isZero() || entry.getCachedAt() == null || age(entry).compareTo(freshFor) <= 0;
+    }
+
+    private void recordLookup(CachedCustomer entry) {
+        if (entry == null) {
+            statistics.miss();
+        } else if (isFresh(entry)) {
+            statistics.hit();
+        } else {
+            statistics.stale();
+        }
+    }
+
+    private Mono<CachedCustomer> getCachedCustomer(String id) {
         if (id == null) {
             return Mono.error(new IllegalArgumentException("Customer ID cannot be null"));
         }
@@ -54,30 +118,42 @@ public class CustomerCacheService {
                         log.warn("Null value retrieved from Redis for key: {}", key);
                     } else {
                         log.info("Retrieved from cache for key {}: value length={}", key, value.length());
+                        statistics.read(value.getBytes(StandardCharsets.UTF_8).length);
                     }
                 })
                 .flatMap(customerJson -> {
                     log.info("Processing JSON for customer: {} (length: {})", key, customerJson.length());
                     try {
-                        Customer customer = objectMapper.readValue(customerJson, Customer.class);
-                        log.info("Successfully deserialized customer: {}", customer.getId());
-                        return Mono.just(customer);
+                        CachedCustomer entry = readEntry(customerJson);
+                        log.info("Successfully deserialized customer: {}", entry.getCustomer().getId());
+                        return Mono.just(entry);
                     } catch (Exception e) {
                         log.error("Error deserializing customer JSON: {}", e.getMessage(), e);
-                        return Mono.empty();
+                        return Mono.error(e);
                     }
                 })
-                .timeout(Duration.ofSeconds(5))
+                .transform(mono -> RequestDeadline.timeout(mono, LOOKUP_TIMEOUT))
                 .doOnError(TimeoutException.class, e ->
                         log.error("Redis operation timed out for key: {}", key))
+                .doOnError(statistics::error)
                 .doOnError(e -> {
                     if (!(e instanceof TimeoutException)) {
                         log.error("Error retrieving customer from cache: {}", e.getMessage());
                     }
                 })
+                .transform(StageTimer.timed(meterRegistry, CACHE_TIMER, () -> Tags.of("operation", "get"),
+                        "hit", "miss"))
                 .onErrorResume(ex -> {
                     log.error("Final error handling for retrieving customer: {}", ex.getMessage());
                     return Mono.empty();
                 });
     }
-}
\ No newline at end of file
+
+    private CachedCustomer readEntry(String json) throws IOException {
+        JsonNode node = objectMapper.readTree(json);
+        if (node.has("customer")) {
+            return objectMapper.treeToValue(node, CachedCustomer.class);
+        }
+        return new CachedCustomer(null, objectMapper.treeToValue(node, Customer.class));
+    }
+}
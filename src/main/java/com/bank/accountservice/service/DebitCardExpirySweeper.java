@@ -0,0 +1,157 @@
+package com.bank.accountservice.service;
+
+import com.bank.accountservice.model.debitcard.DebitCard;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves debit cards past their expirationDate to EXPIRED in the background. Each run walks the
+ * expirationDate index oldest-first in bounded batches with a pause between them, and publishes how
+ * far behind the oldest unexpired card is. Only the replica holding the sweeper lease runs it; the holder
+ * keeps the lease by renewing it on each run, and another replica takes over once it expires.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(prefix = "debit-cards.expiry-sweeper", name = "enabled", havingValue = "true",
+    matchIfMissing = true)
+public class DebitCardExpirySweeper {
+    public static final String EXPIRED_STATUS = "EXPIRED";
+    static final String SWEEPER_LEASE = "debit-card-expiry-sweeper";
+    private static final List<String> FINAL_STATUSES = List.of(EXPIRED_STATUS, "DELETED");
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final CardNumberIndex cardNumberIndex;
+    private final LeaseService leaseService;
+    private final Duration leaseDuration;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+    private final Duration batchPause;
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final AtomicLong lagSeconds = new AtomicLong(0);
+    private final Counter expiredCounter;
+
+    public DebitCardExpirySweeper(ReactiveMongoTemplate mongoTemplate,
+                                  CardNumberIndex cardNumberIndex,
+                                  LeaseService leaseService,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${debit-cards.expiry-sweeper.batch-size:500}") int batchSize,
+                                  @Value("${debit-cards.expiry-sweeper.max-batches-per-run:20}") int maxBatchesPerRun,
+                                  @Value("${debit-cards.expiry-sweeper.batch-pause-ms:200}") long batchPauseMs,
+                                  @Value("${debit-cards.expiry-sweeper.lease-ms:300000}") long leaseMs) {
+        this.mongoTemplate = mongoTemplate;
+        this.cardNumberIndex = cardNumberIndex;
+        this.leaseService = leaseService;
+        this.leaseDuration = Duration.ofMillis(leaseMs);
+        this.batchSize = batchSize;
+        this.maxBatchesPerRun = maxBatchesPerRun;
+        this.batchPause = Duration.ofMillis(batchPauseMs);
+        this.expiredCounter = Counter.builder("debit_cards.expiry.expired")
+                .description("Debit cards moved to EXPIRED by the sweeper")
+                .register(meterRegistry);
+        Gauge.builder("debit_cards.expiry.lag.seconds", lagSeconds, AtomicLong::get)
+                .description("Seconds since the oldest overdue card should have expired")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndex() {
+        mongoTemplate.indexOps(DebitCard.class)
+                .ensureIndex(new Index().on("expirationDate", Sort.Direction.ASC).named("expirationDate_1"))
+                .subscribe(name -> log.info("Debit card expiry index ready: {}", name),
+                    e -> log.error("Error creating debit card expiry index: {}", e.getMessage()));
+    }
+
+    @Scheduled(fixedDelayString = "${debit-cards.expiry-sweeper.interval-ms:60000}",
+            initialDelayString = "${debit-cards.expiry-sweeper.initial-delay-ms:30000}")
+    public void scheduledSweep() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Debit card expiry sweep still running, skipping this run");
+            return;
+        }
+        leaseService.tryAcquire(SWEEPER_LEASE, leaseDuration)
+                .flatMap(held -> {
+                    if (!held) {
+                        log.debug("Debit card expiry sweeper lease is held by another replica, skipping this run");
+                        return Mono.<Long>empty();
+                    }
+                    return sweep();
+                })
+                .doFinally(signal -> running.set(false))
+                .subscribe(count -> log.info("Debit card expiry sweep expired {} cards", count),
+                    e -> log.error("Error sweeping expired debit cards: {}", e.getMessage()));
+    }
+
+    public Mono<Long> sweep() {
+        LocalDateTime now = LocalDateTime.now();
+        return sweepBatch(now, 0, 0L)
+                .flatMap(expired -> updateLag(now).thenReturn(expired));
+    }
+
+    long getLagSeconds() {
+        return lagSeconds.get();
+    }
+
+    private Mono<Long> sweepBatch(LocalDateTime now, int batch, long expiredSoFar) {
+        Query query = overdueQuery(now)
+                .with(Sort.by(Sort.Direction.ASC, "expirationDate"))
+                .limit(batchSize);
+        query.fields().include("id");
+        return mongoTemplate.find(query, DebitCard.class)
+                .map(DebitCard::getId)
+                .collectList()
+                .flatMap(cardIds -> {
+                    if (cardIds.isEmpty()) {
+                        return Mono.just(expiredSoFar);
+                    }
+                    Query byIds = new Query(Criteria.where("id").in(cardIds).and("status").nin(FINAL_STATUSES));
+                    Update update = Update.update("status", EXPIRED_STATUS).set("modifiedAt", LocalDateTime.now());
+                    return mongoTemplate.updateMulti(byIds, update, DebitCard.class)
+                            .flatMap(result -> cardNumberIndex.invalidateCards(cardIds).thenReturn(result))
+                            .flatMap(result -> {
+                                expiredCounter.increment(result.getModifiedCount());
+                                long total = expiredSoFar + result.getModifiedCount();
+                                if (cardIds.size() < batchSize || batch + 1 >= maxBatchesPerRun) {
+                                    return Mono.just(total);
+                                }
+                                return Mono.delay(batchPause)
+                                        .then(Mono.defer(() -> sweepBatch(now, batch + 1, total)));
+                            });
+                });
+    }
+
+    private Mono<Void> updateLag(LocalDateTime now) {
+        Query oldest = overdueQuery(now)
+                .with(Sort.by(Sort.Direction.ASC, "expirationDate"))
+                .limit(1);
+        oldest.fields().include("expirationDate");
+        return mongoTemplate.findOne(oldest, DebitCard.class)
+                .map(card -> Math.max(0, Duration.between(card.getExpirationDate(), now).getSeconds()))
+                .defaultIfEmpty(0L)
+                .doOnNext(lagSeconds::set)
+                .then();
+    }
+
+    private static Query overdueQuery(LocalDateTime now) {
+        return new Query(Criteria.where("expirationDate").lt(now).and("status").nin(FINAL_STATUSES));
+    }
+}
@@ -2,24 +2,62 @@ package com.bank.accountservice.service;
 
 import com.bank.accountservice.client.CustomerEligibilityClientService;
 import com.bank.accountservice.dto.BalancePrimaryAccount;
+import com.bank.accountservice.dto.BulkItemResult;
+import com.bank.accountservice.dto.BulkStatusUpdateRequest;
+import com.bank.accountservice.dto.BulkStatusUpdateResult;
+import com.bank.accountservice.dto.CreateCardRequest;
+import com.bank.accountservice.model.account.Account;
 import com.bank.accountservice.model.debitcard.DebitCard;
 import com.bank.accountservice.repository.AccountRepository;
 import com.bank.accountservice.repository.DebitCardRepository;
+import com.mongodb.bulk.BulkWriteError;
+import org.bson.types.ObjectId;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 @Service
 public class DebitCardService {
+    private static final int DUPLICATE_KEY = 11000;
+    private static final int MAX_CARD_NUMBER_COLLISIONS = 3;
     @Autowired
     private DebitCardRepository debitCardRepository;
     @Autowired
     private AccountRepository accountRepository;
     @Autowired
     private CustomerEligibilityClientService customerEligibilityClientService;
+    @Autowired
+    private AccountCacheService accountCacheService;
+    @Autowired
+    private CardNumberIndex cardNumberIndex;
+    @Autowired
+    private AccountCardIndex accountCardIndex;
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+    @Value("${debit-cards.bulk.max-size:500}")
+    private int bulkMaxSize = 500;
+    @Value("${debit-cards.bulk.customer-concurrency:8}")
+    private int bulkCustomerConcurrency = 8;
+    @Value("${debit-cards.bulk.status-chunk-size:1000}")
+    private int statusChunkSize = 1000;
 
     public Mono<DebitCard> createDebitCard(String customerId, String primaryAccountId) {
         return customerEligibilityClientService.hasOverdueDebt(customerId)
@@ -33,7 +71,7 @@ public class DebitCardService {
                             .switchIfEmpty(Mono.error(new RuntimeException("The main account does not " +
                                 "belong to the client")))
                             .flatMap(account -> {
-                                return generateCardNumber().flatMap(cardNumber -> {
+                                return Mono.defer(this::generateCardNumber).flatMap(cardNumber -> {
                                     DebitCard newCard = new DebitCard();
                                     newCard.setCustomerId(customerId);
                                     newCard.setCardNumber(cardNumber);
@@ -44,12 +82,177 @@ public class DebitCardService {
                                     newCard.setCreatedAt(LocalDateTime.now());
                                     newCard.setModifiedAt(LocalDateTime.now());
 
-                                    return debitCardRepository.save(newCard);
-                                });
+                                    return saveCard(newCard);
+                                })
+                                .retryWhen(Retry.max(3).filter(DuplicateKeyException.class::isInstance));
                             });
                 });
     }
 
+    public Mono<List<BulkItemResult<DebitCard>>> createDebitCards(List<CreateCardRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            return Mono.error(new IllegalArgumentException("At least one card request is required"));
+        }
+        if (requests.size() > bulkMaxSize) {
+            return Mono.error(new IllegalArgumentException("A bulk request can contain at most "
+                + bulkMaxSize + " cards"));
+        }
+        List<BulkItemResult<DebitCard>> results = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            CreateCardRequest request = requests.get(i);
+            boolean valid = request != null && request.getCustomerId() != null
+                && request.getPrimaryAccountId() != null;
+            results.add(BulkItemResult.<DebitCard>builder()
+                    .index(i)
+                    .success(valid)
+                    .message(valid ? null : "Customer ID and primary account ID are required")
+                    .build());
+        }
+        Set<String> customerIds = results.stream()
+                .filter(BulkItemResult::isSuccess)
+                .map(result -> requests.get(result.getIndex()).getCustomerId())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        return Flux.fromIterable(customerIds)
+                .flatMap(customerId -> customerEligibilityClientService.hasOverdueDebt(customerId)
+                        .defaultIfEmpty(true)
+                        .onErrorReturn(true)
+                        .filter(hasOverDueDebt -> !hasOverDueDebt)
+                        .map(ignored -> customerId), bulkCustomerConcurrency)
+                .collect(Collectors.toSet())
+                .flatMap(eligibleCustomers -> {
+                    Set<String> accountIds = results.stream()
+                            .filter(BulkItemResult::isSuccess)
+                            .map(result -> requests.get(result.getIndex()))
+                            .filter(request -> eligibleCustomers.contains(request.getCustomerId()))
+                            .map(CreateCardRequest::getPrimaryAccountId)
+                            .collect(Collectors.toSet());
+                    return accountRepository.findAllById(accountIds)
+                            .collectMap(Account::getId)
+                            .map(accounts -> buildBulkCards(requests, results, eligibleCustomers, accounts));
+                })
+                .flatMap(cards -> insertBulkCards(cards, results))
+                .thenReturn(results);
+    }
+
+    private Map<Integer, DebitCard> buildBulkCards(List<CreateCardRequest> requests,
+                                                   List<BulkItemResult<DebitCard>> results,
+                                                   Set<String> eligibleCustomers,
+                                                   Map<String, Account> accounts) {
+        Map<Integer, DebitCard> cards = new LinkedHashMap<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (BulkItemResult<DebitCard> result : results) {
+            if (!result.isSuccess()) {
+                continue;
+            }
+            CreateCardRequest request = requests.get(result.getIndex());
+            Account account = accounts.get(request.getPrimaryAccountId());
+            if (!eligibleCustomers.contains(request.getCustomerId())) {
+                result.setSuccess(false);
+                result.setMessage("Customer has overdue debt and cannot create a new credit");
+            } else if (account == null || !request.getCustomerId().equals(account.getCustomerId())) {
+                result.setSuccess(false);
+                result.setMessage("The main account does not belong to the client");
+            } else {
+                DebitCard newCard = new DebitCard();
+                newCard.setCustomerId(request.getCustomerId());
+                newCard.setStatus("ACTIVE");
+                newCard.setPrimaryAccountId(request.getPrimaryAccountId());
+                newCard.setAssociatedAccountIds(new ArrayList<>(List.of(request.getPrimaryAccountId())));
+                newCard.setExpirationDate(now.plusYears(4));
+                newCard.setCreatedAt(now);
+                newCard.setModifiedAt(now);
+                cards.put(result.getIndex(), newCard);
+            }
+        }
+        return cards;
+    }
+
+    private Mono<Void> insertBulkCards(Map<Integer, DebitCard> cards, List<BulkItemResult<DebitCard>> results) {
+        //Assigned up front so cards written before a failing one keep their id
+        cards.values().stream()
+                .filter(card -> card.getId() == null)
+                .forEach(card -> card.setId(new ObjectId().toHexString()));
+        return insertBulkCards(new ArrayList<>(cards.entrySet()), results, 0);
+    }
+
+    /**
+     * Ordered insert with fresh card numbers. When one card fails, the ones before it were written and are
+     * reported as created. A card number taken in the meantime (duplicate key) is allocated again, up to
+     * MAX_CARD_NUMBER_COLLISIONS times; any other failure marks only that card, and the rest are inserted
+     * again.
+     */
+    private Mono<Void> insertBulkCards(List<Map.Entry<Integer, DebitCard>> pending,
+                                       List<BulkItemResult<DebitCard>> results, int collisions) {
+        if (pending.isEmpty()) {
+            return Mono.empty();
+        }
+        List<DebitCard> cards = pending.stream().map(Map.Entry::getValue).collect(Collectors.toList());
+        return allocateCardNumbers(cards.size(), new LinkedHashSet<>())
+                .flatMap(cardNumbers -> {
+                    Iterator<String> numbers = cardNumbers.iterator();
+                    cards.forEach(card -> card.setCardNumber(numbers.next()));
+                    return debitCardRepository.insert(cards)
+                            .map(cardNumberIndex::register)
+                            .map(accountCardIndex::cardSaved)
+                            .then();
+                })
+                .doOnSuccess(ignored -> pending.forEach(entry -> cardCreated(entry, results)))
+                .onErrorResume(e -> {
+                    Optional<BulkWriteError> writeError = BulkWriteFailures.firstError(e);
+                    if (writeError.isEmpty()) {
+                        pending.forEach(entry -> cardFailed(entry, results, e.getMessage()));
+                        return Mono.empty();
+                    }
+                    int failed = writeError.get().getIndex();
+                    pending.subList(0, failed).forEach(entry -> {
+                        accountCardIndex.cardSaved(cardNumberIndex.register(entry.getValue()));
+                        cardCreated(entry, results);
+                    });
+                    List<Map.Entry<Integer, DebitCard>> remaining =
+                        new ArrayList<>(pending.subList(failed + 1, pending.size()));
+                    if (writeError.get().getCode() == DUPLICATE_KEY && collisions < MAX_CARD_NUMBER_COLLISIONS) {
+                        remaining.add(0, pending.get(failed));
+                        return insertBulkCards(remaining, results, collisions + 1);
+                    }
+                    cardFailed(pending.get(failed), results, writeError.get().getMessage());
+                    return insertBulkCards(remaining, results, collisions);
+                });
+    }
+
+    private static void cardCreated(Map.Entry<Integer, DebitCard> entry, List<BulkItemResult<DebitCard>> results) {
+        results.get(entry.getKey()).setData(entry.getValue());
+        results.get(entry.getKey()).setMessage("Debit Card created successfully");
+    }
+
+    private static void cardFailed(Map.Entry<Integer, DebitCard> entry, List<BulkItemResult<DebitCard>> results,
+                                   String message) {
+        results.get(entry.getKey()).setSuccess(false);
+        results.get(entry.getKey()).setMessage("Error saving debit card: " + message);
+    }
+
+    private Mono<Set<String>> allocateCardNumbers(int count, Set<String> allocated) {
+        if (allocated.size() >= count) {
+            return Mono.just(allocated);
+        }
+        Set<String> candidates = new LinkedHashSet<>();
+        while (candidates.size() < count - allocated.size()) {
+            String candidate = randomCardNumber();
+            if (!allocated.contains(candidate)) {
+                candidates.add(candidate);
+            }
+        }
+        candidates.removeIf(cardNumberIndex::likelyIssued);
+        Mono<Set<String>> issued = candidates.isEmpty() ? Mono.just(Collections.emptySet())
+            : debitCardRepository.findByCardNumberIn(candidates)
+                .map(DebitCard::getCardNumber)
+                .collect(Collectors.toSet());
+        return issued.flatMap(taken -> {
+            candidates.removeAll(taken);
+            allocated.addAll(candidates);
+            return allocateCardNumbers(count, allocated);
+        });
+    }
+
     public Mono<DebitCard> associateAccountToCard(String cardId, String accountId) {
         return Mono.zip(
                         debitCardRepository.findById(cardId),
@@ -64,7 +267,7 @@ public class DebitCardService {
                         card.getAssociatedAccountIds().add(accountId);
                         card.setModifiedAt(LocalDateTime.now());
                     }
-                    return debitCardRepository.save(card);
+                    return saveCard(card);
                 });
     }
 
@@ -77,7 +280,7 @@ public class DebitCardService {
                     }
                     card.setPrimaryAccountId(newPrimaryAccountId);
                     card.setModifiedAt(LocalDateTime.now());
-                    return debitCardRepository.save(card);
+                    return saveCard(card);
                 });
     }
 
@@ -86,16 +289,16 @@ public class DebitCardService {
     }
 
     public Mono<DebitCard> getDebitCardByCardNumber(String cardNumber) {
-        return debitCardRepository.findByCardNumber(cardNumber);
+        return cardNumberIndex.findByCardNumber(cardNumber);
     }
     public Flux<DebitCard> getDebitCardByPrimaryAccountId(String primaryAccountId) {
-        return debitCardRepository.findByPrimaryAccountId(primaryAccountId);
+        return accountCardIndex.getCardsByPrimaryAccountId(primaryAccountId);
     }
     public Mono<DebitCard> getDebitCardById(String cardId) {
         return debitCardRepository.findById(cardId);
     }
     public Flux<DebitCard> getDebitCardsByAccountId(String accountId) {
-        return debitCardRepository.findByAssociatedAccountIdsContaining(accountId);
+        return accountCardIndex.getCardsByAccountId(accountId);
     }
 
     public Mono<DebitCard> updateCardStatus(String cardId, String newStatus) {
@@ -103,13 +306,74 @@ public class DebitCardService {
                 .flatMap(card -> {
                     card.setStatus(newStatus);
                     card.setModifiedAt(LocalDateTime.now());
-                    return debitCardRepository.save(card);
+                    return saveCard(card);
                 });
     }
 
+    public Mono<BulkStatusUpdateResult> updateCardStatuses(BulkStatusUpdateRequest request) {
+        return Mono.fromCallable(() -> bulkStatusQuery(request))
+                .flatMap(query -> mongoTemplate.updateMulti(query, statusUpdate(request.getStatus()), DebitCard.class))
+                .map(result -> BulkStatusUpdateResult.builder()
+                        .status(request.getStatus())
+                        .matchedCount(result.getMatchedCount())
+                        .modifiedCount(result.getModifiedCount())
+                        .build())
+                .flatMap(result -> cardNumberIndex.invalidateAll().thenReturn(result));
+    }
+
+    public Flux<String> streamCardStatusUpdates(BulkStatusUpdateRequest request) {
+        return Mono.fromCallable(() -> bulkStatusQuery(request))
+                .flatMapMany(query -> {
+                    query.fields().include("id");
+                    return mongoTemplate.find(query, DebitCard.class);
+                })
+                .map(DebitCard::getId)
+                .buffer(statusChunkSize)
+                .concatMap(cardIds -> mongoTemplate.updateMulti(
+                                new Query(Criteria.where("id").in(cardIds).and("status").ne(request.getStatus())),
+                                statusUpdate(request.getStatus()), DebitCard.class)
+                        .then(cardNumberIndex.invalidateCards(cardIds))
+                        .thenMany(Flux.fromIterable(cardIds)));
+    }
+
+    private Query bulkStatusQuery(BulkStatusUpdateRequest request) {
+        if (request == null || request.getStatus() == null || request.getStatus().isBlank()) {
+            throw new IllegalArgumentException("The new status is required");
+        }
+        Criteria criteria = new Criteria();
+        boolean hasSelector = false;
+        if (request.getCardIds() != null && !request.getCardIds().isEmpty()) {
+            criteria.and("id").in(request.getCardIds());
+            hasSelector = true;
+        }
+        if (request.getCustomerId() != null) {
+            criteria.and("customerId").is(request.getCustomerId());
+            hasSelector = true;
+        }
+        if (request.getExpiringBefore() != null) {
+            criteria.and("expirationDate").lt(request.getExpiringBefore());
+            hasSelector = true;
+        }
+        if (request.getCurrentStatus() != null) {
+            criteria.and("status").is(request.getCurrentStatus());
+            hasSelector = true;
+        } else {
+            criteria.and("status").ne(request.getStatus());
+        }
+        if (!hasSelector) {
+            throw new IllegalArgumentException("At least one of cardIds, customerId, currentStatus or "
+                + "expiringBefore is required");
+        }
+        return new Query(criteria);
+    }
+
+    private static Update statusUpdate(String status) {
+        return Update.update("status", status).set("modifiedAt", LocalDateTime.now());
+    }
+
     public Mono<BalancePrimaryAccount> getBalancePrimaryAccount(String debitCardId) {
         return debitCardRepository.findById(debitCardId)
-                .flatMap(debitCard -> accountRepository.findById(debitCard.getPrimaryAccountId())
+                .flatMap(debitCard -> accountCacheService.getAccount(debitCard.getPrimaryAccountId())
                         .map(account -> BalancePrimaryAccount.builder()
                                 .cardId(debitCard.getId())
                                 .cardNumber(debitCard.getCardNumber())
@@ -124,21 +388,22 @@ public class DebitCardService {
                 .flatMap(card -> {
                     card.setStatus("DELETED");
                     card.setModifiedAt(LocalDateTime.now());
-                    return debitCardRepository.save(card);
+                    return saveCard(card);
                 });
     }
 
+    private Mono<DebitCard> saveCard(DebitCard card) {
+        return debitCardRepository.save(card)
+                .map(cardNumberIndex::register)
+                .map(accountCardIndex::cardSaved);
+    }
+
     private Mono<String> generateCardNumber() {
-        StringBuilder numberBuilder = new StringBuilder("4");
-        for (int i = 0; i < 14; i++) {
-            numberBuilder.append((int) (Math.random() * 10));
+        String candidate = randomCardNumber();
+        if (cardNumberIndex.likelyIssued(candidate)) {
+            return Mono.defer(this::generateCardNumber);
         }
-        String baseNumber = numberBuilder.toString();
-        int checkDigit = calculateLuhnCheckDigit(baseNumber);
-        String candidate = baseNumber + checkDigit;
-
-        return debitCardRepository.findByCardNumber(candidate)
-                .hasElement()
+        return cardNumberIndex.isIssued(candidate)
                 .flatMap(exists -> {
                     if (exists) {
                         return generateCardNumber();
@@ -148,6 +413,15 @@ public class DebitCardService {
                 });
     }
 
+    private String randomCardNumber() {
+        StringBuilder numberBuilder = new StringBuilder("4");
+        for (int i = 0; i < 14; i++) {
+            numberBuilder.append((int) (Math.random() * 10));
+        }
+        String baseNumber = numberBuilder.toString();
+        return baseNumber + calculateLuhnCheckDigit(baseNumber);
+    }
+
     private int calculateLuhnCheckDigit(String number) {
         int sum = 0;
         boolean alternate = false;
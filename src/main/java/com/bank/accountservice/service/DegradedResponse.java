@@ -0,0 +1,42 @@
+package com.bank.accountservice.service;
+
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects, for the current request, the places where a dependency was unavailable and the service fell
+ * back to cached data or deferred work. It travels in the Reactor context and is turned into a Warning
+ * header on the response.
+ */
+public final class DegradedResponse {
+    private static final Object CONTEXT_KEY = DegradedResponse.class;
+    private final Set<String> reasons = ConcurrentHashMap.newKeySet();
+
+    public static Context with(Context context, DegradedResponse response) {
+        return context.put(CONTEXT_KEY, response);
+    }
+
+    public static Mono<Void> mark(String reason) {
+        return Mono.deferContextual(context -> {
+            context.<DegradedResponse>getOrEmpty(CONTEXT_KEY).ifPresent(response -> response.reasons.add(reason));
+            return Mono.empty();
+        });
+    }
+
+    public boolean isDegraded() {
+        return !reasons.isEmpty();
+    }
+
+    public Set<String> getReasons() {
+        return Set.copyOf(reasons);
+    }
+
+    //RFC 7234 warn-code 110 "Response is Stale"
+    public String warningHeader() {
+        return "110 - \"Degraded response: " + String.join("; ", new TreeSet<>(reasons)) + "\"";
+    }
+}
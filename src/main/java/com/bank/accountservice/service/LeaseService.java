@@ -0,0 +1,60 @@
+package com.bank.accountservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.UUID;
+
+/**
+ * Named, time-bounded leases kept in Mongo, for work that only one replica may run at a time. A lease is
+ * taken with a conditional upsert: it succeeds when the lease is free, expired or already held by this
+ * instance, and fails on the duplicate _id otherwise. Holders renew it by acquiring it again before it
+ * expires.
+ */
+@Slf4j
+@Service
+public class LeaseService {
+    public static final String LEASE_COLLECTION = "leases";
+    private final ReactiveMongoTemplate mongoTemplate;
+    private final String owner;
+
+    public LeaseService(ReactiveMongoTemplate mongoTemplate) {
+        this(mongoTemplate, UUID.randomUUID().toString());
+    }
+
+    LeaseService(ReactiveMongoTemplate mongoTemplate, String owner) {
+        this.mongoTemplate = mongoTemplate;
+        this.owner = owner;
+    }
+
+    public Mono<Boolean> tryAcquire(String name, Duration duration) {
+        Date now = new Date();
+        Query query = Query.query(Criteria.where("_id").is(name)
+                .orOperator(Criteria.where("owner").is(owner), Criteria.where("expiresAt").lt(now)));
+        Update update = Update.update("owner", owner)
+                .set("expiresAt", Date.from(now.toInstant().plus(duration)));
+        return mongoTemplate.upsert(query, update, LEASE_COLLECTION)
+                .thenReturn(true)
+                .onErrorResume(DuplicateKeyException.class, e -> Mono.just(false))
+                .onErrorResume(e -> {
+                    log.error("Error acquiring lease {}: {}", name, e.getMessage());
+                    return Mono.just(false);
+                });
+    }
+
+    public Mono<Void> release(String name) {
+        Query query = Query.query(Criteria.where("_id").is(name).and("owner").is(owner));
+        return mongoTemplate.remove(query, LEASE_COLLECTION)
+                .doOnError(e -> log.error("Error releasing lease {}: {}", name, e.getMessage()))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+}
@@ -0,0 +1,124 @@
+package com.bank.accountservice.service;
+
+import com.bank.accountservice.client.CustomerClientService;
+import com.bank.accountservice.client.DownstreamUnavailableException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * VIP/PYM flag updates on the customer service are a side effect of account changes, not part of them:
+ * when the customer service is unavailable the update is kept here, latest value per customer, and
+ * replayed once its circuit breaker lets calls through again. Calls for the same customer, updates and
+ * replays alike, are chained so only one is in flight at a time and each runs after the one before it, so a
+ * replayed value never lands after a newer one.
+ */
+@Slf4j
+@Service
+public class VipPymUpdateQueue {
+    private final CustomerClientService customerClientService;
+    private final Map<String, Boolean> pending = new ConcurrentHashMap<>();
+    private final Map<String, Mono<Void>> tails = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+
+    public VipPymUpdateQueue(CustomerClientService customerClientService,
+                             MeterRegistry meterRegistry,
+                             @Value("${degraded-mode.vip-pym.max-pending:10000}") int maxSize) {
+        this.customerClientService = customerClientService;
+        this.maxSize = maxSize;
+        Gauge.builder("degraded.vip_pym.pending", pending, Map::size)
+                .description("VIP/PYM status updates waiting for the customer service")
+                .register(meterRegistry);
+    }
+
+    //A successful update also supersedes any value still queued for the customer
+    public Mono<Void> update(String customerId, boolean isVipPym) {
+        return chain(customerId, () -> {
+            if (!customerClientService.isAvailable()) {
+                return enqueue(customerId, isVipPym);
+            }
+            return customerClientService.updateVipPymStatus(customerId, isVipPym)
+                    .then(Mono.fromRunnable(() -> pending.remove(customerId)))
+                    .then()
+                    .onErrorResume(DownstreamUnavailableException.class, e -> enqueue(customerId, isVipPym));
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${degraded-mode.vip-pym.retry-interval-ms:30000}")
+    public void scheduledDrain() {
+        if (pending.isEmpty() || !draining.compareAndSet(false, true)) {
+            return;
+        }
+        drain()
+                .doFinally(signal -> draining.set(false))
+                .subscribe(count -> log.info("Replayed {} queued VIP/PYM status updates", count),
+                    e -> log.error("Error replaying queued VIP/PYM status updates: {}", e.getMessage()));
+    }
+
+    public Mono<Long> drain() {
+        if (!customerClientService.isAvailable()) {
+            return Mono.just(0L);
+        }
+        return Flux.fromIterable(Set.copyOf(pending.keySet()))
+                .concatMap(customerId -> chain(customerId, () -> replay(customerId)))
+                .filter(Boolean::booleanValue)
+                .count();
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    private Mono<Boolean> replay(String customerId) {
+        Boolean isVipPym = pending.get(customerId);
+        if (isVipPym == null) {
+            return Mono.just(false);
+        }
+        return customerClientService.updateVipPymStatus(customerId, isVipPym)
+                .then(Mono.fromCallable(() -> pending.remove(customerId, isVipPym)))
+                .onErrorResume(e -> {
+                    log.warn("Queued VIP/PYM update for customer {} failed again: {}", customerId, e.getMessage());
+                    return Mono.just(false);
+                });
+    }
+
+    //Runs the call once the previous call for the same customer has finished, whatever its outcome
+    private <T> Mono<T> chain(String customerId, Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            Sinks.Empty<Void> done = Sinks.empty();
+            Mono<Void> tail = done.asMono();
+            Mono<Void> previous = tails.put(customerId, tail);
+            return (previous == null ? Mono.<Void>empty() : previous)
+                    .then(Mono.defer(call))
+                    .doFinally(signal -> {
+                        tails.remove(customerId, tail);
+                        done.tryEmitEmpty();
+                    });
+        });
+    }
+
+    private Mono<Void> enqueue(String customerId, boolean isVipPym) {
+        if (pending.size() >= maxSize && !pending.containsKey(customerId)) {
+            log.error("VIP/PYM update queue is full, dropping update for customer {}", customerId);
+            return Mono.error(new DownstreamUnavailableException(
+                    "Customer service is not available to update VIP/PYM status. " +
+                            "Cannot continue with account creation.", null));
+        }
+        pending.put(customerId, isVipPym);
+        log.warn("Customer service unavailable, queued VIP/PYM status {} for customer {}", isVipPym, customerId);
+        return DegradedResponse.mark("VIP/PYM status update queued");
+    }
+}
@@ -0,0 +1,77 @@
+package com.bank.accountservice.client;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.net.ConnectException;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+class AdaptiveConcurrencyLimiterTest {
+    @Test
+    void limit_RejectsCallsOverTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 2, 1, 10, 0.5, 3, 6, 100);
+        Sinks.One<String> first = Sinks.one();
+        Sinks.One<String> second = Sinks.one();
+        limiter.limit(first.asMono()).subscribe();
+        limiter.limit(second.asMono()).subscribe();
+        assertThat(limiter.getInFlight()).isEqualTo(2);
+        StepVerifier.create(limiter.limit(Mono.just("third")))
+                .expectError(ConcurrencyLimitExceededException.class)
+                .verify();
+        first.tryEmitValue("done");
+        assertThat(limiter.getInFlight()).isEqualTo(1);
+        StepVerifier.create(limiter.limit(Mono.just("third")))
+                .expectNext("third")
+                .verifyComplete();
+        second.tryEmitEmpty();
+        assertThat(limiter.getInFlight()).isZero();
+    }
+    @Test
+    void limit_TimeoutsBackOffMultiplicatively() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 10, 2, 20, 0.5, 3, 6, 100);
+        StepVerifier.create(limiter.limit(Mono.error(new RuntimeException("wrapped", new TimeoutException()))))
+                .expectError(RuntimeException.class)
+                .verify();
+        assertThat(limiter.getLimit()).isEqualTo(5);
+        StepVerifier.create(limiter.limit(Mono.error(new ConnectException("refused"))))
+                .expectError(ConnectException.class)
+                .verify();
+        StepVerifier.create(limiter.limit(Mono.error(new ConnectException("refused"))))
+                .expectError(ConnectException.class)
+                .verify();
+        assertThat(limiter.getLimit()).isEqualTo(2);
+        StepVerifier.create(limiter.limit(Mono.error(new IllegalArgumentException("Client error: 404"))))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        assertThat(limiter.getLimit()).isEqualTo(2);
+    }
+    @Test
+    void onSample_GrowsWhileLatencyIsFlatAndShrinksWhenItQueues() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("test", 10, 2, 12, 0.5, 3, 6, 1000);
+        limiter.onSample(1_000_000, 10);
+        limiter.onSample(1_000_000, 10);
+        limiter.onSample(1_000_000, 10);
+        assertThat(limiter.getLimit()).isEqualTo(12);
+        limiter.onSample(1_000_000, 1);
+        assertThat(limiter.getLimit()).isEqualTo(12);
+        limiter.onSample(4_000_000, 12);
+        assertThat(limiter.getLimit()).isEqualTo(11);
+        limiter.onSample(1_400_000, 11);
+        assertThat(limiter.getLimit()).isEqualTo(11);
+    }
+    @Test
+    void registry_ReusesLimiterAndPublishesGauges() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AdaptiveConcurrencyLimiterRegistry registry = new AdaptiveConcurrencyLimiterRegistry(meterRegistry,
+                20, 4, 200, 0.9, 3, 6, 1000);
+        AdaptiveConcurrencyLimiter limiter = registry.limiter("creditService");
+        assertThat(registry.limiter("creditService")).isSameAs(limiter);
+        assertThat(limiter.getName()).isEqualTo("creditService");
+        assertThat(meterRegistry.get("downstream.concurrency.limit").tag("client", "creditService").gauge().value())
+                .isEqualTo(20.0);
+        assertThat(meterRegistry.get("downstream.concurrency.in.flight").gauge().value()).isZero();
+    }
+}
@@ -0,0 +1,154 @@
+package com.bank.accountservice.client;
+
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchEndpointTest {
+    private final MockWebServer server = new MockWebServer();
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+    private boolean batchSupported = true;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String path = request.getPath();
+                requests.add(request.getMethod() + " " + path);
+                if (path.endsWith("/batch") && !batchSupported) {
+                    return new MockResponse().setResponseCode(404);
+                }
+                switch (path) {
+                    case "/customer-eligibility/has-overdue-debt/batch":
+                        return json("{\"status\":200,\"data\":{\"c1\":false,\"c2\":true}}");
+                    case "/customer-eligibility/has-overdue-debt/c1":
+                        return json("{\"status\":200,\"data\":false}");
+                    case "/customer-eligibility/has-overdue-debt/c2":
+                        return json("{\"status\":200,\"data\":true}");
+                    case "/credit-cards/customer/c1":
+                        return json("{\"status\":200,\"data\":[{\"id\":\"card-1\",\"customerId\":\"c1\"}]}");
+                    case "/credit-cards/customers/batch":
+                        return json("{\"status\":200,\"data\":{\"c1\":[{\"id\":\"card-1\",\"customerId\":\"c1\"}]}}");
+                    default:
+                        return new MockResponse().setResponseCode(500);
+                }
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    void concurrentSingleLookupsAreSentAsOneBatch() {
+        CustomerEligibilityClientService service = eligibilityService();
+        StepVerifier.create(Mono.zip(service.hasOverdueDebt("c1"), service.hasOverdueDebt("c2")))
+                .assertNext(results -> {
+                    assertFalse(results.getT1());
+                    assertTrue(results.getT2());
+                })
+                .verifyComplete();
+        assertEquals(List.of("POST /customer-eligibility/has-overdue-debt/batch"), requests);
+    }
+
+    @Test
+    void fallsBackToSingleCallsWhenServerLacksBatchEndpoint() {
+        batchSupported = false;
+        CustomerEligibilityClientService service = eligibilityService();
+        StepVerifier.create(service.hasOverdueDebtByCustomer(Set.of("c1", "c2")))
+                .expectNext(Map.of("c1", false, "c2", true))
+                .verifyComplete();
+        StepVerifier.create(service.hasOverdueDebtByCustomer(Set.of("c1", "c2")))
+                .expectNext(Map.of("c1", false, "c2", true))
+                .verifyComplete();
+        assertEquals(1, requests.stream().filter(request -> request.endsWith("/batch")).count());
+        assertEquals(5, requests.size());
+    }
+
+    @Test
+    void batchesCreditCardLookups() {
+        CreditClientService service = creditService();
+        StepVerifier.create(Mono.zip(service.getCreditCardsByCustomer("c1"),
+                        service.getCreditCardsByCustomer("c2").defaultIfEmpty(List.of())))
+                .assertNext(results -> {
+                    assertEquals("card-1", results.getT1().get(0).getId());
+                    assertTrue(results.getT2().isEmpty());
+                })
+                .verifyComplete();
+        assertEquals(List.of("POST /credit-cards/customers/batch"), requests);
+    }
+
+    @Test
+    void failedSingleCallFailsOnlyItsOwnLookup() {
+        batchSupported = false;
+        CreditClientService service = creditService();
+        StepVerifier.create(Mono.zip(service.getCreditCardsByCustomer("c1"),
+                        service.getCreditCardsByCustomer("c2").map(cards -> "value").onErrorReturn("failed")))
+                .assertNext(results -> {
+                    assertEquals("card-1", results.getT1().get(0).getId());
+                    assertEquals("failed", results.getT2());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void perKeyConcurrencyStaysBelowBulkheadLimit() {
+        assertEquals(25, new BatchEndpoint("test", Duration.ofMinutes(1), 100, 50).getPerKeyConcurrency());
+        assertEquals(8, new BatchEndpoint("test", Duration.ofMinutes(1), 8, 50).getPerKeyConcurrency());
+        assertEquals(1, new BatchEndpoint("test", Duration.ofMinutes(1), 8, 1).getPerKeyConcurrency());
+    }
+
+    private CreditClientService creditService() {
+        return new CreditClientService(WebClient.builder(), HttpClient.create(), baseUrl(),
+                CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults(), limiterRegistry(),
+                downstreamRetry(), new SimpleMeterRegistry(), 5, 100, 8, 300000);
+    }
+
+    private CustomerEligibilityClientService eligibilityService() {
+        return new CustomerEligibilityClientService(WebClient.builder(), HttpClient.create(), baseUrl(),
+                CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults(), limiterRegistry(),
+                downstreamRetry(), new SimpleMeterRegistry(), 5, 100, 8, 300000);
+    }
+
+    private String baseUrl() {
+        return server.url("/").toString();
+    }
+
+    private static MockResponse json(String body) {
+        return new MockResponse().setHeader("Content-Type", "application/json").setBody(body);
+    }
+
+    private AdaptiveConcurrencyLimiterRegistry limiterRegistry() {
+        return new AdaptiveConcurrencyLimiterRegistry(new SimpleMeterRegistry(), 20, 4, 200, 0.9, 3, 6, 1000);
+    }
+
+    private DownstreamRetry downstreamRetry() {
+        return new DownstreamRetry(new SimpleMeterRegistry(), 2, 1, 10, 0.5, 2000, 5000, 0.1, 20);
+    }
+}
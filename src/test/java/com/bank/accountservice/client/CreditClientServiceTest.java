@@ -2,6 +2,7 @@ package com.bank.accountservice.client;
 
 import com.bank.accountservice.model.creditcard.CreditCard;
 import com.bank.accountservice.model.creditcard.CreditCardType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -9,12 +10,15 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
 import reactor.test.StepVerifier;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
 import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.List;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -31,15 +35,18 @@ class CreditClientServiceTest {
     private CreditClientService creditClientService;
     @BeforeEach
     void setUp() {
+        when(webClientBuilder.clientConnector(any())).thenReturn(webClientBuilder);
         when(webClientBuilder.baseUrl(anyString())).thenReturn(webClientBuilder);
         when(webClientBuilder.build()).thenReturn(webClient);
         // Mock para CircuitBreaker
         when(circuitBreakerRegistry.circuitBreaker("creditService")).thenReturn(circuitBreaker);
         when(circuitBreaker.getName()).thenReturn("creditService");
         when(circuitBreaker.getState()).thenReturn(CircuitBreaker.State.CLOSED);
-        creditClientService = spy(new CreditClientService(webClientBuilder,
+        creditClientService = spy(new CreditClientService(webClientBuilder, HttpClient.create(),
                 "http://localhost:8080",
-                circuitBreakerRegistry));
+                circuitBreakerRegistry, BulkheadRegistry.ofDefaults(), limiterRegistry(), downstreamRetry(),
+                new SimpleMeterRegistry(),
+                0, 100, 8, 300000));
     }
     @Test
     void getCreditCardsByCustomer_Success() {
@@ -119,4 +126,10 @@ class CreditClientServiceTest {
         card.setCreditLimit(new BigDecimal("1000"));
         return card;
     }
-}
\ No newline at end of file
+    private AdaptiveConcurrencyLimiterRegistry limiterRegistry() {
+        return new AdaptiveConcurrencyLimiterRegistry(new SimpleMeterRegistry(), 20, 4, 200, 0.9, 3, 6, 1000);
+    }
+    private DownstreamRetry downstreamRetry() {
+        return new DownstreamRetry(new SimpleMeterRegistry(), 2, 1, 10, 0.5, 2000, 5000, 0.1, 20);
+    }
+}
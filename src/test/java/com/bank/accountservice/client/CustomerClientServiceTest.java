@@ -6,12 +6,18 @@ import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
 import reactor.test.StepVerifier;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import java.time.Duration;
+
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -28,15 +34,19 @@ class CustomerClientServiceTest {
     private CustomerClientService customerClientService;
     @BeforeEach
     void setUp() {
+        when(webClientBuilder.clientConnector(any())).thenReturn(webClientBuilder);
         when(webClientBuilder.baseUrl(anyString())).thenReturn(webClientBuilder);
         when(webClientBuilder.build()).thenReturn(webClient);
         // Mock para CircuitBreaker
         when(circuitBreakerRegistry.circuitBreaker("customerService")).thenReturn(circuitBreaker);
         when(circuitBreaker.getName()).thenReturn("customerService");
         when(circuitBreaker.getState()).thenReturn(CircuitBreaker.State.CLOSED);
-        customerClientService = spy(new CustomerClientService(webClientBuilder,
+        customerClientService = spy(new CustomerClientService(webClientBuilder, HttpClient.create(),
                 "http://localhost:8080",
-                circuitBreakerRegistry));
+                circuitBreakerRegistry, BulkheadRegistry.ofDefaults(), limiterRegistry(), downstreamRetry(),
+                new SimpleMeterRegistry(),
+                new RequestHedger("customerService", false, 95, Duration.ofMillis(20), Duration.ofMillis(500),
+                        0.1, 10, 200, new SimpleMeterRegistry())));
     }
     @Test
     void getCustomerById_Success() {
@@ -113,4 +123,10 @@ class CustomerClientServiceTest {
         customer.setCustomerType(CustomerType.PERSONAL);
         return customer;
     }
-}
\ No newline at end of file
+    private AdaptiveConcurrencyLimiterRegistry limiterRegistry() {
+        return new AdaptiveConcurrencyLimiterRegistry(new SimpleMeterRegistry(), 20, 4, 200, 0.9, 3, 6, 1000);
+    }
+    private DownstreamRetry downstreamRetry() {
+        return new DownstreamRetry(new SimpleMeterRegistry(), 2, 1, 10, 0.5, 2000, 5000, 0.1, 20);
+    }
+}
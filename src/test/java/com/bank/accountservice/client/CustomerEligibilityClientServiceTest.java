@@ -4,17 +4,21 @@ import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
 import reactor.test.StepVerifier;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
 import io.github.resilience4j.circuitbreaker.CircuitBreaker;
 
 import java.util.function.Function;
 import java.util.function.Predicate;
 
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -31,15 +35,18 @@ class CustomerEligibilityClientServiceTest {
     private CustomerEligibilityClientService eligibilityService;
     @BeforeEach
     void setUp() {
+        when(webClientBuilder.clientConnector(any())).thenReturn(webClientBuilder);
         when(webClientBuilder.baseUrl(anyString())).thenReturn(webClientBuilder);
         when(webClientBuilder.build()).thenReturn(webClient);
         // Mock para CircuitBreaker
         when(circuitBreakerRegistry.circuitBreaker("customerEligibilityService")).thenReturn(circuitBreaker);
         when(circuitBreaker.getName()).thenReturn("customerEligibilityService");
         when(circuitBreaker.getState()).thenReturn(CircuitBreaker.State.CLOSED);
-        eligibilityService = spy(new CustomerEligibilityClientService(webClientBuilder,
+        eligibilityService = spy(new CustomerEligibilityClientService(webClientBuilder, HttpClient.create(),
                 "http://localhost:8080",
-                circuitBreakerRegistry));
+                circuitBreakerRegistry, BulkheadRegistry.ofDefaults(), limiterRegistry(), downstreamRetry(),
+                new SimpleMeterRegistry(),
+                0, 100, 8, 300000));
     }
     @Test
     void hasOverdueDebt_CustomerHasDebt() {
@@ -90,9 +97,17 @@ class CustomerEligibilityClientServiceTest {
         when(responseSpec.bodyToMono(any(ParameterizedTypeReference.class)))
                 .thenReturn(Mono.error(new RuntimeException("Server error")));
         CustomerEligibilityClientService realService = new CustomerEligibilityClientService(
-                webClientBuilder, "http://localhost:8080", circuitBreakerRegistry);
+                webClientBuilder, HttpClient.create(), "http://localhost:8080", circuitBreakerRegistry,
+                BulkheadRegistry.ofDefaults(), limiterRegistry(), downstreamRetry(),
+                new SimpleMeterRegistry(), 0, 100, 8, 300000);
         StepVerifier.create(realService.hasOverdueDebt(customerId))
                 .expectNext(true)
                 .verifyComplete();
     }
-}
\ No newline at end of file
+    private AdaptiveConcurrencyLimiterRegistry limiterRegistry() {
+        return new AdaptiveConcurrencyLimiterRegistry(new SimpleMeterRegistry(), 20, 4, 200, 0.9, 3, 6, 1000);
+    }
+    private DownstreamRetry downstreamRetry() {
+        return new DownstreamRetry(new SimpleMeterRegistry(), 2, 1, 10, 0.5, 2000, 5000, 0.1, 20);
+    }
+}
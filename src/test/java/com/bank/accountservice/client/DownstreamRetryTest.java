@@ -0,0 +1,111 @@
+package com.bank.accountservice.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DownstreamRetryTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void retriesServerErrorsUntilSuccess() {
+        DownstreamRetry retry = retry(20);
+        AtomicInteger calls = new AtomicInteger();
+        Mono<String> call = Mono.defer(() -> calls.incrementAndGet() < 3
+                ? Mono.error(new DownstreamServerException(HttpStatus.SERVICE_UNAVAILABLE))
+                : Mono.just("ok"));
+        StepVerifier.create(call.transform(retry.retry("customerService")))
+                .expectNext("ok")
+                .verifyComplete();
+        assertEquals(3, calls.get());
+        assertEquals(2.0, meterRegistry.get("downstream.retry.attempts")
+                .tag("client", "customerService").tag("outcome", "retried").counter().count());
+    }
+
+    @Test
+    void doesNotRetryClientErrors() {
+        DownstreamRetry retry = retry(20);
+        AtomicInteger calls = new AtomicInteger();
+        Mono<String> call = Mono.defer(() -> {
+            calls.incrementAndGet();
+            return Mono.error(new DownstreamClientException(HttpStatus.NOT_FOUND));
+        });
+        StepVerifier.create(call.transform(retry.retry("customerService")))
+                .expectError(DownstreamClientException.class)
+                .verify();
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void givesUpWithLastFailureAfterMaxRetries() {
+        DownstreamRetry retry = retry(20);
+        AtomicInteger calls = new AtomicInteger();
+        Mono<String> call = Mono.defer(() -> {
+            calls.incrementAndGet();
+            return Mono.error(new IOException("Connection reset"));
+        });
+        StepVerifier.create(call.transform(retry.retry("creditService")))
+                .expectErrorMessage("Connection reset")
+                .verify();
+        assertEquals(3, calls.get());
+        assertEquals(18.0, retry.getBudget(), 0.001);
+    }
+
+    @Test
+    void stopsRetryingWhenBudgetIsExhausted() {
+        DownstreamRetry retry = retry(1);
+        AtomicInteger calls = new AtomicInteger();
+        Mono<String> call = Mono.defer(() -> {
+            calls.incrementAndGet();
+            return Mono.error(new DownstreamServerException(HttpStatus.BAD_GATEWAY));
+        });
+        StepVerifier.create(call.transform(retry.retry("creditService")))
+                .expectError(DownstreamServerException.class)
+                .verify();
+        assertEquals(2, calls.get());
+        assertEquals(1.0, meterRegistry.get("downstream.retry.attempts")
+                .tag("client", "creditService").tag("outcome", "budget_exhausted").counter().count());
+    }
+
+    @Test
+    void retriesAttemptsThatTimeOut() {
+        DownstreamRetry retry = new DownstreamRetry(meterRegistry, 2, 1, 10, 0.5, 20, 5000, 0.1, 20);
+        AtomicInteger calls = new AtomicInteger();
+        Mono<String> call = Mono.defer(() -> calls.incrementAndGet() == 1 ? Mono.never() : Mono.just("ok"));
+        StepVerifier.create(call.transform(retry::attempt).transform(retry.retry("customerService")))
+                .expectNext("ok")
+                .verifyComplete();
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    void failsWhenDeadlineExpires() {
+        DownstreamRetry retry = new DownstreamRetry(meterRegistry, 2, 1, 10, 0.5, 2000, 30, 0.1, 20);
+        StepVerifier.create(Mono.<String>never().transform(retry.retry("customerService")))
+                .expectError(TimeoutException.class)
+                .verify();
+    }
+
+    @Test
+    void classifiesTransientFailures() {
+        assertTrue(DownstreamRetry.isRetryable(new DownstreamServerException(HttpStatus.INTERNAL_SERVER_ERROR)));
+        assertTrue(DownstreamRetry.isRetryable(new RuntimeException(new TimeoutException())));
+        assertFalse(DownstreamRetry.isRetryable(new DownstreamClientException(HttpStatus.BAD_REQUEST)));
+        assertFalse(DownstreamRetry.isRetryable(new ConcurrencyLimitExceededException("customerService", 4)));
+        assertFalse(DownstreamRetry.isRetryable(new RuntimeException("Server error")));
+    }
+
+    private DownstreamRetry retry(double budgetMax) {
+        return new DownstreamRetry(meterRegistry, 2, 1, 10, 0.5, 2000, 5000, 0.1, budgetMax);
+    }
+}
@@ -0,0 +1,132 @@
+package com.bank.accountservice.client;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MicroBatcherTest {
+    private final VirtualTimeScheduler scheduler = VirtualTimeScheduler.create();
+    private final List<Set<String>> batches = new ArrayList<>();
+
+    @Test
+    void collapsesLookupsWithinWindowIntoOneBatch() {
+        MicroBatcher<String, Integer> batcher = new MicroBatcher<>(this::lengths, Duration.ofMillis(5), 100,
+                scheduler);
+        List<Integer> results = new ArrayList<>();
+        batcher.load("a").subscribe(results::add);
+        batcher.load("bb").subscribe(results::add);
+        batcher.load("bb").subscribe(results::add);
+        assertEquals(0, batches.size());
+
+        scheduler.advanceTimeBy(Duration.ofMillis(5));
+
+        assertEquals(List.of(Set.of("a", "bb")), batches);
+        assertEquals(List.of(1, 2, 2), results);
+    }
+
+    @Test
+    void sendsFullBatchWithoutWaiting() {
+        MicroBatcher<String, Integer> batcher = new MicroBatcher<>(this::lengths, Duration.ofMillis(5), 2,
+                scheduler);
+        batcher.load("a").subscribe();
+        batcher.load("bb").subscribe();
+        batcher.load("ccc").subscribe();
+        assertEquals(List.of(Set.of("a", "bb")), batches);
+
+        scheduler.advanceTimeBy(Duration.ofMillis(5));
+
+        assertEquals(List.of(Set.of("a", "bb"), Set.of("ccc")), batches);
+    }
+
+    @Test
+    void completesEmptyForMissingKeysAndFailsAllOnError() {
+        MicroBatcher<String, Integer> partial = new MicroBatcher<>(keys -> Mono.just(Map.of("a", 1)),
+                Duration.ofMillis(5), 100, scheduler);
+        StepVerifier.create(partial.load("missing"))
+                .then(() -> scheduler.advanceTimeBy(Duration.ofMillis(5)))
+                .verifyComplete();
+
+        Function<Set<String>, Mono<Map<String, Integer>>> down = keys -> Mono.error(new IllegalStateException("down"));
+        MicroBatcher<String, Integer> failing = new MicroBatcher<>(down, Duration.ofMillis(5), 100, scheduler);
+        StepVerifier.create(failing.load("a"))
+                .then(() -> scheduler.advanceTimeBy(Duration.ofMillis(5)))
+                .expectErrorMessage("down")
+                .verify();
+    }
+
+    @Test
+    void partialBatchFailsOnlyTheFailedKeys() {
+        Function<Set<String>, Mono<Map<String, Integer>>> partial = keys -> Mono.error(new PartialBatchException(
+                Map.of("a", 1), Map.of("bb", new IllegalStateException("bb failed"))));
+        MicroBatcher<String, Integer> batcher = new MicroBatcher<>(partial, Duration.ofMillis(5), 100, scheduler);
+        StepVerifier.create(Mono.zip(batcher.load("a"),
+                        batcher.load("bb").onErrorResume(error -> Mono.just(-1)),
+                        batcher.load("ccc").defaultIfEmpty(0)))
+                .then(() -> scheduler.advanceTimeBy(Duration.ofMillis(5)))
+                .assertNext(results -> {
+                    assertEquals(1, results.getT1());
+                    assertEquals(-1, results.getT2());
+                    assertEquals(0, results.getT3());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void batchCallRunsWithLatestCallerDeadline() {
+        List<RequestDeadline> deadlines = new ArrayList<>();
+        Function<Set<String>, Mono<Map<String, Integer>>> loader = keys -> Mono.deferContextual(context -> {
+            RequestDeadline.from(context).ifPresent(deadlines::add);
+            return lengths(keys);
+        });
+        MicroBatcher<String, Integer> batcher = new MicroBatcher<>(loader, Duration.ofMillis(5), 100, scheduler);
+        RequestDeadline late = RequestDeadline.after(Duration.ofSeconds(30));
+        RequestDeadline early = RequestDeadline.after(Duration.ofSeconds(2));
+        batcher.load("a").contextWrite(context -> RequestDeadline.with(context, late)).subscribe();
+        batcher.load("bb").contextWrite(context -> RequestDeadline.with(context, early)).subscribe();
+        batcher.load("ccc").subscribe();
+
+        scheduler.advanceTimeBy(Duration.ofMillis(5));
+
+        assertEquals(List.of(late), deadlines);
+    }
+
+    @Test
+    void callersWithDifferentDeadlinesEachGiveUpAtTheirOwn() {
+        Function<Set<String>, Mono<Map<String, Integer>>> slow = keys -> Mono.delay(Duration.ofMillis(200))
+                .then(lengths(keys));
+        MicroBatcher<String, Integer> batcher = new MicroBatcher<>(slow, Duration.ofMillis(5), 100, scheduler);
+        RequestDeadline early = RequestDeadline.after(Duration.ofMillis(50));
+        RequestDeadline late = RequestDeadline.after(Duration.ofSeconds(5));
+        StepVerifier earlyCaller = StepVerifier.create(batcher.load("bb")
+                        .contextWrite(context -> RequestDeadline.with(context, early)))
+                .expectError(RequestDeadlineExceededException.class)
+                .verifyLater();
+        StepVerifier lateCaller = StepVerifier.create(batcher.load("bb")
+                        .contextWrite(context -> RequestDeadline.with(context, late)))
+                .expectNext(2)
+                .expectComplete()
+                .verifyLater();
+
+        scheduler.advanceTimeBy(Duration.ofMillis(5));
+
+        earlyCaller.verify(Duration.ofSeconds(1));
+        lateCaller.verify(Duration.ofSeconds(1));
+        assertEquals(List.of(Set.of("bb")), batches);
+    }
+
+    private Mono<Map<String, Integer>> lengths(Set<String> keys) {
+        batches.add(Set.copyOf(keys));
+        return Mono.just(keys.stream().collect(Collectors.toMap(key -> key, String::length)));
+    }
+}
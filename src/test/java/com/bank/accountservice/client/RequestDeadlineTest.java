@@ -0,0 +1,84 @@
+package com.bank.accountservice.client;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class RequestDeadlineTest {
+    @Test
+    void boundPassesThroughWithoutDeadline() {
+        StepVerifier.create(RequestDeadline.bound(Mono.just("ok")))
+                .expectNext("ok")
+                .verifyComplete();
+    }
+
+    @Test
+    void boundFailsWhenDeadlinePasses() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Mono<String> call = Mono.<String>never().doOnCancel(() -> cancelled.set(true));
+        StepVerifier.create(RequestDeadline.bound(call)
+                        .contextWrite(context -> RequestDeadline.with(context,
+                                RequestDeadline.after(Duration.ofMillis(20)))))
+                .expectError(RequestDeadlineExceededException.class)
+                .verify();
+        assertTrue(cancelled.get());
+    }
+
+    @Test
+    void boundDoesNotStartCallAfterDeadline() {
+        AtomicBoolean subscribed = new AtomicBoolean();
+        Mono<String> call = Mono.just("ok").doOnSubscribe(s -> subscribed.set(true));
+        StepVerifier.create(RequestDeadline.bound(call)
+                        .contextWrite(context -> RequestDeadline.with(context, RequestDeadline.after(Duration.ZERO))))
+                .expectError(RequestDeadlineExceededException.class)
+                .verify();
+        assertFalse(subscribed.get());
+    }
+
+    @Test
+    void timeoutIsShortenedToRemainingTime() {
+        StepVerifier.create(RequestDeadline.timeout(Mono.never(), Duration.ofSeconds(5))
+                        .contextWrite(context -> RequestDeadline.with(context,
+                                RequestDeadline.after(Duration.ofMillis(20)))))
+                .expectError(TimeoutException.class)
+                .verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void propagationAddsRemainingTimeHeader() {
+        AtomicReference<ClientRequest> sent = new AtomicReference<>();
+        ExchangeFunction exchange = request -> {
+            sent.set(request);
+            return Mono.just(mock(ClientResponse.class));
+        };
+        ClientRequest request = ClientRequest.create(HttpMethod.GET,
+                URI.create("http://localhost/customers/1")).build();
+        StepVerifier.create(RequestDeadline.propagation().filter(request, exchange)
+                        .contextWrite(context -> RequestDeadline.with(context,
+                                RequestDeadline.after(Duration.ofSeconds(3)))))
+                .expectNextCount(1)
+                .verifyComplete();
+        long remaining = Long.parseLong(sent.get().headers().getFirst(RequestDeadline.TIMEOUT_HEADER));
+        assertTrue(remaining > 2000 && remaining <= 3000);
+
+        StepVerifier.create(RequestDeadline.propagation().filter(request, exchange))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertNull(sent.get().headers().getFirst(RequestDeadline.TIMEOUT_HEADER));
+    }
+}
@@ -0,0 +1,80 @@
+package com.bank.accountservice.client;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+class RequestHedgerTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    @Test
+    void hedge_DisabledCallsOnce() {
+        RequestHedger hedger = hedger(false, 1.0);
+        AtomicInteger calls = new AtomicInteger();
+        StepVerifier.create(hedger.hedge(() -> Mono.delay(Duration.ofMillis(300))
+                        .map(tick -> "call-" + calls.incrementAndGet())))
+                .expectNext("call-1")
+                .verifyComplete();
+        assertThat(calls.get()).isEqualTo(1);
+    }
+    @Test
+    void hedge_SlowPrimaryLosesToHedge() {
+        RequestHedger hedger = hedger(true, 1.0);
+        AtomicInteger calls = new AtomicInteger();
+        StepVerifier.withVirtualTime(() -> hedger.hedge(() -> calls.incrementAndGet() == 1
+                        ? Mono.delay(Duration.ofSeconds(5)).thenReturn("primary")
+                        : Mono.delay(Duration.ofMillis(10)).thenReturn("hedge")))
+                .thenAwait(Duration.ofMillis(100))
+                .expectNext("hedge")
+                .verifyComplete();
+        assertThat(calls.get()).isEqualTo(2);
+        assertThat(meterRegistry.get("downstream.hedge.requests").tag("outcome", "sent").counter().count())
+                .isEqualTo(1.0);
+    }
+    @Test
+    void hedge_NoBudgetWaitsForPrimary() {
+        RequestHedger hedger = hedger(true, 0.1);
+        AtomicInteger calls = new AtomicInteger();
+        StepVerifier.withVirtualTime(() -> hedger.hedge(() -> {
+            calls.incrementAndGet();
+            return Mono.delay(Duration.ofSeconds(1)).thenReturn("primary");
+        }))
+                .thenAwait(Duration.ofSeconds(1))
+                .expectNext("primary")
+                .verifyComplete();
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(meterRegistry.get("downstream.hedge.requests").tag("outcome", "no_budget").counter().count())
+                .isEqualTo(1.0);
+    }
+    @Test
+    void hedge_FailedHedgeIsIgnored() {
+        RequestHedger hedger = hedger(true, 1.0);
+        AtomicInteger calls = new AtomicInteger();
+        StepVerifier.withVirtualTime(() -> hedger.hedge(() -> calls.incrementAndGet() == 1
+                        ? Mono.delay(Duration.ofSeconds(1)).thenReturn("primary")
+                        : Mono.<String>error(new RuntimeException("Server error: 503"))))
+                .thenAwait(Duration.ofSeconds(1))
+                .expectNext("primary")
+                .verifyComplete();
+    }
+    @Test
+    void record_DelayFollowsPercentileWithinBounds() {
+        RequestHedger hedger = hedger(true, 1.0);
+        assertThat(hedger.getDelay()).isEqualTo(Duration.ofMillis(50));
+        for (int i = 1; i <= 20; i++) {
+            hedger.record(Duration.ofMillis(i).toNanos());
+        }
+        assertThat(hedger.getDelay()).isEqualTo(Duration.ofMillis(10));
+        for (int i = 0; i < 20; i++) {
+            hedger.record(Duration.ofMillis(1).toNanos());
+        }
+        assertThat(hedger.getDelay()).isEqualTo(Duration.ofMillis(5));
+    }
+    private RequestHedger hedger(boolean enabled, double budgetRatio) {
+        return new RequestHedger("customerService", enabled, 50, Duration.ofMillis(5), Duration.ofMillis(50),
+                budgetRatio, 2, 20, meterRegistry);
+    }
+}
@@ -0,0 +1,66 @@
+package com.bank.accountservice.client;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StageTimerTest {
+    private final PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+
+    @Test
+    void tagsHowTheStageEnded() {
+        StepVerifier.create(Mono.just("customer").transform(cacheGet())).expectNext("customer").verifyComplete();
+        StepVerifier.create(Mono.<String>empty().transform(cacheGet())).verifyComplete();
+        StepVerifier.create(Mono.<String>error(new IllegalStateException("down")).transform(cacheGet()))
+                .expectError(IllegalStateException.class)
+                .verify();
+        StepVerifier.create(Mono.<String>never().transform(cacheGet()))
+                .thenCancel()
+                .verify();
+
+        assertEquals(1, timer("hit", "none").count());
+        assertEquals(1, timer("miss", "none").count());
+        assertEquals(1, timer("error", "IllegalStateException").count());
+        assertEquals(1, timer("cancelled", "none").count());
+        assertTrue(registry.scrape().contains("customer_cache_requests_seconds_bucket{"));
+    }
+
+    @Test
+    void tagsDownstreamCallsWithBreakerStateAtCompletion() {
+        CircuitBreaker circuitBreaker = CircuitBreaker.ofDefaults("customerService");
+        Mono<String> call = Mono.delay(Duration.ofMillis(5))
+                .doOnNext(ignored -> circuitBreaker.transitionToOpenState())
+                .thenReturn("customer");
+
+        StepVerifier.create(call.transform(StageTimer.downstream(registry, circuitBreaker, "getCustomerById")))
+                .expectNext("customer")
+                .verifyComplete();
+
+        Timer timer = registry.get(StageTimer.DOWNSTREAM_TIMER)
+                .tags("client", "customerService", "operation", "getCustomerById", "breaker_state", "open",
+                        "outcome", "success")
+                .timer();
+        assertEquals(1, timer.count());
+        assertTrue(timer.totalTime(TimeUnit.MILLISECONDS) >= 5);
+    }
+
+    private <T> Function<Mono<T>, Mono<T>> cacheGet() {
+        return StageTimer.timed(registry, "customer.cache.requests", () -> Tags.of("operation", "get"), "hit", "miss");
+    }
+
+    private Timer timer(String outcome, String exception) {
+        return registry.get("customer.cache.requests").tags("outcome", outcome, "exception", exception).timer();
+    }
+}
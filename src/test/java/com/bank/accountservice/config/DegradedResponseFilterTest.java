@@ -0,0 +1,34 @@
+package com.bank.accountservice.config;
+
+import com.bank.accountservice.service.DegradedResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DegradedResponseFilterTest {
+    private final DegradedResponseFilter filter = new DegradedResponseFilter();
+
+    @Test
+    void addsWarningHeaderWhenResponseIsDegraded() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/api/accounts"));
+        WebFilterChain chain = webExchange -> DegradedResponse.mark("customer data served from cache")
+                .then(webExchange.getResponse().setComplete());
+        StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+        assertEquals("110 - \"Degraded response: customer data served from cache\"",
+                exchange.getResponse().getHeaders().getFirst(HttpHeaders.WARNING));
+    }
+
+    @Test
+    void leavesHealthyResponsesAlone() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/api/accounts"));
+        WebFilterChain chain = webExchange -> webExchange.getResponse().setComplete();
+        StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+        assertNull(exchange.getResponse().getHeaders().getFirst(HttpHeaders.WARNING));
+    }
+}
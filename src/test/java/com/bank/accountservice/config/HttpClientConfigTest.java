@@ -0,0 +1,34 @@
+package com.bank.accountservice.config;
+import io.netty.channel.ChannelOption;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+class HttpClientConfigTest {
+    @Test
+    void connectionProvider_UsesHostProperties() {
+        MockEnvironment environment = new MockEnvironment()
+                .withProperty("http-client.credit-service.max-connections", "42")
+                .withProperty("http-client.credit-service.response-timeout-ms", "1500")
+                .withProperty("http-client.credit-service.connect-timeout-ms", "700");
+        HttpClientConfig config = new HttpClientConfig(environment);
+        ConnectionProvider creditProvider = config.creditServiceConnectionProvider();
+        ConnectionProvider customerProvider = config.customerServiceConnectionProvider();
+        try {
+            assertThat(creditProvider.maxConnections()).isEqualTo(42);
+            assertThat(customerProvider.maxConnections()).isEqualTo(100);
+            HttpClient creditClient = config.creditServiceHttpClient(creditProvider);
+            assertThat(creditClient.configuration().responseTimeout()).isEqualTo(Duration.ofMillis(1500));
+            assertThat(creditClient.configuration().options().get(ChannelOption.CONNECT_TIMEOUT_MILLIS)).isEqualTo(700);
+            HttpClient customerClient = config.customerServiceHttpClient(customerProvider);
+            assertThat(customerClient.configuration().responseTimeout()).isEqualTo(Duration.ofSeconds(5));
+        } finally {
+            creditProvider.dispose();
+            customerProvider.dispose();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.bank.accountservice.config;
+import io.lettuce.core.ReadFrom;
+import io.lettuce.core.cluster.ClusterClientOptions;
+import io.lettuce.core.resource.ClientResources;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettucePoolingClientConfiguration;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+class RedisConfigTest {
+    private RedisConfig redisConfig;
+    private ClientResources clientResources;
+    @BeforeEach
+    void setUp() {
+        redisConfig = new RedisConfig();
+        ReflectionTestUtils.setField(redisConfig, "redisHost", "cache.local");
+        ReflectionTestUtils.setField(redisConfig, "redisPort", 6380);
+        ReflectionTestUtils.setField(redisConfig, "redisPassword", "secret");
+        ReflectionTestUtils.setField(redisConfig, "timeout", 2000);
+        ReflectionTestUtils.setField(redisConfig, "mode", "standalone");
+        ReflectionTestUtils.setField(redisConfig, "clusterNodes", "");
+        ReflectionTestUtils.setField(redisConfig, "sentinelNodes", "");
+        ReflectionTestUtils.setField(redisConfig, "readFrom", "");
+        ReflectionTestUtils.setField(redisConfig, "clusterMaxRedirects", 3);
+        ReflectionTestUtils.setField(redisConfig, "clusterRefreshPeriodMs", 60000L);
+        ReflectionTestUtils.setField(redisConfig, "pipeliningFlushAfter", 1);
+        ReflectionTestUtils.setField(redisConfig, "ioThreads", 2);
+        ReflectionTestUtils.setField(redisConfig, "computationThreads", 2);
+        clientResources = redisConfig.redisClientResources();
+    }
+    @AfterEach
+    void tearDown() {
+        clientResources.shutdown();
+    }
+    @Test
+    void redisConnectionFactory_StandaloneSharesClientResources() {
+        LettuceConnectionFactory factory = redisConfig.redisConnectionFactory(clientResources);
+        assertThat(factory.getStandaloneConfiguration().getHostName()).isEqualTo("cache.local");
+        assertThat(factory.getClusterConfiguration()).isNull();
+        assertThat(factory.getClientConfiguration().getClientResources()).contains(clientResources);
+        assertThat(factory.getClientConfiguration()).isNotInstanceOf(LettucePoolingClientConfiguration.class);
+        assertThat(factory.getClientConfiguration().getReadFrom()).isEmpty();
+        assertThat(clientResources.ioThreadPoolSize()).isEqualTo(2);
+    }
+    @Test
+    void redisConnectionFactory_ClusterWithPoolingAndReplicaReads() {
+        ReflectionTestUtils.setField(redisConfig, "mode", "cluster");
+        ReflectionTestUtils.setField(redisConfig, "clusterNodes", "node1:6379, node2:6379,");
+        ReflectionTestUtils.setField(redisConfig, "readFrom", "replicaPreferred");
+        ReflectionTestUtils.setField(redisConfig, "poolEnabled", true);
+        ReflectionTestUtils.setField(redisConfig, "poolMaxActive", 16);
+        ReflectionTestUtils.setField(redisConfig, "pipeliningFlushAfter", 64);
+        LettuceConnectionFactory factory = redisConfig.redisConnectionFactory(clientResources);
+        assertThat(factory.getClusterConfiguration().getClusterNodes()).hasSize(2);
+        assertThat(factory.getClientConfiguration()).isInstanceOf(LettucePoolingClientConfiguration.class);
+        assertThat(((LettucePoolingClientConfiguration) factory.getClientConfiguration()).getPoolConfig().getMaxTotal())
+                .isEqualTo(16);
+        assertThat(factory.getClientConfiguration().getClientOptions()).containsInstanceOf(ClusterClientOptions.class);
+        assertThat(factory.getClientConfiguration().getReadFrom()).contains(ReadFrom.REPLICA_PREFERRED);
+    }
+    @Test
+    void redisConnectionFactory_Sentinel() {
+        ReflectionTestUtils.setField(redisConfig, "mode", "sentinel");
+        ReflectionTestUtils.setField(redisConfig, "sentinelMaster", "cache-master");
+        ReflectionTestUtils.setField(redisConfig, "sentinelNodes", "sentinel1:26379,sentinel2:26379");
+        LettuceConnectionFactory factory = redisConfig.redisConnectionFactory(clientResources);
+        assertThat(factory.getSentinelConfiguration().getMaster().getName()).isEqualTo("cache-master");
+        assertThat(factory.getSentinelConfiguration().getSentinels()).hasSize(2);
+    }
+}
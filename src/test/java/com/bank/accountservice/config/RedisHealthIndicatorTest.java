@@ -0,0 +1,70 @@
+package com.bank.accountservice.config;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.data.redis.connection.ReactiveRedisConnection;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+class RedisHealthIndicatorTest {
+    @Mock
+    private ReactiveRedisConnectionFactory connectionFactory;
+    @Mock
+    private ReactiveRedisConnection connection;
+    private RedisHealthIndicator healthIndicator;
+    @BeforeEach
+    void setUp() {
+        healthIndicator = new RedisHealthIndicator(connectionFactory, Duration.ofMinutes(1), Duration.ofMillis(200));
+        when(connectionFactory.getReactiveConnection()).thenReturn(connection);
+    }
+    @Test
+    void health_CachesResultAndReusesConnection() {
+        when(connection.ping()).thenReturn(Mono.just("PONG"));
+        StepVerifier.create(healthIndicator.health())
+                .expectNextMatches(health -> health.getStatus().equals(Status.UP)
+                        && "PONG".equals(health.getDetails().get("ping")))
+                .verifyComplete();
+        StepVerifier.create(healthIndicator.health())
+                .expectNextMatches(health -> health.getStatus().equals(Status.UP))
+                .verifyComplete();
+        verify(connection, times(1)).ping();
+        verify(connectionFactory, times(1)).getReactiveConnection();
+    }
+    @Test
+    void health_TimeoutReportsDownAndReleasesConnection() {
+        when(connection.ping()).thenReturn(Mono.never());
+        when(connection.closeLater()).thenReturn(Mono.empty());
+        StepVerifier.create(healthIndicator.health())
+                .expectNextMatches(health -> health.getStatus().equals(Status.DOWN))
+                .verifyComplete();
+        verify(connection).closeLater();
+        healthIndicator.close();
+        verify(connection, times(1)).closeLater();
+    }
+    @Test
+    void health_ReconnectsAfterFailure() {
+        RedisHealthIndicator uncached = new RedisHealthIndicator(connectionFactory, Duration.ZERO,
+                Duration.ofMillis(200));
+        when(connection.ping())
+                .thenReturn(Mono.error(new IllegalStateException("Connection reset")))
+                .thenReturn(Mono.just("PONG"));
+        when(connection.closeLater()).thenReturn(Mono.empty());
+        StepVerifier.create(uncached.health())
+                .expectNextMatches(health -> health.getStatus().equals(Status.DOWN))
+                .verifyComplete();
+        StepVerifier.create(uncached.health())
+                .expectNextMatches(health -> health.getStatus().equals(Status.UP))
+                .verifyComplete();
+        verify(connectionFactory, times(2)).getReactiveConnection();
+        uncached.close();
+        verify(connection, times(2)).closeLater();
+    }
+}
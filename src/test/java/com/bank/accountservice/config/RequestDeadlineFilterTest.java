@@ -0,0 +1,41 @@
+package com.bank.accountservice.config;
+
+import com.bank.accountservice.client.RequestDeadline;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestDeadlineFilterTest {
+    private final RequestDeadlineFilter filter = new RequestDeadlineFilter(10000, 30000);
+
+    @Test
+    void putsCallerDeadlineInContext() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/api/accounts")
+                .header(RequestDeadline.TIMEOUT_HEADER, "1500"));
+        AtomicReference<Duration> remaining = new AtomicReference<>();
+        WebFilterChain chain = webExchange -> Mono.deferContextual(context -> {
+            RequestDeadline.from(context).ifPresent(deadline -> remaining.set(deadline.remaining()));
+            return Mono.empty();
+        });
+        StepVerifier.create(filter.filter(exchange, chain)).verifyComplete();
+        assertTrue(remaining.get().toMillis() > 1000 && remaining.get().toMillis() <= 1500);
+    }
+
+    @Test
+    void resolvesTimeoutFromHeader() {
+        assertEquals(10000, filter.timeoutMs(null));
+        assertEquals(10000, filter.timeoutMs("soon"));
+        assertEquals(30000, filter.timeoutMs("600000"));
+        assertEquals(0, filter.timeoutMs("-5"));
+        assertEquals(2500, filter.timeoutMs(" 2500 "));
+    }
+}
@@ -0,0 +1,89 @@
+package com.bank.accountservice.config;
+import com.bank.accountservice.client.ConcurrencyLimitExceededException;
+import com.bank.accountservice.client.DownstreamClientException;
+import com.bank.accountservice.client.DownstreamServerException;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.bulkhead.autoconfigure.BulkheadAutoConfiguration;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.circuitbreaker.autoconfigure.CircuitBreakerAutoConfiguration;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.test.context.ConfigDataApplicationContextInitializer;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+class Resilience4jConfigTest {
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withInitializer(new ConfigDataApplicationContextInitializer())
+            .withConfiguration(AutoConfigurations.of(CircuitBreakerAutoConfiguration.class,
+                    BulkheadAutoConfiguration.class))
+            .withUserConfiguration(Resilience4jConfig.class);
+
+    @Test
+    void registries_UseStandardInstanceProperties() {
+        contextRunner.withPropertyValues(
+                "resilience4j.circuitbreaker.configs.default.failure-rate-threshold=60",
+                "resilience4j.circuitbreaker.instances.creditService.sliding-window-type=TIME_BASED",
+                "resilience4j.circuitbreaker.instances.creditService.sliding-window-size=30",
+                "resilience4j.circuitbreaker.instances.creditService.permitted-number-of-calls-in-half-open-state=5",
+                "resilience4j.circuitbreaker.instances.creditService.wait-duration-in-open-state=2s",
+                "resilience4j.circuitbreaker.instances.creditService.max-wait-duration-in-half-open-state=15s",
+                "resilience4j.bulkhead.instances.creditService.max-concurrent-calls=7").run(context -> {
+                    CircuitBreakerRegistry registry = context.getBean(CircuitBreakerRegistry.class);
+                    CircuitBreakerConfig credit = registry.circuitBreaker("creditService")
+                            .getCircuitBreakerConfig();
+                    CircuitBreakerConfig customer = registry.circuitBreaker("customerService")
+                            .getCircuitBreakerConfig();
+                    assertThat(credit.getSlidingWindowType())
+                            .isEqualTo(CircuitBreakerConfig.SlidingWindowType.TIME_BASED);
+                    assertThat(credit.getSlidingWindowSize()).isEqualTo(30);
+                    assertThat(credit.getPermittedNumberOfCallsInHalfOpenState()).isEqualTo(5);
+                    assertThat(credit.getWaitIntervalFunctionInOpenState().apply(1)).isEqualTo(2000L);
+                    assertThat(credit.getMaxWaitDurationInHalfOpenState()).isEqualTo(Duration.ofSeconds(15));
+                    assertThat(credit.getFailureRateThreshold()).isEqualTo(60f);
+                    assertThat(customer.getSlidingWindowType())
+                            .isEqualTo(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED);
+                    assertThat(customer.getSlidingWindowSize()).isEqualTo(10);
+                    assertThat(customer.getFailureRateThreshold()).isEqualTo(60f);
+                    assertThat(customer.getSlowCallDurationThreshold()).isEqualTo(Duration.ofSeconds(5));
+                    BulkheadRegistry bulkheads = context.getBean(BulkheadRegistry.class);
+                    assertThat(bulkheads.bulkhead("creditService").getBulkheadConfig().getMaxConcurrentCalls())
+                            .isEqualTo(7);
+                    assertThat(bulkheads.bulkhead("customerService").getBulkheadConfig().getMaxConcurrentCalls())
+                            .isEqualTo(50);
+                    assertThat(bulkheads.bulkhead("customerService").getBulkheadConfig().getMaxWaitDuration())
+                            .isZero();
+                });
+    }
+    @Test
+    void circuitBreaker_DoesNotOpenOnClientErrorsOrLocalRejections() {
+        contextRunner.run(context -> {
+            CircuitBreaker circuitBreaker = context.getBean(CircuitBreakerRegistry.class)
+                    .circuitBreaker("customerService");
+            for (int i = 0; i < 20; i++) {
+                circuitBreaker.onError(1, TimeUnit.MILLISECONDS,
+                        new DownstreamClientException(HttpStatus.NOT_FOUND));
+                circuitBreaker.onError(1, TimeUnit.MILLISECONDS, WebClientResponseException.create(
+                        HttpStatus.BAD_REQUEST.value(), "Bad Request", null, null, null));
+                circuitBreaker.onError(1, TimeUnit.MILLISECONDS,
+                        new ConcurrencyLimitExceededException("customerService", 20));
+            }
+            assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+            assertThat(circuitBreaker.getMetrics().getNumberOfFailedCalls()).isZero();
+            assertThat(circuitBreaker.getMetrics().getNumberOfBufferedCalls()).isEqualTo(10);
+            for (int i = 0; i < 10; i++) {
+                circuitBreaker.onError(1, TimeUnit.MILLISECONDS, i % 2 == 0 ? new IOException("Connection reset")
+                        : new DownstreamServerException(HttpStatus.SERVICE_UNAVAILABLE));
+            }
+            assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        });
+    }
+}
@@ -1,8 +1,11 @@
 package com.bank.accountservice.controller;
 
+import com.bank.accountservice.client.RequestDeadlineExceededException;
+import com.bank.accountservice.dto.BulkItemResult;
 import com.bank.accountservice.model.account.Account;
 import com.bank.accountservice.model.account.AccountType;
 import com.bank.accountservice.service.AccountService;
+import com.bank.accountservice.model.money.Money;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -36,7 +39,7 @@ class AccountControllerTest {
         testAccount.setId("1");
         testAccount.setCustomerId("customer1");
         testAccount.setAccountType(AccountType.SAVINGS);
-        testAccount.setBalance(1000.0);
+        testAccount.setBalance(Money.of("1000.0"));
         testAccount.setVipAccount(false);
         testAccount.setCreatedAt(LocalDateTime.now());
         testAccount.setHolders(Arrays.asList("holder1"));
@@ -72,6 +75,59 @@ class AccountControllerTest {
                 .verifyComplete();
     }
     @Test
+    void createAccount_DeadlineExceeded() {
+        when(accountService.createAccount(any(Account.class)))
+                .thenReturn(Mono.error(new RequestDeadlineExceededException()));
+        StepVerifier.create(accountController.createAccount(testAccount))
+                .assertNext(responseEntity -> {
+                    assertEquals(HttpStatus.GATEWAY_TIMEOUT, responseEntity.getStatusCode());
+                    assertEquals(HttpStatus.GATEWAY_TIMEOUT.value(), responseEntity.getBody().getStatus());
+                })
+                .verifyComplete();
+    }
+    @Test
+    void createAccounts_AllCreated() {
+        when(accountService.createAccounts(anyList())).thenReturn(Mono.just(Collections.singletonList(
+                BulkItemResult.<Account>builder().index(0).success(true).data(testAccount).build())));
+        StepVerifier.create(accountController.createAccounts(testAccounts))
+                .assertNext(responseEntity -> {
+                    assertEquals(HttpStatus.CREATED, responseEntity.getStatusCode());
+                    assertEquals("1 of 1 accounts created", responseEntity.getBody().getMessage());
+                })
+                .verifyComplete();
+    }
+    @Test
+    void createAccounts_PartiallyCreated() {
+        when(accountService.createAccounts(anyList())).thenReturn(Mono.just(Arrays.asList(
+                BulkItemResult.<Account>builder().index(0).success(true).data(testAccount).build(),
+                BulkItemResult.<Account>builder().index(1).success(false).message("Customer not found").build())));
+        StepVerifier.create(accountController.createAccounts(testAccounts))
+                .assertNext(responseEntity -> {
+                    assertEquals(HttpStatus.MULTI_STATUS, responseEntity.getStatusCode());
+                    assertEquals(2, responseEntity.getBody().getData().size());
+                })
+                .verifyComplete();
+    }
+    @Test
+    void createAccounts_NoneCreated() {
+        when(accountService.createAccounts(anyList())).thenReturn(Mono.just(Collections.singletonList(
+                BulkItemResult.<Account>builder().index(0).success(false).message("Customer not found").build())));
+        StepVerifier.create(accountController.createAccounts(testAccounts))
+                .assertNext(responseEntity -> assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode()))
+                .verifyComplete();
+    }
+    @Test
+    void createAccounts_Error() {
+        when(accountService.createAccounts(anyList()))
+                .thenReturn(Mono.error(new IllegalArgumentException("At least one account is required")));
+        StepVerifier.create(accountController.createAccounts(Collections.emptyList()))
+                .assertNext(responseEntity -> {
+                    assertEquals(HttpStatus.BAD_REQUEST, responseEntity.getStatusCode());
+                    assertNull(responseEntity.getBody().getData());
+                })
+                .verifyComplete();
+    }
+    @Test
     void getAccountById_Success() {
         when(accountService.getAccountById("1"))
                 .thenReturn(Mono.just(testAccount));
@@ -2,6 +2,7 @@ package com.bank.accountservice.controller;
 import com.bank.accountservice.dto.*;
 import com.bank.accountservice.model.debitcard.DebitCard;
 import com.bank.accountservice.service.DebitCardService;
+import com.bank.accountservice.model.money.Money;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -48,7 +49,7 @@ class DebitCardControllerTest {
                 .cardId("card123")
                 .cardNumber("4111111111111111")
                 .primaryAccountId("account123")
-                .balancePrimaryAccount(new Double("1500.00"))
+                .balancePrimaryAccount(Money.of("1500.00"))
                 .build();
     }
     @Test
@@ -208,6 +209,72 @@ class DebitCardControllerTest {
                 .verifyComplete();
     }
     @Test
+    void createDebitCards_AllCreated() {
+        List<CreateCardRequest> requests = List.of(new CreateCardRequest("customer123", "account123"));
+        when(debitCardService.createDebitCards(requests)).thenReturn(Mono.just(List.of(
+                BulkItemResult.<DebitCard>builder().index(0).success(true).data(testDebitCard).build())));
+        StepVerifier.create(debitCardController.createDebitCards(requests))
+                .assertNext(response -> {
+                    assertEquals(OK, response.getStatusCode());
+                    assertEquals("1 of 1 debit cards created", response.getBody().getMessage());
+                })
+                .verifyComplete();
+    }
+    @Test
+    void createDebitCards_PartiallyCreated() {
+        List<CreateCardRequest> requests = List.of(new CreateCardRequest("customer123", "account123"),
+                new CreateCardRequest("customer123", "other"));
+        when(debitCardService.createDebitCards(requests)).thenReturn(Mono.just(List.of(
+                BulkItemResult.<DebitCard>builder().index(0).success(true).data(testDebitCard).build(),
+                BulkItemResult.<DebitCard>builder().index(1).success(false).message("rejected").build())));
+        StepVerifier.create(debitCardController.createDebitCards(requests))
+                .assertNext(response -> assertEquals(MULTI_STATUS, response.getStatusCode()))
+                .verifyComplete();
+    }
+    @Test
+    void createDebitCards_Error() {
+        List<CreateCardRequest> requests = Collections.emptyList();
+        when(debitCardService.createDebitCards(requests))
+                .thenReturn(Mono.error(new IllegalArgumentException("At least one card request is required")));
+        StepVerifier.create(debitCardController.createDebitCards(requests))
+                .assertNext(response -> {
+                    assertEquals(BAD_REQUEST, response.getStatusCode());
+                    assertNull(response.getBody().getData());
+                })
+                .verifyComplete();
+    }
+    @Test
+    void updateCardStatuses_Success() {
+        BulkStatusUpdateRequest request = BulkStatusUpdateRequest.builder()
+                .status("BLOCKED").cardIds(List.of("card123")).build();
+        when(debitCardService.updateCardStatuses(request))
+                .thenReturn(Mono.just(new BulkStatusUpdateResult("BLOCKED", 1, 1)));
+        StepVerifier.create(debitCardController.updateCardStatuses(request))
+                .assertNext(response -> {
+                    assertEquals(OK, response.getStatusCode());
+                    assertEquals("1 card statuses updated", response.getBody().getMessage());
+                })
+                .verifyComplete();
+    }
+    @Test
+    void updateCardStatuses_Error() {
+        BulkStatusUpdateRequest request = new BulkStatusUpdateRequest();
+        when(debitCardService.updateCardStatuses(request))
+                .thenReturn(Mono.error(new IllegalArgumentException("The new status is required")));
+        StepVerifier.create(debitCardController.updateCardStatuses(request))
+                .assertNext(response -> assertEquals(BAD_REQUEST, response.getStatusCode()))
+                .verifyComplete();
+    }
+    @Test
+    void streamCardStatusUpdates_Success() {
+        BulkStatusUpdateRequest request = BulkStatusUpdateRequest.builder()
+                .status("BLOCKED").customerId("customer123").build();
+        when(debitCardService.streamCardStatusUpdates(request)).thenReturn(Flux.just("card123"));
+        StepVerifier.create(debitCardController.streamCardStatusUpdates(request))
+                .expectNext("card123")
+                .verifyComplete();
+    }
+    @Test
     void getBalancePrimaryAccount_Success() {
         // Arrange
         String cardId = "card123";
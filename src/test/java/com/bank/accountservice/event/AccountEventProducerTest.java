@@ -1,17 +1,27 @@
 package com.bank.accountservice.event;
+import com.bank.accountservice.dto.accountevent.AccountEventEnvelope;
 import com.bank.accountservice.model.account.Account;
 import com.bank.accountservice.model.account.AccountType;
+import com.bank.accountservice.model.money.Money;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.util.concurrent.FailureCallback;
 import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.SettableListenableFuture;
 import org.springframework.util.concurrent.SuccessCallback;
+import reactor.test.StepVerifier;
 
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -19,6 +29,8 @@ import static org.mockito.Mockito.*;
 class AccountEventProducerTest {
     @Mock
     private KafkaTemplate<String, Account> kafkaTemplate;
+    @Mock
+    private KafkaTemplate<String, byte[]> envelopeTemplate;
     private AccountEventProducer accountEventProducer;
     @BeforeEach
     void setUp() {
@@ -98,10 +110,86 @@ class AccountEventProducerTest {
         // Assert
         verify(kafkaTemplate).send("account-updated", account.getId(), account);
     }
+    @Test
+    void emitAccountUpdate_CompletesOnlyWhenTheBrokerAcknowledges() {
+        // Arrange
+        Account account = createAccount("123");
+        SettableListenableFuture<SendResult<String, Account>> future = new SettableListenableFuture<>();
+        when(kafkaTemplate.send("account-updated", account.getId(), account)).thenReturn(future);
+        future.setException(new RuntimeException("Error sending message"));
+        // Act & Assert
+        StepVerifier.create(accountEventProducer.emitAccountUpdate(account))
+                .expectErrorMessage("Error sending message")
+                .verify();
+    }
+    @Test
+    void publishAccountUpdate_FullFormat_SendsDocument() {
+        // Arrange
+        Account previous = createAccount("123");
+        Account account = createAccount("123");
+        account.setBalance(Money.of("1500.0"));
+        ListenableFuture<SendResult<String, Account>> future = mock(ListenableFuture.class);
+        when(kafkaTemplate.send("account-updated", account.getId(), account)).thenReturn(future);
+        // Act
+        accountEventProducer.publishAccountUpdate(previous, account);
+        // Assert
+        verify(kafkaTemplate).send("account-updated", account.getId(), account);
+    }
+    @Test
+    void publishAccountUpdate_CompactFormat_SendsOnlyChangedFields() {
+        // Arrange
+        AccountEventProducer producer = new AccountEventProducer(kafkaTemplate,
+            AccountEventFormat.COMPACT, envelopeTemplate);
+        Account previous = createAccount("123");
+        previous.setHolders(Collections.singletonList("John Doe"));
+        Account account = previous.toBuilder().balance(Money.of("1500.0")).build();
+        ListenableFuture<SendResult<String, byte[]>> future = mock(ListenableFuture.class);
+        when(envelopeTemplate.send(any(ProducerRecord.class))).thenReturn(future);
+        // Act
+        producer.publishAccountUpdate(previous, account);
+        // Assert
+        ProducerRecord<String, byte[]> record = captureEnvelopeRecord();
+        assertThat(record.topic()).isEqualTo("account-updated");
+        assertThat(record.key()).isEqualTo("123");
+        assertThat(new String(record.headers().lastHeader(AccountEventProducer.CONTENT_TYPE_HEADER).value(),
+            StandardCharsets.UTF_8)).isEqualTo(AccountEventCodec.JSON_CONTENT_TYPE);
+        AccountEventEnvelope envelope = new AccountEventCodec().decode(record.value(), AccountEventFormat.COMPACT);
+        assertThat(envelope.getSchemaVersion()).isEqualTo(AccountEventEnvelope.SCHEMA_VERSION);
+        assertThat(envelope.getEventType()).isEqualTo("ACCOUNT_UPDATED");
+        assertThat(envelope.getChanges()).containsOnlyKeys("balance");
+        assertThat(envelope.getChanges().get("balance")).isEqualTo(1500.0);
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), any(Account.class));
+    }
+    @Test
+    void publishAccountCreated_BinaryFormat_SendsSmileEnvelope() {
+        // Arrange
+        AccountEventProducer producer = new AccountEventProducer(kafkaTemplate,
+            AccountEventFormat.BINARY, envelopeTemplate);
+        Account account = createAccount("123");
+        ListenableFuture<SendResult<String, byte[]>> future = mock(ListenableFuture.class);
+        when(envelopeTemplate.send(any(ProducerRecord.class))).thenReturn(future);
+        // Act
+        producer.publishAccountCreated(account);
+        // Assert
+        ProducerRecord<String, byte[]> record = captureEnvelopeRecord();
+        assertThat(record.topic()).isEqualTo("account-created");
+        assertThat(new String(record.headers().lastHeader(AccountEventProducer.CONTENT_TYPE_HEADER).value(),
+            StandardCharsets.UTF_8)).isEqualTo(AccountEventCodec.SMILE_CONTENT_TYPE);
+        AccountEventEnvelope envelope = new AccountEventCodec().decode(record.value(), AccountEventFormat.BINARY);
+        assertThat(envelope.getEventType()).isEqualTo("ACCOUNT_CREATED");
+        assertThat(envelope.getAccountId()).isEqualTo("123");
+        assertThat(envelope.getChanges()).containsEntry("accountType", "SAVINGS")
+            .doesNotContainKey("holders");
+    }
+    private ProducerRecord<String, byte[]> captureEnvelopeRecord() {
+        ArgumentCaptor<ProducerRecord<String, byte[]>> captor = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(envelopeTemplate).send(captor.capture());
+        return captor.getValue();
+    }
     private Account createAccount(String id) {
         Account account = new Account();
         account.setId(id);
-        account.setBalance(1000.0);
+        account.setBalance(Money.of("1000.0"));
         account.setAccountType(AccountType.SAVINGS);
         return account;
     }
@@ -8,6 +8,9 @@ import com.bank.accountservice.model.account.AccountType;
 import com.bank.accountservice.model.customer.Customer;
 import com.bank.accountservice.model.customer.CustomerType;
 import com.bank.accountservice.repository.AccountRepository;
+import com.bank.accountservice.service.AccountCacheService;
+import com.bank.accountservice.model.money.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -16,10 +19,12 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.kafka.core.KafkaTemplate;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.UUID;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
@@ -30,12 +35,18 @@ class BootCoinAssociationConsumerTest {
     private AccountRepository accountRepository;
     @Mock
     private CustomerClientService customerClientService;
+    private AccountCacheService accountCacheService;
     private BootCoinAssociationConsumer bootCoinAssociationConsumer;
     @BeforeEach
     void setUp() {
+        accountCacheService = new AccountCacheService(accountRepository, null, 100, 60000, false, 0, 0);
         bootCoinAssociationConsumer = new BootCoinAssociationConsumer(kafkaTemplate,
             accountRepository,
-            customerClientService);
+            customerClientService,
+            accountCacheService,
+            new SimpleMeterRegistry(),
+            30000,
+            100);
     }
     @Test
     void validateYankiAssociation_Success() {
@@ -122,6 +133,72 @@ class BootCoinAssociationConsumerTest {
         assertThat(capturedResponse.isSuccess()).isFalse();
         assertThat(capturedResponse.getErrorMessage()).contains("Account validation failed");
     }
+    @Test
+    void validateAccount_RepeatedTuple_ServedFromCache() {
+        // Arrange
+        Customer customer = createCustomer("customer-001");
+        Account account = createAccount("account-001", "customer-001", AccountType.CHECKING);
+        when(customerClientService.getCustomerByDocumentNumber("12345678")).thenReturn(Mono.just(customer));
+        when(accountRepository.findByIdAndCustomerId("account-001", "customer-001")).thenReturn(Mono.just(account));
+        // Act & Assert
+        StepVerifier.create(bootCoinAssociationConsumer.validateAccount("12345678", "account-001"))
+                .expectNext(true)
+                .verifyComplete();
+        StepVerifier.create(bootCoinAssociationConsumer.validateAccount("12345678", "account-001"))
+                .expectNext(true)
+                .verifyComplete();
+        verify(customerClientService, times(1)).getCustomerByDocumentNumber("12345678");
+        verify(accountRepository, times(1)).findByIdAndCustomerId("account-001", "customer-001");
+    }
+    @Test
+    void validateAccount_ErrorNotCached() {
+        // Arrange
+        Customer customer = createCustomer("customer-001");
+        Account account = createAccount("account-001", "customer-001", AccountType.SAVINGS);
+        when(customerClientService.getCustomerByDocumentNumber("12345678"))
+                .thenReturn(Mono.error(new RuntimeException("Customer service is unavailable")))
+                .thenReturn(Mono.just(customer));
+        when(accountRepository.findByIdAndCustomerId("account-001", "customer-001")).thenReturn(Mono.just(account));
+        // Act & Assert
+        StepVerifier.create(bootCoinAssociationConsumer.validateAccount("12345678", "account-001"))
+                .expectNext(false)
+                .verifyComplete();
+        StepVerifier.create(bootCoinAssociationConsumer.validateAccount("12345678", "account-001"))
+                .expectNext(true)
+                .verifyComplete();
+        verify(customerClientService, times(2)).getCustomerByDocumentNumber("12345678");
+    }
+    @Test
+    void invalidateAccount_RemovesCachedValidation() {
+        // Arrange
+        Customer customer = createCustomer("customer-001");
+        when(customerClientService.getCustomerByDocumentNumber(anyString())).thenReturn(Mono.just(customer));
+        when(accountRepository.findByIdAndCustomerId("account-001", "customer-001")).thenReturn(Mono.empty());
+        // Act
+        bootCoinAssociationConsumer.validateAccount("12345678", "account-001").block();
+        bootCoinAssociationConsumer.invalidateAccount("account-001");
+        bootCoinAssociationConsumer.validateAccount("12345678", "account-001").block();
+        // Assert
+        verify(accountRepository, times(2)).findByIdAndCustomerId("account-001", "customer-001");
+    }
+    @Test
+    void accountWrite_EvictsOnlyThatAccountsValidations() {
+        // Arrange
+        Customer customer = createCustomer("customer-001");
+        when(customerClientService.getCustomerByDocumentNumber(anyString())).thenReturn(Mono.just(customer));
+        when(accountRepository.findByIdAndCustomerId(anyString(), eq("customer-001"))).thenReturn(Mono.empty());
+        bootCoinAssociationConsumer.validateAccount("12345678", "account-001").block();
+        bootCoinAssociationConsumer.validateAccount("87654321", "account-001").block();
+        bootCoinAssociationConsumer.validateAccount("12345678", "account-002").block();
+        // Act
+        accountCacheService.put(createAccount("account-001", "customer-001", AccountType.SAVINGS)).block();
+        bootCoinAssociationConsumer.validateAccount("12345678", "account-001").block();
+        bootCoinAssociationConsumer.validateAccount("87654321", "account-001").block();
+        bootCoinAssociationConsumer.validateAccount("12345678", "account-002").block();
+        // Assert
+        verify(accountRepository, times(4)).findByIdAndCustomerId("account-001", "customer-001");
+        verify(accountRepository, times(1)).findByIdAndCustomerId("account-002", "customer-001");
+    }
     private KafkaValidationRequest createValidationRequest(String documentNumber,
                                                            String phoneNumber,
                                                            String accountId) {
@@ -151,7 +228,7 @@ class BootCoinAssociationConsumerTest {
         return new Account(id,
             customerId,
             type,
-            230.00,
+            Money.of("230.00"),
             false,
             new BigDecimal("60"),
             false,
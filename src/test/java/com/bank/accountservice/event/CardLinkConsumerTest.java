@@ -0,0 +1,492 @@
+package com.bank.accountservice.event;
+
+import com.bank.accountservice.client.CustomerClientService;
+import com.bank.accountservice.dto.cardlink.CardLinkConfirmedEvent;
+import com.bank.accountservice.dto.cardlink.CardLinkRejectedEvent;
+import com.bank.accountservice.dto.cardlink.CardLinkRequestedEvent;
+import com.bank.accountservice.model.account.Account;
+import com.bank.accountservice.model.cardlink.CardLinkApplication;
+import com.bank.accountservice.model.customer.Customer;
+import com.bank.accountservice.model.debitcard.DebitCard;
+import com.bank.accountservice.model.money.Money;
+import com.bank.accountservice.model.money.MoneyConverters;
+import com.bank.accountservice.repository.AccountRepository;
+import com.bank.accountservice.repository.DebitCardRepository;
+import com.bank.accountservice.service.AccountCacheService;
+import com.bank.accountservice.service.CardNumberIndex;
+import com.mongodb.client.result.DeleteResult;
+import org.bson.Document;
+import org.bson.types.Decimal128;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.KafkaBackoffException;
+import org.springframework.kafka.listener.ListenerContainerRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.kafka.listener.PartitionPausingBackoffManager;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.util.concurrent.SettableListenableFuture;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CardLinkConsumerTest {
+    private static final byte[] EVENT_ID = "yanki.card.link.requested-0@0".getBytes(StandardCharsets.UTF_8);
+    @Mock
+    private KafkaTemplate<String, Object> kafkaTemplate;
+    @Mock
+    private DebitCardRepository debitCardRepository;
+    @Mock
+    private CustomerClientService customerClientService;
+    @Mock
+    private AccountRepository accountRepository;
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+    @Mock
+    private ListenerContainerRegistry listenerContainerRegistry;
+    @Mock
+    private MessageListenerContainer retryContainer;
+    @Mock
+    private Consumer<?, ?> consumer;
+    private PartitionPausingBackoffManager backoffManager;
+    private CardLinkConsumer cardLinkConsumer;
+    private final Set<String> appliedEventIds = new HashSet<>();
+    private long offset;
+    @BeforeEach
+    void setUp() {
+        backoffManager = new PartitionPausingBackoffManager(listenerContainerRegistry);
+        lenient().when(kafkaTemplate.send(anyString(), any())).thenReturn(sent());
+        lenient().when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(sent());
+        cardLinkConsumer = new CardLinkConsumer(kafkaTemplate,
+            new CardNumberIndex(debitCardRepository, null, 1000, 0.01, 100, 30000),
+            customerClientService, mongoTemplate,
+            new AccountCacheService(accountRepository, null, 100, 60000, false, 0, 0), new SimpleMeterRegistry(),
+            backoffManager, 4, 256, 1000, 2, 50, 2.0, 1000, 5000, 60000);
+        lenient().when(mongoTemplate.insert(any(CardLinkApplication.class))).thenAnswer(inv -> {
+            CardLinkApplication application = inv.getArgument(0);
+            return appliedEventIds.add(application.getId()) ? Mono.just(application)
+                    : Mono.error(new DuplicateKeyException("Duplicate card link application"));
+        });
+        lenient().when(mongoTemplate.remove(any(CardLinkApplication.class))).thenAnswer(inv -> {
+            appliedEventIds.remove(inv.getArgument(0, CardLinkApplication.class).getId());
+            return Mono.just(DeleteResult.acknowledged(1));
+        });
+    }
+    @AfterEach
+    void tearDown() {
+        cardLinkConsumer.shutdown();
+    }
+    @Test
+    void processCardLinkRequest_Success() {
+        // Arrange
+        CardLinkRequestedEvent event = createEvent("4111111111111111", Money.of("50.25"));
+        Account account = createAccount("account-001", "100.00");
+        when(customerClientService.getCustomerByDocumentNumber("12345678"))
+                .thenReturn(Mono.just(createCustomer()));
+        when(debitCardRepository.findByCardNumber(event.getCardNumber()))
+                .thenReturn(Mono.just(createCard(event.getCardNumber(), "account-001")));
+        stubIncrement(account, null);
+        // Act
+        request(event);
+        // Assert
+        ArgumentCaptor<Object> eventCaptor = ArgumentCaptor.forClass(Object.class);
+        verify(kafkaTemplate, timeout(1000)).send(eq("yanki.card.link.confirmed"), eventCaptor.capture());
+        CardLinkConfirmedEvent confirmedEvent = (CardLinkConfirmedEvent) eventCaptor.getValue();
+        assertThat(confirmedEvent.getUpdateBalance()).isEqualTo(Money.ofMinor(15025));
+        assertThat(account.getBalance()).isEqualTo(Money.of("150.25"));
+    }
+    @Test
+    void processCardLinkRequest_CardNotFound_SendsRejectedEvent() {
+        // Arrange
+        CardLinkRequestedEvent event = createEvent("4111111111111111", Money.of("10"));
+        when(customerClientService.getCustomerByDocumentNumber("12345678"))
+                .thenReturn(Mono.just(createCustomer()));
+        when(debitCardRepository.findByCardNumber(event.getCardNumber())).thenReturn(Mono.empty());
+        // Act
+        request(event);
+        // Assert
+        ArgumentCaptor<Object> eventCaptor = ArgumentCaptor.forClass(Object.class);
+        verify(kafkaTemplate, timeout(1000)).send(eq("yanki.card.link.rejected"), eventCaptor.capture());
+        assertThat(((CardLinkRejectedEvent) eventCaptor.getValue()).getReason()).isEqualTo("Debit card not found");
+        verify(kafkaTemplate, never()).send(any(ProducerRecord.class));
+    }
+    @Test
+    void processCardLinkRequest_TransientError_SendsToFirstRetryTopic() {
+        // Arrange
+        CardLinkRequestedEvent event = createEvent("4111111111111111", Money.of("10"));
+        when(customerClientService.getCustomerByDocumentNumber("12345678"))
+                .thenReturn(Mono.error(new RuntimeException("Customer service is unavailable")));
+        // Act
+        request(event);
+        // Assert
+        ProducerRecord<String, Object> record = captureRecord();
+        assertThat(record.topic()).isEqualTo("yanki.card.link.requested.retry-1");
+        assertThat(record.key()).isEqualTo(event.getCardNumber());
+        assertThat(header(record, CardLinkConsumer.ATTEMPT_HEADER)).isEqualTo("1");
+        assertThat(header(record, CardLinkConsumer.ERROR_HEADER)).isEqualTo("Customer service is unavailable");
+        verify(kafkaTemplate, never()).send(eq("yanki.card.link.rejected"), any());
+    }
+    @Test
+    void processCardLinkRetry_LastAttemptFails_SendsToDeadLetterTopic() {
+        // Arrange
+        CardLinkRequestedEvent event = createEvent("4111111111111111", Money.of("10"));
+        when(customerClientService.getCustomerByDocumentNumber("12345678"))
+                .thenReturn(Mono.error(new RuntimeException("Mongo unavailable")));
+        byte[] notBefore = String.valueOf(System.currentTimeMillis() - 20).getBytes(StandardCharsets.UTF_8);
+        // Act
+        retry(event, 2, notBefore);
+        // Assert
+        ProducerRecord<String, Object> record = captureRecord();
+        assertThat(record.topic()).isEqualTo(CardLinkConsumer.DEAD_LETTER_TOPIC);
+        assertThat(header(record, CardLinkConsumer.ATTEMPT_HEADER)).isEqualTo("2");
+        ArgumentCaptor<Object> eventCaptor = ArgumentCaptor.forClass(Object.class);
+        verify(kafkaTemplate, timeout(1000)).send(eq("yanki.card.link.rejected"), eventCaptor.capture());
+        assertThat(((CardLinkRejectedEvent) eventCaptor.getValue()).getReason())
+                .isEqualTo("Card link could not be processed: Mongo unavailable");
+    }
+    @Test
+    void processCardLinkRetry_Success_AppliesBalance() {
+        // Arrange
+        CardLinkRequestedEvent event = createEvent("4111111111111111", Money.of("5"));
+        Account account = createAccount("account-001", "10.00");
+        when(customerClientService.getCustomerByDocumentNumber("12345678"))
+                .thenReturn(Mono.just(createCustomer()));
+        when(debitCardRepository.findByCardNumber(event.getCardNumber()))
+                .thenReturn(Mono.just(createCard(event.getCardNumber(), "account-001")));
+        stubIncrement(account, null);
+        // Act
+        retry(event, 1, null);
+        // Assert
+        verify(kafkaTemplate).send(eq("yanki.card.link.confirmed"), any());
+        assertThat(account.getBalance()).isEqualTo(Money.ofMinor(1500));
+    }
+    @Test
+    void processCardLinkRetry_NotDue_PausesPartitionWithoutHandling() {
+        // Arrange
+        CardLinkRequestedEvent event = createEvent("4111111111111111", Money.of("5"));
+        byte[] notBefore = String.valueOf(System.currentTimeMillis() + 60000).getBytes(StandardCharsets.UTF_8);
+        when(listenerContainerRegistry.getListenerContainer(CardLinkConsumer.RETRY_LISTENER_ID))
+                .thenReturn(retryContainer);
+        // Act
+        assertThatThrownBy(() -> cardLinkConsumer.processCardLinkRetry(event,
+                    "yanki.card.link.requested.retry-1", 3, 0L, notBefore, EVENT_ID, consumer))
+                .isInstanceOf(KafkaBackoffException.class);
+        // Assert
+        verify(retryContainer).pausePartition(new TopicPartition("yanki.card.link.requested.retry-1", 3));
+        verifyNoInteractions(customerClientService, kafkaTemplate);
+    }
+    @Test
+    void retryDelayMs_GrowsExponentiallyUpToMax() {
+        CardLinkConsumer consumer = new CardLinkConsumer(kafkaTemplate,
+            new CardNumberIndex(debitCardRepository, null, 1000, 0.01, 100, 30000),
+            customerClientService, mongoTemplate,
+            new AccountCacheService(accountRepository, null, 100, 60000, false, 0, 0), new SimpleMeterRegistry(),
+            backoffManager, 1, 256, 1000, 5, 1000, 3.0, 10000, 5000, 60000);
+        assertThat(consumer.retryDelayMs(1)).isEqualTo(1000);
+        assertThat(consumer.retryDelayMs(2)).isEqualTo(3000);
+        assertThat(consumer.retryDelayMs(3)).isEqualTo(9000);
+        assertThat(consumer.retryDelayMs(4)).isEqualTo(10000);
+        consumer.shutdown();
+    }
+    @Test
+    void processCardLinkRequest_CardNotFound_NoBalanceUpdate() {
+        // Arrange
+        CardLinkRequestedEvent event = createEvent("4111111111111111", Money.of("10"));
+        when(customerClientService.getCustomerByDocumentNumber("12345678"))
+                .thenReturn(Mono.just(createCustomer()));
+        when(debitCardRepository.findByCardNumber(event.getCardNumber())).thenReturn(Mono.empty());
+        // Act
+        request(event);
+        // Assert
+        verify(debitCardRepository, timeout(1000)).findByCardNumber(event.getCardNumber());
+        verify(mongoTemplate, after(200).never())
+                .findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(Account.class));
+    }
+    @Test
+    void processCardLinkRequest_SameCard_AppliedInArrivalOrder() {
+        // Arrange
+        String cardNumber = "4111111111111111";
+        CardLinkRequestedEvent first = createEvent(cardNumber, Money.of("10"));
+        CardLinkRequestedEvent second = createEvent(cardNumber, Money.of("20"));
+        second.setDocumentNumber("87654321");
+        second.setPhoneNumber("912345678");
+        Account account = createAccount("account-001", "0");
+        List<Money> savedBalances = new ArrayList<>();
+        when(customerClientService.getCustomerByDocumentNumber("12345678"))
+                .thenReturn(Mono.delay(Duration.ofMillis(150)).thenReturn(createCustomer()));
+        when(customerClientService.getCustomerByDocumentNumber("87654321"))
+                .thenReturn(Mono.just(createCustomer()));
+        when(debitCardRepository.findByCardNumber(cardNumber))
+                .thenReturn(Mono.just(createCard(cardNumber, "account-001")));
+        stubIncrement(account, savedBalances);
+        // Act
+        request(first);
+        request(second);
+        // Assert
+        verify(kafkaTemplate, timeout(2000).times(2)).send(eq("yanki.card.link.confirmed"), any());
+        assertThat(savedBalances).containsExactly(Money.of("10"), Money.of("30"));
+        InOrder inOrder = inOrder(customerClientService);
+        inOrder.verify(customerClientService).getCustomerByDocumentNumber("12345678");
+        inOrder.verify(customerClientService).getCustomerByDocumentNumber("87654321");
+    }
+    @Test
+    void processCardLinkRequest_ReturnsOnlyAfterBalanceIsCredited() {
+        // Arrange
+        CardLinkRequestedEvent event = createEvent("4111111111111111", Money.of("10"));
+        Account account = createAccount("account-001", "0");
+        when(customerClientService.getCustomerByDocumentNumber("12345678"))
+                .thenReturn(Mono.delay(Duration.ofMillis(150)).thenReturn(createCustomer()));
+        when(debitCardRepository.findByCardNumber(event.getCardNumber()))
+                .thenReturn(Mono.just(createCard(event.getCardNumber(), "account-001")));
+        stubIncrement(account, null);
+        // Act
+        request(event);
+        // Assert
+        assertThat(account.getBalance()).isEqualTo(Money.of("10"));
+        verify(kafkaTemplate).send(eq("yanki.card.link.confirmed"), any());
+    }
+    @Test
+    void processCardLinkRequest_RetryHandOffFails_ThrowsSoRecordIsRedelivered() {
+        // Arrange
+        CardLinkRequestedEvent event = createEvent("4111111111111111", Money.of("10"));
+        when(customerClientService.getCustomerByDocumentNumber("12345678"))
+                .thenReturn(Mono.error(new RuntimeException("Customer service is unavailable")));
+        SettableListenableFuture<SendResult<String, Object>> failed = new SettableListenableFuture<>();
+        failed.setException(new IllegalStateException("Broker unavailable"));
+        when(kafkaTemplate.send(any(ProducerRecord.class))).thenReturn(failed);
+        // Act & Assert
+        assertThatThrownBy(() -> request(event))
+                .hasMessageContaining("Broker unavailable");
+    }
+    @Test
+    void processCardLinkRequest_SameCardAfterRetryHandOff_OvertakesRetriedRequest() {
+        // Arrange
+        String cardNumber = "4111111111111111";
+        CardLinkRequestedEvent first = createEvent(cardNumber, Money.of("10"));
+        CardLinkRequestedEvent second = createEvent(cardNumber, Money.of("20"));
+        second.setDocumentNumber("87654321");
+        second.setPhoneNumber("912345678");
+        Account account = createAccount("account-001", "0");
+        List<Money> savedBalances = new ArrayList<>();
+        when(customerClientService.getCustomerByDocumentNumber("12345678"))
+                .thenReturn(Mono.error(new RuntimeException("Customer service is unavailable")))
+                .thenReturn(Mono.just(createCustomer()));
+        when(customerClientService.getCustomerByDocumentNumber("87654321"))
+                .thenReturn(Mono.just(createCustomer()));
+        when(debitCardRepository.findByCardNumber(cardNumber))
+                .thenReturn(Mono.just(createCard(cardNumber, "account-001")));
+        stubIncrement(account, savedBalances);
+        request(first);
+        // Act
+        request(second);
+        ProducerRecord<String, Object> retry = captureRecord();
+        cardLinkConsumer.processCardLinkRetry(first, retry.topic(), 0, 0L, null,
+                retry.headers().lastHeader(CardLinkConsumer.EVENT_ID_HEADER).value(), consumer);
+        // Assert
+        assertThat(retry.topic()).isEqualTo("yanki.card.link.requested.retry-1");
+        assertThat(savedBalances).containsExactly(Money.of("20"), Money.of("30"));
+        assertThat(account.getBalance()).isEqualTo(Money.of("30"));
+    }
+    @Test
+    void processCardLinkRequest_CustomerNotFound_CardNotQueried() {
+        // Arrange
+        CardLinkRequestedEvent event = createEvent("4111111111111111", Money.of("10"));
+        when(customerClientService.getCustomerByDocumentNumber(anyString())).thenReturn(Mono.empty());
+        // Act
+        request(event);
+        // Assert
+        verify(customerClientService, timeout(1000)).getCustomerByDocumentNumber("12345678");
+        verify(debitCardRepository, after(200).never()).findByCardNumber(anyString());
+    }
+    @Test
+    void processCardLinkRequest_PrimaryAccountNotFound_SendsRejectedEvent() {
+        // Arrange
+        CardLinkRequestedEvent event = createEvent("4111111111111111", Money.of("10"));
+        when(customerClientService.getCustomerByDocumentNumber("12345678"))
+                .thenReturn(Mono.just(createCustomer()));
+        when(debitCardRepository.findByCardNumber(event.getCardNumber()))
+                .thenReturn(Mono.just(createCard(event.getCardNumber(), "account-001")));
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Account.class))).thenReturn(Mono.empty());
+        // Act
+        request(event);
+        // Assert
+        ArgumentCaptor<Object> eventCaptor = ArgumentCaptor.forClass(Object.class);
+        verify(kafkaTemplate, timeout(1000)).send(eq("yanki.card.link.rejected"), eventCaptor.capture());
+        assertThat(((CardLinkRejectedEvent) eventCaptor.getValue()).getReason())
+                .isEqualTo("Primary account not found");
+        assertThat(appliedEventIds).isEmpty();
+    }
+    @Test
+    void processCardLinkRetry_AlreadyApplied_ConfirmsWithoutCreditingAgain() {
+        // Arrange
+        CardLinkRequestedEvent event = createEvent("4111111111111111", Money.of("5"));
+        Account account = createAccount("account-001", "10.00");
+        when(customerClientService.getCustomerByDocumentNumber("12345678"))
+                .thenReturn(Mono.just(createCustomer()));
+        when(debitCardRepository.findByCardNumber(event.getCardNumber()))
+                .thenReturn(Mono.just(createCard(event.getCardNumber(), "account-001")));
+        stubIncrement(account, null);
+        when(mongoTemplate.findById("account-001", Account.class))
+                .thenAnswer(inv -> Mono.just(account.toBuilder().build()));
+        retry(event, 1, null);
+        // Act
+        retry(event, 1, null);
+        // Assert
+        ArgumentCaptor<Object> eventCaptor = ArgumentCaptor.forClass(Object.class);
+        verify(kafkaTemplate, times(2)).send(eq("yanki.card.link.confirmed"), eventCaptor.capture());
+        assertThat(eventCaptor.getAllValues())
+                .extracting(confirmed -> ((CardLinkConfirmedEvent) confirmed).getUpdateBalance())
+                .containsExactly(Money.ofMinor(1500), Money.ofMinor(1500));
+        assertThat(account.getBalance()).isEqualTo(Money.ofMinor(1500));
+    }
+    @Test
+    void processCardLinkRequest_SameLinkRequestedAgain_CreditedAgain() {
+        // Arrange
+        CardLinkRequestedEvent event = createEvent("4111111111111111", Money.of("5"));
+        Account account = createAccount("account-001", "10.00");
+        when(customerClientService.getCustomerByDocumentNumber("12345678"))
+                .thenReturn(Mono.just(createCustomer()));
+        when(debitCardRepository.findByCardNumber(event.getCardNumber()))
+                .thenReturn(Mono.just(createCard(event.getCardNumber(), "account-001")));
+        stubIncrement(account, null);
+        request(event);
+        // Act
+        request(event);
+        // Assert
+        verify(kafkaTemplate, times(2)).send(eq("yanki.card.link.confirmed"), any());
+        assertThat(account.getBalance()).isEqualTo(Money.of("20"));
+        assertThat(appliedEventIds).hasSize(2);
+    }
+    @Test
+    void processCardLinkRequest_CreditFails_ReleasesClaimSoRetryCredits() {
+        // Arrange
+        CardLinkRequestedEvent event = createEvent("4111111111111111", Money.of("5"));
+        when(customerClientService.getCustomerByDocumentNumber("12345678"))
+                .thenReturn(Mono.just(createCustomer()));
+        when(debitCardRepository.findByCardNumber(event.getCardNumber()))
+                .thenReturn(Mono.just(createCard(event.getCardNumber(), "account-001")));
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Account.class)))
+                .thenReturn(Mono.error(new IllegalStateException("Mongo unavailable")))
+                .thenReturn(Mono.just(createAccount("account-001", "15.00")));
+        request(event);
+        ProducerRecord<String, Object> retry = captureRecord();
+        assertThat(appliedEventIds).isEmpty();
+        // Act
+        cardLinkConsumer.processCardLinkRetry(event, retry.topic(), 0, 0L, null,
+                retry.headers().lastHeader(CardLinkConsumer.EVENT_ID_HEADER).value(), consumer);
+        // Assert
+        assertThat(header(retry, CardLinkConsumer.EVENT_ID_HEADER)).isEqualTo("yanki.card.link.requested-0@0");
+        ArgumentCaptor<Object> eventCaptor = ArgumentCaptor.forClass(Object.class);
+        verify(kafkaTemplate).send(eq("yanki.card.link.confirmed"), eventCaptor.capture());
+        assertThat(((CardLinkConfirmedEvent) eventCaptor.getValue()).getUpdateBalance()).isEqualTo(Money.of("15"));
+        assertThat(appliedEventIds).containsExactly("yanki.card.link.requested-0@0");
+    }
+    @Test
+    void processCardLinkRequest_ConfirmationSendFails_SchedulesRetry() {
+        // Arrange
+        CardLinkRequestedEvent event = createEvent("4111111111111111", Money.of("5"));
+        Account account = createAccount("account-001", "10.00");
+        when(customerClientService.getCustomerByDocumentNumber("12345678"))
+                .thenReturn(Mono.just(createCustomer()));
+        when(debitCardRepository.findByCardNumber(event.getCardNumber()))
+                .thenReturn(Mono.just(createCard(event.getCardNumber(), "account-001")));
+        stubIncrement(account, null);
+        SettableListenableFuture<SendResult<String, Object>> failed = new SettableListenableFuture<>();
+        failed.setException(new IllegalStateException("Broker unavailable"));
+        when(kafkaTemplate.send(eq("yanki.card.link.confirmed"), any())).thenReturn(failed);
+        // Act
+        request(event);
+        // Assert
+        ProducerRecord<String, Object> record = captureRecord();
+        assertThat(record.topic()).isEqualTo("yanki.card.link.requested.retry-1");
+        assertThat(header(record, CardLinkConsumer.ERROR_HEADER)).isEqualTo("Broker unavailable");
+    }
+    private SettableListenableFuture<SendResult<String, Object>> sent() {
+        SettableListenableFuture<SendResult<String, Object>> future = new SettableListenableFuture<>();
+        future.set(null);
+        return future;
+    }
+    private void stubIncrement(Account account, List<Money> savedBalances) {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Account.class))).thenAnswer(inv -> {
+                    Query query = inv.getArgument(0);
+                    assertThat(query.getQueryObject().get("id")).isEqualTo(account.getId());
+                    Document increment = (Document) inv.getArgument(1, Update.class).getUpdateObject().get("$inc");
+                    account.setBalance(account.getBalance()
+                            .plus(MoneyConverters.fromDecimal128((Decimal128) increment.get("balance"))));
+                    if (savedBalances != null) {
+                        savedBalances.add(account.getBalance());
+                    }
+                    return Mono.just(account.toBuilder().build());
+                });
+    }
+    private void request(CardLinkRequestedEvent event) {
+        cardLinkConsumer.processCardLinkRequest(event, CardLinkConsumer.REQUESTED_TOPIC, 0, offset++);
+    }
+    private void retry(CardLinkRequestedEvent event, int attempt, byte[] notBefore) {
+        cardLinkConsumer.processCardLinkRetry(event, CardLinkConsumer.RETRY_TOPIC_PREFIX + attempt, 0, 0L, notBefore,
+                EVENT_ID, consumer);
+    }
+    private ProducerRecord<String, Object> captureRecord() {
+        ArgumentCaptor<ProducerRecord<String, Object>> captor = ArgumentCaptor.forClass(ProducerRecord.class);
+        verify(kafkaTemplate, timeout(1000)).send(captor.capture());
+        return captor.getValue();
+    }
+    private String header(ProducerRecord<String, Object> record, String name) {
+        return new String(record.headers().lastHeader(name).value(), StandardCharsets.UTF_8);
+    }
+    private CardLinkRequestedEvent createEvent(String cardNumber, Money amount) {
+        return new CardLinkRequestedEvent("987654321", cardNumber, "12345678", amount);
+    }
+    private Customer createCustomer() {
+        Customer customer = new Customer();
+        customer.setId("customer-001");
+        customer.setDocumentNumber("12345678");
+        return customer;
+    }
+    private DebitCard createCard(String cardNumber, String primaryAccountId) {
+        DebitCard card = new DebitCard();
+        card.setId("card-001");
+        card.setCardNumber(cardNumber);
+        card.setCustomerId("customer-001");
+        card.setPrimaryAccountId(primaryAccountId);
+        return card;
+    }
+    private Account createAccount(String id, String balance) {
+        Account account = new Account();
+        account.setId(id);
+        account.setCustomerId("customer-001");
+        account.setBalance(Money.of(balance));
+        return account;
+    }
+}
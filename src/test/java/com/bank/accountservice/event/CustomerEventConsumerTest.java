@@ -2,6 +2,7 @@ package com.bank.accountservice.event;
 import com.bank.accountservice.model.customer.Customer;
 import com.bank.accountservice.model.customer.CustomerType;
 import com.bank.accountservice.service.CustomerCacheService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -20,7 +21,7 @@ class CustomerEventConsumerTest {
     private CustomerEventConsumer customerEventConsumer;
     @BeforeEach
     void setUp() {
-        customerEventConsumer = new CustomerEventConsumer(cacheService);
+        customerEventConsumer = new CustomerEventConsumer(cacheService, new SimpleMeterRegistry());
     }
     @Test
     void consume_Success() {
@@ -0,0 +1,138 @@
+package com.bank.accountservice.event;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class KeyedEventSchedulerTest {
+    private final KeyedEventScheduler scheduler = new KeyedEventScheduler("test", 4);
+    @AfterEach
+    void tearDown() {
+        scheduler.dispose();
+    }
+    @Test
+    void schedule_SameKey_RunsInSubmissionOrder() {
+        // Arrange
+        List<String> executed = new CopyOnWriteArrayList<>();
+        Mono<String> slow = Mono.delay(Duration.ofMillis(100))
+                .then(Mono.fromCallable(() -> {
+                    executed.add("first");
+                    return "first";
+                }));
+        Mono<String> fast = Mono.fromCallable(() -> {
+            executed.add("second");
+            return "second";
+        });
+        // Act
+        Mono<String> first = scheduler.schedule("card-1", slow);
+        Mono<String> second = scheduler.schedule("card-1", fast);
+        first.subscribe();
+        // Assert
+        StepVerifier.create(second)
+                .expectNext("second")
+                .verifyComplete();
+        assertThat(executed).containsExactly("first", "second");
+    }
+    @Test
+    void schedule_DifferentKeys_RunConcurrently() {
+        // Arrange
+        Sinks.One<String> blocker = Sinks.one();
+        KeyedEventScheduler twoLanes = new KeyedEventScheduler("test-lanes", 2);
+        String blockedKey = findKeyForLane(twoLanes, 0);
+        String freeKey = findKeyForLane(twoLanes, 1);
+        // Act
+        twoLanes.schedule(blockedKey, blocker.asMono()).subscribe();
+        // Assert
+        StepVerifier.create(twoLanes.schedule(freeKey, Mono.just("done")))
+                .expectNext("done")
+                .verifyComplete();
+        blocker.tryEmitValue("released");
+        twoLanes.dispose();
+    }
+    @Test
+    void schedule_FailedWork_DoesNotBlockLane() {
+        // Act & Assert
+        StepVerifier.create(scheduler.schedule("card-1", Mono.error(new RuntimeException("Boom"))))
+                .expectErrorMessage("Boom")
+                .verify();
+        StepVerifier.create(scheduler.schedule("card-1", Mono.just("next")))
+                .expectNext("next")
+                .verifyComplete();
+    }
+    @Test
+    void schedule_EmptyWork_CompletesEmpty() {
+        StepVerifier.create(scheduler.schedule("card-1", Mono.empty()))
+                .verifyComplete();
+        assertThat(scheduler.getLaneCount()).isEqualTo(4);
+    }
+    @Test
+    void schedule_AfterDispose_Rejected() {
+        // Arrange
+        KeyedEventScheduler disposed = new KeyedEventScheduler("disposed", 1);
+        disposed.dispose();
+        // Act & Assert
+        StepVerifier.create(disposed.schedule("card-1", Mono.just("late")))
+                .expectError(IllegalStateException.class)
+                .verify();
+    }
+    @Test
+    void schedule_FullLane_FailsFastAndFreesSlotWhenWorkEnds() {
+        // Arrange
+        KeyedEventScheduler bounded = new KeyedEventScheduler("bounded", 1, 2);
+        Sinks.One<String> blocker = Sinks.one();
+        bounded.schedule("card-1", blocker.asMono()).subscribe();
+        bounded.schedule("card-2", Mono.just("queued")).subscribe();
+        // Act & Assert
+        StepVerifier.create(bounded.schedule("card-3", Mono.just("rejected")))
+                .expectError(RejectedExecutionException.class)
+                .verify();
+        blocker.tryEmitValue("released");
+        StepVerifier.create(bounded.schedule("card-3", Mono.just("accepted")))
+                .expectNext("accepted")
+                .verifyComplete();
+        bounded.dispose();
+    }
+    @Test
+    void submit_FullLane_BlocksUntilRoomThenRejects() {
+        // Arrange
+        KeyedEventScheduler bounded = new KeyedEventScheduler("bounded", 1, 1);
+        Sinks.One<String> blocker = Sinks.one();
+        bounded.submit("card-1", blocker.asMono(), Duration.ZERO).subscribe();
+        Mono.delay(Duration.ofMillis(50)).subscribe(ignored -> blocker.tryEmitValue("released"));
+        // Act
+        Mono<String> admitted = bounded.submit("card-2", Mono.just("admitted"), Duration.ofSeconds(5));
+        // Assert
+        StepVerifier.create(admitted)
+                .expectNext("admitted")
+                .verifyComplete();
+        Sinks.One<String> stuck = Sinks.one();
+        bounded.submit("card-1", stuck.asMono(), Duration.ZERO).subscribe();
+        assertThrows(RejectedExecutionException.class,
+            () -> bounded.submit("card-2", Mono.just("late"), Duration.ofMillis(20)));
+        stuck.tryEmitValue("released");
+        bounded.dispose();
+    }
+    @Test
+    void constructor_InvalidLaneCount() {
+        assertThrows(IllegalArgumentException.class, () -> new KeyedEventScheduler("invalid", 0));
+        assertThrows(IllegalArgumentException.class, () -> new KeyedEventScheduler("invalid", 1, 0));
+    }
+    private String findKeyForLane(KeyedEventScheduler target, int lane) {
+        for (int i = 0; ; i++) {
+            String key = "key-" + i;
+            if (Math.floorMod(key.hashCode(), target.getLaneCount()) == lane) {
+                return key;
+            }
+        }
+    }
+}
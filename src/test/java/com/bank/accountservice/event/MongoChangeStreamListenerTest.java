@@ -0,0 +1,231 @@
+package com.bank.accountservice.event;
+
+import com.bank.accountservice.dto.change.AccountChangedEvent;
+import com.bank.accountservice.dto.change.DebitCardChangedEvent;
+import com.bank.accountservice.model.account.Account;
+import com.bank.accountservice.model.debitcard.DebitCard;
+import com.bank.accountservice.service.LeaseService;
+import com.mongodb.MongoException;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.OperationType;
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonDocument;
+import org.bson.BsonObjectId;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.UncategorizedMongoDbException;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MongoChangeStreamListenerTest {
+    private static final String RESUME_TOKEN = "{\"_data\": \"8263A1\"}";
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private AccountEventProducer accountEventProducer;
+    @Mock
+    private LeaseService leaseService;
+    private MongoChangeStreamListener listener;
+    @BeforeEach
+    void setUp() {
+        listener = new MongoChangeStreamListener(mongoTemplate, eventPublisher, accountEventProducer, leaseService,
+            true, 1000, 30000);
+        lenient().when(mongoTemplate.upsert(any(Query.class), any(Update.class),
+            eq(MongoChangeStreamListener.CHECKPOINT_COLLECTION)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        lenient().when(leaseService.tryAcquire(eq(MongoChangeStreamListener.ACCOUNT_EVENTS_LEASE),
+            any(Duration.class))).thenReturn(Mono.just(true));
+        lenient().when(leaseService.release(MongoChangeStreamListener.ACCOUNT_EVENTS_LEASE)).thenReturn(Mono.empty());
+    }
+    @AfterEach
+    void tearDown() {
+        listener.stop();
+    }
+    @Test
+    void start_AccountUpdate_PublishesChangeAndCheckpointsOnlyTheEmitter() {
+        // Arrange
+        String accountId = new ObjectId().toHexString();
+        Account account = new Account();
+        account.setId(accountId);
+        ChangeStreamEvent<Account> event = changeEvent(OperationType.UPDATE, new BsonObjectId(new ObjectId(accountId)),
+            account);
+        when(mongoTemplate.findById("account-events", Document.class, MongoChangeStreamListener.CHECKPOINT_COLLECTION))
+                .thenReturn(Mono.empty());
+        when(mongoTemplate.changeStream(eq("accounts"), any(ChangeStreamOptions.class), eq(Account.class)))
+                .thenReturn(Flux.just(event));
+        when(mongoTemplate.changeStream(eq("debit_cards"), any(ChangeStreamOptions.class), eq(DebitCard.class)))
+                .thenReturn(Flux.never());
+        when(accountEventProducer.emitAccountUpdate(account)).thenReturn(Mono.empty());
+        // Act
+        listener.start();
+        // Assert
+        ArgumentCaptor<AccountChangedEvent> captor = ArgumentCaptor.forClass(AccountChangedEvent.class);
+        verify(eventPublisher, timeout(1000)).publishEvent(captor.capture());
+        assertThat(captor.getValue().getAccountId()).isEqualTo(accountId);
+        assertThat(captor.getValue().getOperationType()).isEqualTo("update");
+        verify(accountEventProducer, timeout(1000)).emitAccountUpdate(account);
+        ArgumentCaptor<Query> queryCaptor = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updateCaptor = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, timeout(1000)).upsert(queryCaptor.capture(), updateCaptor.capture(),
+            eq(MongoChangeStreamListener.CHECKPOINT_COLLECTION));
+        assertThat(queryCaptor.getValue().getQueryObject().getString("_id")).isEqualTo("account-events");
+        assertThat(updateCaptor.getValue().getUpdateObject().get("$set", Document.class).getString("resumeToken"))
+                .contains("8263A1");
+        verify(mongoTemplate, after(200).times(1)).upsert(any(Query.class), any(Update.class),
+            eq(MongoChangeStreamListener.CHECKPOINT_COLLECTION));
+    }
+    @Test
+    void start_DebitCardStreamFails_ResumesFromLastEventInMemory() {
+        // Arrange
+        listener = new MongoChangeStreamListener(mongoTemplate, eventPublisher, accountEventProducer, leaseService,
+            false, 1000, 30000);
+        ChangeStreamEvent<DebitCard> event = changeEvent(OperationType.DELETE, new BsonString("card-001"), null);
+        when(mongoTemplate.changeStream(eq("accounts"), any(ChangeStreamOptions.class), eq(Account.class)))
+                .thenReturn(Flux.never());
+        when(mongoTemplate.changeStream(eq("debit_cards"), any(ChangeStreamOptions.class), eq(DebitCard.class)))
+                .thenReturn(Flux.just(event).concatWith(Flux.error(new MongoException("Cursor killed"))),
+                    Flux.never());
+        // Act
+        listener.start();
+        // Assert
+        ArgumentCaptor<DebitCardChangedEvent> captor = ArgumentCaptor.forClass(DebitCardChangedEvent.class);
+        verify(eventPublisher, timeout(1000)).publishEvent(captor.capture());
+        assertThat(captor.getValue().getCardId()).isEqualTo("card-001");
+        assertThat(captor.getValue().getDebitCard()).isNull();
+        ArgumentCaptor<ChangeStreamOptions> optionsCaptor = ArgumentCaptor.forClass(ChangeStreamOptions.class);
+        verify(mongoTemplate, timeout(3000).times(2)).changeStream(eq("debit_cards"), optionsCaptor.capture(),
+            eq(DebitCard.class));
+        assertThat(optionsCaptor.getAllValues().get(0).getResumeToken()).isEmpty();
+        assertThat(optionsCaptor.getAllValues().get(1).getResumeToken()).contains(BsonDocument.parse(RESUME_TOKEN));
+        verify(mongoTemplate, never()).findById(any(Object.class), eq(Document.class),
+            eq(MongoChangeStreamListener.CHECKPOINT_COLLECTION));
+        verify(mongoTemplate, never()).upsert(any(Query.class), any(Update.class),
+            eq(MongoChangeStreamListener.CHECKPOINT_COLLECTION));
+        verifyNoInteractions(accountEventProducer, leaseService);
+    }
+    @Test
+    void start_AccountInsert_EmitsCreatedEvent() {
+        // Arrange
+        Account account = new Account();
+        account.setId("account-001");
+        ChangeStreamEvent<Account> event = changeEvent(OperationType.INSERT, new BsonString("account-001"), account);
+        when(mongoTemplate.findById("account-events", Document.class, MongoChangeStreamListener.CHECKPOINT_COLLECTION))
+                .thenReturn(Mono.empty());
+        when(mongoTemplate.changeStream(eq("accounts"), any(ChangeStreamOptions.class), eq(Account.class)))
+                .thenReturn(Flux.just(event));
+        when(mongoTemplate.changeStream(eq("debit_cards"), any(ChangeStreamOptions.class), eq(DebitCard.class)))
+                .thenReturn(Flux.never());
+        when(accountEventProducer.emitAccountCreated(account)).thenReturn(Mono.empty());
+        // Act
+        listener.start();
+        // Assert
+        verify(accountEventProducer, timeout(1000)).emitAccountCreated(account);
+        verify(mongoTemplate, timeout(1000)).upsert(any(Query.class), any(Update.class),
+            eq(MongoChangeStreamListener.CHECKPOINT_COLLECTION));
+    }
+    @Test
+    void start_EmitFails_DoesNotCheckpointPastTheEvent() {
+        // Arrange
+        Account account = new Account();
+        account.setId("account-001");
+        ChangeStreamEvent<Account> event = changeEvent(OperationType.UPDATE, new BsonString("account-001"), account);
+        when(mongoTemplate.findById("account-events", Document.class, MongoChangeStreamListener.CHECKPOINT_COLLECTION))
+                .thenReturn(Mono.empty());
+        when(mongoTemplate.changeStream(eq("accounts"), any(ChangeStreamOptions.class), eq(Account.class)))
+                .thenReturn(Flux.just(event));
+        when(mongoTemplate.changeStream(eq("debit_cards"), any(ChangeStreamOptions.class), eq(DebitCard.class)))
+                .thenReturn(Flux.never());
+        when(accountEventProducer.emitAccountUpdate(account))
+                .thenReturn(Mono.error(new IllegalStateException("Broker unavailable")));
+        // Act
+        listener.start();
+        // Assert
+        verify(accountEventProducer, timeout(1000)).emitAccountUpdate(account);
+        verify(mongoTemplate, after(300).never()).upsert(any(Query.class), any(Update.class),
+            eq(MongoChangeStreamListener.CHECKPOINT_COLLECTION));
+    }
+    @Test
+    void start_WithoutAccountEventsLease_OnlyPublishesLocally() {
+        // Arrange
+        Account account = new Account();
+        account.setId("account-001");
+        ChangeStreamEvent<Account> event = changeEvent(OperationType.INSERT, new BsonString("account-001"), account);
+        when(leaseService.tryAcquire(eq(MongoChangeStreamListener.ACCOUNT_EVENTS_LEASE), any(Duration.class)))
+                .thenReturn(Mono.just(false));
+        when(mongoTemplate.changeStream(eq("accounts"), any(ChangeStreamOptions.class), eq(Account.class)))
+                .thenReturn(Flux.just(event));
+        when(mongoTemplate.changeStream(eq("debit_cards"), any(ChangeStreamOptions.class), eq(DebitCard.class)))
+                .thenReturn(Flux.never());
+        // Act
+        listener.start();
+        // Assert
+        verify(eventPublisher, timeout(1000)).publishEvent(any(AccountChangedEvent.class));
+        verify(leaseService, timeout(1000)).tryAcquire(eq(MongoChangeStreamListener.ACCOUNT_EVENTS_LEASE),
+            any(Duration.class));
+        verify(mongoTemplate).changeStream(eq("accounts"), any(ChangeStreamOptions.class), eq(Account.class));
+        verifyNoInteractions(accountEventProducer);
+    }
+    @Test
+    void start_EmitterHistoryLost_ClearsCheckpointAndRestartsFromNow() {
+        // Arrange
+        when(mongoTemplate.findById("account-events", Document.class, MongoChangeStreamListener.CHECKPOINT_COLLECTION))
+                .thenReturn(Mono.just(new Document("_id", "account-events").append("resumeToken", RESUME_TOKEN)),
+                    Mono.empty());
+        when(mongoTemplate.changeStream(eq("accounts"), any(ChangeStreamOptions.class), eq(Account.class)))
+                .thenAnswer(inv -> inv.getArgument(1, ChangeStreamOptions.class).getResumeToken().isPresent()
+                    ? Flux.error(new UncategorizedMongoDbException("Resume point lost",
+                        new MongoException(286, "ChangeStreamHistoryLost")))
+                    : Flux.never());
+        when(mongoTemplate.changeStream(eq("debit_cards"), any(ChangeStreamOptions.class), eq(DebitCard.class)))
+                .thenReturn(Flux.never());
+        when(mongoTemplate.remove(any(Query.class), eq(MongoChangeStreamListener.CHECKPOINT_COLLECTION)))
+                .thenReturn(Mono.just(DeleteResult.acknowledged(1)));
+        // Act
+        listener.start();
+        // Assert
+        ArgumentCaptor<Query> removed = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, timeout(1000)).remove(removed.capture(),
+            eq(MongoChangeStreamListener.CHECKPOINT_COLLECTION));
+        assertThat(removed.getValue().getQueryObject().getString("_id")).isEqualTo("account-events");
+        verify(mongoTemplate, timeout(3000).times(3)).changeStream(eq("accounts"), any(ChangeStreamOptions.class),
+            eq(Account.class));
+        verify(mongoTemplate, times(2)).findById("account-events", Document.class,
+            MongoChangeStreamListener.CHECKPOINT_COLLECTION);
+    }
+    private <T> ChangeStreamEvent<T> changeEvent(OperationType operationType, org.bson.BsonValue id, T body) {
+        BsonDocument resumeToken = BsonDocument.parse(RESUME_TOKEN);
+        ChangeStreamDocument<Document> raw = new ChangeStreamDocument<>(operationType, resumeToken, null, null,
+            null, new BsonDocument("_id", id), null, null, null, null);
+        ChangeStreamEvent<T> event = mock(ChangeStreamEvent.class);
+        lenient().when(event.getRaw()).thenReturn(raw);
+        lenient().when(event.getBody()).thenReturn(body);
+        lenient().when(event.getOperationType()).thenReturn(operationType);
+        lenient().when(event.getResumeToken()).thenReturn(resumeToken);
+        return event;
+    }
+}
@@ -0,0 +1,61 @@
+package com.bank.accountservice.model.money;
+import com.bank.accountservice.model.account.Account;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.types.Decimal128;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+class MoneyTest {
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Test
+    void of_RoundsToMinorUnits() {
+        assertThat(Money.of("10.005").getMinorUnits()).isEqualTo(1000);
+        assertThat(Money.of("10.015").getMinorUnits()).isEqualTo(1002);
+        assertThat(Money.of(0.1).plus(Money.of(0.2))).isEqualTo(Money.of("0.30"));
+        assertThat(Money.of((String) null)).isNull();
+        assertThat(Money.of("-0.05").toString()).isEqualTo("-0.05");
+        assertThat(Money.ofMinor(-1234).toString()).isEqualTo("-12.34");
+        assertThat(Money.ofMinor(5).toBigDecimal()).isEqualByComparingTo("0.05");
+    }
+    @Test
+    void arithmetic_IsExactAndChecksOverflow() {
+        Money balance = Money.of("100.10").minus(Money.of("100.20"));
+        assertThat(balance.isNegative()).isTrue();
+        assertThat(balance.compareTo(Money.ZERO)).isNegative();
+        assertThat(balance).isEqualTo(Money.ofMinor(-10)).hasSameHashCodeAs(Money.ofMinor(-10));
+        assertThatThrownBy(() -> Money.ofMinor(Long.MAX_VALUE).plus(Money.ofMinor(1)))
+                .isInstanceOf(ArithmeticException.class);
+    }
+    @Test
+    void json_IsPlainDecimalNumber() throws Exception {
+        Account account = Account.builder().id("acc-1").balance(Money.of("1500.5")).build();
+        String json = objectMapper.writeValueAsString(account);
+        assertThat(json).contains("\"balance\":1500.50");
+        assertThat(objectMapper.readValue("{\"balance\":20.1}", Account.class).getBalance())
+                .isEqualTo(Money.ofMinor(2010));
+        assertThat(objectMapper.readValue("{}", Account.class).getBalance()).isEqualTo(Money.ZERO);
+    }
+    @Test
+    void decimal128_RoundTripsWithoutLoss() {
+        for (long minorUnits : new long[] {0, 1, -1, 15025, -99999999999L, Long.MAX_VALUE}) {
+            Decimal128 encoded = MoneyConverters.toDecimal128(Money.ofMinor(minorUnits));
+            assertThat(encoded.bigDecimalValue()).isEqualTo(BigDecimal.valueOf(minorUnits, 2));
+            assertThat(MoneyConverters.fromDecimal128(encoded).getMinorUnits()).isEqualTo(minorUnits);
+        }
+    }
+    @Test
+    void decimal128_OtherScalesAndLegacyDoublesAreConverted() {
+        assertThat(new MoneyConverters.Decimal128ToMoneyConverter().convert(Decimal128.parse("150.1")))
+                .isEqualTo(Money.ofMinor(15010));
+        assertThat(new MoneyConverters.Decimal128ToMoneyConverter().convert(Decimal128.parse("-3")))
+                .isEqualTo(Money.ofMinor(-300));
+        assertThat(new MoneyConverters.DoubleToMoneyConverter().convert(1000.3))
+                .isEqualTo(Money.ofMinor(100030));
+        assertThat(new MoneyConverters.MoneyToDecimal128Converter().convert(Money.of("7.25")))
+                .isEqualTo(Decimal128.parse("7.25"));
+        assertThat(MoneyConverters.converters()).hasSize(3);
+    }
+}
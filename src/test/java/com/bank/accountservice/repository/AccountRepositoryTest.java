@@ -2,6 +2,7 @@ package com.bank.accountservice.repository;
 
 import com.bank.accountservice.model.account.Account;
 import com.bank.accountservice.model.account.AccountType;
+import com.bank.accountservice.model.money.Money;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -81,7 +82,7 @@ class AccountRepositoryTest {
         account.setId(id);
         account.setCustomerId(customerId);
         account.setAccountType(AccountType.SAVINGS);
-        account.setBalance(1000.0);
+        account.setBalance(Money.of("1000.0"));
         account.setCreatedAt(LocalDateTime.now());
         return account;
     }
@@ -0,0 +1,232 @@
+package com.bank.accountservice.service;
+import com.bank.accountservice.dto.change.AccountChangedEvent;
+import com.bank.accountservice.model.account.Account;
+import com.bank.accountservice.model.account.AccountType;
+import com.bank.accountservice.repository.AccountRepository;
+import com.bank.accountservice.model.money.Money;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+class AccountCacheServiceTest {
+    @Mock
+    private AccountRepository accountRepository;
+    @Mock
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+    @Mock
+    private ReactiveValueOperations<String, String> valueOperations;
+    private AccountCacheService localOnlyCache;
+    private AccountCacheService redisBackedCache;
+    private Account account;
+    @BeforeEach
+    void setUp() {
+        localOnlyCache = new AccountCacheService(accountRepository, null, 100, 60000, false, 0, 0);
+        redisBackedCache = new AccountCacheService(accountRepository, redisTemplate, 100, 60000, true, 60000, 1000);
+        account = Account.builder()
+                .id("acc-1")
+                .customerId("cust-1")
+                .accountType(AccountType.SAVINGS)
+                .balance(Money.of("150.00"))
+                .holders(new ArrayList<>(Collections.singletonList("cust-1")))
+                .build();
+    }
+    @Test
+    void getAccount_LoadsOnceThenServesFromLocalCache() {
+        when(accountRepository.findById("acc-1")).thenReturn(Mono.just(account));
+        StepVerifier.create(localOnlyCache.getAccount("acc-1"))
+                .expectNextMatches(a -> a.getBalance().equals(Money.of("150.00")))
+                .verifyComplete();
+        StepVerifier.create(localOnlyCache.getAccount("acc-1"))
+                .expectNextMatches(a -> a.getBalance().equals(Money.of("150.00")))
+                .verifyComplete();
+        verify(accountRepository, times(1)).findById("acc-1");
+    }
+    @Test
+    void localStatistics_ReportsLocalCacheHitsAndSize() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        localOnlyCache.bindTo(registry);
+        when(accountRepository.findById("acc-1")).thenReturn(Mono.just(account));
+        localOnlyCache.getAccount("acc-1").block();
+        localOnlyCache.getAccount("acc-1").block();
+
+        Map<String, Object> stats = localOnlyCache.localStatistics();
+        assertEquals(1L, stats.get("size"));
+        assertEquals(1L, stats.get("hits"));
+        assertEquals(1L, stats.get("misses"));
+        assertEquals(0.5, stats.get("hitRatio"));
+        assertEquals(0L, stats.get("evictions"));
+        assertEquals(1.0, registry.get("cache.gets").tags("cache", "account-local", "result", "hit")
+                .functionCounter().count());
+    }
+    @Test
+    void getAccount_ReturnsCopiesThatDoNotLeakIntoCache() {
+        when(accountRepository.findById("acc-1")).thenReturn(Mono.just(account));
+        Account first = localOnlyCache.getAccount("acc-1").block();
+        first.setBalance(Money.of("0.0"));
+        first.getHolders().add("intruder");
+        StepVerifier.create(localOnlyCache.getAccount("acc-1"))
+                .expectNextMatches(a -> a.getBalance().equals(Money.of("150.00")) && a.getHolders().size() == 1)
+                .verifyComplete();
+    }
+    @Test
+    void getAccount_NotFound() {
+        when(accountRepository.findById("missing")).thenReturn(Mono.empty());
+        StepVerifier.create(localOnlyCache.getAccount("missing"))
+                .verifyComplete();
+        StepVerifier.create(localOnlyCache.getAccount(null))
+                .verifyComplete();
+    }
+    @Test
+    void put_WritesThroughToLocalCache() {
+        StepVerifier.create(localOnlyCache.put(account))
+                .expectNext(account)
+                .verifyComplete();
+        StepVerifier.create(localOnlyCache.getAccount("acc-1"))
+                .expectNextMatches(a -> a.getId().equals("acc-1"))
+                .verifyComplete();
+        verify(accountRepository, never()).findById(anyString());
+    }
+    @Test
+    void evict_ForcesReload() {
+        when(accountRepository.findById("acc-1")).thenReturn(Mono.just(account));
+        localOnlyCache.put(account).block();
+        StepVerifier.create(localOnlyCache.evict("acc-1"))
+                .verifyComplete();
+        StepVerifier.create(localOnlyCache.getAccount("acc-1"))
+                .expectNextCount(1)
+                .verifyComplete();
+        verify(accountRepository).findById("acc-1");
+    }
+    @Test
+    void onAccountChanged_EvictsAccount() {
+        when(accountRepository.findById("acc-1")).thenReturn(Mono.just(account));
+        localOnlyCache.put(account).block();
+        localOnlyCache.onAccountChanged(new AccountChangedEvent("acc-1", "update", account));
+        localOnlyCache.getAccount("acc-1").block();
+        verify(accountRepository).findById("acc-1");
+    }
+    @Test
+    void putAndEvict_BroadcastAndRemoteEvictionForcesReload() {
+        CacheInvalidationBus bus = mock(CacheInvalidationBus.class);
+        when(bus.publish(AccountCacheService.CACHE_NAME, "acc-1")).thenReturn(Mono.empty());
+        AccountCacheService cache = new AccountCacheService(accountRepository, null, bus, 100, 60000, false, 0, 0);
+        ArgumentCaptor<Consumer<String>> remoteEviction = ArgumentCaptor.forClass(Consumer.class);
+        verify(bus).register(eq(AccountCacheService.CACHE_NAME), remoteEviction.capture());
+        when(accountRepository.findById("acc-1")).thenReturn(Mono.just(account));
+        cache.put(account).block();
+        cache.evict("acc-1").block();
+        verify(bus, times(2)).publish(AccountCacheService.CACHE_NAME, "acc-1");
+        cache.getAccount("acc-1").block();
+        remoteEviction.getValue().accept("acc-1");
+        cache.getAccount("acc-1").block();
+        verify(accountRepository, times(2)).findById("acc-1");
+    }
+    @Test
+    void changeListeners_SeeLocalWritesRemoteEvictionsAndDatabaseChanges() {
+        CacheInvalidationBus bus = mock(CacheInvalidationBus.class);
+        when(bus.publish(AccountCacheService.CACHE_NAME, "acc-1")).thenReturn(Mono.empty());
+        AccountCacheService cache = new AccountCacheService(accountRepository, null, bus, 100, 60000, false, 0, 0);
+        ArgumentCaptor<Consumer<String>> remoteEviction = ArgumentCaptor.forClass(Consumer.class);
+        verify(bus).register(eq(AccountCacheService.CACHE_NAME), remoteEviction.capture());
+        List<String> changed = new ArrayList<>();
+        cache.addChangeListener(changed::add);
+        cache.put(account).block();
+        cache.evict("acc-1").block();
+        remoteEviction.getValue().accept("acc-2");
+        cache.onAccountChanged(new AccountChangedEvent("acc-3", "delete", null));
+        assertEquals(List.of("acc-1", "acc-1", "acc-2", "acc-3"), changed);
+    }
+    @Test
+    void onAccountChanged_DoesNotBroadcast() {
+        CacheInvalidationBus bus = mock(CacheInvalidationBus.class);
+        AccountCacheService cache = new AccountCacheService(accountRepository, null, bus, 100, 60000, false, 0, 0);
+        cache.onAccountChanged(new AccountChangedEvent("acc-1", "update", account));
+        verify(bus, never()).publish(anyString(), anyString());
+    }
+    @Test
+    void getAccount_ReadsFromRedisBeforeRepository() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get("Account:acc-1"))
+                .thenReturn(Mono.just("{\"id\":\"acc-1\",\"customerId\":\"cust-1\",\"balance\":150.0}"));
+        StepVerifier.create(redisBackedCache.getAccount("acc-1"))
+                .expectNextMatches(a -> a.getCustomerId().equals("cust-1") && a.getBalance().equals(Money.of("150.00")))
+                .verifyComplete();
+        verify(accountRepository, never()).findById(anyString());
+    }
+    @Test
+    void getAccount_RedisFailureFallsBackToRepositoryAndPopulates() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get("Account:acc-1")).thenReturn(Mono.error(new RuntimeException("Redis down")));
+        when(valueOperations.setIfAbsent(eq("Account:acc-1"), anyString(), any(Duration.class)))
+                .thenReturn(Mono.just(true));
+        when(accountRepository.findById("acc-1")).thenReturn(Mono.just(account));
+        StepVerifier.create(redisBackedCache.getAccount("acc-1"))
+                .expectNextMatches(a -> a.getId().equals("acc-1"))
+                .verifyComplete();
+        verify(valueOperations)
+                .setIfAbsent(eq("Account:acc-1"), contains("\"balance\":150.00"), any(Duration.class));
+    }
+    @Test
+    void getAccount_SlowReadFinishingAfterPut_DoesNotOverwriteNewerValue() {
+        Sinks.One<Account> slowLoad = Sinks.one();
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get("Account:acc-1")).thenReturn(Mono.empty());
+        when(valueOperations.set(eq("Account:acc-1"), anyString(), any(Duration.class))).thenReturn(Mono.just(true));
+        when(accountRepository.findById("acc-1")).thenReturn(slowLoad.asMono());
+        Account updated = account.toBuilder().balance(Money.of("200.00")).build();
+        StepVerifier slowRead = StepVerifier.create(redisBackedCache.getAccount("acc-1"))
+                .expectNextMatches(a -> a.getBalance().equals(Money.of("150.00")))
+                .expectComplete()
+                .verifyLater();
+        redisBackedCache.put(updated).block();
+        slowLoad.tryEmitValue(account);
+        slowRead.verify(Duration.ofSeconds(1));
+        StepVerifier.create(redisBackedCache.getAccount("acc-1"))
+                .expectNextMatches(a -> a.getBalance().equals(Money.of("200.00")))
+                .verifyComplete();
+        verify(accountRepository, times(1)).findById("acc-1");
+        verify(valueOperations, never()).setIfAbsent(anyString(), anyString(), any(Duration.class));
+    }
+    @Test
+    void getAccount_SlowReadFinishingAfterEviction_IsNotCached() {
+        Sinks.One<Account> slowLoad = Sinks.one();
+        when(accountRepository.findById("acc-1")).thenReturn(slowLoad.asMono()).thenReturn(Mono.just(account));
+        StepVerifier slowRead = StepVerifier.create(localOnlyCache.getAccount("acc-1"))
+                .expectNextCount(1)
+                .expectComplete()
+                .verifyLater();
+        localOnlyCache.evict("acc-1").block();
+        slowLoad.tryEmitValue(account);
+        slowRead.verify(Duration.ofSeconds(1));
+        localOnlyCache.getAccount("acc-1").block();
+        verify(accountRepository, times(2)).findById("acc-1");
+    }
+    @Test
+    void evict_DeletesRedisKeyAndIgnoresErrors() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.delete("Account:acc-1")).thenReturn(Mono.error(new RuntimeException("Redis down")));
+        StepVerifier.create(redisBackedCache.evict("acc-1"))
+                .verifyComplete();
+        verify(valueOperations).delete("Account:acc-1");
+    }
+}
@@ -0,0 +1,154 @@
+package com.bank.accountservice.service;
+import com.bank.accountservice.dto.change.DebitCardChangedEvent;
+import com.bank.accountservice.model.debitcard.DebitCard;
+import com.bank.accountservice.repository.DebitCardRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+class AccountCardIndexTest {
+    @Mock
+    private DebitCardRepository debitCardRepository;
+    @Mock
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+    @Mock
+    private ReactiveValueOperations<String, String> valueOperations;
+    private AccountCardIndex localIndex;
+    private DebitCard card1;
+    private DebitCard card2;
+    @BeforeEach
+    void setUp() {
+        localIndex = new AccountCardIndex(debitCardRepository, null, 100, 60000, false, 0, 0);
+        card1 = createCard("card1", "acc-1", "acc-1", "acc-2");
+        card2 = createCard("card2", "acc-2", "acc-2", "acc-1");
+    }
+    @Test
+    void getCardsByAccountId_QueriesOnceThenResolvesById() {
+        when(debitCardRepository.findByAssociatedAccountIdsContaining("acc-1")).thenReturn(Flux.just(card1, card2));
+        when(debitCardRepository.findAllById(List.of("card1", "card2"))).thenReturn(Flux.just(card2, card1));
+        StepVerifier.create(localIndex.getCardsByAccountId("acc-1"))
+                .expectNextCount(2)
+                .verifyComplete();
+        StepVerifier.create(localIndex.getCardsByAccountId("acc-1"))
+                .expectNextMatches(card -> card.getId().equals("card1"))
+                .expectNextMatches(card -> card.getId().equals("card2"))
+                .verifyComplete();
+        verify(debitCardRepository, times(1)).findByAssociatedAccountIdsContaining("acc-1");
+    }
+    @Test
+    void getCardsByPrimaryAccountId_CachesEmptyResult() {
+        when(debitCardRepository.findByPrimaryAccountId("acc-3")).thenReturn(Flux.empty());
+        StepVerifier.create(localIndex.getCardsByPrimaryAccountId("acc-3"))
+                .verifyComplete();
+        StepVerifier.create(localIndex.getCardsByPrimaryAccountId("acc-3"))
+                .verifyComplete();
+        verify(debitCardRepository, times(1)).findByPrimaryAccountId("acc-3");
+        verify(debitCardRepository, never()).findAllById(anyIterable());
+    }
+    @Test
+    void getCardsByPrimaryAccountId_StaleEntryIsReloaded() {
+        when(debitCardRepository.findByPrimaryAccountId("acc-1"))
+                .thenReturn(Flux.just(card1))
+                .thenReturn(Flux.empty());
+        StepVerifier.create(localIndex.getCardsByPrimaryAccountId("acc-1"))
+                .expectNextCount(1)
+                .verifyComplete();
+        DebitCard moved = createCard("card1", "acc-2", "acc-1", "acc-2");
+        when(debitCardRepository.findAllById(List.of("card1"))).thenReturn(Flux.just(moved));
+        StepVerifier.create(localIndex.getCardsByPrimaryAccountId("acc-1"))
+                .verifyComplete();
+        verify(debitCardRepository, times(2)).findByPrimaryAccountId("acc-1");
+    }
+    @Test
+    void cardSaved_InvalidatesLinkedAccounts() {
+        when(debitCardRepository.findByAssociatedAccountIdsContaining("acc-2")).thenReturn(Flux.just(card1));
+        localIndex.getCardsByAccountId("acc-2").blockLast();
+        localIndex.cardSaved(card1);
+        localIndex.getCardsByAccountId("acc-2").blockLast();
+        verify(debitCardRepository, times(2)).findByAssociatedAccountIdsContaining("acc-2");
+        verify(debitCardRepository, never()).findAllById(anyIterable());
+    }
+    @Test
+    void onDebitCardChanged_DeleteWithoutBodyDropsEntriesContainingCard() {
+        when(debitCardRepository.findByAssociatedAccountIdsContaining("acc-1")).thenReturn(Flux.just(card1));
+        localIndex.getCardsByAccountId("acc-1").blockLast();
+        localIndex.onDebitCardChanged(new DebitCardChangedEvent("card1", "delete", null));
+        localIndex.onDebitCardChanged(new DebitCardChangedEvent(null, "update", card2));
+        localIndex.getCardsByAccountId("acc-1").blockLast();
+        verify(debitCardRepository, times(2)).findByAssociatedAccountIdsContaining("acc-1");
+    }
+    @Test
+    void cardSaved_BroadcastsEvictionAndRemoteEvictionDropsLocalEntry() {
+        CacheInvalidationBus bus = mock(CacheInvalidationBus.class);
+        when(bus.publish(eq(AccountCardIndex.CACHE_NAME), anyString())).thenReturn(Mono.empty());
+        AccountCardIndex index = new AccountCardIndex(debitCardRepository, null, bus, 100, 60000, false, 0, 0);
+        ArgumentCaptor<Consumer<String>> remoteEviction = ArgumentCaptor.forClass(Consumer.class);
+        verify(bus).register(eq(AccountCardIndex.CACHE_NAME), remoteEviction.capture());
+        when(debitCardRepository.findByAssociatedAccountIdsContaining("acc-1"))
+                .thenReturn(Flux.just(card1))
+                .thenReturn(Flux.just(card1, card2));
+        index.getCardsByAccountId("acc-1").blockLast();
+        index.cardSaved(card2);
+        verify(bus).publish(AccountCardIndex.CACHE_NAME, "acc-1");
+        verify(bus).publish(AccountCardIndex.CACHE_NAME, "acc-2");
+        index.getCardsByAccountId("acc-1").blockLast();
+        remoteEviction.getValue().accept("acc-1");
+        StepVerifier.create(index.getCardsByAccountId("acc-1"))
+                .expectNextCount(2)
+                .verifyComplete();
+        verify(debitCardRepository, times(3)).findByAssociatedAccountIdsContaining("acc-1");
+    }
+    @Test
+    void getCardsByAccountId_UsesRedisEntry() {
+        AccountCardIndex redisIndex = new AccountCardIndex(debitCardRepository, redisTemplate,
+                100, 60000, true, 60000, 1000);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get("AccountCards:acc-1")).thenReturn(Mono.just("[\"card1\"]"));
+        when(debitCardRepository.findAllById(List.of("card1"))).thenReturn(Flux.just(card1));
+        StepVerifier.create(redisIndex.getCardsByAccountId("acc-1"))
+                .expectNextMatches(card -> card.getId().equals("card1"))
+                .verifyComplete();
+        verify(debitCardRepository, never()).findByAssociatedAccountIdsContaining(anyString());
+    }
+    @Test
+    void getCardsByAccountId_RedisMissWritesEntry() {
+        AccountCardIndex redisIndex = new AccountCardIndex(debitCardRepository, redisTemplate,
+                100, 60000, true, 60000, 1000);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get("AccountCards:acc-1")).thenReturn(Mono.empty());
+        when(valueOperations.set(eq("AccountCards:acc-1"), eq("[\"card1\"]"), any(Duration.class)))
+                .thenReturn(Mono.just(true));
+        when(valueOperations.delete(anyString())).thenReturn(Mono.just(true));
+        when(debitCardRepository.findByAssociatedAccountIdsContaining("acc-1")).thenReturn(Flux.just(card1));
+        StepVerifier.create(redisIndex.getCardsByAccountId("acc-1"))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier.create(redisIndex.invalidate("acc-1"))
+                .verifyComplete();
+        verify(valueOperations).delete("AccountCards:acc-1");
+        verify(valueOperations).delete("AccountPrimaryCards:acc-1");
+    }
+    private DebitCard createCard(String id, String primaryAccountId, String... associatedAccountIds) {
+        DebitCard card = new DebitCard();
+        card.setId(id);
+        card.setPrimaryAccountId(primaryAccountId);
+        card.setAssociatedAccountIds(new ArrayList<>(List.of(associatedAccountIds)));
+        return card;
+    }
+}
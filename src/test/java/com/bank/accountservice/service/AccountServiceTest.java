@@ -3,6 +3,8 @@ package com.bank.accountservice.service;
 import com.bank.accountservice.client.CreditClientService;
 import com.bank.accountservice.client.CustomerClientService;
 import com.bank.accountservice.client.CustomerEligibilityClientService;
+import com.bank.accountservice.client.DownstreamUnavailableException;
+import com.bank.accountservice.dto.CachedCustomer;
 import com.bank.accountservice.event.AccountEventProducer;
 import com.bank.accountservice.model.account.Account;
 import com.bank.accountservice.model.account.AccountType;
@@ -11,12 +13,20 @@ import com.bank.accountservice.model.creditcard.CreditCardType;
 import com.bank.accountservice.model.customer.Customer;
 import com.bank.accountservice.model.customer.CustomerType;
 import com.bank.accountservice.repository.AccountRepository;
+import com.bank.accountservice.model.money.Money;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.test.util.ReflectionTestUtils;
@@ -24,10 +34,13 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 @ExtendWith(MockitoExtension.class)
@@ -53,8 +66,13 @@ class AccountServiceTest {
     private Account fixedTermAccount;
     private CreditCard creditCard;
     private CustomerEligibilityClientService customerEligibilityClientService;
+    private AccountCacheService accountCacheService;
+    private VipPymUpdateQueue vipPymUpdateQueue;
     @BeforeEach
     void setUp() {
+        accountCacheService = new AccountCacheService(accountRepository, null, 100, 60000, false, 0, 0);
+        lenient().when(customerClientService.isAvailable()).thenReturn(true);
+        vipPymUpdateQueue = new VipPymUpdateQueue(customerClientService, new SimpleMeterRegistry(), 10000);
         accountService = new AccountService(
                 accountRepository,
                 customerCacheService,
@@ -62,7 +80,9 @@ class AccountServiceTest {
                 mongoTemplate,
                 accountEventProducer,
                 creditClientService,
-                customerEligibilityClientService
+                customerEligibilityClientService,
+                accountCacheService,
+                vipPymUpdateQueue
         );
         ReflectionTestUtils.setField(accountService, "maintenanFee", new BigDecimal("100"));
         ReflectionTestUtils.setField(accountService, "minBalanceRequirement", new BigDecimal("60"));
@@ -86,19 +106,19 @@ class AccountServiceTest {
         savingsAccount.setId("SA001");
         savingsAccount.setCustomerId("P001");
         savingsAccount.setAccountType(AccountType.SAVINGS);
-        savingsAccount.setBalance(1000.0);
+        savingsAccount.setBalance(Money.of("1000.0"));
 
         checkingAccount = new Account();
         checkingAccount.setId("CA001");
         checkingAccount.setCustomerId("B001");
         checkingAccount.setAccountType(AccountType.CHECKING);
-        checkingAccount.setBalance(2000.0);
+        checkingAccount.setBalance(Money.of("2000.0"));
 
         fixedTermAccount = new Account();
         fixedTermAccount.setId("FT001");
         fixedTermAccount.setCustomerId("P001");
         fixedTermAccount.setAccountType(AccountType.FIXED_TERM);
-        fixedTermAccount.setBalance(3000.0);
+        fixedTermAccount.setBalance(Money.of("3000.0"));
 
         creditCard = new CreditCard();
         creditCard.setId("CC001");
@@ -106,6 +126,37 @@ class AccountServiceTest {
         creditCard.setCardType(CreditCardType.PERSONAL_CREDIT_CARD);
     }
     @Test
+    void createAccount_CustomerServiceUnavailable_ServesStaleCustomer() {
+        CustomerEligibilityClientService mockEligibilityService = mock(CustomerEligibilityClientService.class);
+        when(mockEligibilityService.hasOverdueDebt(anyString())).thenReturn(Mono.just(false));
+        AccountService testAccountService = new AccountService(
+                accountRepository,
+                customerCacheService,
+                customerClientService,
+                mongoTemplate,
+                accountEventProducer,
+                creditClientService,
+                mockEligibilityService,
+                accountCacheService,
+                vipPymUpdateQueue
+        );
+        ReflectionTestUtils.setField(testAccountService, "maxFreeTransactionChecking", 4);
+        ReflectionTestUtils.setField(testAccountService, "costTransactionChecking", new BigDecimal("4.20"));
+        when(customerCacheService.getCustomer("B001")).thenReturn(Mono.empty());
+        when(customerClientService.getCustomerById("B001"))
+                .thenReturn(Mono.error(new DownstreamUnavailableException("down", null)));
+        when(customerCacheService.getStaleCustomer("B001"))
+                .thenReturn(Mono.just(new CachedCustomer(Instant.now().minusSeconds(3600), personalCustomer)));
+        when(mongoTemplate.find(any(Query.class), eq(Account.class))).thenReturn(Flux.empty());
+        when(accountRepository.save(any(Account.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        DegradedResponse response = new DegradedResponse();
+        StepVerifier.create(testAccountService.createAccount(checkingAccount)
+                        .contextWrite(context -> DegradedResponse.with(context, response)))
+                .expectNextMatches(account -> account.getAccountType() == AccountType.CHECKING)
+                .verifyComplete();
+        assertEquals(Set.of("customer data served from cache"), response.getReasons());
+    }
+    @Test
     void createAccount_PersonalCustomer_SavingsAccount_Success() {
         CustomerEligibilityClientService mockEligibilityService = mock(CustomerEligibilityClientService.class);
         when(mockEligibilityService.hasOverdueDebt(anyString())).thenReturn(Mono.just(false));
@@ -116,7 +167,9 @@ class AccountServiceTest {
                 mongoTemplate,
                 accountEventProducer,
                 creditClientService,
-                mockEligibilityService
+                mockEligibilityService,
+                accountCacheService,
+                vipPymUpdateQueue
         );
         ReflectionTestUtils.setField(testAccountService, "maintenanFee", new BigDecimal("100"));
         ReflectionTestUtils.setField(testAccountService, "minBalanceRequirement", new BigDecimal("60"));
@@ -164,7 +217,9 @@ class AccountServiceTest {
                 mongoTemplate,
                 accountEventProducer,
                 creditClientService,
-                mockEligibilityService
+                mockEligibilityService,
+                accountCacheService,
+                vipPymUpdateQueue
         );
         ReflectionTestUtils.setField(testAccountService, "maintenanFee", new BigDecimal("100"));
         ReflectionTestUtils.setField(testAccountService, "minBalanceRequirement", new BigDecimal("60"));
@@ -209,7 +264,9 @@ class AccountServiceTest {
                 mongoTemplate,
                 accountEventProducer,
                 creditClientService,
-                mockEligibilityService
+                mockEligibilityService,
+                accountCacheService,
+                vipPymUpdateQueue
         );
         ReflectionTestUtils.setField(testAccountService, "maintenanFee", new BigDecimal("100"));
         ReflectionTestUtils.setField(testAccountService, "minBalanceRequirement", new BigDecimal("60"));
@@ -239,7 +296,9 @@ class AccountServiceTest {
                 mongoTemplate,
                 accountEventProducer,
                 creditClientService,
-                mockEligibilityService
+                mockEligibilityService,
+                accountCacheService,
+                vipPymUpdateQueue
         );
         ReflectionTestUtils.setField(testAccountService, "maintenanFee", new BigDecimal("100"));
         ReflectionTestUtils.setField(testAccountService, "minBalanceRequirement", new BigDecimal("60"));
@@ -260,19 +319,32 @@ class AccountServiceTest {
     void updateAccount_Success() {
         Account existingAccount = new Account();
         existingAccount.setId("A001");
-        existingAccount.setBalance(1000.0);
+        existingAccount.setBalance(Money.of("1000.0"));
         Account updatedAccount = new Account();
-        updatedAccount.setBalance(2000.0);
+        updatedAccount.setBalance(Money.of("2000.0"));
         updatedAccount.setHolders(Collections.singletonList("John Doe"));
         when(accountRepository.findById("A001")).thenReturn(Mono.just(existingAccount));
         when(accountRepository.save(any(Account.class))).thenReturn(Mono.just(updatedAccount));
         StepVerifier.create(accountService.updateAccount("A001", updatedAccount))
                 .expectNextMatches(account ->
-                        account.getBalance() == 2000.0 &&
+                        account.getBalance().equals(Money.of("2000.0")) &&
                                 account.getHolders().contains("John Doe")
                 )
                 .verifyComplete();
-        verify(accountEventProducer).publishAccountUpdate(any(Account.class));
+        verify(accountEventProducer).publishAccountUpdate(
+                argThat(previous -> previous.getBalance().equals(Money.of("1000.0"))), eq(updatedAccount));
+    }
+    @Test
+    void updateAccount_LeavesPublishingToChangeStreamWhenItEmitsEvents() {
+        ReflectionTestUtils.setField(accountService, "changeStreamEmitsAccountEvents", true);
+        Account existingAccount = new Account();
+        existingAccount.setId("A001");
+        when(accountRepository.findById("A001")).thenReturn(Mono.just(existingAccount));
+        when(accountRepository.save(any(Account.class))).thenReturn(Mono.just(existingAccount));
+        StepVerifier.create(accountService.updateAccount("A001", new Account()))
+                .expectNext(existingAccount)
+                .verifyComplete();
+        verifyNoInteractions(accountEventProducer);
     }
     @Test
     void deleteAccount_LastAccount_Success() {
@@ -346,7 +418,9 @@ class AccountServiceTest {
                 mongoTemplate,
                 accountEventProducer,
                 creditClientService,
-                mockEligibilityService
+                mockEligibilityService,
+                accountCacheService,
+                vipPymUpdateQueue
         );
         ReflectionTestUtils.setField(testAccountService, "maintenanFee", new BigDecimal("100"));
         ReflectionTestUtils.setField(testAccountService, "minBalanceRequirement", new BigDecimal("60"));
@@ -392,7 +466,9 @@ class AccountServiceTest {
                 mongoTemplate,
                 accountEventProducer,
                 creditClientService,
-                mockEligibilityService
+                mockEligibilityService,
+                accountCacheService,
+                vipPymUpdateQueue
         );
         ReflectionTestUtils.setField(testAccountService, "maintenanFee", new BigDecimal("100"));
         ReflectionTestUtils.setField(testAccountService, "minBalanceRequirement", new BigDecimal("60"));
@@ -414,7 +490,7 @@ class AccountServiceTest {
         expectedSavedAccount.setId("SA001");
         expectedSavedAccount.setCustomerId("P001");
         expectedSavedAccount.setAccountType(AccountType.SAVINGS);
-        expectedSavedAccount.setBalance(1000.0);
+        expectedSavedAccount.setBalance(Money.of("1000.0"));
         expectedSavedAccount.setVipAccount(true);
         expectedSavedAccount.setMaxFreeTransaction(5);
         expectedSavedAccount.setTransactionCost(new BigDecimal("5.50"));
@@ -566,4 +642,154 @@ class AccountServiceTest {
         verify(customerClientService).updateVipPymStatus("C001", false);
         verify(accountRepository).deleteById("SA001");
     }
+    @Test
+    void createAccounts_ChecksEachCustomerOnceAndInsertsInOneBatch() {
+        AccountService testAccountService = bulkAccountService(false);
+        when(customerCacheService.getCustomer("P001")).thenReturn(Mono.just(personalCustomer));
+        when(customerCacheService.getCustomer("B001")).thenReturn(Mono.just(businessCustomer));
+        when(mongoTemplate.find(any(Query.class), eq(Account.class))).thenReturn(Flux.empty());
+        when(creditClientService.getCreditCardsByCustomer("P001"))
+                .thenReturn(Mono.just(Collections.singletonList(creditCard)));
+        when(creditClientService.getCreditCardsByCustomer("B001")).thenReturn(Mono.empty());
+        when(customerClientService.updateVipPymStatus("P001", true)).thenReturn(Mono.just(personalCustomer));
+        when(accountRepository.insert(anyIterable()))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.<Iterable<Account>>getArgument(0)));
+        Account secondChecking = new Account();
+        secondChecking.setCustomerId("B001");
+        secondChecking.setAccountType(AccountType.CHECKING);
+        secondChecking.setBalance(Money.of("50.0"));
+        Account duplicateSavings = new Account();
+        duplicateSavings.setCustomerId("P001");
+        duplicateSavings.setAccountType(AccountType.SAVINGS);
+        duplicateSavings.setBalance(Money.of("10.0"));
+        Account negativeBalance = new Account();
+        negativeBalance.setCustomerId("P001");
+        negativeBalance.setAccountType(AccountType.CHECKING);
+        negativeBalance.setBalance(Money.of("-1.0"));
+        List<Account> request = Arrays.asList(savingsAccount, checkingAccount, duplicateSavings,
+                secondChecking, negativeBalance);
+        StepVerifier.create(testAccountService.createAccounts(request))
+                .assertNext(results -> {
+                    assertEquals(5, results.size());
+                    assertTrue(results.get(0).isSuccess());
+                    assertTrue(results.get(0).getData().isVipAccount());
+                    assertTrue(results.get(1).isSuccess());
+                    assertEquals(new BigDecimal("100"), results.get(1).getData().getMaintenanFee());
+                    assertFalse(results.get(2).isSuccess());
+                    assertTrue(results.get(2).getMessage().startsWith("Personal customers can have only one"));
+                    assertTrue(results.get(3).isSuccess());
+                    assertEquals(Collections.singletonList("Business Corp"), results.get(3).getData().getHolders());
+                    assertFalse(results.get(4).isSuccess());
+                    for (int i = 0; i < results.size(); i++) {
+                        assertEquals(i, results.get(i).getIndex());
+                    }
+                })
+                .verifyComplete();
+        verify(accountRepository, times(1)).insert(argThat((Iterable<Account> accounts) ->
+                accounts instanceof List && ((List<Account>) accounts).size() == 3));
+        verify(accountRepository, never()).save(any(Account.class));
+        verify(mongoTemplate, times(2)).find(any(Query.class), eq(Account.class));
+        verify(creditClientService, times(1)).getCreditCardsByCustomer("P001");
+        verify(creditClientService, times(1)).getCreditCardsByCustomer("B001");
+        verify(customerClientService, times(1)).updateVipPymStatus("P001", true);
+        verify(accountEventProducer, times(3)).publishAccountCreated(any(Account.class));
+    }
+    @Test
+    void createAccounts_OverdueDebtRejectsAllItemsOfCustomer() {
+        AccountService testAccountService = bulkAccountService(true);
+        StepVerifier.create(testAccountService.createAccounts(Arrays.asList(savingsAccount, fixedTermAccount)))
+                .assertNext(results -> {
+                    assertTrue(results.stream().noneMatch(result -> result.isSuccess()));
+                    assertEquals("Customer has overdue debt and cannot create a new credit",
+                            results.get(1).getMessage());
+                })
+                .verifyComplete();
+        verify(accountRepository, never()).insert(anyIterable());
+    }
+    @Test
+    void createAccounts_InsertFailureMarksAcceptedItemsAsFailed() {
+        AccountService testAccountService = bulkAccountService(false);
+        when(customerCacheService.getCustomer("P001")).thenReturn(Mono.just(personalCustomer));
+        when(mongoTemplate.find(any(Query.class), eq(Account.class))).thenReturn(Flux.empty());
+        when(accountRepository.insert(anyIterable())).thenReturn(Flux.error(new RuntimeException("Mongo down")));
+        StepVerifier.create(testAccountService.createAccounts(Collections.singletonList(fixedTermAccount)))
+                .assertNext(results -> {
+                    assertFalse(results.get(0).isSuccess());
+                    assertEquals("Error saving account: Mongo down", results.get(0).getMessage());
+                })
+                .verifyComplete();
+        verify(accountEventProducer, never()).publishAccountCreated(any(Account.class));
+    }
+    @Test
+    void createAccounts_PartialInsertFailureMarksOnlyFailedItem() {
+        AccountService testAccountService = bulkAccountService(false);
+        when(customerCacheService.getCustomer("B001")).thenReturn(Mono.just(businessCustomer));
+        when(mongoTemplate.find(any(Query.class), eq(Account.class))).thenReturn(Flux.empty());
+        when(creditClientService.getCreditCardsByCustomer("B001")).thenReturn(Mono.empty());
+        MongoBulkWriteException duplicate = new MongoBulkWriteException(BulkWriteResult.unacknowledged(),
+                List.of(new BulkWriteError(11000, "E11000 duplicate key", new BsonDocument(), 1)), null,
+                new ServerAddress());
+        when(accountRepository.insert(anyIterable()))
+                .thenReturn(Flux.error(new DuplicateKeyException("Duplicate key", duplicate)))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.<Iterable<Account>>getArgument(0)));
+        List<Account> request = Arrays.asList(businessChecking("10.0"), businessChecking("20.0"),
+                businessChecking("30.0"));
+        StepVerifier.create(testAccountService.createAccounts(request))
+                .assertNext(results -> {
+                    assertTrue(results.get(0).isSuccess());
+                    assertFalse(results.get(1).isSuccess());
+                    assertEquals("Error saving account: E11000 duplicate key", results.get(1).getMessage());
+                    assertTrue(results.get(2).isSuccess());
+                    assertEquals("Account created successfully", results.get(2).getMessage());
+                })
+                .verifyComplete();
+        verify(accountRepository).insert(argThat((Iterable<Account> accounts) ->
+                accounts instanceof List && ((List<Account>) accounts).size() == 1
+                        && ((List<Account>) accounts).get(0) == request.get(2)));
+        verify(accountEventProducer).publishAccountCreated(request.get(0));
+        verify(accountEventProducer).publishAccountCreated(request.get(2));
+        verify(accountEventProducer, never()).publishAccountCreated(request.get(1));
+        assertNotNull(request.get(0).getId());
+    }
+    private Account businessChecking(String balance) {
+        Account account = new Account();
+        account.setCustomerId("B001");
+        account.setAccountType(AccountType.CHECKING);
+        account.setBalance(Money.of(balance));
+        return account;
+    }
+    @Test
+    void createAccounts_RejectsOversizedRequest() {
+        ReflectionTestUtils.setField(accountService, "bulkMaxSize", 1);
+        StepVerifier.create(accountService.createAccounts(Arrays.asList(savingsAccount, checkingAccount)))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        StepVerifier.create(accountService.createAccounts(Collections.emptyList()))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+    }
+    private AccountService bulkAccountService(boolean hasOverdueDebt) {
+        CustomerEligibilityClientService mockEligibilityService = mock(CustomerEligibilityClientService.class);
+        when(mockEligibilityService.hasOverdueDebt(anyString())).thenReturn(Mono.just(hasOverdueDebt));
+        AccountService testAccountService = new AccountService(
+                accountRepository,
+                customerCacheService,
+                customerClientService,
+                mongoTemplate,
+                accountEventProducer,
+                creditClientService,
+                mockEligibilityService,
+                accountCacheService,
+                vipPymUpdateQueue
+        );
+        ReflectionTestUtils.setField(testAccountService, "maintenanFee", new BigDecimal("100"));
+        ReflectionTestUtils.setField(testAccountService, "minBalanceRequirement", new BigDecimal("60"));
+        ReflectionTestUtils.setField(testAccountService, "maxFreeTransactionSavings", 5);
+        ReflectionTestUtils.setField(testAccountService, "maxFreeTransactionChecking", 4);
+        ReflectionTestUtils.setField(testAccountService, "maxFreeTransactionFixedTerms", 3);
+        ReflectionTestUtils.setField(testAccountService, "costTransactionSavings", new BigDecimal("5.50"));
+        ReflectionTestUtils.setField(testAccountService, "costTransactionChecking", new BigDecimal("4.20"));
+        ReflectionTestUtils.setField(testAccountService, "costTransactionFixedTerms", new BigDecimal("8.50"));
+        return testAccountService;
+    }
 }
@@ -0,0 +1,100 @@
+package com.bank.accountservice.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CacheInvalidationBusTest {
+    @Mock
+    private ReactiveRedisTemplate<String, String> redisTemplate;
+    private CacheInvalidationBus bus;
+    private List<String> evicted;
+
+    @BeforeEach
+    void setUp() {
+        bus = new CacheInvalidationBus(redisTemplate, true, 1000);
+        evicted = new ArrayList<>();
+        bus.register("accounts", evicted::add);
+    }
+
+    @AfterEach
+    void tearDown() {
+        bus.stop();
+    }
+
+    @Test
+    void publish_SendsEvictionOnChannel() {
+        when(redisTemplate.convertAndSend(eq(CacheInvalidationBus.CHANNEL), anyString())).thenReturn(Mono.just(2L));
+
+        StepVerifier.create(bus.publish("accounts", "acc-1"))
+                .verifyComplete();
+
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq(CacheInvalidationBus.CHANNEL), message.capture());
+        assertThat(message.getValue()).endsWith("|accounts|acc-1");
+    }
+
+    @Test
+    void publish_IgnoresRedisErrors() {
+        when(redisTemplate.convertAndSend(eq(CacheInvalidationBus.CHANNEL), anyString()))
+                .thenReturn(Mono.error(new IllegalStateException("Redis down")));
+
+        StepVerifier.create(bus.publish("accounts", "acc-1"))
+                .verifyComplete();
+    }
+
+    @Test
+    void publish_DisabledDoesNothing() {
+        CacheInvalidationBus disabled = new CacheInvalidationBus(redisTemplate, false, 1000);
+
+        StepVerifier.create(disabled.publish("accounts", "acc-1"))
+                .verifyComplete();
+        disabled.start();
+
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    void start_EvictsEntriesFromOtherReplicasOnly() {
+        when(redisTemplate.convertAndSend(eq(CacheInvalidationBus.CHANNEL), anyString())).thenReturn(Mono.just(1L));
+        bus.publish("accounts", "own").block();
+        ArgumentCaptor<String> ownMessage = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate).convertAndSend(eq(CacheInvalidationBus.CHANNEL), ownMessage.capture());
+        doReturn(Flux.just(message("other-replica|accounts|acc-1"), message(ownMessage.getValue()),
+                message("other-replica|customers|C001"), message("malformed")))
+                .when(redisTemplate).listenToChannel(CacheInvalidationBus.CHANNEL);
+
+        bus.start();
+
+        assertThat(evicted).containsExactly("acc-1");
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ReactiveSubscription.Message<String, String> message(String body) {
+        ReactiveSubscription.Message<String, String> message = mock(ReactiveSubscription.Message.class);
+        when(message.getMessage()).thenReturn(body);
+        return message;
+    }
+}
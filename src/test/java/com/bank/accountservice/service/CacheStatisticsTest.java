@@ -0,0 +1,42 @@
+package com.bank.accountservice.service;
+
+import com.bank.accountservice.client.RequestDeadlineExceededException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CacheStatisticsTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CacheStatistics statistics = new CacheStatistics("customer", registry);
+
+    @Test
+    void classifiesErrorsAndComputesHitRatio() {
+        statistics.hit();
+        statistics.hit();
+        statistics.miss();
+        statistics.stale();
+        statistics.error(new TimeoutException());
+        statistics.error(new RequestDeadlineExceededException());
+        statistics.error(new IOException("bad json"));
+        statistics.error(new RedisConnectionFailureException("down"));
+        statistics.read(120);
+        statistics.written(80);
+        statistics.written(40);
+
+        Map<String, Object> snapshot = statistics.snapshot();
+        assertEquals(0.5, snapshot.get("hitRatio"));
+        assertEquals(2L, snapshot.get("timeouts"));
+        assertEquals(1L, snapshot.get("deserializationFailures"));
+        assertEquals(1L, snapshot.get("redisErrors"));
+        assertEquals(120L, snapshot.get("bytesRead"));
+        assertEquals(2L, snapshot.get("writes"));
+        assertEquals(120L, snapshot.get("bytesWritten"));
+        assertEquals(1.0, registry.get("cache.gets").tags("cache", "customer", "result", "stale").counter().count());
+    }
+}
@@ -0,0 +1,242 @@
+package com.bank.accountservice.service;
+import com.bank.accountservice.dto.change.DebitCardChangedEvent;
+import com.bank.accountservice.model.debitcard.DebitCard;
+import com.bank.accountservice.repository.DebitCardRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+class CardNumberIndexTest {
+    @Mock
+    private DebitCardRepository debitCardRepository;
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+    private CardNumberIndex cardNumberIndex;
+    @BeforeEach
+    void setUp() {
+        cardNumberIndex = new CardNumberIndex(debitCardRepository, mongoTemplate, 1000, 0.01, 100, 30000);
+    }
+    @Test
+    void findByCardNumber_BeforeLoadFallsBackToRepository() {
+        DebitCard card = createCard("card-1", "4111111111111111");
+        when(debitCardRepository.findByCardNumber("4111111111111111")).thenReturn(Mono.just(card));
+        StepVerifier.create(cardNumberIndex.findByCardNumber("4111111111111111"))
+                .expectNextMatches(c -> c.getId().equals("card-1"))
+                .verifyComplete();
+        StepVerifier.create(cardNumberIndex.findByCardNumber("4111111111111111"))
+                .expectNextMatches(c -> c.getId().equals("card-1"))
+                .verifyComplete();
+        verify(debitCardRepository, times(1)).findByCardNumber("4111111111111111");
+    }
+    @Test
+    void findByCardNumber_FilterMissStillChecksRepository() {
+        loadNumbers("4111111111111111", "4222222222222222");
+        assertThat(cardNumberIndex.likelyIssued("4999999999999999")).isFalse();
+        DebitCard issuedElsewhere = createCard("card-9", "4999999999999999");
+        when(debitCardRepository.findByCardNumber("4999999999999999")).thenReturn(Mono.just(issuedElsewhere));
+        StepVerifier.create(cardNumberIndex.isIssued("4999999999999999"))
+                .expectNext(true)
+                .verifyComplete();
+        assertThat(cardNumberIndex.likelyIssued("4999999999999999")).isTrue();
+        assertThat(cardNumberIndex.likelyIssued("4111111111111111")).isTrue();
+        assertThat(cardNumberIndex.likelyIssued(null)).isFalse();
+    }
+    @Test
+    void ensureIndex_CreatesUniqueCardNumberIndex() {
+        ReactiveIndexOperations indexOperations = mock(ReactiveIndexOperations.class);
+        when(mongoTemplate.indexOps(DebitCard.class)).thenReturn(indexOperations);
+        when(indexOperations.ensureIndex(any(IndexDefinition.class))).thenReturn(Mono.just("cardNumber_1"));
+        cardNumberIndex.ensureIndex();
+        verify(indexOperations).ensureIndex(argThat((IndexDefinition index) ->
+                index.getIndexKeys().containsKey("cardNumber") && index.getIndexOptions().getBoolean("unique")));
+    }
+    @Test
+    void isIssued_ChecksRepositoryForPossibleMatches() {
+        loadNumbers("4111111111111111");
+        when(debitCardRepository.findByCardNumber("4111111111111111")).thenReturn(Mono.empty());
+        StepVerifier.create(cardNumberIndex.isIssued("4111111111111111"))
+                .expectNext(false)
+                .verifyComplete();
+    }
+    @Test
+    void register_MakesNewCardVisibleWithoutRepository() {
+        loadNumbers("4111111111111111");
+        cardNumberIndex.register(createCard("card-2", "4333333333333333"));
+        StepVerifier.create(cardNumberIndex.isIssued("4333333333333333"))
+                .expectNext(true)
+                .verifyComplete();
+        StepVerifier.create(cardNumberIndex.findByCardNumber("4333333333333333"))
+                .expectNextMatches(c -> c.getId().equals("card-2"))
+                .verifyComplete();
+        verify(debitCardRepository, never()).findByCardNumber(anyString());
+    }
+    @Test
+    void onDebitCardChanged_AddsNumberAndInvalidatesCachedCard() {
+        loadNumbers("4111111111111111");
+        DebitCard card = createCard("card-3", "4444444444444444");
+        cardNumberIndex.register(card);
+        DebitCard blocked = createCard("card-3", "4444444444444444");
+        blocked.setStatus("BLOCKED");
+        when(debitCardRepository.findByCardNumber("4444444444444444")).thenReturn(Mono.just(blocked));
+        cardNumberIndex.onDebitCardChanged(new DebitCardChangedEvent("card-3", "update", blocked));
+        StepVerifier.create(cardNumberIndex.findByCardNumber("4444444444444444"))
+                .expectNextMatches(c -> c.getStatus().equals("BLOCKED"))
+                .verifyComplete();
+    }
+    @Test
+    void onDebitCardChanged_DeleteWithoutBodyEvictsById() {
+        DebitCard card = createCard("card-4", "4555555555555555");
+        cardNumberIndex.register(card);
+        when(debitCardRepository.findByCardNumber("4555555555555555")).thenReturn(Mono.empty());
+        cardNumberIndex.onDebitCardChanged(new DebitCardChangedEvent("card-4", "delete", null));
+        StepVerifier.create(cardNumberIndex.findByCardNumber("4555555555555555"))
+                .verifyComplete();
+    }
+    @Test
+    void findByCardNumber_BroadcastFilterAnswersUnknownNumbersWithoutQuery() {
+        CacheInvalidationBus bus = mock(CacheInvalidationBus.class);
+        when(bus.isEnabled()).thenReturn(true);
+        CardNumberIndex index = new CardNumberIndex(debitCardRepository, mongoTemplate, bus, 1000, 0.01, 100, 30000);
+        ArgumentCaptor<Runnable> resync = ArgumentCaptor.forClass(Runnable.class);
+        verify(bus).onResync(resync.capture());
+        when(debitCardRepository.findByCardNumber("4999999999999999")).thenReturn(Mono.empty());
+        StepVerifier.create(index.findByCardNumber("4999999999999999"))
+                .verifyComplete();
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("debit_cards")))
+                .thenReturn(Flux.just(new Document("cardNumber", "4111111111111111")));
+        resync.getValue().run();
+        StepVerifier.create(index.findByCardNumber("4999999999999999"))
+                .verifyComplete();
+        verify(debitCardRepository, times(1)).findByCardNumber("4999999999999999");
+        index.start();
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(Document.class), eq("debit_cards"));
+    }
+    @Test
+    void register_BroadcastsAndRemoteSaveAddsNumberAndEvictsCachedCard() {
+        CacheInvalidationBus bus = mock(CacheInvalidationBus.class);
+        when(bus.isEnabled()).thenReturn(true);
+        when(bus.publish(CardNumberIndex.CACHE_NAME, "4333333333333333")).thenReturn(Mono.empty());
+        CardNumberIndex index = new CardNumberIndex(debitCardRepository, mongoTemplate, bus, 1000, 0.01, 100, 30000);
+        ArgumentCaptor<Consumer<String>> remoteSave = ArgumentCaptor.forClass(Consumer.class);
+        verify(bus).register(eq(CardNumberIndex.CACHE_NAME), remoteSave.capture());
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("debit_cards"))).thenReturn(Flux.empty());
+        index.rebuild().block();
+        index.register(createCard("card-2", "4333333333333333"));
+        verify(bus).publish(CardNumberIndex.CACHE_NAME, "4333333333333333");
+        DebitCard blocked = createCard("card-2", "4333333333333333");
+        blocked.setStatus("BLOCKED");
+        when(debitCardRepository.findByCardNumber("4333333333333333")).thenReturn(Mono.just(blocked));
+        remoteSave.getValue().accept("4333333333333333");
+        StepVerifier.create(index.findByCardNumber("4333333333333333"))
+                .expectNextMatches(c -> c.getStatus().equals("BLOCKED"))
+                .verifyComplete();
+        DebitCard issuedElsewhere = createCard("card-5", "4666666666666666");
+        when(debitCardRepository.findByCardNumber("4666666666666666")).thenReturn(Mono.just(issuedElsewhere));
+        remoteSave.getValue().accept("4666666666666666");
+        assertThat(index.likelyIssued("4666666666666666")).isTrue();
+        StepVerifier.create(index.findByCardNumber("4666666666666666"))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+    @Test
+    void invalidateCards_SecondReplicaDropsItsCachedCard() {
+        ReactiveRedisTemplate<String, String> redisTemplate = mock(ReactiveRedisTemplate.class);
+        when(redisTemplate.convertAndSend(eq(CacheInvalidationBus.CHANNEL), anyString())).thenReturn(Mono.just(1L));
+        CacheInvalidationBus busA = new CacheInvalidationBus(redisTemplate, true, 1000);
+        CacheInvalidationBus busB = new CacheInvalidationBus(redisTemplate, true, 1000);
+        CardNumberIndex replicaA = new CardNumberIndex(debitCardRepository, mongoTemplate, busA,
+                1000, 0.01, 100, 30000);
+        CardNumberIndex replicaB = new CardNumberIndex(debitCardRepository, mongoTemplate, busB,
+                1000, 0.01, 100, 30000);
+        replicaB.register(createCard("card-7", "4777777777777777"));
+        replicaB.register(createCard("card-8", "4888888888888888"));
+        DebitCard frozen = createCard("card-7", "4777777777777777");
+        frozen.setStatus("BLOCKED");
+        when(debitCardRepository.findByCardNumber("4777777777777777")).thenReturn(Mono.just(frozen));
+        StepVerifier.create(replicaA.invalidateCards(List.of("card-7")))
+                .verifyComplete();
+        ArgumentCaptor<String> messages = ArgumentCaptor.forClass(String.class);
+        verify(redisTemplate, times(3)).convertAndSend(eq(CacheInvalidationBus.CHANNEL), messages.capture());
+        busB.dispatch(messages.getValue());
+        StepVerifier.create(replicaB.findByCardNumber("4777777777777777"))
+                .expectNextMatches(c -> c.getStatus().equals("BLOCKED"))
+                .verifyComplete();
+        StepVerifier.create(replicaB.findByCardNumber("4888888888888888"))
+                .expectNextMatches(c -> c.getStatus().equals("ACTIVE"))
+                .verifyComplete();
+        when(debitCardRepository.findByCardNumber("4888888888888888")).thenReturn(Mono.empty());
+        StepVerifier.create(replicaA.invalidateAll())
+                .verifyComplete();
+        verify(redisTemplate, times(4)).convertAndSend(eq(CacheInvalidationBus.CHANNEL), messages.capture());
+        busB.dispatch(messages.getValue());
+        StepVerifier.create(replicaB.findByCardNumber("4888888888888888"))
+                .verifyComplete();
+    }
+    @Test
+    void rebuild_FailureLeavesFilterUnloaded() {
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("debit_cards")))
+                .thenReturn(Flux.error(new RuntimeException("Mongo down")));
+        StepVerifier.create(cardNumberIndex.rebuild())
+                .expectError(RuntimeException.class)
+                .verify();
+        assertThat(cardNumberIndex.likelyIssued("4999999999999999")).isFalse();
+    }
+    @Test
+    void bloomFilter_HasNoFalseNegativesAndFewFalsePositives() {
+        CardNumberBloomFilter filter = new CardNumberBloomFilter(10000, 0.01);
+        List<String> added = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            String number = String.format("4%015d", i * 7919L);
+            filter.add(number);
+            added.add(number);
+        }
+        assertThat(added).allMatch(filter::mightContain);
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (filter.mightContain(String.format("5%015d", i * 104729L))) {
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(300);
+        assertThat(filter.getHashCount()).isGreaterThan(1);
+        assertThat(filter.getBitCount()).isGreaterThan(10000);
+    }
+    private void loadNumbers(String... cardNumbers) {
+        List<Document> documents = new ArrayList<>();
+        for (String cardNumber : cardNumbers) {
+            documents.add(new Document("cardNumber", cardNumber));
+        }
+        when(mongoTemplate.find(any(Query.class), eq(Document.class), eq("debit_cards")))
+                .thenReturn(Flux.fromIterable(documents));
+        StepVerifier.create(cardNumberIndex.rebuild())
+                .verifyComplete();
+    }
+    private DebitCard createCard(String id, String cardNumber) {
+        DebitCard card = new DebitCard();
+        card.setId(id);
+        card.setCardNumber(cardNumber);
+        card.setStatus("ACTIVE");
+        card.setAssociatedAccountIds(new ArrayList<>(List.of("acc-1")));
+        return card;
+    }
+}
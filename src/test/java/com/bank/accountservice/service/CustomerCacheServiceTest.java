@@ -1,10 +1,12 @@
 package com.bank.accountservice.service;
+import com.bank.accountservice.dto.CachedCustomer;
 import com.bank.accountservice.model.customer.Customer;
 import com.bank.accountservice.model.customer.CustomerType;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -15,9 +17,12 @@ import org.springframework.data.redis.core.ReactiveValueOperations;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
 
 import static com.jayway.jsonpath.internal.path.PathCompiler.fail;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.when;
 @ExtendWith(MockitoExtension.class)
@@ -27,10 +32,12 @@ class CustomerCacheServiceTest {
     @Mock
     private ReactiveValueOperations<String, String> valueOperations;
     private CustomerCacheService customerCacheService;
+    private SimpleMeterRegistry meterRegistry;
     private ObjectMapper objectMapper;
     @BeforeEach
     void setUp() {
-        customerCacheService = new CustomerCacheService(redisTemplate);
+        meterRegistry = new SimpleMeterRegistry();
+        customerCacheService = new CustomerCacheService(redisTemplate, meterRegistry, 600000, 86400000);
         objectMapper = new ObjectMapper();
         objectMapper.registerModule(new JavaTimeModule());
         objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
@@ -46,6 +53,8 @@ class CustomerCacheServiceTest {
         // Act & Assert
         StepVerifier.create(customerCacheService.saveCustomer(customerId, customer))
                 .verifyComplete();
+        assertTimerCount("save", "success");
+        assertEquals(1L, customerCacheService.statistics().get("writes"));
     }
     @Test
     void saveCustomer_NullId() {
@@ -70,6 +79,9 @@ class CustomerCacheServiceTest {
             StepVerifier.create(customerCacheService.getCustomer(customerId))
                     .expectNextMatches(c -> c.getId().equals(customerId))
                     .verifyComplete();
+            assertTimerCount("get", "hit");
+            assertEquals(1L, customerCacheService.statistics().get("hits"));
+            assertEquals((long) customerJson.length(), customerCacheService.statistics().get("bytesRead"));
         } catch (JsonProcessingException e) {
             fail("Error serializing customer: " + e.getMessage());
         }
@@ -84,6 +96,8 @@ class CustomerCacheServiceTest {
         // Act & Assert
         StepVerifier.create(customerCacheService.getCustomer(customerId))
                 .verifyComplete();
+        assertTimerCount("get", "miss");
+        assertEquals(1L, customerCacheService.statistics().get("misses"));
     }
     @Test
     void getCustomer_DeserializationError() {
@@ -95,6 +109,54 @@ class CustomerCacheServiceTest {
         // Act & Assert
         StepVerifier.create(customerCacheService.getCustomer(customerId))
                 .verifyComplete();
+        assertTimerCount("get", "error");
+        assertEquals(1L, customerCacheService.statistics().get("deserializationFailures"));
+        assertEquals(1L, customerCacheService.statistics().get("misses"));
+    }
+    @Test
+    void getCustomer_StaleEntryOnlyServedInDegradedMode() throws JsonProcessingException {
+        String customerId = "123";
+        CachedCustomer entry = new CachedCustomer(Instant.now().minus(Duration.ofHours(1)), createCustomer(customerId));
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get("Customer:" + customerId))
+                .thenReturn(Mono.just(objectMapper.writeValueAsString(entry)));
+        StepVerifier.create(customerCacheService.getCustomer(customerId))
+                .verifyComplete();
+        assertEquals(1L, customerCacheService.statistics().get("staleHits"));
+        StepVerifier.create(customerCacheService.getStaleCustomer(customerId))
+                .expectNextMatches(c -> c.getCustomer().getId().equals(customerId)
+                        && customerCacheService.age(c).compareTo(Duration.ofHours(1)) >= 0)
+                .verifyComplete();
+    }
+    @Test
+    void getCustomer_ServesOldEntryWhenFreshnessIsUnlimited() throws JsonProcessingException {
+        customerCacheService = new CustomerCacheService(redisTemplate, meterRegistry, 0, 86400000);
+        String customerId = "123";
+        CachedCustomer entry = new CachedCustomer(Instant.now().minus(Duration.ofDays(2)), createCustomer(customerId));
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get("Customer:" + customerId))
+                .thenReturn(Mono.just(objectMapper.writeValueAsString(entry)));
+        StepVerifier.create(customerCacheService.getCustomer(customerId))
+                .expectNextMatches(c -> c.getId().equals(customerId))
+                .verifyComplete();
+        assertEquals(1L, customerCacheService.statistics().get("hits"));
+    }
+    @Test
+    void getStaleCustomer_BeyondMaxStale() throws JsonProcessingException {
+        String customerId = "123";
+        CachedCustomer entry = new CachedCustomer(Instant.now().minus(Duration.ofDays(2)), createCustomer(customerId));
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.get("Customer:" + customerId))
+                .thenReturn(Mono.just(objectMapper.writeValueAsString(entry)));
+        StepVerifier.create(customerCacheService.getStaleCustomer(customerId))
+                .verifyComplete();
+    }
+    private void assertTimerCount(String operation, String outcome) {
+        assertEquals(1, meterRegistry.get("customer.cache.requests")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .timer()
+                .count());
     }
     private Customer createCustomer(String id) {
         Customer customer = new Customer();
@@ -0,0 +1,123 @@
+package com.bank.accountservice.service;
+import com.bank.accountservice.model.debitcard.DebitCard;
+import com.bank.accountservice.repository.DebitCardRepository;
+import com.mongodb.client.result.UpdateResult;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.ReactiveIndexOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+@ExtendWith(MockitoExtension.class)
+class DebitCardExpirySweeperTest {
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+    @Mock
+    private DebitCardRepository debitCardRepository;
+    @Mock
+    private ReactiveIndexOperations indexOperations;
+    @Mock
+    private LeaseService leaseService;
+    private SimpleMeterRegistry meterRegistry;
+    private DebitCardExpirySweeper sweeper;
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        CardNumberIndex cardNumberIndex = new CardNumberIndex(debitCardRepository, mongoTemplate,
+                1000, 0.01, 100, 30000);
+        sweeper = new DebitCardExpirySweeper(mongoTemplate, cardNumberIndex, leaseService, meterRegistry, 2, 2, 1,
+                60000);
+    }
+    @Test
+    void sweep_ExpiresCardsInBoundedBatches() {
+        when(mongoTemplate.find(any(Query.class), eq(DebitCard.class)))
+                .thenReturn(Flux.just(card("card1"), card("card2")))
+                .thenReturn(Flux.just(card("card3"), card("card4")));
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(DebitCard.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(2, 2L, null)));
+        DebitCard oldest = card("card5");
+        oldest.setExpirationDate(LocalDateTime.now().minusHours(1));
+        when(mongoTemplate.findOne(any(Query.class), eq(DebitCard.class))).thenReturn(Mono.just(oldest));
+        StepVerifier.create(sweeper.sweep())
+                .expectNext(4L)
+                .verifyComplete();
+        verify(mongoTemplate, times(2)).find(any(Query.class), eq(DebitCard.class));
+        verify(mongoTemplate, times(2)).updateMulti(
+                argThat((Query query) -> query.getQueryObject().containsKey("status")),
+                argThat((Update update) -> update.getUpdateObject().get("$set").toString().contains("EXPIRED")),
+                eq(DebitCard.class));
+        assertThat(meterRegistry.counter("debit_cards.expiry.expired").count()).isEqualTo(4.0);
+        assertThat(sweeper.getLagSeconds()).isBetween(3500L, 3700L);
+        assertThat(meterRegistry.get("debit_cards.expiry.lag.seconds").gauge().value()).isGreaterThan(0);
+    }
+    @Test
+    void scheduledSweep_RunsOnlyWithLease() {
+        when(leaseService.tryAcquire(eq(DebitCardExpirySweeper.SWEEPER_LEASE), any(Duration.class)))
+                .thenReturn(Mono.just(false))
+                .thenReturn(Mono.just(true));
+        when(mongoTemplate.find(any(Query.class), eq(DebitCard.class))).thenReturn(Flux.empty());
+        when(mongoTemplate.findOne(any(Query.class), eq(DebitCard.class))).thenReturn(Mono.empty());
+        sweeper.scheduledSweep();
+        verify(mongoTemplate, never()).find(any(Query.class), eq(DebitCard.class));
+        sweeper.scheduledSweep();
+        verify(mongoTemplate, timeout(1000)).find(any(Query.class), eq(DebitCard.class));
+        verify(leaseService, times(2)).tryAcquire(DebitCardExpirySweeper.SWEEPER_LEASE, Duration.ofMinutes(1));
+    }
+    @Test
+    void sweep_StopsWhenBatchIsNotFull() {
+        when(mongoTemplate.find(any(Query.class), eq(DebitCard.class))).thenReturn(Flux.just(card("card1")));
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(DebitCard.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(1, 1L, null)));
+        when(mongoTemplate.findOne(any(Query.class), eq(DebitCard.class))).thenReturn(Mono.empty());
+        StepVerifier.create(sweeper.sweep())
+                .expectNext(1L)
+                .verifyComplete();
+        verify(mongoTemplate, times(1)).find(any(Query.class), eq(DebitCard.class));
+        assertThat(sweeper.getLagSeconds()).isZero();
+    }
+    @Test
+    void sweep_NothingDue() {
+        when(mongoTemplate.find(any(Query.class), eq(DebitCard.class))).thenReturn(Flux.empty());
+        when(mongoTemplate.findOne(any(Query.class), eq(DebitCard.class))).thenReturn(Mono.empty());
+        StepVerifier.create(sweeper.sweep())
+                .expectNext(0L)
+                .verifyComplete();
+        verify(mongoTemplate, never()).updateMulti(any(Query.class), any(Update.class), eq(DebitCard.class));
+    }
+    @Test
+    void scheduledSweep_RunsSweepAndEnsureIndexCreatesIndex() {
+        when(leaseService.tryAcquire(eq(DebitCardExpirySweeper.SWEEPER_LEASE), any(Duration.class)))
+                .thenReturn(Mono.just(true));
+        when(mongoTemplate.find(any(Query.class), eq(DebitCard.class))).thenReturn(Flux.empty());
+        when(mongoTemplate.findOne(any(Query.class), eq(DebitCard.class))).thenReturn(Mono.empty());
+        when(mongoTemplate.indexOps(DebitCard.class)).thenReturn(indexOperations);
+        when(indexOperations.ensureIndex(any(IndexDefinition.class))).thenReturn(Mono.just("expirationDate_1"));
+        sweeper.scheduledSweep();
+        sweeper.ensureIndex();
+        verify(mongoTemplate).find(any(Query.class), eq(DebitCard.class));
+        verify(indexOperations).ensureIndex(argThat((IndexDefinition index) ->
+                index.getIndexKeys().containsKey("expirationDate")));
+    }
+    private DebitCard card(String id) {
+        DebitCard card = new DebitCard();
+        card.setId(id);
+        return card;
+    }
+}
@@ -1,15 +1,31 @@
 package com.bank.accountservice.service;
 import com.bank.accountservice.client.CustomerEligibilityClientService;
+import com.bank.accountservice.dto.BulkStatusUpdateRequest;
+import com.bank.accountservice.dto.CreateCardRequest;
 import com.bank.accountservice.model.account.Account;
 import com.bank.accountservice.model.debitcard.DebitCard;
 import com.bank.accountservice.repository.AccountRepository;
 import com.bank.accountservice.repository.DebitCardRepository;
+import com.bank.accountservice.model.money.Money;
+import com.bank.accountservice.dto.BulkItemResult;
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonDocument;
+import org.bson.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.test.util.ReflectionTestUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
@@ -17,10 +33,17 @@ import reactor.test.StepVerifier;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyIterable;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -31,14 +54,23 @@ class DebitCardServiceTest {
     private AccountRepository accountRepository;
     @Mock
     private CustomerEligibilityClientService customerEligibilityClientService;
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
     @InjectMocks
     private DebitCardService debitCardService;
     @BeforeEach
     void setUp() {
         ReflectionTestUtils.setField(debitCardService, "debitCardRepository", debitCardRepository);
         ReflectionTestUtils.setField(debitCardService, "accountRepository", accountRepository);
+        ReflectionTestUtils.setField(debitCardService, "mongoTemplate", mongoTemplate);
         ReflectionTestUtils.setField(debitCardService, "customerEligibilityClientService",
             customerEligibilityClientService);
+        ReflectionTestUtils.setField(debitCardService, "accountCacheService",
+            new AccountCacheService(accountRepository, null, 100, 60000, false, 0, 0));
+        ReflectionTestUtils.setField(debitCardService, "cardNumberIndex",
+            new CardNumberIndex(debitCardRepository, null, 1000, 0.01, 100, 30000));
+        ReflectionTestUtils.setField(debitCardService, "accountCardIndex",
+            new AccountCardIndex(debitCardRepository, null, 100, 60000, false, 0, 0));
     }
     @Test
     void createDebitCard_Success() {
@@ -48,7 +80,7 @@ class DebitCardServiceTest {
         Account primaryAccount = new Account();
         primaryAccount.setId(primaryAccountId);
         primaryAccount.setCustomerId(customerId);
-        primaryAccount.setBalance(new Double("1000.00"));
+        primaryAccount.setBalance(Money.of("1000.00"));
         DebitCard savedCard = new DebitCard();
         savedCard.setId("card123");
         savedCard.setCardNumber("4123456789012345");
@@ -98,7 +130,7 @@ class DebitCardServiceTest {
         Account primaryAccount = new Account();
         primaryAccount.setId(primaryAccountId);
         primaryAccount.setCustomerId("differentCustomer");
-        primaryAccount.setBalance(new Double("1000.00"));
+        primaryAccount.setBalance(Money.of("1000.00"));
         when(customerEligibilityClientService.hasOverdueDebt(customerId)).thenReturn(Mono.just(false));
         when(accountRepository.findById(primaryAccountId)).thenReturn(Mono.just(primaryAccount));
         // Act & Assert
@@ -354,7 +386,7 @@ class DebitCardServiceTest {
         card.setPrimaryAccountId(primaryAccountId);
         Account account = new Account();
         account.setId(primaryAccountId);
-        account.setBalance(new Double("1500.00"));
+        account.setBalance(Money.of("1500.00"));
         when(debitCardRepository.findById(cardId)).thenReturn(Mono.just(card));
         when(accountRepository.findById(primaryAccountId)).thenReturn(Mono.just(account));
         // Act & Assert
@@ -363,8 +395,7 @@ class DebitCardServiceTest {
                         result.getCardId().equals(cardId) &&
                                 result.getCardNumber().equals("4111111111111111") &&
                                 result.getPrimaryAccountId().equals(primaryAccountId) &&
-                                String.format("%.2f", result.getBalancePrimaryAccount())
-                                    .equals("1500.00"))
+                                result.getBalancePrimaryAccount().toString().equals("1500.00"))
                 .verifyComplete();
         verify(debitCardRepository).findById(cardId);
         verify(accountRepository).findById(primaryAccountId);
@@ -376,4 +407,191 @@ class DebitCardServiceTest {
         card.setAssociatedAccountIds(new ArrayList<>(List.of(accountId)));
         return card;
     }
+    @Test
+    void createDebitCards_ResolvesOncePerCustomerAndInsertsInOneBatch() {
+        Account account1 = new Account();
+        account1.setId("account1");
+        account1.setCustomerId("customer1");
+        Account account2 = new Account();
+        account2.setId("account2");
+        account2.setCustomerId("customer1");
+        Account foreignAccount = new Account();
+        foreignAccount.setId("account3");
+        foreignAccount.setCustomerId("someoneElse");
+        List<CreateCardRequest> requests = Arrays.asList(
+                new CreateCardRequest("customer1", "account1"),
+                new CreateCardRequest("customer1", "account2"),
+                new CreateCardRequest("customer1", "account3"),
+                new CreateCardRequest("customer2", "account4"),
+                new CreateCardRequest(null, "account1"));
+        when(customerEligibilityClientService.hasOverdueDebt("customer1")).thenReturn(Mono.just(false));
+        when(customerEligibilityClientService.hasOverdueDebt("customer2")).thenReturn(Mono.just(true));
+        when(accountRepository.findAllById(anyIterable())).thenReturn(Flux.just(account1, account2, foreignAccount));
+        when(debitCardRepository.findByCardNumberIn(anyCollection())).thenReturn(Flux.empty());
+        when(debitCardRepository.insert(anyIterable()))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.<Iterable<DebitCard>>getArgument(0)));
+        StepVerifier.create(debitCardService.createDebitCards(requests))
+                .assertNext(results -> {
+                    assertThat(results).hasSize(5);
+                    assertThat(results.get(0).isSuccess()).isTrue();
+                    assertThat(results.get(1).isSuccess()).isTrue();
+                    assertThat(results.get(0).getData().getCardNumber())
+                            .hasSize(16)
+                            .isNotEqualTo(results.get(1).getData().getCardNumber());
+                    assertThat(results.get(2).getMessage()).isEqualTo("The main account does not belong to the client");
+                    assertThat(results.get(3).getMessage()).contains("overdue debt");
+                    assertThat(results.get(4).isSuccess()).isFalse();
+                })
+                .verifyComplete();
+        verify(customerEligibilityClientService, times(1)).hasOverdueDebt("customer1");
+        verify(accountRepository, times(1)).findAllById(anyIterable());
+        verify(debitCardRepository, times(1)).findByCardNumberIn(anyCollection());
+        verify(debitCardRepository, times(1)).insert(anyIterable());
+        verify(debitCardRepository, never()).save(any(DebitCard.class));
+    }
+    @Test
+    void createDebitCards_ReallocatesTakenNumbers() {
+        Account account1 = new Account();
+        account1.setId("account1");
+        account1.setCustomerId("customer1");
+        when(customerEligibilityClientService.hasOverdueDebt("customer1")).thenReturn(Mono.just(false));
+        when(accountRepository.findAllById(anyIterable())).thenReturn(Flux.just(account1));
+        when(debitCardRepository.findByCardNumberIn(anyCollection()))
+                .thenAnswer(invocation -> {
+                    Collection<String> numbers = invocation.getArgument(0);
+                    DebitCard existing = new DebitCard();
+                    existing.setCardNumber(numbers.iterator().next());
+                    return Flux.just(existing);
+                })
+                .thenReturn(Flux.empty());
+        when(debitCardRepository.insert(anyIterable())).thenReturn(Flux.error(new RuntimeException("Mongo down")));
+        StepVerifier.create(debitCardService.createDebitCards(List.of(new CreateCardRequest("customer1", "account1"))))
+                .assertNext(results -> assertThat(results.get(0).getMessage())
+                        .isEqualTo("Error saving debit card: Mongo down"))
+                .verifyComplete();
+        verify(debitCardRepository, times(2)).findByCardNumberIn(anyCollection());
+    }
+    @Test
+    void createDebitCards_DuplicateNumberIsReallocatedAndOnlyRemainingCardsReinserted() {
+        stubBulkCustomer();
+        List<List<DebitCard>> inserts = new ArrayList<>();
+        when(debitCardRepository.insert(anyIterable()))
+                .thenAnswer(invocation -> {
+                    inserts.add(new ArrayList<>(invocation.<List<DebitCard>>getArgument(0)));
+                    return Flux.error(new DuplicateKeyException("Duplicate key", bulkWriteError(11000, 1)));
+                })
+                .thenAnswer(invocation -> {
+                    inserts.add(new ArrayList<>(invocation.<List<DebitCard>>getArgument(0)));
+                    return Flux.fromIterable(invocation.<Iterable<DebitCard>>getArgument(0));
+                });
+        StepVerifier.create(debitCardService.createDebitCards(bulkCardRequests(3)))
+                .assertNext(results -> {
+                    assertThat(results).allMatch(BulkItemResult::isSuccess);
+                    assertThat(results).extracting(result -> result.getData().getId()).doesNotContainNull();
+                })
+                .verifyComplete();
+        assertThat(inserts).hasSize(2);
+        assertThat(inserts.get(1)).hasSize(2);
+        assertThat(inserts.get(1).get(0)).isSameAs(inserts.get(0).get(1));
+    }
+    @Test
+    void createDebitCards_WriteErrorFailsOnlyThatCard() {
+        stubBulkCustomer();
+        when(debitCardRepository.insert(anyIterable()))
+                .thenReturn(Flux.error(new BulkOperationException("Bulk write failed", bulkWriteError(121, 0))))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.<Iterable<DebitCard>>getArgument(0)));
+        StepVerifier.create(debitCardService.createDebitCards(bulkCardRequests(2)))
+                .assertNext(results -> {
+                    assertThat(results.get(0).isSuccess()).isFalse();
+                    assertThat(results.get(0).getMessage()).isEqualTo("Error saving debit card: write failed");
+                    assertThat(results.get(1).isSuccess()).isTrue();
+                })
+                .verifyComplete();
+        verify(debitCardRepository, times(2)).insert(anyIterable());
+    }
+    private void stubBulkCustomer() {
+        Account account1 = new Account();
+        account1.setId("account1");
+        account1.setCustomerId("customer1");
+        when(customerEligibilityClientService.hasOverdueDebt("customer1")).thenReturn(Mono.just(false));
+        when(accountRepository.findAllById(anyIterable())).thenReturn(Flux.just(account1));
+        when(debitCardRepository.findByCardNumberIn(anyCollection())).thenReturn(Flux.empty());
+    }
+    private List<CreateCardRequest> bulkCardRequests(int count) {
+        List<CreateCardRequest> requests = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            requests.add(new CreateCardRequest("customer1", "account1"));
+        }
+        return requests;
+    }
+    private MongoBulkWriteException bulkWriteError(int code, int index) {
+        return new MongoBulkWriteException(BulkWriteResult.unacknowledged(),
+                List.of(new BulkWriteError(code, "write failed", new BsonDocument(), index)), null,
+                new ServerAddress());
+    }
+    @Test
+    void createDebitCards_RejectsOversizedRequest() {
+        ReflectionTestUtils.setField(debitCardService, "bulkMaxSize", 1);
+        List<CreateCardRequest> requests = Arrays.asList(new CreateCardRequest("c", "a"),
+                new CreateCardRequest("c", "b"));
+        StepVerifier.create(debitCardService.createDebitCards(requests))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        StepVerifier.create(debitCardService.createDebitCards(Collections.emptyList()))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+    }
+    @Test
+    void updateCardStatuses_AppliesSingleUpdateMany() {
+        BulkStatusUpdateRequest request = BulkStatusUpdateRequest.builder()
+                .status("BLOCKED")
+                .customerId("customer1")
+                .build();
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(DebitCard.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(3, 2L, null)));
+        StepVerifier.create(debitCardService.updateCardStatuses(request))
+                .assertNext(result -> {
+                    assertThat(result.getMatchedCount()).isEqualTo(3);
+                    assertThat(result.getModifiedCount()).isEqualTo(2);
+                    assertThat(result.getStatus()).isEqualTo("BLOCKED");
+                })
+                .verifyComplete();
+        verify(mongoTemplate).updateMulti(argThat((Query query) ->
+                query.getQueryObject().get("customerId").equals("customer1")
+                        && query.getQueryObject().get("status") instanceof Document),
+                argThat((Update update) -> update.getUpdateObject().get("$set", Document.class)
+                        .get("status").equals("BLOCKED")),
+                eq(DebitCard.class));
+        verify(debitCardRepository, never()).save(any(DebitCard.class));
+    }
+    @Test
+    void updateCardStatuses_RequiresSelectorAndStatus() {
+        StepVerifier.create(debitCardService.updateCardStatuses(BulkStatusUpdateRequest.builder()
+                        .status("BLOCKED").build()))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        StepVerifier.create(debitCardService.updateCardStatuses(BulkStatusUpdateRequest.builder()
+                        .cardIds(List.of("card1")).build()))
+                .expectError(IllegalArgumentException.class)
+                .verify();
+        verifyNoInteractions(mongoTemplate);
+    }
+    @Test
+    void streamCardStatusUpdates_UpdatesInChunksAndEmitsIds() {
+        ReflectionTestUtils.setField(debitCardService, "statusChunkSize", 2);
+        BulkStatusUpdateRequest request = BulkStatusUpdateRequest.builder()
+                .status("EXPIRED")
+                .currentStatus("ACTIVE")
+                .expiringBefore(LocalDateTime.now())
+                .build();
+        when(mongoTemplate.find(any(Query.class), eq(DebitCard.class)))
+                .thenReturn(Flux.just(createDebitCard("card1", "c", "1", "a"),
+                        createDebitCard("card2", "c", "2", "a"), createDebitCard("card3", "c", "3", "a")));
+        when(mongoTemplate.updateMulti(any(Query.class), any(Update.class), eq(DebitCard.class)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(2, 2L, null)));
+        StepVerifier.create(debitCardService.streamCardStatusUpdates(request))
+                .expectNext("card1", "card2", "card3")
+                .verifyComplete();
+        verify(mongoTemplate, times(2)).updateMulti(any(Query.class), any(Update.class), eq(DebitCard.class));
+    }
 }
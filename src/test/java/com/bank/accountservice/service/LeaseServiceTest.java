@@ -0,0 +1,93 @@
+package com.bank.accountservice.service;
+
+import com.mongodb.client.result.DeleteResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Date;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LeaseServiceTest {
+    @Mock
+    private ReactiveMongoTemplate mongoTemplate;
+    private LeaseService leaseService;
+
+    @BeforeEach
+    void setUp() {
+        leaseService = new LeaseService(mongoTemplate, "replica-1");
+    }
+
+    @Test
+    void tryAcquire_TakesFreeExpiredOrOwnLease() {
+        when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(LeaseService.LEASE_COLLECTION)))
+                .thenReturn(Mono.just(UpdateResult.acknowledged(0, 0L, null)));
+
+        StepVerifier.create(leaseService.tryAcquire("sweeper", Duration.ofMinutes(1)))
+                .expectNext(true)
+                .verifyComplete();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).upsert(query.capture(), update.capture(), eq(LeaseService.LEASE_COLLECTION));
+        Document criteria = query.getValue().getQueryObject();
+        assertThat(criteria.getString("_id")).isEqualTo("sweeper");
+        assertThat(criteria.getList("$or", Document.class)).hasSize(2);
+        Document set = update.getValue().getUpdateObject().get("$set", Document.class);
+        assertThat(set.getString("owner")).isEqualTo("replica-1");
+        assertThat(set.get("expiresAt", Date.class)).isAfter(new Date());
+    }
+
+    @Test
+    void tryAcquire_FailsWhenAnotherReplicaHoldsIt() {
+        when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(LeaseService.LEASE_COLLECTION)))
+                .thenReturn(Mono.error(new DuplicateKeyException("E11000 duplicate key")));
+
+        StepVerifier.create(leaseService.tryAcquire("sweeper", Duration.ofMinutes(1)))
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    @Test
+    void tryAcquire_FailsWhenMongoIsUnavailable() {
+        when(mongoTemplate.upsert(any(Query.class), any(Update.class), eq(LeaseService.LEASE_COLLECTION)))
+                .thenReturn(Mono.error(new IllegalStateException("Mongo down")));
+
+        StepVerifier.create(leaseService.tryAcquire("sweeper", Duration.ofMinutes(1)))
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    @Test
+    void release_OnlyRemovesOwnLease() {
+        when(mongoTemplate.remove(any(Query.class), eq(LeaseService.LEASE_COLLECTION)))
+                .thenReturn(Mono.just(DeleteResult.acknowledged(1)));
+
+        StepVerifier.create(leaseService.release("sweeper"))
+                .verifyComplete();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).remove(query.capture(), eq(LeaseService.LEASE_COLLECTION));
+        assertThat(query.getValue().getQueryObject())
+                .containsEntry("_id", "sweeper")
+                .containsEntry("owner", "replica-1");
+    }
+}
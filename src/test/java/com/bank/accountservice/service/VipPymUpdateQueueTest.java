@@ -0,0 +1,193 @@
+package com.bank.accountservice.service;
+
+import com.bank.accountservice.client.CustomerClientService;
+import com.bank.accountservice.client.DownstreamUnavailableException;
+import com.bank.accountservice.model.customer.Customer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class VipPymUpdateQueueTest {
+    @Mock
+    private CustomerClientService customerClientService;
+    private VipPymUpdateQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        queue = new VipPymUpdateQueue(customerClientService, new SimpleMeterRegistry(), 2);
+    }
+
+    @Test
+    void update_CallsCustomerServiceWhenAvailable() {
+        when(customerClientService.isAvailable()).thenReturn(true);
+        when(customerClientService.updateVipPymStatus("C001", true)).thenReturn(Mono.just(new Customer()));
+        DegradedResponse response = new DegradedResponse();
+
+        StepVerifier.create(queue.update("C001", true)
+                        .contextWrite(context -> DegradedResponse.with(context, response)))
+                .verifyComplete();
+
+        assertEquals(0, queue.size());
+        assertFalse(response.isDegraded());
+    }
+
+    @Test
+    void update_QueuesAndFlagsResponseWhenBreakerIsOpen() {
+        when(customerClientService.isAvailable()).thenReturn(false);
+        DegradedResponse response = new DegradedResponse();
+
+        StepVerifier.create(queue.update("C001", true)
+                        .contextWrite(context -> DegradedResponse.with(context, response)))
+                .verifyComplete();
+
+        assertEquals(1, queue.size());
+        assertEquals(Set.of("VIP/PYM status update queued"), response.getReasons());
+        verify(customerClientService, never()).updateVipPymStatus(anyString(), anyBoolean());
+    }
+
+    @Test
+    void update_QueuesWhenCallFailsAsUnavailable() {
+        when(customerClientService.isAvailable()).thenReturn(true);
+        when(customerClientService.updateVipPymStatus("C001", false))
+                .thenReturn(Mono.error(new DownstreamUnavailableException("down", null)));
+
+        StepVerifier.create(queue.update("C001", false))
+                .verifyComplete();
+
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    void update_FailsWhenQueueIsFull() {
+        when(customerClientService.isAvailable()).thenReturn(false);
+        queue.update("C001", true).block();
+        queue.update("C002", true).block();
+        queue.update("C001", false).block();
+
+        StepVerifier.create(queue.update("C003", true))
+                .expectError(DownstreamUnavailableException.class)
+                .verify();
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    void drain_ReplaysLatestValueAndKeepsFailures() {
+        when(customerClientService.isAvailable()).thenReturn(false, false, false, true);
+        queue.update("C001", true).block();
+        queue.update("C001", false).block();
+        queue.update("C002", true).block();
+        when(customerClientService.updateVipPymStatus("C001", false)).thenReturn(Mono.just(new Customer()));
+        when(customerClientService.updateVipPymStatus("C002", true))
+                .thenReturn(Mono.error(new DownstreamUnavailableException("down", null)));
+
+        StepVerifier.create(queue.drain())
+                .expectNext(1L)
+                .verifyComplete();
+
+        assertEquals(1, queue.size());
+        verify(customerClientService, never()).updateVipPymStatus("C001", true);
+    }
+
+    @Test
+    void update_WhenAvailableSupersedesQueuedValue() {
+        when(customerClientService.isAvailable()).thenReturn(false, true, true);
+        queue.update("C001", true).block();
+        when(customerClientService.updateVipPymStatus("C001", false)).thenReturn(Mono.just(new Customer()));
+        DegradedResponse response = new DegradedResponse();
+
+        StepVerifier.create(queue.update("C001", false)
+                        .contextWrite(context -> DegradedResponse.with(context, response)))
+                .verifyComplete();
+
+        assertEquals(0, queue.size());
+        assertFalse(response.isDegraded());
+        StepVerifier.create(queue.drain())
+                .expectNext(0L)
+                .verifyComplete();
+        verify(customerClientService, never()).updateVipPymStatus("C001", true);
+    }
+
+    @Test
+    void update_BehindInFlightUpdateIsSentAfterItWithoutDegrading() {
+        when(customerClientService.isAvailable()).thenReturn(true);
+        Sinks.One<Customer> first = Sinks.one();
+        when(customerClientService.updateVipPymStatus("C001", true)).thenReturn(first.asMono());
+        when(customerClientService.updateVipPymStatus("C001", false)).thenReturn(Mono.just(new Customer()));
+        DegradedResponse response = new DegradedResponse();
+        StepVerifier firstUpdate = StepVerifier.create(queue.update("C001", true))
+                .expectComplete()
+                .verifyLater();
+        StepVerifier secondUpdate = StepVerifier.create(queue.update("C001", false)
+                        .contextWrite(context -> DegradedResponse.with(context, response)))
+                .expectComplete()
+                .verifyLater();
+        verify(customerClientService, never()).updateVipPymStatus("C001", false);
+
+        first.tryEmitValue(new Customer());
+
+        firstUpdate.verify(Duration.ofSeconds(1));
+        secondUpdate.verify(Duration.ofSeconds(1));
+        InOrder inOrder = inOrder(customerClientService);
+        inOrder.verify(customerClientService).updateVipPymStatus("C001", true);
+        inOrder.verify(customerClientService).updateVipPymStatus("C001", false);
+        assertEquals(0, queue.size());
+        assertFalse(response.isDegraded());
+    }
+
+    @Test
+    void update_DuringReplayIsSentAfterReplayedValue() {
+        when(customerClientService.isAvailable()).thenReturn(false, true, true);
+        queue.update("C001", true).block();
+        Sinks.One<Customer> replay = Sinks.one();
+        when(customerClientService.updateVipPymStatus("C001", true)).thenReturn(replay.asMono());
+        when(customerClientService.updateVipPymStatus("C001", false)).thenReturn(Mono.just(new Customer()));
+        StepVerifier drain = StepVerifier.create(queue.drain())
+                .expectNext(1L)
+                .expectComplete()
+                .verifyLater();
+        StepVerifier update = StepVerifier.create(queue.update("C001", false))
+                .expectComplete()
+                .verifyLater();
+
+        replay.tryEmitValue(new Customer());
+
+        drain.verify(Duration.ofSeconds(1));
+        update.verify(Duration.ofSeconds(1));
+        InOrder inOrder = inOrder(customerClientService);
+        inOrder.verify(customerClientService).updateVipPymStatus("C001", true);
+        inOrder.verify(customerClientService).updateVipPymStatus("C001", false);
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    void drain_WaitsWhileBreakerIsOpen() {
+        when(customerClientService.isAvailable()).thenReturn(false);
+        queue.update("C001", true).block();
+
+        StepVerifier.create(queue.drain())
+                .expectNext(0L)
+                .verifyComplete();
+        assertTrue(queue.size() > 0);
+    }
+}